@@ -0,0 +1,143 @@
+//****************************************************************************
+//
+// Filename: BinaryTrace.java
+//
+// Description: Fixed-width binary simulation event file and the converter
+//              from the CSV format
+//
+//***************************************************************************
+
+package core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import core.Exceptions.InputParserException;
+import core.Utils.SimulationRequest;
+
+/**
+ * Binary form of a simulation event file, which BinaryTraceReader maps into memory instead of parsing. The file is
+ * a HEADER_SIZE byte header followed by one RECORD_SIZE byte record per request, in time order, all big-endian.
+ *
+ * Header: magic, version, record size, time of day of the first request in milliseconds since midnight, number of
+ * records, and 1 if the CSV ended with an End row.
+ * Record: milliseconds since the first request, floor, car button, floor button (0 up, 1 down), error code, and
+ * error floor (-1 for error code 2).
+ *
+ * Convert a CSV file with: java core.BinaryTrace testing_3.csv testing_3.trace
+ */
+public class BinaryTrace {
+
+	private static Logger logger = LogManager.getLogger(BinaryTrace.class);
+	public static final String EXTENSION = ".trace";
+	public static final int MAGIC = 0x45545243;
+	public static final short VERSION = 1;
+	public static final int HEADER_SIZE = 32;
+	public static final int RECORD_SIZE = 12;
+
+	static final int MAGIC_OFFSET = 0;
+	static final int VERSION_OFFSET = 4;
+	static final int RECORD_SIZE_OFFSET = 6;
+	static final int START_TIME_OFFSET = 8;
+	static final int COUNT_OFFSET = 16;
+	static final int END_OFFSET = 24;
+
+	static final int TIME = 0;
+	static final int FLOOR = 4;
+	static final int CAR_BUTTON = 6;
+	static final int FLOOR_BUTTON = 8;
+	static final int ERROR_CODE = 9;
+	static final int ERROR_FLOOR = 10;
+
+	private static final int BUFFER_RECORDS = 4096;
+
+	/**
+	 * Converts a CSV simulation event file into a binary trace
+	 * @param csv CSV file in time order
+	 * @param trace binary trace to create or replace
+	 * @return number of requests written
+	 * @throws InputParserException if the CSV file is not in the proper format
+	 * @throws IOException if the trace cannot be written
+	 */
+	public static long convert(File csv, File trace) throws InputParserException, IOException {
+
+		long count = 0;
+		boolean end = false;
+		long startTime = 0;
+		ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * BUFFER_RECORDS);
+		try (TraceReader reader = new TraceReader(csv);
+				FileChannel channel = FileChannel.open(trace.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+			channel.position(HEADER_SIZE);
+			SimulationRequest request;
+			while ((request = reader.next()) != null) {
+				if (request.getEnd()) {
+					end = true;
+					break;
+				}
+				if (count == 0) {
+					startTime = reader.getTime();
+				}
+				if (request.getIntervalTime() > Integer.MAX_VALUE || request.getFloor() > Short.MAX_VALUE
+						|| request.getCarButton() > Short.MAX_VALUE || request.getErrorCode() > Byte.MAX_VALUE
+						|| request.getErrorElevator() > Short.MAX_VALUE) {
+					throw new InputParserException("Row " + reader.getRowNumber() + " does not fit in a binary trace record");
+				}
+				buffer.putInt((int) request.getIntervalTime());
+				buffer.putShort((short) request.getFloor());
+				buffer.putShort((short) request.getCarButton());
+				buffer.put((byte) (request.getFloorButton() == Direction.UP ? 0 : 1));
+				buffer.put((byte) request.getErrorCode());
+				buffer.putShort((short) request.getErrorElevator());
+				count++;
+				if (!buffer.hasRemaining()) {
+					write(channel, buffer);
+				}
+			}
+			write(channel, buffer);
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC_OFFSET, MAGIC);
+			header.putShort(VERSION_OFFSET, VERSION);
+			header.putShort(RECORD_SIZE_OFFSET, (short) RECORD_SIZE);
+			header.putLong(START_TIME_OFFSET, startTime);
+			header.putLong(COUNT_OFFSET, count);
+			header.put(END_OFFSET, (byte) (end ? 1 : 0));
+			channel.position(0);
+			write(channel, header.position(HEADER_SIZE));
+		}
+		return count;
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	public static void main(String[] args) {
+
+		if (args.length != 2) {
+			System.err.println("Usage: java core.BinaryTrace <input csv> <output trace>");
+			System.exit(-1);
+		}
+		try {
+			long start = System.currentTimeMillis();
+			long count = convert(new File(args[0]), new File(args[1]));
+			logger.info("Converted " + count + " requests of " + args[0] + " into " + args[1] + " in "
+					+ (System.currentTimeMillis() - start) + " ms");
+		} catch (InputParserException | IOException e) {
+			logger.error("Unable to convert " + args[0], e);
+			System.exit(-1);
+		}
+	}
+}
@@ -0,0 +1,148 @@
+//****************************************************************************
+//
+// Filename: BinaryTraceReader.java
+//
+// Description: Reads a binary simulation event file mapped into memory
+//
+//***************************************************************************
+
+package core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+import core.Exceptions.InputParserException;
+import core.Utils.SimulationRequest;
+
+/**
+ * Maps a BinaryTrace into memory, so opening a trace of any length takes no time and the operating system pages
+ * it in as it is read. The fields of a record can be read in place by index, or the records read one at a time
+ * as requests. Like the CSV readers, the times of day are taken as times of today.
+ */
+public class BinaryTraceReader implements TraceSource {
+
+	private final MappedByteBuffer map;
+	private final int count;
+	private final boolean end;
+	private final long startTime;
+	private int index = 0;
+	private boolean endRead = false;
+
+	/**
+	 * Maps the trace and checks its header
+	 * @param file
+	 * @throws InputParserException if the file cannot be read or is not a binary trace
+	 */
+	public BinaryTraceReader(File file) throws InputParserException {
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < BinaryTrace.HEADER_SIZE || size > Integer.MAX_VALUE) {
+				throw new InputParserException(file + " is not a binary trace of a supported size");
+			}
+			// the mapping stays valid after the channel is closed
+			map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		} catch (IOException e) {
+			throw new InputParserException("Unable to read file", e);
+		}
+		if (map.getInt(BinaryTrace.MAGIC_OFFSET) != BinaryTrace.MAGIC || map.getShort(BinaryTrace.VERSION_OFFSET) != BinaryTrace.VERSION
+				|| map.getShort(BinaryTrace.RECORD_SIZE_OFFSET) != BinaryTrace.RECORD_SIZE) {
+			throw new InputParserException(file + " is not a binary trace of version " + BinaryTrace.VERSION);
+		}
+		long records = map.getLong(BinaryTrace.COUNT_OFFSET);
+		if (records < 0 || BinaryTrace.HEADER_SIZE + records * BinaryTrace.RECORD_SIZE != map.capacity()) {
+			throw new InputParserException(file + " is truncated");
+		}
+		this.count = (int) records;
+		this.end = map.get(BinaryTrace.END_OFFSET) != 0;
+		long dayStart = LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		this.startTime = dayStart + map.getLong(BinaryTrace.START_TIME_OFFSET);
+	}
+
+	@Override
+	public SimulationRequest next() throws InputParserException {
+
+		if (index < count) {
+			int i = index++;
+			SimulationRequest request = new SimulationRequest(new Date(startTime + getTimeOffset(i)), getFloor(i), getFloorButton(i),
+					getCarButton(i), getErrorCode(i), getErrorFloor(i));
+			request.setIntervalTime(getTimeOffset(i));
+			return request;
+		}
+		if (end && !endRead) {
+			endRead = true;
+			return new SimulationRequest(true);
+		}
+		return null;
+	}
+
+	/**
+	 * @return number of requests in the trace, not counting the end request
+	 */
+	public int size() {
+
+		return count;
+	}
+
+	/**
+	 * @return true if the trace ends with an end request
+	 */
+	public boolean hasEnd() {
+
+		return end;
+	}
+
+	/**
+	 * @return milliseconds from the first request to request i
+	 */
+	public int getTimeOffset(int i) {
+
+		return map.getInt(position(i) + BinaryTrace.TIME);
+	}
+
+	public int getFloor(int i) {
+
+		return map.getShort(position(i) + BinaryTrace.FLOOR);
+	}
+
+	public int getCarButton(int i) {
+
+		return map.getShort(position(i) + BinaryTrace.CAR_BUTTON);
+	}
+
+	public Direction getFloorButton(int i) {
+
+		return map.get(position(i) + BinaryTrace.FLOOR_BUTTON) == 0 ? Direction.UP : Direction.DOWN;
+	}
+
+	public int getErrorCode(int i) {
+
+		return map.get(position(i) + BinaryTrace.ERROR_CODE);
+	}
+
+	public int getErrorFloor(int i) {
+
+		return map.getShort(position(i) + BinaryTrace.ERROR_FLOOR);
+	}
+
+	/**
+	 * The mapping is released when the reader is collected
+	 */
+	@Override
+	public void close() {
+	}
+
+	private int position(int i) {
+
+		if (i < 0 || i >= count) {
+			throw new IndexOutOfBoundsException("Request " + i + " of " + count);
+		}
+		return BinaryTrace.HEADER_SIZE + i * BinaryTrace.RECORD_SIZE;
+	}
+}
@@ -45,6 +45,36 @@ public class ConfigurationParser {
 	public static final String FLOOR_INIT_PORT = "FloorInitPort";
 	public static final String ELEVATOR_INIT_PORT = "ElevatorInitPort";
 	public static final String SCHEDULER_INIT_PORT = "SchedulerInitPort";
+	public static final String DISPATCH_STRATEGY = "DispatchStrategy";
+	public static final String FLOOR_INTAKE_THREADS = "FloorIntakeThreads";
+	public static final String MULTIPLEXED_TRANSPORT = "MultiplexedTransport";
+	public static final String SEND_QUEUE_CAPACITY = "SendQueueCapacity";
+	public static final String FLOOR_STATE_MULTICAST = "FloorStateMulticast";
+	public static final String FLOOR_STATE_MULTICAST_GROUP = "FloorStateMulticastGroup";
+	public static final String FLOOR_STATE_MULTICAST_PORT = "FloorStateMulticastPort";
+	public static final String RELIABLE_TRANSPORT = "ReliableTransport";
+	public static final String SIMULATED_TIME = "SimulatedTime";
+	public static final String SIMULATION_TURN_TIMEOUT = "SimulationTurnTimeout";
+	public static final String IN_PROCESS_TRANSPORT = "InProcessTransport";
+	public static final String SHARED_MEMORY_ELEVATOR_LINK = "SharedMemoryElevatorLink";
+	public static final String SHARED_MEMORY_FLOOR_LINK = "SharedMemoryFloorLink";
+	public static final String SHARED_MEMORY_DIRECTORY = "SharedMemoryDirectory";
+	public static final String SHARED_MEMORY_WAIT_STRATEGY = "SharedMemoryWaitStrategy";
+	public static final String EXECUTION_MODEL = "ExecutionModel";
+	public static final String FLOOR_EVENT_TICK = "FloorEventTick";
+	public static final String FLOOR_EVENT_WORKERS = "FloorEventWorkers";
+	public static final String STREAMING_TRACE = "StreamingTrace";
+	public static final String TRACE_LOOKAHEAD_SECONDS = "TraceLookaheadSeconds";
+	public static final String TRAFFIC_PROFILE = "TrafficProfile";
+	public static final String TRAFFIC_CALLS_PER_MINUTE = "TrafficCallsPerMinute";
+	public static final String TRAFFIC_CALLS = "TrafficCalls";
+	public static final String TRAFFIC_START_TIME = "TrafficStartTime";
+	public static final String TRAFFIC_ERROR_CODE_1_RATE = "TrafficErrorCode1Rate";
+	public static final String TRAFFIC_ERROR_CODE_2_RATE = "TrafficErrorCode2Rate";
+	public static final String TRAFFIC_SEED = "TrafficSeed";
+	public static final String REQUEST_TRACE_FILE = "RequestTraceFile";
+	public static final String METRICS_DIRECTORY = "MetricsDirectory";
+	public static final String METRICS_PERIOD_SECONDS = "MetricsPeriodSeconds";
 
 	public static String initialPath = "//Config/";
 
@@ -102,6 +132,15 @@ public class ConfigurationParser {
 		}
 	}
 
+	public double getDouble(String str) throws ConfigurationParserException {
+
+		try {
+			return configuration.getDouble(initialPath + str);
+		} catch (NoSuchElementException | ConversionException e) {
+			throw new ConfigurationParserException(e);
+		}
+	}
+
 	public boolean getBoolean(String str) throws ConfigurationParserException {
 
 		try {
@@ -54,6 +54,31 @@ public class InputParser {
 	
 	private static boolean end = false;
 
+	/**
+	 * Opens the simulation event file of the configuration to be read one request at a time, as a binary trace if
+	 * its name ends with BinaryTrace.EXTENSION, or the generator of the traffic profile of the configuration if
+	 * there is one
+	 * @throws InputParserException
+	 */
+	public static TraceSource openTrace() throws InputParserException {
+
+		try {
+			TrafficGenerator generator = TrafficGenerator.fromConfiguration();
+			if (generator != null) {
+				return generator;
+			}
+			String fileName = ConfigurationParser.getInstance().getString(ConfigurationParser.CVS_FILENAME);
+			logger.debug("CVS File Name: " + fileName);
+			File inputFile = new File(Utils.getBuildDirURI(fileName));
+			if (fileName.endsWith(BinaryTrace.EXTENSION)) {
+				return new BinaryTraceReader(inputFile);
+			}
+			return new TraceReader(inputFile);
+		} catch (ConfigurationParserException | URISyntaxException | IOException e) {
+			throw new InputParserException("Error with the configuration file");
+		}
+	}
+
 	@SuppressWarnings({ "unchecked", "deprecation" })
 	public static List<SimulationRequest> parseCVSFile() throws InputParserException {
 
@@ -67,6 +92,17 @@ public class InputParser {
 			String fileName = configurationParser.getString(ConfigurationParser.CVS_FILENAME);
 			logger.debug("CVS File Name: " + fileName);
 			File inputFile = new File(Utils.getBuildDirURI(fileName));
+			TrafficGenerator generator = TrafficGenerator.fromConfiguration();
+			if (generator != null || fileName.endsWith(BinaryTrace.EXTENSION)) {
+				// already in time order, with the interval times set
+				TraceSource reader = generator != null ? generator : new BinaryTraceReader(inputFile);
+				SimulationRequest request;
+				while ((request = reader.next()) != null) {
+					simulationEvents.add(request);
+				}
+				logger.log(LoggingManager.getSuccessLevel(), LoggingManager.SUCCESS_MESSAGE);
+				return simulationEvents;
+			}
 			DateFormat df = new SimpleDateFormat(TIME_FORMAT);
 			CsvSchema csvSchema = CsvSchema.builder().setUseHeader(true).setColumnSeparator(' ').build();
 			CsvMapper csvMapper = new CsvMapper();
@@ -0,0 +1,190 @@
+//****************************************************************************
+//
+// Filename: LatencyHistogram.java
+//
+// Description: Fixed-memory histogram of latencies in nanoseconds that any
+//              number of threads can record into
+//
+//***************************************************************************
+package core;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram: values below SUB_BUCKETS nanoseconds have a bucket each, and every power of two above is
+ * split into SUB_BUCKETS / 2 buckets of equal width, so a recorded value is known to within 1 / (SUB_BUCKETS / 2)
+ * of itself from a nanosecond up to hundreds of years. The buckets are a fixed array of counters updated with
+ * atomic increments, so recording takes no lock and no memory, and the histogram never grows however long it runs.
+ * Percentiles are read from a snapshot that may miss the values being recorded at the same time.
+ */
+public class LatencyHistogram {
+
+	public static final int SUB_BUCKET_BITS = 7;
+	public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int HALF = SUB_BUCKETS / 2;
+	private static final int BUCKET_COUNT = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * HALF;
+	private static final ConcurrentHashMap<String, LatencyHistogram> shared = new ConcurrentHashMap<String, LatencyHistogram>();
+
+	private final String name;
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong max = new AtomicLong();
+
+	public LatencyHistogram(String name) {
+
+		this.name = name;
+	}
+
+	/**
+	 * @return the histogram of the given name shared by every caller in the process
+	 */
+	public static LatencyHistogram named(String name) {
+
+		return shared.computeIfAbsent(name, LatencyHistogram::new);
+	}
+
+	/**
+	 * @return every histogram shared by the process, in no particular order
+	 */
+	public static Collection<LatencyHistogram> getNamed() {
+
+		return Collections.unmodifiableCollection(shared.values());
+	}
+
+	/**
+	 * Records a latency; negative values are recorded as 0
+	 * @param nanos
+	 */
+	public void record(long nanos) {
+
+		long value = Math.max(nanos, 0);
+		counts.incrementAndGet(index(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		if (value < min.get()) {
+			min.accumulateAndGet(value, Math::min);
+		}
+		if (value > max.get()) {
+			max.accumulateAndGet(value, Math::max);
+		}
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return latency in nanoseconds that the given percentage of the recorded latencies do not exceed, to within
+	 *         the width of its bucket, or 0 if nothing was recorded
+	 */
+	public long getPercentile(double percentile) {
+
+		long total = count.get();
+		if (total == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts.get(i);
+			if (seen >= target) {
+				return Math.min(Math.max(highestValue(i), getMin()), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	public long getCount() {
+
+		return count.get();
+	}
+
+	/**
+	 * @return mean latency in nanoseconds
+	 */
+	public double getMean() {
+
+		long total = count.get();
+		return total == 0 ? 0 : (double) sum.get() / total;
+	}
+
+	/**
+	 * @return variance of the latencies in square nanoseconds, from the middle of their buckets
+	 */
+	public double getVariance() {
+
+		long total = 0;
+		double mean = getMean();
+		double squares = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			long bucket = counts.get(i);
+			if (bucket != 0) {
+				double middle = (lowestValue(i) + (double) highestValue(i)) / 2 - mean;
+				squares += middle * middle * bucket;
+				total += bucket;
+			}
+		}
+		return total < 2 ? 0 : squares / (total - 1);
+	}
+
+	public long getMin() {
+
+		return count.get() == 0 ? 0 : min.get();
+	}
+
+	public long getMax() {
+
+		return max.get();
+	}
+
+	public String getName() {
+
+		return name;
+	}
+
+	/**
+	 * @param offsetNanos subtracted from every latency, such as a travel time included in all of them
+	 * @return count and tail latencies in milliseconds
+	 */
+	public String summary(long offsetNanos) {
+
+		return getCount() + " samples, p50 " + millis(getPercentile(50), offsetNanos) + " ms, p90 " + millis(getPercentile(90), offsetNanos)
+				+ " ms, p99 " + millis(getPercentile(99), offsetNanos) + " ms, p99.9 " + millis(getPercentile(99.9), offsetNanos) + " ms, max "
+				+ millis(getMax(), offsetNanos) + " ms";
+	}
+
+	private static String millis(long nanos, long offsetNanos) {
+
+		return String.format("%.3f", Math.max(nanos - offsetNanos, 0) / 1e6);
+	}
+
+	private static int index(long value) {
+
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return SUB_BUCKETS + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+	}
+
+	private static long lowestValue(int index) {
+
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = (index - SUB_BUCKETS) / HALF + 1;
+		return (long) ((index - SUB_BUCKETS) % HALF + HALF) << shift;
+	}
+
+	private static long highestValue(int index) {
+
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = (index - SUB_BUCKETS) / HALF + 1;
+		return lowestValue(index) + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,84 @@
+//****************************************************************************
+//
+// Filename: Management.java
+//
+// Description: Registers the MBeans of the subsystems with the platform MBean
+//              server of the process
+//
+//***************************************************************************
+package core;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The subsystems register their MBeans under the ElevatorControlSystem domain, named by type and elevator:
+ * <pre>
+ * ElevatorControlSystem:type=Scheduler
+ * ElevatorControlSystem:type=ElevatorPipeline,elevator=2
+ * ElevatorControlSystem:type=ElevatorCar,elevator=2
+ * </pre>
+ * They can be inspected and operated with jconsole or any other JMX client attached to the process, remotely once
+ * the process is started with the com.sun.management.jmxremote properties.
+ */
+public class Management {
+
+	private static Logger logger = LogManager.getLogger(Management.class);
+	public static final String DOMAIN = "ElevatorControlSystem";
+
+	/**
+	 * @param type
+	 * @param elevator number of the elevator, 0 for a bean of the whole subsystem
+	 * @return ObjectName
+	 * @throws MalformedObjectNameException
+	 */
+	public static ObjectName getObjectName(String type, int elevator) throws MalformedObjectNameException {
+
+		String name = DOMAIN + ":type=" + type;
+		if (elevator > 0) {
+			name += ",elevator=" + elevator;
+		}
+		return new ObjectName(name);
+	}
+
+	/**
+	 * Registers the bean, replacing the one registered under the same name before, such as by an earlier
+	 * subsystem of the same process. Failures are logged, the subsystems run the same without their beans.
+	 * @param mbean object implementing its standard MBean interface
+	 * @param type
+	 * @param elevator number of the elevator, 0 for a bean of the whole subsystem
+	 */
+	public static void register(Object mbean, String type, int elevator) {
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = getObjectName(type, elevator);
+			try {
+				server.registerMBean(mbean, name);
+			} catch (InstanceAlreadyExistsException e) {
+				unregister(server, name);
+				server.registerMBean(mbean, name);
+			}
+		} catch (JMException e) {
+			logger.error("Unable to register the " + type + " MBean", e);
+		}
+	}
+
+	private static void unregister(MBeanServer server, ObjectName name) throws JMException {
+
+		try {
+			server.unregisterMBean(name);
+		} catch (InstanceNotFoundException e) {
+			// unregistered meanwhile
+		}
+	}
+}
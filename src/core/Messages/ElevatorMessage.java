@@ -11,7 +11,7 @@ package core.Messages;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.InetAddress;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
 
 import core.Direction;
 import core.Exceptions.CommunicationException;
@@ -25,12 +25,8 @@ import core.Utils.SubsystemConstants;
  * */
 public class ElevatorMessage implements SubsystemMessage {
 
-	private String FORCE_CLOSE = "Force Close";
-	private String DOOR_FAILURE = "Door Failure";
-	private String SHUTDOWN = "Shutdown";
-	
-	private byte ELEVATOR_FLAG = (byte) 1;
-	private byte SPACER = (byte) 0;
+	private static final byte ELEVATOR_FLAG = (byte) 1;
+	private static final byte SPACER = (byte) 0;
 	private boolean stop = false;
 
 	private int currentFloor = -1; //Current floor the elevator is on
@@ -46,6 +42,8 @@ public class ElevatorMessage implements SubsystemMessage {
 	private boolean forceCloseStatus = false;
 	private boolean doorFailureStatus = false;
 	private boolean shutdownStatus = false;
+	private int stoppedMillis = -1; //time since the car stopped at the current floor, -1 if it passed it
+	private int doorsOpenMillis = -1; //time since the doors opened at the current floor, -1 if they did not
 
 	public ElevatorMessage () {
 		
@@ -90,21 +88,69 @@ public class ElevatorMessage implements SubsystemMessage {
 
 	public ElevatorMessage(byte[] data, int dataLength) {
 
+		decode(data, dataLength);
+	}
+
+	/**
+	 * Reads a received message into this one, so a receiver can keep a single instance for every packet
+	 * @param data
+	 * @param dataLength
+	 * @return this message
+	 */
+	public ElevatorMessage decode(byte[] data, int dataLength) {
+
+		currentFloor = -1;
+		destinationFloor = -1;
+		elevatorNumber = -1;
+		arrived = false;
+		errorCode = 0;
+		errorFloor = 0;
+		forceCloseStatus = false;
+		doorFailureStatus = false;
+		shutdownStatus = false;
+		stoppedMillis = -1;
+		doorsOpenMillis = -1;
 		isValid = true;
-		int i = 1;
 
-		String str = new String(data, 0, dataLength, StandardCharsets.UTF_8);
-		if (str.equals(FORCE_CLOSE)) {
+		switch (MessageCodec.getType(data, dataLength)) {
+		case MessageCodec.FORCE_CLOSE:
 			forceCloseStatus = true;
-			return;
-		} else if (str.equals(DOOR_FAILURE)) {
+			break;
+		case MessageCodec.DOOR_FAILURE:
 			doorFailureStatus = true;
-			return;
-		} else if (str.equals(SHUTDOWN)) {
+			break;
+		case MessageCodec.SHUTDOWN:
 			shutdownStatus = true;
-			return;
+			break;
+		case MessageCodec.ELEVATOR:
+			if (MessageCodec.isLegacy(data, dataLength)) {
+				decodeLegacy(data, dataLength);
+			} else if (dataLength < MessageCodec.UNTRACED_MESSAGE_SIZE) {
+				isValid = false;
+			} else {
+				int i = MessageCodec.HEADER_SIZE;
+				currentFloor = data[i++];
+				destinationFloor = data[i++];
+				arrived = data[i++] == ELEVATOR_FLAG;
+				elevatorNumber = data[i++];
+				errorCode = data[i++];
+				errorFloor = data[i++];
+				if (dataLength >= MessageCodec.ELEVATOR_MESSAGE_SIZE) {
+					ByteBuffer trace = ByteBuffer.wrap(data, i, MessageCodec.ELEVATOR_MESSAGE_SIZE - i);
+					stoppedMillis = trace.getInt();
+					doorsOpenMillis = trace.getInt();
+				}
+			}
+			break;
+		default:
+			isValid = false;
 		}
-		
+		return this;
+	}
+
+	private void decodeLegacy(byte[] data, int dataLength) {
+
+		int i = 1;
 		currentFloor = data[i++];
 		// must be zero
 		if (data[i++] != SPACER) {
@@ -152,82 +198,68 @@ public class ElevatorMessage implements SubsystemMessage {
 
 	public byte[] generatePacketData() throws CommunicationException {
 
-		try {
-			ByteArrayOutputStream stream = new ByteArrayOutputStream();
-			stream.write(ELEVATOR_FLAG); // elevator packet flag
-			
-			if (currentFloor != -1 ) {
-				stream.write(currentFloor);
-			} else {
-				stream.write(SPACER);
-			}
-			
-			// add space
-			stream.write(SPACER);
+		ByteBuffer buffer = ByteBuffer.allocate(MessageCodec.ELEVATOR_MESSAGE_SIZE);
+		encode(buffer);
+		return buffer.array();
+	}
 
-			if (destinationFloor != -1 ) {
-				stream.write(destinationFloor);
-			} else {
-				stream.write(SPACER);
-			}
-			
-			// add space
-			stream.write(SPACER);
-			
-			if (arrived) {
-				stream.write(ELEVATOR_FLAG);
-			} else {
-				stream.write(SPACER);
-			}
-			// add space
-			stream.write(SPACER);
-			
-			if (elevatorNumber != -1 ) {
-				stream.write(elevatorNumber);
-			} else {
-				stream.write(SPACER);
-			}
-			
-			// add space
-			stream.write(SPACER);
-			
-			if (errorCode != -1 ) {
-				stream.write(errorCode);
-			} else {
-				stream.write(SPACER);
-			}
-			
-			// add space
-			stream.write(SPACER);
-			
-			if (errorFloor != -1 ) {
-				stream.write(errorFloor);
-			} else {
-				stream.write(SPACER);
-			}
-			
-			// add space
-			stream.write(SPACER);
+	/**
+	 * Writes this message into the buffer, ready to be sent
+	 * @param buffer
+	 */
+	public void encode(ByteBuffer buffer) {
 
-			return stream.toByteArray();
-		} catch (NullPointerException e) {
-			throw new CommunicationException("Unable to generate packet", e);
-		}
+		encode(buffer, currentFloor, destinationFloor, arrived, elevatorNumber, errorCode, errorFloor, stoppedMillis, doorsOpenMillis);
+	}
+
+	/**
+	 * Writes an elevator message into the buffer without creating an ElevatorMessage, unset fields (-1) are sent as 0
+	 * @param buffer
+	 */
+	public static void encode(ByteBuffer buffer, int currentFloor, int destinationFloor, boolean arrived, int elevatorNumber, int errorCode, int errorFloor) {
+
+		encode(buffer, currentFloor, destinationFloor, arrived, elevatorNumber, errorCode, errorFloor, -1, -1);
+	}
+
+	/**
+	 * Writes an elevator message into the buffer without creating an ElevatorMessage, unset floor fields (-1) are sent as 0
+	 * @param buffer
+	 * @param stoppedMillis time since the car stopped at the current floor, -1 if it passed it
+	 * @param doorsOpenMillis time since the doors opened at the current floor, -1 if they did not
+	 */
+	public static void encode(ByteBuffer buffer, int currentFloor, int destinationFloor, boolean arrived, int elevatorNumber, int errorCode, int errorFloor,
+			int stoppedMillis, int doorsOpenMillis) {
+
+		MessageCodec.writeHeader(buffer, MessageCodec.ELEVATOR);
+		buffer.put(toField(currentFloor));
+		buffer.put(toField(destinationFloor));
+		buffer.put(arrived ? (byte) 1 : SPACER);
+		buffer.put(toField(elevatorNumber));
+		buffer.put(toField(errorCode));
+		buffer.put(toField(errorFloor));
+		buffer.putInt(stoppedMillis);
+		buffer.putInt(doorsOpenMillis);
+		buffer.flip();
+	}
+
+	private static byte toField(int value) {
+
+		return value != -1 ? (byte) value : SPACER;
 	}
 	
 	public byte[] generateForceCloseMessage() throws CommunicationException {
 
-		return generateCustomMessage(FORCE_CLOSE);
+		return MessageCodec.generateControlMessage(MessageCodec.FORCE_CLOSE);
 	}
 	
 	public byte[] generateDoorFailureMessage() throws CommunicationException {
 
-		return generateCustomMessage(DOOR_FAILURE);
+		return MessageCodec.generateControlMessage(MessageCodec.DOOR_FAILURE);
 	}
 	
 	public byte[] generateShutdownMessage() throws CommunicationException {
 
-		return generateCustomMessage(SHUTDOWN);
+		return MessageCodec.generateControlMessage(MessageCodec.SHUTDOWN);
 	}
 	
 	public byte[] generateCustomMessage(String message) throws CommunicationException {
@@ -281,6 +313,16 @@ public class ElevatorMessage implements SubsystemMessage {
 		return errorFloor;
 	}
 	
+	public int getStoppedMillis() {
+		
+		return stoppedMillis;
+	}
+	
+	public int getDoorsOpenMillis() {
+		
+		return doorsOpenMillis;
+	}
+	
 	public void setArrivalSensor(boolean isArrive) {
 		
 		this.arrived = isArrive;
@@ -5,15 +5,16 @@ import core.Exceptions.CommunicationException;
 public class ElevatorSysMessageFactory {
 
 	public static SubsystemMessage generateMessage(byte[] buffer, int length) throws CommunicationException {
-		if (buffer[0] == (byte) 0) { // Floor
+		if (buffer[0] == (byte) 2) {
+			return new InitMessage();
+		}
+		byte type = MessageCodec.getType(buffer, length);
+		if (type == MessageCodec.FLOOR) {
 			return new FloorMessage(buffer, length);
 		}
-		else if (buffer[0] == (byte) 1) {
+		else if (type == MessageCodec.ELEVATOR) {
 			return new ElevatorMessage(buffer, length);
 		}
-		else if (buffer[0] == (byte) 2) {
-			return new InitMessage();
-		}
 		else {
 			return null;
 		}
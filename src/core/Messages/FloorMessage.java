@@ -10,7 +10,7 @@ package core.Messages;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.InetAddress;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
 
 import core.Direction;
 import core.Exceptions.CommunicationException;
@@ -23,10 +23,7 @@ import core.Utils.SubsystemConstants;
  * */
 public class FloorMessage implements SubsystemMessage {
 
-	private byte FLOOR_FLAG = (byte) 0;
-	private byte SPACER = (byte) 0;
-	
-	private String SHUTDOWN = "Shutdown";
+	private static final byte SPACER = (byte) 0;
 
 	private final static byte[] UP = {1, 1};
 	private final static byte[] DOWN = {1, 2};
@@ -41,6 +38,8 @@ public class FloorMessage implements SubsystemMessage {
 	private int elevatorNum =0; //this is needed for updateing elevator states in the floor
 	private boolean shutdown = false;
 	private long startTime = 0;
+	private int requestId = 0; //0 when the sender does not trace its requests
+	private long pressedTime = 0; //time the floor button was pressed, in milliseconds of the simulation clock
 	
 	public FloorMessage() {
 		
@@ -70,15 +69,60 @@ public class FloorMessage implements SubsystemMessage {
 	 */
 	public FloorMessage(byte[] data, int dataLength) throws CommunicationException {
 
+		decode(data, dataLength);
+	}
+
+	/**
+	 * Reads a received message into this one, so a receiver can keep a single instance for every packet
+	 * @param data
+	 * @param dataLength
+	 * @return this message
+	 */
+	public FloorMessage decode(byte[] data, int dataLength) {
+
+		sourceFloor = -1;
+		direction = null;
+		targetFloor = 0;
+		elevatorNum = 0;
+		errorCode = 0;
+		errorFloor = 0;
+		requestId = 0;
+		pressedTime = 0;
+		shutdown = false;
 		isValid = true;
 
-		
-		String str = new String(data, 0, dataLength, StandardCharsets.UTF_8);
-		if (str.equals(SHUTDOWN)) {
+		switch (MessageCodec.getType(data, dataLength)) {
+		case MessageCodec.SHUTDOWN:
 			shutdown = true;
-			return;
+			break;
+		case MessageCodec.FLOOR:
+			if (MessageCodec.isLegacy(data, dataLength)) {
+				decodeLegacy(data, dataLength);
+			} else if (dataLength < MessageCodec.UNTRACED_MESSAGE_SIZE) {
+				isValid = false;
+			} else {
+				int i = MessageCodec.HEADER_SIZE;
+				direction = MessageCodec.toDirection(data[i++]);
+				sourceFloor = data[i++];
+				targetFloor = data[i++];
+				elevatorNum = data[i++];
+				errorCode = data[i++];
+				errorFloor = data[i++];
+				if (dataLength >= MessageCodec.FLOOR_MESSAGE_SIZE) {
+					ByteBuffer trace = ByteBuffer.wrap(data, i, MessageCodec.FLOOR_MESSAGE_SIZE - i);
+					requestId = trace.getInt();
+					pressedTime = trace.getLong();
+				}
+			}
+			break;
+		default:
+			isValid = false;
 		}
-		
+		return this;
+	}
+
+	private void decodeLegacy(byte[] data, int dataLength) {
+
 		//format:
 
 		// FLOOR_FLAG Direction Direction SPACER sourceFloor SPACER  targetFloor SPACER elevNum SPACER errorCode SPACER errorFloor SPACER
@@ -139,54 +183,71 @@ public class FloorMessage implements SubsystemMessage {
 
 	public byte[] generatePacketData() throws CommunicationException {
 
-		try {
-			ByteArrayOutputStream stream = new ByteArrayOutputStream();
-			stream.write(FLOOR_FLAG); // floor packet flag
+		ByteBuffer buffer = ByteBuffer.allocate(MessageCodec.FLOOR_MESSAGE_SIZE);
+		encode(buffer);
+		return buffer.array();
+	}
 
-			// write request bytes
-			switch (direction) {
-			case UP:
-				stream.write(UP);
-				break;
-			case DOWN:
-				stream.write(DOWN);
-				break;
-			case STATIONARY:
-				stream.write(STATIONARY);
-				break;
-			default:
-				throw new CommunicationException("Unable to generate packet");
-			}
+	/**
+	 * Writes this message into the buffer, ready to be sent
+	 * @param buffer
+	 * @throws CommunicationException if the message has no direction
+	 */
+	public void encode(ByteBuffer buffer) throws CommunicationException {
 
-			// add spacer
-			stream.write(SPACER);
+		encode(buffer, direction, sourceFloor, targetFloor, elevatorNum, errorCode, errorFloor, requestId, pressedTime);
+	}
 
-			if (sourceFloor != -1) {
-				stream.write(sourceFloor);
-			}
-			// add spacer
-			stream.write(SPACER);
-
-			stream.write(targetFloor); //add the button pressed in the elevator
-
-			stream.write(SPACER);
-			
-			stream.write(elevatorNum);
-			
-			stream.write(SPACER);
-			
-			stream.write(errorCode);
-			
-			stream.write(SPACER);
-			
-			stream.write(errorFloor);
-			
-			stream.write(SPACER);
+	/**
+	 * Writes a floor message of an untraced request into the buffer without creating a FloorMessage
+	 * @param buffer
+	 * @throws CommunicationException if the direction is missing
+	 */
+	public static void encode(ByteBuffer buffer, Direction direction, int sourceFloor, int targetFloor, int elevatorNum, int errorCode, int errorFloor) throws CommunicationException {
 
-			return stream.toByteArray();
-		} catch (IOException | NullPointerException e) {
-			throw new CommunicationException("Unable to generate packet", e);
+		encode(buffer, direction, sourceFloor, targetFloor, elevatorNum, errorCode, errorFloor, 0, 0);
+	}
+
+	/**
+	 * Writes a floor message into the buffer without creating a FloorMessage
+	 * @param buffer
+	 * @param requestId id the request is traced by, 0 if it is not traced
+	 * @param pressedTime time the floor button was pressed, in milliseconds of the simulation clock
+	 * @throws CommunicationException if the direction is missing
+	 */
+	public static void encode(ByteBuffer buffer, Direction direction, int sourceFloor, int targetFloor, int elevatorNum, int errorCode, int errorFloor,
+			int requestId, long pressedTime) throws CommunicationException {
+
+		if (direction == null) {
+			throw new CommunicationException("Unable to generate packet without a direction");
 		}
+		MessageCodec.writeHeader(buffer, MessageCodec.FLOOR);
+		buffer.put(MessageCodec.toByte(direction));
+		buffer.put((byte) sourceFloor);
+		buffer.put((byte) targetFloor);
+		buffer.put((byte) elevatorNum);
+		buffer.put((byte) errorCode);
+		buffer.put((byte) errorFloor);
+		buffer.putInt(requestId);
+		buffer.putLong(pressedTime);
+		buffer.flip();
+	}
+
+	/**
+	 * Replaces the fields of this message, so a receiver can keep a single instance for every state it applies
+	 * @return this message
+	 */
+	FloorMessage setState(Direction direction, int sourceFloor, int targetFloor, int elevatorNum, int errorCode, int errorFloor) {
+
+		this.direction = direction;
+		this.sourceFloor = sourceFloor;
+		this.targetFloor = targetFloor;
+		this.elevatorNum = elevatorNum;
+		this.errorCode = errorCode;
+		this.errorFloor = errorFloor;
+		this.shutdown = false;
+		this.isValid = true;
+		return this;
 	}
 
 	public boolean isValid() {
@@ -214,7 +275,12 @@ public class FloorMessage implements SubsystemMessage {
 
 	public byte[] generateShutdownMessage() throws CommunicationException {
 
-		return generateCustomMessage(SHUTDOWN);
+		return MessageCodec.generateControlMessage(MessageCodec.SHUTDOWN);
+	}
+	
+	public byte[] generateEndMessage() throws CommunicationException {
+
+		return MessageCodec.generateControlMessage(MessageCodec.END);
 	}
 	
 	public byte[] generateCustomMessage(String message) throws CommunicationException {
@@ -263,6 +329,12 @@ public class FloorMessage implements SubsystemMessage {
 	public int getErrorFloor() {
 		return this.errorFloor;
 	}
+	public int getRequestId() {
+		return this.requestId;
+	}
+	public long getPressedTime() {
+		return this.pressedTime;
+	}
 	/**
 	 * Method used by the Scheduler to send the elevatorNumber of the elevator to the floor
 	 * @param elevatorNumber
@@ -281,7 +353,10 @@ public class FloorMessage implements SubsystemMessage {
 	}
 	
 	public SchedulerRequest toSchedulerRequest(InetAddress receivedAddress, int receivedPort) {
-		return new SchedulerRequest(receivedAddress,receivedPort , SubsystemConstants.FLOOR, this.sourceFloor, this.direction,this.targetFloor, this.targetFloor,this.errorCode,this.errorFloor);
-		
+		SchedulerRequest request = new SchedulerRequest(receivedAddress,receivedPort , SubsystemConstants.FLOOR, this.sourceFloor, this.direction,this.targetFloor, this.targetFloor,this.errorCode,this.errorFloor);
+		if (this.requestId != 0) {
+			request.setRequestId(this.requestId);
+		}
+		return request;
 	}
 }
@@ -0,0 +1,234 @@
+//****************************************************************************
+//
+// Filename: FloorStateMessage.java
+//
+// Description: State of one elevator as the floors see it, sent as a
+//              sequenced delta
+//
+//***************************************************************************
+package core.Messages;
+
+import java.nio.ByteBuffer;
+
+import core.Direction;
+import core.Exceptions.CommunicationException;
+
+/**
+ * Elevator state sent from the scheduler to the floors. Each car numbers its states, every KEYFRAME_INTERVAL-th
+ * state is a keyframe with every field and the states in between only hold the fields that differ from that
+ * keyframe. Since a delta does not depend on the deltas before it, a lost delta costs nothing, and a receiver that
+ * missed a keyframe is consistent again at the next one. Receivers drop any state that is not newer than the last
+ * one they applied, so a reordered packet can never move a car backwards.
+ *
+ * Layout: header, elevator number, 16 bit sequence number, field mask, one byte per field in the mask.
+ * The sender and every receiver keep one instance per car.
+ */
+public class FloorStateMessage {
+
+	public static final int DIRECTION = 0;
+	public static final int SOURCE_FLOOR = 1;
+	public static final int TARGET_FLOOR = 2;
+	public static final int ERROR_CODE = 3;
+	public static final int ERROR_FLOOR = 4;
+	public static final int FIELD_COUNT = 5;
+	public static final int ALL_FIELDS = (1 << FIELD_COUNT) - 1;
+	public static final int KEYFRAME_INTERVAL = 8;
+	public static final int MAX_MESSAGE_SIZE = MessageCodec.HEADER_SIZE + 4 + FIELD_COUNT;
+
+	private static final int SEQUENCE_MASK = 0xFFFF;
+	private static final int ELEVATOR_OFFSET = MessageCodec.HEADER_SIZE;
+	private static final int SEQUENCE_OFFSET = ELEVATOR_OFFSET + 1;
+	private static final int MASK_OFFSET = SEQUENCE_OFFSET + 2;
+	private static final int FIELDS_OFFSET = MASK_OFFSET + 1;
+
+	private int elevatorNum;
+	private int sequence = -1;
+	private int keyframeSequence = -1;
+	private int[] fields = new int[FIELD_COUNT];
+	private int[] keyframe = new int[FIELD_COUNT];
+	private int lastMask;
+
+	public FloorStateMessage(int elevatorNum) {
+
+		this.elevatorNum = elevatorNum;
+		fields[DIRECTION] = MessageCodec.toByte(Direction.STATIONARY);
+		fields[SOURCE_FLOOR] = 1;
+	}
+
+	/**
+	 * Creates the per car states of a receiver
+	 * @param numElevators
+	 * @return FloorStateMessage[] indexed by elevator number - 1
+	 */
+	public static FloorStateMessage[] createStates(int numElevators) {
+
+		FloorStateMessage[] states = new FloorStateMessage[numElevators];
+		for (int i = 0; i < numElevators; i++) {
+			states[i] = new FloorStateMessage(i + 1);
+		}
+		return states;
+	}
+
+	/**
+	 * Writes the next state of this car into the buffer, ready to be sent. Only called by the one thread that
+	 * publishes the car.
+	 * @param buffer
+	 * @param direction
+	 * @param sourceFloor current floor of the car
+	 * @param targetFloor
+	 * @param errorCode
+	 * @param errorFloor
+	 * @throws CommunicationException if the direction is missing
+	 */
+	public void encode(ByteBuffer buffer, Direction direction, int sourceFloor, int targetFloor, int errorCode, int errorFloor) throws CommunicationException {
+
+		if (direction == null) {
+			throw new CommunicationException("Unable to generate packet without a direction");
+		}
+		sequence = (sequence + 1) & SEQUENCE_MASK;
+		fields[DIRECTION] = MessageCodec.toByte(direction);
+		fields[SOURCE_FLOOR] = sourceFloor;
+		fields[TARGET_FLOOR] = targetFloor;
+		fields[ERROR_CODE] = errorCode;
+		fields[ERROR_FLOOR] = errorFloor;
+
+		int mask = 0;
+		if (isKeyframe(sequence)) {
+			mask = ALL_FIELDS;
+			keyframeSequence = sequence;
+			System.arraycopy(fields, 0, keyframe, 0, FIELD_COUNT);
+		} else {
+			for (int i = 0; i < FIELD_COUNT; i++) {
+				if (fields[i] != keyframe[i]) {
+					mask |= 1 << i;
+				}
+			}
+		}
+		lastMask = mask;
+
+		MessageCodec.writeHeader(buffer, MessageCodec.FLOOR_STATE);
+		buffer.put((byte) elevatorNum);
+		buffer.putShort((short) sequence);
+		buffer.put((byte) mask);
+		for (int i = 0; i < FIELD_COUNT; i++) {
+			if ((mask & (1 << i)) != 0) {
+				buffer.put((byte) fields[i]);
+			}
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Applies a received state to the matching car of a receiver
+	 * @param states per car states created by createStates
+	 * @param data
+	 * @param length
+	 * @return the updated car, null if the message is not a valid state or is not newer than the last one applied
+	 */
+	public static FloorStateMessage decode(FloorStateMessage[] states, byte[] data, int length) {
+
+		if (MessageCodec.getType(data, length) != MessageCodec.FLOOR_STATE || length < FIELDS_OFFSET) {
+			return null;
+		}
+		int elevatorNum = data[ELEVATOR_OFFSET];
+		if (elevatorNum < 1 || elevatorNum > states.length) {
+			return null;
+		}
+		FloorStateMessage state = states[elevatorNum - 1];
+		return state.apply(data, length) ? state : null;
+	}
+
+	private boolean apply(byte[] data, int length) {
+
+		int received = ((data[SEQUENCE_OFFSET] & 0xFF) << 8) | (data[SEQUENCE_OFFSET + 1] & 0xFF);
+		int mask = data[MASK_OFFSET] & ALL_FIELDS;
+		if (length < FIELDS_OFFSET + Integer.bitCount(mask) || (sequence >= 0 && !isNewer(received, sequence))) {
+			return false;
+		}
+		if (isKeyframe(received)) {
+			if (mask != ALL_FIELDS) {
+				return false;
+			}
+			keyframeSequence = received;
+		} else if (keyframeSequence == getKeyframeSequence(received)) {
+			// fields left out of the delta are the ones of its keyframe
+			System.arraycopy(keyframe, 0, fields, 0, FIELD_COUNT);
+		}
+		// without its keyframe, only the fields in the delta are known until the next keyframe arrives
+		int offset = FIELDS_OFFSET;
+		for (int i = 0; i < FIELD_COUNT; i++) {
+			if ((mask & (1 << i)) != 0) {
+				fields[i] = data[offset++];
+			}
+		}
+		if (isKeyframe(received)) {
+			System.arraycopy(fields, 0, keyframe, 0, FIELD_COUNT);
+		}
+		sequence = received;
+		lastMask = mask;
+		return true;
+	}
+
+	/**
+	 * @return true if the sequence number is ahead of the last one, allowing for the numbers wrapping around
+	 */
+	public static boolean isNewer(int sequence, int last) {
+
+		return (short) (sequence - last) > 0;
+	}
+
+	private static boolean isKeyframe(int sequence) {
+
+		return sequence % KEYFRAME_INTERVAL == 0;
+	}
+
+	private static int getKeyframeSequence(int sequence) {
+
+		return sequence - sequence % KEYFRAME_INTERVAL;
+	}
+
+	/**
+	 * Copies the whole state of the car into a floor message, for floors that handle FloorMessages
+	 * @param message
+	 * @return message
+	 */
+	public FloorMessage toFloorMessage(FloorMessage message) {
+
+		return message.setState(getDirection(), getSourceFloor(), getTargetFloor(), elevatorNum, getErrorCode(), getErrorFloor());
+	}
+
+	public int getElevatorNum() {
+		return elevatorNum;
+	}
+
+	public int getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return mask of the fields in the last state written or applied
+	 */
+	public int getLastMask() {
+		return lastMask;
+	}
+
+	public Direction getDirection() {
+		return MessageCodec.toDirection((byte) fields[DIRECTION]);
+	}
+
+	public int getSourceFloor() {
+		return fields[SOURCE_FLOOR];
+	}
+
+	public int getTargetFloor() {
+		return fields[TARGET_FLOOR];
+	}
+
+	public int getErrorCode() {
+		return fields[ERROR_CODE];
+	}
+
+	public int getErrorFloor() {
+		return fields[ERROR_FLOOR];
+	}
+}
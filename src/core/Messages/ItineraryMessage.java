@@ -0,0 +1,224 @@
+//****************************************************************************
+//
+// Filename: ItineraryMessage.java
+//
+// Description: Ordered list of the stops an elevator car serves next
+//
+//***************************************************************************
+package core.Messages;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stops sent from the scheduler to one elevator car. The car works through them on its own and reports every
+ * floor it reaches, instead of waiting for a message per floor. The scheduler amends the car mid-flight by sending
+ * the whole list again with a higher revision; a car drops any itinerary that is not newer than the one it holds,
+ * so a retransmitted or reordered itinerary never replaces a later one.
+ *
+ * Layout: header, elevator number, 16 bit revision, current floor, stop count, then floor, error code and error
+ * floor of every stop. MAX_STOPS keeps the message within the payload of a reliable packet.
+ */
+public class ItineraryMessage {
+
+	public static final int MAX_STOPS = 12;
+	public static final int STOP_SIZE = 3;
+
+	private static final int REVISION_MASK = 0xFFFF;
+	private static final int ELEVATOR_OFFSET = MessageCodec.HEADER_SIZE;
+	private static final int REVISION_OFFSET = ELEVATOR_OFFSET + 1;
+	private static final int CURRENT_FLOOR_OFFSET = REVISION_OFFSET + 2;
+	private static final int COUNT_OFFSET = CURRENT_FLOOR_OFFSET + 1;
+	private static final int STOPS_OFFSET = COUNT_OFFSET + 1;
+
+	public static final int MAX_MESSAGE_SIZE = STOPS_OFFSET + MAX_STOPS * STOP_SIZE;
+
+	private int elevatorNum;
+	private int revision = -1;
+	private int currentFloor;
+	private int stopCount;
+	private int[] floors = new int[MAX_STOPS];
+	private int[] errorCodes = new int[MAX_STOPS];
+	private int[] errorFloors = new int[MAX_STOPS];
+
+	public ItineraryMessage(int elevatorNum) {
+
+		this.elevatorNum = elevatorNum;
+	}
+
+	/**
+	 * Allocates a buffer large enough for any itinerary, meant to be kept and reused by its owner
+	 * @return ByteBuffer
+	 */
+	public static ByteBuffer allocate() {
+
+		return ByteBuffer.allocate(MAX_MESSAGE_SIZE);
+	}
+
+	public void clear() {
+
+		stopCount = 0;
+	}
+
+	/**
+	 * Appends a stop to the itinerary
+	 * @param floor
+	 * @param errorCode
+	 * @param errorFloor
+	 * @return false if the itinerary already holds MAX_STOPS stops
+	 */
+	public boolean addStop(int floor, int errorCode, int errorFloor) {
+
+		if (stopCount == MAX_STOPS) {
+			return false;
+		}
+		floors[stopCount] = floor;
+		errorCodes[stopCount] = errorCode;
+		errorFloors[stopCount] = errorFloor;
+		stopCount++;
+		return true;
+	}
+
+	/**
+	 * Removes the first stop, once the car has reached it
+	 */
+	public void removeFirstStop() {
+
+		if (stopCount == 0) {
+			return;
+		}
+		stopCount--;
+		System.arraycopy(floors, 1, floors, 0, stopCount);
+		System.arraycopy(errorCodes, 1, errorCodes, 0, stopCount);
+		System.arraycopy(errorFloors, 1, errorFloors, 0, stopCount);
+	}
+
+	/**
+	 * Writes the itinerary into the buffer under the given revision, ready to be sent
+	 * @param buffer buffer from allocate()
+	 * @param revision
+	 * @param currentFloor floor the scheduler last saw the car on
+	 */
+	public void encode(ByteBuffer buffer, int revision, int currentFloor) {
+
+		this.revision = revision & REVISION_MASK;
+		this.currentFloor = currentFloor;
+		MessageCodec.writeHeader(buffer, MessageCodec.ITINERARY);
+		buffer.put((byte) elevatorNum);
+		buffer.putShort((short) this.revision);
+		buffer.put((byte) currentFloor);
+		buffer.put((byte) stopCount);
+		for (int i = 0; i < stopCount; i++) {
+			buffer.put((byte) floors[i]);
+			buffer.put((byte) errorCodes[i]);
+			buffer.put((byte) errorFloors[i]);
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Replaces the stops with the received itinerary if it is newer than the one held
+	 * @param data
+	 * @param length
+	 * @return false if the message is not a valid itinerary or is not newer than the one held
+	 */
+	public boolean decode(byte[] data, int length) {
+
+		if (MessageCodec.getType(data, length) != MessageCodec.ITINERARY || length < STOPS_OFFSET) {
+			return false;
+		}
+		int received = ((data[REVISION_OFFSET] & 0xFF) << 8) | (data[REVISION_OFFSET + 1] & 0xFF);
+		int count = data[COUNT_OFFSET];
+		if (count < 0 || count > MAX_STOPS || length < STOPS_OFFSET + count * STOP_SIZE
+				|| (revision >= 0 && !FloorStateMessage.isNewer(received, revision))) {
+			return false;
+		}
+		elevatorNum = data[ELEVATOR_OFFSET];
+		revision = received;
+		currentFloor = data[CURRENT_FLOOR_OFFSET];
+		stopCount = count;
+		int offset = STOPS_OFFSET;
+		for (int i = 0; i < count; i++) {
+			floors[i] = data[offset++];
+			errorCodes[i] = data[offset++];
+			errorFloors[i] = data[offset++];
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if both itineraries hold the same stops in the same order
+	 */
+	public boolean hasSameStops(ItineraryMessage other) {
+
+		if (stopCount != other.stopCount) {
+			return false;
+		}
+		for (int i = 0; i < stopCount; i++) {
+			if (floors[i] != other.floors[i] || errorCodes[i] != other.errorCodes[i] || errorFloors[i] != other.errorFloors[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Replaces the stops with the ones of the other itinerary
+	 */
+	public void copyStops(ItineraryMessage other) {
+
+		stopCount = other.stopCount;
+		System.arraycopy(other.floors, 0, floors, 0, stopCount);
+		System.arraycopy(other.errorCodes, 0, errorCodes, 0, stopCount);
+		System.arraycopy(other.errorFloors, 0, errorFloors, 0, stopCount);
+	}
+
+	public int getElevatorNum() {
+		return elevatorNum;
+	}
+
+	public int getRevision() {
+		return revision;
+	}
+
+	public int getCurrentFloor() {
+		return currentFloor;
+	}
+
+	public int getStopCount() {
+		return stopCount;
+	}
+
+	public boolean isEmpty() {
+		return stopCount == 0;
+	}
+
+	public int getFloor(int stop) {
+		return floors[stop];
+	}
+
+	public int getErrorCode(int stop) {
+		return errorCodes[stop];
+	}
+
+	public int getErrorFloor(int stop) {
+		return errorFloors[stop];
+	}
+
+	/**
+	 * @return floors of the stops in order, such as [3, 7]
+	 */
+	@Override
+	public String toString() {
+
+		StringBuilder stops = new StringBuilder("[");
+		// may be read while the owner changes the stops, so the count is bounded by the arrays
+		int count = Math.min(stopCount, MAX_STOPS);
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				stops.append(", ");
+			}
+			stops.append(floors[i]);
+		}
+		return stops.append(']').toString();
+	}
+}
@@ -0,0 +1,160 @@
+//****************************************************************************
+//
+// Filename: MessageCodec.java
+//
+// Description: Message types and layout shared by ElevatorMessage and
+//              FloorMessage
+//
+//***************************************************************************
+package core.Messages;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import core.Direction;
+
+/**
+ * Fixed layout of the messages sent between the subsystems. Every message starts with a type byte and a version
+ * byte, followed by one byte per field, so it can be written into and read from a reused buffer without any
+ * intermediate objects. Control messages are only the two header bytes. Floor and elevator messages end with the
+ * big-endian fields traced per request, which a message of UNTRACED_MESSAGE_SIZE leaves out.
+ *
+ * Type bytes have the high bit set. The older format started with 0, 1 or 2 or with an ASCII control string, so a
+ * packet from a subsystem that still sends it is recognised by the clear high bit and decoded the old way.
+ */
+public class MessageCodec {
+
+	public static final byte VERSION = 1;
+	public static final byte UNKNOWN = 0;
+	public static final byte FLOOR = (byte) 0x80;
+	public static final byte ELEVATOR = (byte) 0x81;
+	public static final byte FORCE_CLOSE = (byte) 0x82;
+	public static final byte DOOR_FAILURE = (byte) 0x83;
+	public static final byte SHUTDOWN = (byte) 0x84;
+	public static final byte END = (byte) 0x85;
+	public static final byte FLOOR_STATE = (byte) 0x86;
+	public static final byte RELIABLE = (byte) 0x87;
+	public static final byte ACK = (byte) 0x88;
+	public static final byte ITINERARY = (byte) 0x89;
+
+	public static final int HEADER_SIZE = 2;
+	// size of the floor and elevator messages before they carried the fields traced per request, still decoded
+	public static final int UNTRACED_MESSAGE_SIZE = HEADER_SIZE + 6;
+	public static final int ELEVATOR_MESSAGE_SIZE = UNTRACED_MESSAGE_SIZE + 8;
+	public static final int FLOOR_MESSAGE_SIZE = UNTRACED_MESSAGE_SIZE + 12;
+	public static final int MAX_MESSAGE_SIZE = 24;
+
+	private static final byte TYPE_FLAG = (byte) 0x80;
+	private static final byte LEGACY_FLOOR = 0;
+	private static final byte LEGACY_ELEVATOR = 1;
+	private static final byte[] LEGACY_FORCE_CLOSE = "Force Close".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] LEGACY_DOOR_FAILURE = "Door Failure".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] LEGACY_SHUTDOWN = "Shutdown".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] LEGACY_END = "End".getBytes(StandardCharsets.UTF_8);
+	private static final Direction[] DIRECTIONS = Direction.values();
+
+	/**
+	 * Allocates a buffer large enough for any message, meant to be kept and reused by its owner
+	 * @return ByteBuffer
+	 */
+	public static ByteBuffer allocate() {
+
+		return ByteBuffer.allocate(MAX_MESSAGE_SIZE);
+	}
+
+	/**
+	 * Clears the buffer and writes the header of a message of the given type
+	 * @param buffer
+	 * @param type
+	 */
+	public static void writeHeader(ByteBuffer buffer, byte type) {
+
+		buffer.clear();
+		buffer.put(type);
+		buffer.put(VERSION);
+	}
+
+	/**
+	 * Writes a control message into the buffer, ready to be sent
+	 * @param buffer
+	 * @param type FORCE_CLOSE, DOOR_FAILURE, SHUTDOWN or END
+	 */
+	public static void encodeControl(ByteBuffer buffer, byte type) {
+
+		writeHeader(buffer, type);
+		buffer.flip();
+	}
+
+	/**
+	 * Creates a control message for callers that do not keep a buffer
+	 * @param type FORCE_CLOSE, DOOR_FAILURE, SHUTDOWN or END
+	 * @return byte[]
+	 */
+	public static byte[] generateControlMessage(byte type) {
+
+		return new byte[] {type, VERSION};
+	}
+
+	/**
+	 * Gets the type of the message, recognising messages in the older format as well
+	 * @param data
+	 * @param length
+	 * @return one of the type constants, UNKNOWN if the message is not recognised or has another version
+	 */
+	public static byte getType(byte[] data, int length) {
+
+		if (length <= 0) {
+			return UNKNOWN;
+		}
+		if (!isLegacy(data, length)) {
+			return length >= HEADER_SIZE && data[1] == VERSION ? data[0] : UNKNOWN;
+		}
+		if (data[0] == LEGACY_FLOOR) {
+			return FLOOR;
+		} else if (data[0] == LEGACY_ELEVATOR) {
+			return ELEVATOR;
+		} else if (matches(data, length, LEGACY_FORCE_CLOSE)) {
+			return FORCE_CLOSE;
+		} else if (matches(data, length, LEGACY_DOOR_FAILURE)) {
+			return DOOR_FAILURE;
+		} else if (matches(data, length, LEGACY_SHUTDOWN)) {
+			return SHUTDOWN;
+		} else if (matches(data, length, LEGACY_END)) {
+			return END;
+		}
+		return UNKNOWN;
+	}
+
+	/**
+	 * @return true if the message was written in the format without type and version header
+	 */
+	public static boolean isLegacy(byte[] data, int length) {
+
+		return length > 0 && (data[0] & TYPE_FLAG) == 0;
+	}
+
+	static byte toByte(Direction direction) {
+
+		return (byte) (direction.ordinal() + 1);
+	}
+
+	static Direction toDirection(byte value) {
+
+		int ordinal = value - 1;
+		return ordinal >= 0 && ordinal < DIRECTIONS.length ? DIRECTIONS[ordinal] : null;
+	}
+
+	private static boolean matches(byte[] data, int length, byte[] message) {
+
+		if (length != message.length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			// the scheduler used to accept "End" in any case
+			if (Character.toLowerCase(data[i]) != Character.toLowerCase(message[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,103 @@
+//****************************************************************************
+//
+// Filename: Metrics.java
+//
+// Description: Registry of the counters, gauges and histograms of the
+//              subsystems running in a process
+//
+//***************************************************************************
+package core;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters are LongAdders, so the threads of the pipelines and cars can count on their hot paths without
+ * contending, and gauges are read from their owner only when a snapshot is taken. Histograms are the shared
+ * LatencyHistograms, which the PerformanceTimers record into.
+ *
+ * A metric is named by its series key in line protocol, the measurement followed by its tags, such as
+ * packets_received,subsystem=scheduler,elevator=2, see key.
+ */
+public class Metrics {
+
+	private static final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<String, LongAdder>();
+	private static final ConcurrentHashMap<String, LongSupplier> gauges = new ConcurrentHashMap<String, LongSupplier>();
+
+	/**
+	 * Builds the series key of a metric, escaping the characters line protocol reserves
+	 * @param measurement
+	 * @param tags tag names each followed by its value
+	 * @return String
+	 */
+	public static String key(String measurement, Object... tags) {
+
+		StringBuilder key = new StringBuilder(escape(measurement));
+		for (int i = 0; i + 1 < tags.length; i += 2) {
+			key.append(',').append(escape(String.valueOf(tags[i]))).append('=').append(escape(String.valueOf(tags[i + 1])));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * @return the counter of the given key, created at 0 the first time, meant to be kept by its caller
+	 */
+	public static LongAdder counter(String key) {
+
+		return counters.computeIfAbsent(key, name -> new LongAdder());
+	}
+
+	/**
+	 * Registers the gauge of the given key, replacing the one registered before
+	 * @param key
+	 * @param gauge read every time a snapshot is taken, from the thread taking it
+	 */
+	public static void gauge(String key, LongSupplier gauge) {
+
+		gauges.put(key, gauge);
+	}
+
+	public static void removeGauge(String key) {
+
+		gauges.remove(key);
+	}
+
+	/**
+	 * @return the histogram of the given name shared by the process
+	 */
+	public static LatencyHistogram histogram(String name) {
+
+		return LatencyHistogram.named(name);
+	}
+
+	/**
+	 * @return the value of every counter and gauge, by key in sorted order
+	 */
+	public static Map<String, Long> snapshot() {
+
+		Map<String, Long> values = new TreeMap<String, Long>();
+		for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+			values.put(counter.getKey(), counter.getValue().sum());
+		}
+		for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+			values.put(gauge.getKey(), gauge.getValue().getAsLong());
+		}
+		return values;
+	}
+
+	static String escape(String value) {
+
+		StringBuilder escaped = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == ' ' || c == ',' || c == '=') {
+				escaped.append('\\');
+			}
+			escaped.append(c);
+		}
+		return escaped.toString();
+	}
+}
@@ -0,0 +1,152 @@
+//****************************************************************************
+//
+// Filename: MetricsExporter.java
+//
+// Description: Appends snapshots of the metrics of the process to a file in
+//              line protocol while the subsystems run
+//
+//***************************************************************************
+package core;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import core.Exceptions.ConfigurationParserException;
+
+/**
+ * Every period a snapshot of the Metrics registry is appended to the file, one line per metric, all with the
+ * wall-clock time of the snapshot in nanoseconds:
+ * <pre>
+ * packets_received,subsystem=scheduler,elevator=2 value=118i 1700000000000000000
+ * latency,name=Dispatch\ decision count=40i,p50=10432i,p90=22016i,p99=51200i,p999=51200i,max=51200i 1700000000000000000
+ * </pre>
+ * Histogram percentiles are in nanoseconds. The file can be followed while the building runs or loaded into a
+ * time series database as it is. Snapshots are taken in real time even when the simulation clock is simulated.
+ */
+public class MetricsExporter {
+
+	private static Logger logger = LogManager.getLogger(MetricsExporter.class);
+	public static final String EXTENSION = ".lp";
+	private static MetricsExporter instance;
+
+	private final BufferedWriter writer;
+	private final Timer timer;
+	private final long periodMillis;
+	private boolean closed = false;
+
+	/**
+	 * @param file file to append the snapshots to
+	 * @param periodMillis time between snapshots
+	 * @throws IOException
+	 */
+	public MetricsExporter(File file, long periodMillis) throws IOException {
+
+		this.writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		this.periodMillis = periodMillis;
+		this.timer = new Timer("Metrics exporter", true);
+	}
+
+	/**
+	 * Starts the exporter of MetricsDirectory in the configuration, once per process. The file is named after the
+	 * first caller, so the separate subsystems write to separate files.
+	 * @param process name of the process, such as scheduler
+	 * @return the running exporter, or null if MetricsDirectory is empty
+	 */
+	public static synchronized MetricsExporter startConfigured(String process) {
+
+		if (instance != null) {
+			return instance;
+		}
+		try {
+			ConfigurationParser configurationParser = ConfigurationParser.getInstance();
+			String directory = configurationParser.getString(ConfigurationParser.METRICS_DIRECTORY);
+			if (directory == null || directory.trim().isEmpty()) {
+				return null;
+			}
+			File file = new File(directory.trim(), process + "-metrics" + EXTENSION);
+			file.getParentFile().mkdirs();
+			instance = new MetricsExporter(file, configurationParser.getInt(ConfigurationParser.METRICS_PERIOD_SECONDS) * 1000L);
+			instance.start();
+			MetricsExporter exporter = instance;
+			Runtime.getRuntime().addShutdownHook(new Thread(exporter::close, "Metrics exporter shutdown"));
+			logger.info("Exporting metrics to " + file.getPath() + " every " + exporter.periodMillis / 1000 + " s");
+		} catch (ConfigurationParserException | IOException e) {
+			logger.error("Unable to export metrics", e);
+		}
+		return instance;
+	}
+
+	public void start() {
+
+		timer.scheduleAtFixedRate(new TimerTask() {
+			@Override
+			public void run() {
+				export();
+			}
+		}, periodMillis, periodMillis);
+	}
+
+	/**
+	 * Appends a snapshot of every metric to the file
+	 */
+	public synchronized void export() {
+
+		if (closed) {
+			return;
+		}
+		long timestamp = System.currentTimeMillis() * 1000000L;
+		StringBuilder lines = new StringBuilder();
+		for (Map.Entry<String, Long> metric : Metrics.snapshot().entrySet()) {
+			lines.append(metric.getKey()).append(" value=").append(metric.getValue()).append("i ").append(timestamp).append('\n');
+		}
+		List<LatencyHistogram> histograms = new ArrayList<LatencyHistogram>(LatencyHistogram.getNamed());
+		histograms.sort(Comparator.comparing(LatencyHistogram::getName));
+		for (LatencyHistogram histogram : histograms) {
+			lines.append(Metrics.key("latency", "name", histogram.getName()));
+			lines.append(" count=").append(histogram.getCount()).append('i');
+			lines.append(",p50=").append(histogram.getPercentile(50)).append('i');
+			lines.append(",p90=").append(histogram.getPercentile(90)).append('i');
+			lines.append(",p99=").append(histogram.getPercentile(99)).append('i');
+			lines.append(",p999=").append(histogram.getPercentile(99.9)).append('i');
+			lines.append(",max=").append(histogram.getMax()).append('i');
+			lines.append(' ').append(timestamp).append('\n');
+		}
+		try {
+			writer.append(lines);
+			writer.flush();
+		} catch (IOException e) {
+			logger.error("Unable to write the metrics", e);
+		}
+	}
+
+	/**
+	 * Stops the exporter after a last snapshot
+	 */
+	public synchronized void close() {
+
+		if (closed) {
+			return;
+		}
+		timer.cancel();
+		export();
+		closed = true;
+		try {
+			writer.close();
+		} catch (IOException e) {
+			logger.error("Unable to close the metrics file", e);
+		}
+	}
+}
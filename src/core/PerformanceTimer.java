@@ -1,21 +1,56 @@
 package core;
 
-import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 import core.Exceptions.ConfigurationParserException;
 
+/**
+ * Times an interval of the thread that owns the timer and records it into a LatencyHistogram, which the timers of
+ * other threads may share. The summary of a shared histogram is printed once when the process exits, however many
+ * timers record into it.
+ */
 public class PerformanceTimer {
 	
+	// histograms to print at exit, with the offset to subtract from their latencies, in the order first asked for
+	private static final Map<LatencyHistogram, Summary> summaries = new LinkedHashMap<LatencyHistogram, Summary>();
+	private static final Set<LatencyHistogram> printed = new HashSet<LatencyHistogram>();
+	private static boolean exiting = false;
+	
+	static {
+		try {
+			Runtime.getRuntime().addShutdownHook(new Thread(PerformanceTimer::printSummaries, "Performance timer summaries"));
+		} catch (IllegalStateException e) {
+			// first used while the process exits
+			exiting = true;
+		}
+	}
+	
 	private long startTime;
 	private long endTime;
-	private ArrayList<Long> times;
+	private LatencyHistogram histogram;
 	private int floorTravelTime = 0;
 	
 	public PerformanceTimer() {
 		
+		this(new LatencyHistogram("Performance timer"));
+	}
+	
+	/**
+	 * Creates a timer that records into the histogram of the given name shared by the process
+	 */
+	public PerformanceTimer(String histogramName) {
+		
+		this(LatencyHistogram.named(histogramName));
+	}
+	
+	private PerformanceTimer(LatencyHistogram histogram) {
+		
 		startTime = 0;
 		endTime = 0;
-		times = new ArrayList<Long>();
+		this.histogram = histogram;
 		try {
 			floorTravelTime = ConfigurationParser.getInstance().getInt(ConfigurationParser.ELEVATOR_FLOOR_TRAVEL_TIME_SECONDS);
 			floorTravelTime = floorTravelTime*1000;
@@ -32,7 +67,7 @@ public class PerformanceTimer {
 	public void end() {
 		
 		endTime = System.nanoTime();
-		times.add(((endTime - startTime)/1000000));
+		histogram.record(endTime - startTime);
 	}
 	
 	public long getDelta() {
@@ -40,51 +75,80 @@ public class PerformanceTimer {
 		return (endTime - startTime);
 	}
 	
+	/**
+	 * @return mean in milliseconds
+	 */
 	public double getMean() {
 		
-		long avg =  0; 
-		for (long l : times) {
-			avg += l;
-		}
-		
-		if (times.size() == 0) {
-			return 0;
-		}
-		avg = avg/times.size();
-		return avg;
+		return histogram.getMean() / 1000000;
 	}
 	
+	/**
+	 * @return variance in square milliseconds
+	 */
 	public double getVariance() {
 		
-		double mean = getMean();
-		long variance  = 0; 
-		
-		for (long l: times) {
-			variance += (l - mean) *  (l - mean);
-		}
-		
-		if (times.size() == 1) {
-			return  variance;
-		}
-		
-		variance = variance/(times.size() -1);
+		return histogram.getVariance() / 1000000 / 1000000;
+	}
+	
+	public LatencyHistogram getHistogram() {
 		
-		return variance;
+		return histogram;
 	}
 	
+	/**
+	 * Prints the latencies of the histogram when the process exits, once for all the timers sharing it
+	 */
 	public void print(String name) {
 	
-		System.out.println(name + " took " + getMean() + " milliseconds on Average. The variance is: " + getVariance());
+		printAtExit(name, 0);
 	}
 	
+	/**
+	 * Prints the latencies without the time to travel one floor, which every one of them includes, when the process
+	 * exits, once for all the timers sharing the histogram
+	 */
 	public void printMinusTravelTime(String name) throws ConfigurationParserException {
 		
-		double mean = Math.abs(getMean()-floorTravelTime);
-		if (mean > 1000) {
-			mean = mean/10;
+		printAtExit(name, floorTravelTime * 1000000L);
+	}
+	
+	private void printAtExit(String name, long offsetNanos) {
+		
+		synchronized (summaries) {
+			if (printed.contains(histogram)) {
+				return;
+			}
+			summaries.putIfAbsent(histogram, new Summary(name, offsetNanos));
+			if (exiting) {
+				// asked for by a shutdown hook that ran after the summaries were printed
+				printSummaries();
+			}
 		}
+	}
+	
+	private static void printSummaries() {
+		
+		synchronized (summaries) {
+			exiting = true;
+			for (Map.Entry<LatencyHistogram, Summary> summary : summaries.entrySet()) {
+				System.out.println(summary.getValue().name + " took " + summary.getKey().summary(summary.getValue().offsetNanos));
+				printed.add(summary.getKey());
+			}
+			summaries.clear();
+		}
+	}
+	
+	private static class Summary {
 		
-		System.out.println(name + " took " + mean + " milliseconds on Average. The variance is: " + getVariance());
+		private final String name;
+		private final long offsetNanos;
+		
+		private Summary(String name, long offsetNanos) {
+			
+			this.name = name;
+			this.offsetNanos = offsetNanos;
+		}
 	}
 
 }
@@ -0,0 +1,285 @@
+//****************************************************************************
+//
+// Filename: RequestTracer.java
+//
+// Description: Follows every hall call from its button press to its drop-off
+//              and exports the time it spent in each stage
+//
+//***************************************************************************
+package core;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import core.Exceptions.ConfigurationParserException;
+import core.Utils.SimulationClock;
+
+/**
+ * A hall call is given an id when its button is pressed, which its floor and elevator messages carry, so the
+ * scheduler can follow it through the stages:
+ * <ul>
+ * <li>pressed: the floor sent the call, the time is carried in the floor message
+ * <li>received: the scheduler read the call from the floor
+ * <li>assigned: the scheduler gave the call to a car
+ * <li>arrived and doors opened: the car stopped at the floor of the call, the car reports how long ago
+ * <li>delivered: the car stopped at the destination of the call
+ * </ul>
+ * Times are in milliseconds of the simulation clock. A call is exported once delivered, as a row of the trace file
+ * with its wait (pressed to doors opened) and ride (doors opened to delivered), which are also recorded into the
+ * shared histograms. The calls not delivered when the tracer is closed are exported with their missing stages empty.
+ */
+public class RequestTracer {
+
+	private static Logger logger = LogManager.getLogger(RequestTracer.class);
+	public static final String WAIT_HISTOGRAM = "Hall call wait";
+	public static final String RIDE_HISTOGRAM = "Hall call ride";
+	public static final String CSV_HEADER = "Request,Elevator,SourceFloor,TargetFloor,Pressed,Received,Assigned,Arrived,DoorsOpened,Delivered,WaitMillis,RideMillis";
+	private static final long NANOS_PER_MILLI = 1000000;
+	private static final AtomicInteger nextId = new AtomicInteger();
+	private static volatile RequestTracer instance;
+
+	private final ConcurrentHashMap<Long, Trace> traces = new ConcurrentHashMap<Long, Trace>();
+	private final LatencyHistogram wait;
+	private final LatencyHistogram ride;
+	private BufferedWriter writer;
+
+	/**
+	 * Creates a tracer that only records the histograms
+	 * @param wait
+	 * @param ride
+	 */
+	public RequestTracer(LatencyHistogram wait, LatencyHistogram ride) {
+
+		this.wait = wait;
+		this.ride = ride;
+	}
+
+	/**
+	 * @param file trace file to create or replace
+	 * @param wait
+	 * @param ride
+	 * @throws IOException
+	 */
+	public RequestTracer(File file, LatencyHistogram wait, LatencyHistogram ride) throws IOException {
+
+		this(wait, ride);
+		writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+		writer.write(CSV_HEADER);
+		writer.newLine();
+	}
+
+	/**
+	 * Gets the tracer of the process, exporting to RequestTraceFile of the configuration
+	 * @return RequestTracer
+	 */
+	public static RequestTracer getInstance() {
+
+		if (instance == null) {
+			synchronized (RequestTracer.class) {
+				if (instance == null) {
+					LatencyHistogram wait = LatencyHistogram.named(WAIT_HISTOGRAM);
+					LatencyHistogram ride = LatencyHistogram.named(RIDE_HISTOGRAM);
+					RequestTracer tracer = new RequestTracer(wait, ride);
+					try {
+						String fileName = ConfigurationParser.getInstance().getString(ConfigurationParser.REQUEST_TRACE_FILE);
+						if (fileName != null && !fileName.trim().isEmpty()) {
+							tracer = new RequestTracer(new File(fileName.trim()), wait, ride);
+						}
+					} catch (ConfigurationParserException | IOException e) {
+						logger.error("Unable to open the request trace file, only recording the histograms", e);
+					}
+					instance = tracer;
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * @return a new id for a hall call, unique within the process and increasing
+	 */
+	public static int nextRequestId() {
+
+		return nextId.incrementAndGet();
+	}
+
+	/**
+	 * @return current time of the clock the stages are recorded in
+	 */
+	public static long now() {
+
+		return SimulationClock.getInstance().currentTimeMillis();
+	}
+
+	/**
+	 * Starts following a call the scheduler received
+	 * @param id id carried by the floor message, calls without one (0) are not followed
+	 * @param sourceFloor
+	 * @param targetFloor
+	 * @param pressedTime
+	 * @param receivedTime
+	 */
+	public void received(long id, int sourceFloor, int targetFloor, long pressedTime, long receivedTime) {
+
+		if (id <= 0) {
+			return;
+		}
+		traces.put(id, new Trace(id, sourceFloor, targetFloor, pressedTime, receivedTime));
+	}
+
+	/**
+	 * Records the car a call was given to; a call given again after its car failed keeps the last car
+	 * @param id
+	 * @param elevator
+	 * @param time
+	 * @param atSourceFloor true if the car is already at the floor of the call, which it then does not stop at
+	 */
+	public void assigned(long id, int elevator, long time, boolean atSourceFloor) {
+
+		traces.computeIfPresent(id, (key, trace) -> {
+			trace.elevator = elevator;
+			trace.assigned = time;
+			if (atSourceFloor && trace.arrived == 0) {
+				trace.arrived = time;
+				trace.doorsOpened = time;
+			}
+			return trace;
+		});
+	}
+
+	/**
+	 * Records a stop made for a call, which is its pickup the first time the car stops at the floor of the call
+	 * and its drop-off at its destination
+	 * @param id
+	 * @param floor floor the car stopped at
+	 * @param stoppedTime
+	 * @param doorsOpenedTime
+	 */
+	public void stopped(long id, int floor, long stoppedTime, long doorsOpenedTime) {
+
+		Trace[] delivered = new Trace[1];
+		traces.computeIfPresent(id, (key, trace) -> {
+			if (trace.arrived == 0 && floor == trace.sourceFloor) {
+				trace.arrived = stoppedTime;
+				trace.doorsOpened = doorsOpenedTime;
+				return trace;
+			}
+			if (trace.arrived == 0 || floor != trace.targetFloor) {
+				return trace;
+			}
+			trace.delivered = stoppedTime;
+			delivered[0] = trace;
+			return null;
+		});
+		if (delivered[0] != null) {
+			export(delivered[0]);
+		}
+	}
+
+	/**
+	 * @return number of calls received and not delivered yet
+	 */
+	public int getOpenCount() {
+
+		return traces.size();
+	}
+
+	/**
+	 * Exports the calls not delivered yet and closes the trace file
+	 */
+	public synchronized void close() {
+
+		for (Long id : traces.keySet()) {
+			Trace trace = traces.remove(id);
+			if (trace != null) {
+				export(trace);
+			}
+		}
+		if (writer != null) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				logger.error("Unable to close the request trace file", e);
+			}
+			writer = null;
+		}
+		if (wait.getCount() > 0) {
+			logger.info(wait.getName() + ": " + wait.summary(0));
+			logger.info(ride.getName() + ": " + ride.summary(0));
+		}
+	}
+
+	private void export(Trace trace) {
+
+		boolean complete = trace.arrived != 0 && trace.delivered != 0;
+		if (complete) {
+			wait.record((trace.doorsOpened - trace.pressed) * NANOS_PER_MILLI);
+			ride.record((trace.delivered - trace.doorsOpened) * NANOS_PER_MILLI);
+		}
+		StringBuilder row = new StringBuilder();
+		row.append(trace.id).append(',');
+		row.append(trace.elevator == 0 ? "" : Integer.toString(trace.elevator)).append(',');
+		row.append(trace.sourceFloor).append(',').append(trace.targetFloor).append(',');
+		appendTime(row, trace.pressed).append(',');
+		appendTime(row, trace.received).append(',');
+		appendTime(row, trace.assigned).append(',');
+		appendTime(row, trace.arrived).append(',');
+		appendTime(row, trace.doorsOpened).append(',');
+		appendTime(row, trace.delivered).append(',');
+		if (complete) {
+			row.append(trace.doorsOpened - trace.pressed).append(',').append(trace.delivered - trace.doorsOpened);
+		} else {
+			row.append(',');
+		}
+		synchronized (this) {
+			if (writer == null) {
+				return;
+			}
+			try {
+				writer.append(row);
+				writer.newLine();
+			} catch (IOException e) {
+				logger.error("Unable to write the trace of request " + trace.id, e);
+			}
+		}
+	}
+
+	private static StringBuilder appendTime(StringBuilder row, long time) {
+
+		return time == 0 ? row : row.append(time);
+	}
+
+	/**
+	 * Stage times of one call, 0 until the stage is reached
+	 */
+	private static class Trace {
+
+		private final long id;
+		private final int sourceFloor;
+		private final int targetFloor;
+		private final long pressed;
+		private final long received;
+		private int elevator;
+		private long assigned;
+		private long arrived;
+		private long doorsOpened;
+		private long delivered;
+
+		private Trace(long id, int sourceFloor, int targetFloor, long pressed, long received) {
+
+			this.id = id;
+			this.sourceFloor = sourceFloor;
+			this.targetFloor = targetFloor;
+			this.pressed = pressed;
+			this.received = received;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+//****************************************************************************
+//
+// Filename: SimulationMain.java
+//
+// Description: Runs the scheduler, elevator and floor subsystems in one
+//              process, on one clock
+//
+//***************************************************************************
+package core;
+
+import java.net.InetAddress;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import core.Subsystems.ElevatorSubsystem.ElevatorSubsystem;
+import core.Subsystems.ElevatorSubsystem.ElevatorSubsystemMain;
+import core.Subsystems.FloorSubsystem.FloorSubsystem;
+import core.Subsystems.SchedulerSubsystem.SchedulerSubsystemMain;
+import core.Subsystems.SchedulerSubsystem.ShutdownThread;
+import core.Utils.InProcessTransport;
+import core.Utils.SimulationClock;
+import core.Utils.Utils;
+
+/**
+ * Replays the simulation event file through the same subsystems as the three separate mains, without the floor
+ * window. With SimulatedTime on they share the simulated clock, so the file is replayed as fast as its messages
+ * are processed, and the simulated time it took is logged once the scheduler has shut the subsystems down.
+ * With InProcessTransport on the subsystems exchange their messages through in-memory queues instead of sockets,
+ * which simulated time needs. The clock is held while the subsystems start, so their threads register with it in
+ * the same order on every run, and the same trace and seed replay the same way.
+ */
+public class SimulationMain {
+
+	private static Logger logger = LogManager.getLogger(SimulationMain.class);
+	private static final int STARTUP_DELAY = 2000;
+
+	public static void main(String[] args) {
+
+		logger.info(LoggingManager.BANNER + "Simulation\n");
+		try {
+			ConfigurationParser configurationParser = ConfigurationParser.getInstance();
+			SimulationClock clock = SimulationClock.getInstance();
+			// started before the subsystem mains, so the whole simulation exports to one file
+			MetricsExporter.startConfigured("simulation");
+			if (!clock.isSimulated()) {
+				logger.info("SimulatedTime is off, running in real time");
+			}
+			clock.hold();
+
+			int numFloors = configurationParser.getInt(ConfigurationParser.NUMBER_OF_FLOORS);
+			int numElevators = configurationParser.getInt(ConfigurationParser.NUMBER_OF_ELEVATORS);
+			InetAddress schedulerAddress = InetAddress.getByName(configurationParser.getString(ConfigurationParser.SCHEDULER_ADDRESS));
+			int floorInitPort = configurationParser.getInt(ConfigurationParser.FLOOR_INIT_PORT);
+			int elevatorInitPort = configurationParser.getInt(ConfigurationParser.ELEVATOR_INIT_PORT);
+			boolean inProcess = configurationParser.getBoolean(ConfigurationParser.IN_PROCESS_TRANSPORT);
+
+			// returns once the scheduler has shut the other subsystems down
+			Thread scheduler;
+			InProcessTransport elevatorTransport = null;
+			InProcessTransport floorTransport = null;
+			CountDownLatch schedulerStarted = new CountDownLatch(inProcess ? 1 : 0);
+			if (inProcess) {
+				elevatorTransport = new InProcessTransport();
+				floorTransport = new InProcessTransport();
+				scheduler = new Thread(createScheduler(elevatorTransport, floorTransport, schedulerStarted), "Scheduler subsystem");
+			} else {
+				scheduler = new Thread(() -> SchedulerSubsystemMain.main(args), "Scheduler subsystem");
+			}
+			scheduler.start();
+			Thread.sleep(STARTUP_DELAY);
+
+			if (inProcess) {
+				new ElevatorSubsystem(numElevators, numFloors, elevatorInitPort, schedulerAddress, elevatorTransport.getPeer()).activateElevators();
+			} else {
+				ElevatorSubsystemMain.main(args);
+			}
+			Thread.sleep(STARTUP_DELAY);
+
+			FloorSubsystem floorSystem;
+			if (inProcess) {
+				floorSystem = new FloorSubsystem(numFloors, schedulerAddress, floorInitPort, numElevators, floorTransport.getPeer());
+			} else {
+				floorSystem = new FloorSubsystem(numFloors, schedulerAddress, floorInitPort, numElevators);
+			}
+			// the scheduler starts its pipelines once the floors registered, before the floors start
+			schedulerStarted.await();
+			floorSystem.startFloorThreads();
+			clock.release();
+
+			scheduler.join();
+			logger.info("Simulation finished after " + Utils.getDuration(clock.getElapsedMillis()) + (clock.isSimulated() ? " of simulated time" : ""));
+			System.exit(0);
+		} catch (Exception e) {
+			logger.error("", e);
+			System.exit(-1);
+		}
+	}
+
+	private static Runnable createScheduler(InProcessTransport elevatorTransport, InProcessTransport floorTransport, CountDownLatch started) {
+
+		return () -> {
+			SimulationClock clock = SimulationClock.getInstance();
+			try {
+				ShutdownThread shutdownThread = SchedulerSubsystemMain.start(elevatorTransport, floorTransport);
+				// the shutdown check takes turns after the pipelines
+				clock.attach();
+				started.countDown();
+				shutdownThread.run();
+				clock.detach();
+			} catch (Exception e) {
+				logger.error("", e);
+				System.exit(-1);
+			}
+		};
+	}
+}
@@ -13,9 +13,12 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -25,17 +28,25 @@ import org.apache.logging.log4j.MarkerManager;
 import core.ConfigurationParser;
 import core.Direction;
 import core.LoggingManager;
+import core.Management;
+import core.Metrics;
 import core.PerformanceTimer;
 import core.Exceptions.CommunicationException;
 import core.Exceptions.ConfigurationParserException;
 import core.Exceptions.ElevatorSubsystemException;
+import core.Exceptions.HostActionsException;
 import core.Messages.ElevatorMessage;
+import core.Messages.ItineraryMessage;
+import core.Messages.MessageCodec;
+import core.Utils.ReliableChannel;
+import core.Utils.SimulationClock;
+import core.Utils.Transport;
 import core.Utils.Utils;
 
 /**
  * This creates an elevator car, and handles the properties and states for the car
  * */
-public class ElevatorCarThread extends Thread {
+public class ElevatorCarThread extends Thread implements ElevatorCarThreadMBean {
 
 	private static Logger logger = LogManager.getLogger(ElevatorCarThread.class);
 	private static Marker MARKER;
@@ -44,14 +55,22 @@ public class ElevatorCarThread extends Thread {
 	private static final int HARD_CODE = 1;
 	private static final int TRANSIENT_CODE = 2;
 	private static final int WAIT_TIME = 3000;
+	// how long a moving car waits for itinerary amendments before the next floor
+	private static final int POLL_TIME = 1;
 	private boolean[] selectedFloors; //if true then its is pressed
 	private Map<ElevatorComponentConstants, ElevatorComponentStates> carProperties;
 	private int numberOfFloors;
 	private int elevatorNumber;
 	private DatagramSocket elevatorSocket;
+	private Transport multiplexedSocket;
+	private ReliableChannel channel;
 	private DatagramPacket elevatorPacket;
+	private DatagramPacket sendPacket;
+	private ByteBuffer sendBuffer = MessageCodec.allocate();
 
-	private ElevatorMessage ePacket;
+	private ElevatorMessage ePacket = new ElevatorMessage();
+	private ItineraryMessage itinerary;
+	private byte receivedType;
 	private int port;
 	private InetAddress schedulerAddress;
 	private int doorSleepTime;
@@ -59,8 +78,14 @@ public class ElevatorCarThread extends Thread {
 	private int currentFloor;
 	private int destinationFloor;
 	private boolean sentArrivalSensor;
-	private boolean shutDown;
+	// clock times the car stopped and opened its doors at the current floor, -1 if it passed the floor
+	private long stoppedAt = -1;
+	private long doorsOpenedAt = -1;
+	private volatile boolean shutDown;
 	private PerformanceTimer timer;
+	private LongAdder packetsSent;
+	private LongAdder packetsReceived;
+	private LongAdder doorFaults;
 	private boolean firstStart = true;
 	
 	/**
@@ -71,15 +96,35 @@ public class ElevatorCarThread extends Thread {
 	 */
 	public ElevatorCarThread(String name, int numFloors, InetAddress schedulerAddress) throws ElevatorSubsystemException {
 		
+		this(name, numFloors, schedulerAddress, null);
+	}
+
+	/**
+	 * Constructor for elevator car
+	 * 
+	 * @param numFloors
+	 * @param multiplexedSocket socket shared by all cars, null to give the car its own socket
+	 * @throws ElevatorSubsystemException 
+	 */
+	public ElevatorCarThread(String name, int numFloors, InetAddress schedulerAddress, Transport multiplexedSocket) throws ElevatorSubsystemException {
+		
 		super (name);
+		this.multiplexedSocket = multiplexedSocket;
 		MARKER = MarkerManager.getMarker(name);
 		this.schedulerAddress = schedulerAddress;
 		this.numberOfFloors = numFloors;
 		this.setSentArrivalSensor(false);
 		this.shutDown = false;
 		this.selectedFloors = new boolean[this.numberOfFloors];
-		this.elevatorNumber = Integer.parseInt(name.substring(name.length()-1));
-		this.timer = new PerformanceTimer();
+		// every trailing digit, so cars past the ninth get numbers of their own
+		this.elevatorNumber = Integer.parseInt(name.replaceFirst("^.*?(\\d+)$", "$1"));
+		this.itinerary = new ItineraryMessage(elevatorNumber);
+		this.timer = new PerformanceTimer("Elevator Interface");
+		this.packetsSent = Metrics.counter(Metrics.key("packets_sent", "subsystem", "elevator", "elevator", elevatorNumber));
+		this.packetsReceived = Metrics.counter(Metrics.key("packets_received", "subsystem", "elevator", "elevator", elevatorNumber));
+		this.doorFaults = Metrics.counter(Metrics.key("door_faults", "subsystem", "elevator", "elevator", elevatorNumber));
+		Metrics.gauge(Metrics.key("current_floor", "subsystem", "elevator", "elevator", elevatorNumber), () -> currentFloor);
+		Management.register(this, "ElevatorCar", elevatorNumber);
 		
 		//initialize component states
 		carProperties = new HashMap<ElevatorComponentConstants, ElevatorComponentStates>();
@@ -91,17 +136,27 @@ public class ElevatorCarThread extends Thread {
 			floorSleepTime = ConfigurationParser.getInstance().getInt(ConfigurationParser.ELEVATOR_FLOOR_TRAVEL_TIME_SECONDS)*1000;
 		
 			//initialize communication stuff
-			this.elevatorSocket = new DatagramSocket();
-			this.port = elevatorSocket.getLocalPort();
+			if (multiplexedSocket == null) {
+				this.elevatorSocket = new DatagramSocket();
+				this.port = elevatorSocket.getLocalPort();
+				if (ConfigurationParser.getInstance().getBoolean(ConfigurationParser.RELIABLE_TRANSPORT)) {
+					this.channel = new ReliableChannel(name + " channel", elevatorSocket, null);
+				}
+			} else {
+				this.port = multiplexedSocket.getLocalPort();
+			}
 			byte[] b = new byte[DATA_SIZE];
 			elevatorPacket = new DatagramPacket(b, b.length);
+			sendPacket = new DatagramPacket(sendBuffer.array(), sendBuffer.capacity());
 		} catch (ConfigurationParserException | SocketException e) {
 			throw new ElevatorSubsystemException(e);
 		}
 		Runtime.getRuntime().addShutdownHook(new Thread() {
 			@Override
 			public void run() {
-				getElevSocket().close();
+				if (getElevSocket() != null) {
+					getElevSocket().close();
+				}
 			}
 		});
 	}
@@ -117,58 +172,69 @@ public class ElevatorCarThread extends Thread {
 			// if source = dest here
 			try {
 				
-				if (!firstStart) {
-					timer.start();
-					this.receivePacket(elevatorPacket);
-					timer.end();
-				} else {
-					this.receivePacket(elevatorPacket);
-					firstStart = false;
+				if (itinerary.isEmpty()) {
+					// nothing to serve until the scheduler sends the next itinerary
+					if (!firstStart) {
+						timer.start();
+						this.receivePacket(elevatorPacket);
+						timer.end();
+					} else {
+						this.receivePacket(elevatorPacket);
+						firstStart = false;
+					}
+					handleMessage();
+					continue;
 				}
-				
-				if (ePacket.getShutdownStatus()) {
-					shutDown = true;
+
+				// amendments sent while the car was moving take effect before the next floor
+				while (!shutDown && this.receivePacket(elevatorPacket, POLL_TIME)) {
+					handleMessage();
+				}
+				if (shutDown || itinerary.isEmpty()) {
+					continue;
+				}
+
+				destinationFloor = itinerary.getFloor(0);
+				int errorCode = itinerary.getErrorCode(0);
+
+				if (hasHardError()) {
+					Utils.Sleep(floorSleepTime + WAIT_TIME);
+					logger.info(MARKER, "Hard error message received, elevator thread being interrupted");
+					break;
+				}
+
+				stoppedAt = -1;
+				doorsOpenedAt = -1;
+				if (currentFloor > destinationFloor) {
+					updateMotorStatus(ElevatorComponentStates.ELEV_MOTOR_DOWN);
+					moveFloor(ePacket, Direction.DOWN);
+				} else if (currentFloor < destinationFloor) {
+					updateMotorStatus(ElevatorComponentStates.ELEV_MOTOR_UP);
+					moveFloor(ePacket, Direction.UP);
 				}
-				else {
-					
-					currentFloor = ePacket.getCurrentFloor();
-					destinationFloor = ePacket.getDestinationFloor();
-					
-					if (ePacket.getErrorCode() == HARD_CODE && ePacket.getErrorFloor() == currentFloor) {
-						Utils.Sleep(floorSleepTime + WAIT_TIME);
-						logger.info(MARKER, "Hard error message received, elevator thread being interrupted");
-						break;
-					}
-					
-					if (currentFloor > destinationFloor) {
-						updateMotorStatus(ElevatorComponentStates.ELEV_MOTOR_DOWN);
-						moveFloor(ePacket, Direction.DOWN);
-					} else if (currentFloor < destinationFloor) {
-						updateMotorStatus(ElevatorComponentStates.ELEV_MOTOR_UP);
-						moveFloor(ePacket, Direction.UP);
-					}
-					
-					if (currentFloor == destinationFloor && getMotorStatus() != ElevatorComponentStates.ELEV_MOTOR_IDLE) {
+
+				if (currentFloor == destinationFloor) {
+					if (getMotorStatus() != ElevatorComponentStates.ELEV_MOTOR_IDLE) {
 
 						updateMotorStatus(ElevatorComponentStates.ELEV_MOTOR_IDLE);
+						stoppedAt = SimulationClock.getInstance().currentTimeMillis();
 						updateDoorStatus(ElevatorComponentStates.ELEV_DOORS_OPEN);
+						doorsOpenedAt = SimulationClock.getInstance().currentTimeMillis();
 
 						Utils.Sleep(doorSleepTime);
 
-						if (destinationFloor != -1) {
-							selectedFloors[ePacket.getDestinationFloor()-1] = true;
-//							logger.info(MARKER, "User Selected Floor: " + ePacket.getDestinationFloor());
-						}
+						selectedFloors[destinationFloor-1] = true;
 
-						if (ePacket.getErrorCode() == TRANSIENT_CODE) {
+						if (errorCode == TRANSIENT_CODE) {
 							logger.info(MARKER, "Unable to Close Doors");
+							doorFaults.increment();
 							sendFailureDoorRequest();
-							
+
 							timer.start();
-							this.receivePacket(elevatorPacket);
+							boolean forceClose = waitForForceClose();
 							timer.end();
-							
-							if (ePacket.getForceCloseStatus()) {
+
+							if (forceClose) {
 								logger.info(MARKER, "Force Closing door in " + WAIT_TIME / 1000 + " seconds");
 								Utils.Sleep(WAIT_TIME);
 							}
@@ -176,8 +242,12 @@ public class ElevatorCarThread extends Thread {
 						updateDoorStatus(ElevatorComponentStates.ELEV_DOORS_CLOSE);
 						logger.debug("Arrived destination\n");
 					}
-					sendArrivalSensorPacket();
+					// an amendment received while the doors were held may already have dropped this stop
+					if (!itinerary.isEmpty() && itinerary.getFloor(0) == currentFloor) {
+						itinerary.removeFirstStop();
+					}
 				}
+				sendArrivalSensorPacket();
 				
 			} catch (CommunicationException | IOException | ElevatorSubsystemException e) {
 				logger.error(e);
@@ -185,6 +255,56 @@ public class ElevatorCarThread extends Thread {
 		}
 		logger.info("Shutting down elevator!");
 	}
+
+	/**
+	 * Applies the last received message: an itinerary replaces the stops of the car, a single elevator message
+	 * from a scheduler that sends one hop at a time becomes a one stop itinerary
+	 */
+	private void handleMessage() {
+
+		if (receivedType == MessageCodec.ITINERARY) {
+			boolean wasIdle = itinerary.isEmpty();
+			// a moving car knows its floor better than the scheduler does
+			if (itinerary.decode(elevatorPacket.getData(), elevatorPacket.getLength()) && wasIdle) {
+				currentFloor = itinerary.getCurrentFloor();
+			}
+		} else if (ePacket.getShutdownStatus()) {
+			shutDown = true;
+		} else if (receivedType == MessageCodec.ELEVATOR) {
+			currentFloor = ePacket.getCurrentFloor();
+			itinerary.clear();
+			itinerary.addStop(ePacket.getDestinationFloor(), ePacket.getErrorCode(), ePacket.getErrorFloor());
+		}
+	}
+
+	/**
+	 * @return true if a stop of the itinerary fails the car on its current floor
+	 */
+	private boolean hasHardError() {
+
+		for (int i = 0; i < itinerary.getStopCount(); i++) {
+			if (itinerary.getErrorCode(i) == HARD_CODE && itinerary.getErrorFloor(i) == currentFloor) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Waits for the scheduler to force the doors closed, applying any itinerary received in the meantime
+	 * @return false if the car was shut down instead
+	 */
+	private boolean waitForForceClose() throws IOException, CommunicationException {
+
+		while (!shutDown) {
+			this.receivePacket(elevatorPacket);
+			if (receivedType != MessageCodec.ITINERARY && ePacket.getForceCloseStatus()) {
+				return true;
+			}
+			handleMessage();
+		}
+		return false;
+	}
 	
 	/**
 	 * checks if the specified floor button is pressed
@@ -211,6 +331,7 @@ public class ElevatorCarThread extends Thread {
 	 * @param
 	 * @return int
 	 * */
+	@Override
 	public int getElevatorNumber(){
 		return this.elevatorNumber;
 	}
@@ -289,41 +410,97 @@ public class ElevatorCarThread extends Thread {
 	public void sendArrivalSensorPacket() throws ElevatorSubsystemException {
 		
 		try {
-			ElevatorMessage arrivalSensor ;
-			arrivalSensor = new ElevatorMessage(currentFloor, -1, elevatorNumber);
-			arrivalSensor.setArrivalSensor(true);
-			int port = ElevatorSubsystem.getSchedulerPorts().get(elevatorNumber);
-			DatagramPacket arrivalSensorPacket = new DatagramPacket(arrivalSensor.generatePacketData(), arrivalSensor.generatePacketData().length, schedulerAddress, port);
-//			logger.debug(MARKER, "Sending to: " + schedulerAddress+":"+port+" data: "+Arrays.toString(arrivalSensorPacket.getData()));
-//			logger.debug(MARKER, "Elevator Packet "+ arrivalSensor.toString());
-			this.elevatorSocket.send(arrivalSensorPacket);
-		} catch (CommunicationException | IOException e) {
+			// the stop the car heads for next lets the scheduler notice an itinerary it has not applied
+			int nextStop = itinerary.isEmpty() ? -1 : itinerary.getFloor(0);
+			// the report is sent once the doors closed, so it tells how long ago the car stopped for the traced requests
+			long now = SimulationClock.getInstance().currentTimeMillis();
+			ElevatorMessage.encode(sendBuffer, currentFloor, nextStop, true, elevatorNumber, 0, 0, age(stoppedAt, now), age(doorsOpenedAt, now));
+			send();
+		} catch (IOException | HostActionsException e) {
 			throw new ElevatorSubsystemException(e);
 		}
 	}
 	
+	private static int age(long time, long now) {
+
+		return time == -1 ? -1 : (int) Math.min(now - time, Integer.MAX_VALUE);
+	}
+
 	public void sendFailureDoorRequest() throws ElevatorSubsystemException{
 
 		try {
-			ElevatorMessage msg = new ElevatorMessage();
-			byte[] data = msg.generateDoorFailureMessage();
-			int port = ElevatorSubsystem.getSchedulerPorts().get(elevatorNumber);
-			DatagramPacket packet = new DatagramPacket(data, data.length, schedulerAddress, port);
-			this.elevatorSocket.send(packet);
-		} catch (CommunicationException | IOException e) {
+			MessageCodec.encodeControl(sendBuffer, MessageCodec.DOOR_FAILURE);
+			send();
+		} catch (IOException | HostActionsException e) {
 			throw new ElevatorSubsystemException(e);
 		}
 	}
+
+	/**
+	 * Sends the message written into the send buffer
+	 */
+	private void send() throws IOException, HostActionsException {
+
+		packetsSent.increment();
+		if (multiplexedSocket != null) {
+			multiplexedSocket.send(elevatorNumber, sendBuffer.array(), sendBuffer.limit());
+		} else if (channel != null) {
+			channel.send(sendBuffer.array(), sendBuffer.limit(), schedulerAddress, ElevatorSubsystem.getSchedulerPorts().get(elevatorNumber));
+		} else {
+			sendPacket.setData(sendBuffer.array(), 0, sendBuffer.limit());
+			sendPacket.setAddress(schedulerAddress);
+			sendPacket.setPort(ElevatorSubsystem.getSchedulerPorts().get(elevatorNumber));
+			this.elevatorSocket.send(sendPacket);
+		}
+	}
 	
 	public void receivePacket(DatagramPacket packet)  throws IOException, CommunicationException {
+
+		receivePacket(packet, 0);
+	}
+
+	/**
+	 * Receives the next message from the scheduler
+	 * @param packet
+	 * @param timeout in milliseconds, 0 to wait until a message arrives
+	 * @return false if no message arrived within the timeout
+	 */
+	public boolean receivePacket(DatagramPacket packet, int timeout)  throws IOException, CommunicationException {
 		
-		this.elevatorSocket.receive(packet);
-		this.ePacket = new ElevatorMessage(packet.getData( ), packet.getLength());
+		try {
+			if (multiplexedSocket != null) {
+				packet = multiplexedSocket.receive(elevatorNumber, timeout);
+			} else if (channel != null) {
+				channel.receive(packet, timeout);
+			} else {
+				packet.setLength(DATA_SIZE);
+				this.elevatorSocket.setSoTimeout(timeout);
+				this.elevatorSocket.receive(packet);
+			}
+		} catch (SocketTimeoutException e) {
+			return false;
+		} catch (HostActionsException e) {
+			if (timeout > 0 && (elevatorSocket == null || !elevatorSocket.isClosed())) {
+				return false;
+			}
+			throw new CommunicationException(e);
+		}
+		packetsReceived.increment();
+		if (packet != elevatorPacket) {
+			// the multiplexed socket hands over its own packet
+			elevatorPacket.setData(packet.getData(), 0, packet.getLength());
+		}
+		receivedType = MessageCodec.getType(packet.getData(), packet.getLength());
+		if (receivedType == MessageCodec.ITINERARY) {
+			return true;
+		}
+		this.ePacket.decode(packet.getData(), packet.getLength());
 		
 		if (!ePacket.isValid()) {
 			throw new CommunicationException("Invalid packet data, how you do?");
 		}
 //		logger.debug(MARKER, "Received: "+ ePacket.toString());
+		return true;
 	}
 
 	public boolean isSentArrivalSensor() {
@@ -334,13 +511,46 @@ public class ElevatorCarThread extends Thread {
 		this.sentArrivalSensor = sentArrivalSensor;
 	}
 	
+	@Override
 	public int getCurrentFloor() {
 		return this.currentFloor;
 	}
+
+	@Override
+	public int getDestinationFloor() {
+		return this.destinationFloor;
+	}
+
+	@Override
+	public String getMotorState() {
+		return getMotorStatus().name();
+	}
+
+	@Override
+	public String getDoorState() {
+		return getDoorStatus().name();
+	}
+
+	@Override
+	public String getItinerary() {
+		return itinerary.toString();
+	}
+
+	@Override
+	public String getInterfaceLatency() {
+		return timer.getHistogram().summary(0);
+	}
 	
 	public void terminate() {
 		System.out.println("\nTearDown Elevator...");
-		this.elevatorSocket.close();
+		// a closed in-process transport fails every receive at once, so the loop has to stop on its own
+		shutDown = true;
+		if (this.channel != null) {
+			this.channel.close();
+		}
+		if (this.elevatorSocket != null) {
+			this.elevatorSocket.close();
+		}
 		LoggingManager.createLoggerFile(logger, MARKER.getName());
 		timer.print("Elevator Interface");
 		System.out.println("TearDown Complete");
@@ -0,0 +1,39 @@
+//****************************************************************************
+//
+// Filename: ElevatorCarThreadMBean.java
+//
+// Description: Management interface of an elevator car, registered with the
+//              platform MBean server
+//
+//***************************************************************************
+package core.Subsystems.ElevatorSubsystem;
+
+/**
+ * State of a car as the car itself sees it, see core.Management. Read without stopping the car, so a value may be
+ * a floor behind the one the car is about to report.
+ */
+public interface ElevatorCarThreadMBean {
+
+	public int getElevatorNumber();
+
+	public int getCurrentFloor();
+
+	/**
+	 * @return floor of the stop the car is heading for
+	 */
+	public int getDestinationFloor();
+
+	public String getMotorState();
+
+	public String getDoorState();
+
+	/**
+	 * @return floors of the stops the car is serving
+	 */
+	public String getItinerary();
+
+	/**
+	 * @return summary of the interface timer, shared by the cars of the process
+	 */
+	public String getInterfaceLatency();
+}
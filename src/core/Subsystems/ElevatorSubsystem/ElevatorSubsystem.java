@@ -15,7 +15,6 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.net.SocketException;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
@@ -31,11 +30,16 @@ import core.Exceptions.ConfigurationParserException;
 import core.Exceptions.ElevatorSubsystemException;
 import core.Exceptions.HostActionsException;
 import core.Messages.InitMessage;
+import core.Utils.ExecutionModel;
 import core.Utils.HostActions;
+import core.Utils.MultiplexedSocket;
+import core.Utils.SharedMemoryTransport;
+import core.Utils.SubsystemConstants;
+import core.Utils.Transport;
 
 public class ElevatorSubsystem {
 	
-	private final String ELEVATOR_NAME = "ElevatorCar";
+	private static final String ELEVATOR_NAME = "ElevatorCar";
 	private static Logger logger = LogManager.getLogger(ElevatorSubsystem.class);
 	private static final int DATA_SIZE = 1024;
 	private final byte SPACER = (byte) 0;
@@ -44,18 +48,33 @@ public class ElevatorSubsystem {
 	private Map<String, ElevatorCarThread> carPool;
 	private static Map<Integer, Integer> schedulerPorts = new HashMap<>();
 	private InetAddress schedulerAddress;
+	private Transport multiplexedSocket;
 
 	public ElevatorSubsystem(int numElev, int numFloors, int initPort, InetAddress schedulerAddress) throws ElevatorSubsystemException, ConfigurationParserException, HostActionsException, CommunicationException, IOException {
 
+		this(numElev, numFloors, initPort, schedulerAddress, openSocket(schedulerAddress, initPort));
+	}
+
+	/**
+	 * Creates the cars on the given transport
+	 * @param transport transport shared by all cars, null to give every car its own socket
+	 */
+	public ElevatorSubsystem(int numElev, int numFloors, int initPort, InetAddress schedulerAddress, Transport transport) throws ElevatorSubsystemException, ConfigurationParserException, HostActionsException, CommunicationException, IOException {
+
 		this.schedulerAddress = schedulerAddress;
 		this.numberOfElev = numElev;
 		this.numberOfFloors = numFloors;
 		this.carPool = new HashMap<String, ElevatorCarThread>();
+		ConfigurationParser configurationParser = ConfigurationParser.getInstance();
+		this.multiplexedSocket = transport;
+		if (multiplexedSocket != null) {
+			multiplexedSocket.start();
+		}
 
 		String curr_name;
 		for (int i = 0; i < this.numberOfElev; i++) {
 			curr_name = ELEVATOR_NAME + (i+1);
-			this.carPool.put(curr_name, new ElevatorCarThread(curr_name, this.numberOfFloors, this.schedulerAddress));
+			this.carPool.put(curr_name, new ElevatorCarThread(curr_name, this.numberOfFloors, this.schedulerAddress, multiplexedSocket));
 		}
 
 		Runtime.getRuntime().addShutdownHook(new Thread() {
@@ -66,16 +85,36 @@ public class ElevatorSubsystem {
 						car.getValue().terminate();
 					}
 				}
+				if (multiplexedSocket != null) {
+					multiplexedSocket.terminate();
+				}
 				LoggingManager.terminate();
 			}
 		});
 		
-		sendPortsToScheduler(initPort);
-		ConfigurationParser configurationParser = ConfigurationParser.getInstance();
+		if (multiplexedSocket != null) {
+			logger.info("Registering with SCHEDULER...");
+			for (ElevatorCarThread car : carPool.values()) {
+				multiplexedSocket.register(car.getElevatorNumber());
+			}
+			return;
+		}
 		int initSchedulerPort = configurationParser.getInt(ConfigurationParser.SCHEDULER_INIT_PORT);
-		receivePortsFromScheduler(initSchedulerPort);
+		// bound before the ports are sent, so the reply of the scheduler cannot arrive before anyone listens for it
+		DatagramSocket portSocket = new DatagramSocket(initSchedulerPort);
+		sendPortsToScheduler(initPort);
+		receivePortsFromScheduler(portSocket);
 	}
 	
+	private static Transport openSocket(InetAddress schedulerAddress, int initPort) throws ConfigurationParserException, HostActionsException {
+
+		Transport transport = SharedMemoryTransport.getConfiguredTransport(SubsystemConstants.ELEVATOR, false);
+		if (transport == null && SharedMemoryTransport.isMultiplexed()) {
+			transport = new MultiplexedSocket(ELEVATOR_NAME + " socket", schedulerAddress, initPort);
+		}
+		return transport;
+	}
+
 	public void shutdown() {
 
 		for (Map.Entry<String, ElevatorCarThread> car : carPool.entrySet()) {
@@ -83,24 +122,23 @@ public class ElevatorSubsystem {
 				car.getValue().terminate();
 			}
 		}
+		if (multiplexedSocket != null) {
+			multiplexedSocket.terminate();
+		}
 		LoggingManager.terminate();
 	
 	}
 	
-	private void receivePortsFromScheduler(int listenPort) throws ElevatorSubsystemException {
+	private void receivePortsFromScheduler(DatagramSocket receiveSocket) throws ElevatorSubsystemException {
 		try {
 			DatagramPacket packet = new DatagramPacket(new byte[DATA_SIZE], DATA_SIZE);
-			DatagramSocket receiveSocket = new DatagramSocket(listenPort);
-			try {
-				logger.info("Waiting to receive port information from SCHEDULER...");
-				HostActions.receive(packet, receiveSocket);
-				receiveSocket.close();
-				convertPacketToMap(packet.getData(), packet.getLength());
-			} catch (HostActionsException e) {
-				throw new ElevatorSubsystemException("Unable to receive scheduler ports packet", e);
-			}
-		} catch (SocketException e) {
-			throw new ElevatorSubsystemException("Unable to create a DatagramSocket", e);
+			logger.info("Waiting to receive port information from SCHEDULER...");
+			HostActions.receive(packet, receiveSocket);
+			convertPacketToMap(packet.getData(), packet.getLength());
+		} catch (HostActionsException e) {
+			throw new ElevatorSubsystemException("Unable to receive scheduler ports packet", e);
+		} finally {
+			receiveSocket.close();
 		}
 	}
 
@@ -172,7 +210,7 @@ public class ElevatorSubsystem {
 
 		logger.info("Activating Elevators...");
 		for (Map.Entry<String, ElevatorCarThread> car : carPool.entrySet()) {
-			car.getValue().start();
+			ExecutionModel.start(car.getValue());
 		}
 		logger.log(LoggingManager.getSuccessLevel(), LoggingManager.SUCCESS_MESSAGE);
 	}
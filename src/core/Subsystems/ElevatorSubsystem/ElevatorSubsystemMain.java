@@ -15,6 +15,7 @@ import org.apache.logging.log4j.Logger;
 
 import core.ConfigurationParser;
 import core.LoggingManager;
+import core.MetricsExporter;
 import core.Subsystems.ElevatorSubsystem.ElevatorSubsystem;
 
 
@@ -28,6 +29,7 @@ public class ElevatorSubsystemMain {
 		
 		try {
 			ConfigurationParser configurationParser = ConfigurationParser.getInstance();
+			MetricsExporter.startConfigured("elevator");
 			
 			int numElev = configurationParser.getInt(ConfigurationParser.NUMBER_OF_ELEVATORS);
 			int numFloors = configurationParser.getInt(ConfigurationParser.NUMBER_OF_FLOORS);
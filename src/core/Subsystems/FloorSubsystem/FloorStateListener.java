@@ -0,0 +1,103 @@
+//****************************************************************************
+//
+// Filename: FloorStateListener.java
+//
+// Description: Thread that receives the elevator states published to the
+//              multicast group
+//
+//***************************************************************************
+
+package core.Subsystems.FloorSubsystem;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.MulticastSocket;
+import java.net.SocketTimeoutException;
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import core.Metrics;
+import core.Exceptions.HostActionsException;
+import core.Messages.FloorMessage;
+import core.Messages.FloorStateMessage;
+import core.Utils.MulticastGroup;
+
+/**
+ * Joins the multicast group for the whole floor subsystem, decodes each elevator state once and applies it to
+ * every floor. The floors keep their own sockets for the shutdown message, and this thread ends once they are
+ * all shut down.
+ */
+public class FloorStateListener extends Thread {
+
+	private static Logger logger = LogManager.getLogger(FloorStateListener.class);
+	private static final int DATA_SIZE = 50;
+	private static final int RECEIVE_TIMEOUT = 1000;
+
+	private MulticastGroup group;
+	private MulticastSocket socket;
+	private Collection<FloorThread> floors;
+	private FloorStateMessage[] states;
+	// states are received once for all the floors
+	private LongAdder packetsReceived = Metrics.counter(Metrics.key("packets_received", "subsystem", "floor", "floor", "all"));
+	private FloorMessage message = new FloorMessage();
+	private DatagramPacket packet = new DatagramPacket(new byte[DATA_SIZE], DATA_SIZE);
+
+	public FloorStateListener(MulticastGroup group, Collection<FloorThread> floors, int numElevators) throws HostActionsException {
+
+		super("Floor state listener");
+		this.group = group;
+		this.floors = floors;
+		this.states = FloorStateMessage.createStates(numElevators);
+		this.socket = group.join();
+	}
+
+	@Override
+	public void run() {
+
+		try {
+			socket.setSoTimeout(RECEIVE_TIMEOUT);
+			while (!isShutdown()) {
+				try {
+					packet.setLength(DATA_SIZE);
+					socket.receive(packet);
+				} catch (SocketTimeoutException e) {
+					continue;
+				}
+				packetsReceived.increment();
+				FloorStateMessage state = FloorStateMessage.decode(states, packet.getData(), packet.getLength());
+				if (state == null) {
+					continue;
+				}
+				state.toFloorMessage(message);
+				for (FloorThread floor : floors) {
+					floor.updateElevatorFloorState(message);
+				}
+			}
+		} catch (IOException e) {
+			if (!socket.isClosed()) {
+				logger.error("Unable to receive from " + group, e);
+			}
+		}
+		terminate();
+	}
+
+	private boolean isShutdown() {
+
+		for (FloorThread floor : floors) {
+			if (!floor.isShutdown()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public void terminate() {
+
+		if (!socket.isClosed()) {
+			group.leave(socket);
+		}
+	}
+}
@@ -16,11 +16,11 @@ import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Timer;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -28,6 +28,7 @@ import org.apache.logging.log4j.Logger;
 import core.ConfigurationParser;
 import core.InputParser;
 import core.LoggingManager;
+import core.TraceSource;
 import core.Exceptions.CommunicationException;
 import core.Exceptions.ConfigurationParserException;
 import core.Exceptions.FloorSubsystemException;
@@ -35,27 +36,39 @@ import core.Exceptions.GeneralException;
 import core.Exceptions.HostActionsException;
 import core.Exceptions.InputParserException;
 import core.Messages.InitMessage;
+import core.Utils.ExecutionModel;
 import core.Utils.HostActions;
+import core.Utils.MulticastGroup;
+import core.Utils.MultiplexedSocket;
+import core.Utils.SharedMemoryTransport;
+import core.Utils.SimulationClock;
 import core.Utils.SimulationRequest;
+import core.Utils.SubsystemConstants;
+import core.Utils.TimingWheel;
+import core.Utils.Transport;
 
 /**
  * The floor subsystem handles the initialization of each floor thread and the
- * events to be simulated.
+ * events to be simulated. With StreamingTrace on the events are read from the
+ * trace while it is simulated, each a little ahead of its time.
  */
 public class FloorSubsystem {
 
 	private static Logger logger = LogManager.getLogger(FloorSubsystem.class);
-	private final String FLOOR_NAME = "Floor";
+	private static final String FLOOR_NAME = "Floor";
 	private final byte SPACER = (byte) 0;
 	private static final int DATA_SIZE = 1024;
 	private final int PORT_TIMEOUT = 10000;
 	private static Map<Integer, Integer> schedulerPorts = new HashMap<>();
 	private Map<String, FloorThread> floors;
 	private List<SimulationRequest> events;
+	private TraceSource trace;
 	private int numberOfFloors;
 	private InetAddress schedulerAddress;
 	private int floorInitPort;
-	private Timer sharedTimer;
+	private TimingWheel sharedWheel;
+	private Transport multiplexedSocket;
+	private FloorStateListener floorStateListener;
 
 	/**
 	 * Creates a floorSubsystem object
@@ -66,11 +79,29 @@ public class FloorSubsystem {
 	 */
 	public FloorSubsystem(int numOfFloors, InetAddress schedulerAddress, int floorInitPort, int numOfElevators) throws GeneralException, IOException {
 
+		this(numOfFloors, schedulerAddress, floorInitPort, numOfElevators, openSocket(schedulerAddress, floorInitPort));
+	}
+
+	/**
+	 * Creates the floors on the given transport
+	 * 
+	 * @param transport transport shared by all floors, null to give every floor its own socket
+	 * @throws IOException
+	 * @throws FloorSubsystemException
+	 */
+	public FloorSubsystem(int numOfFloors, InetAddress schedulerAddress, int floorInitPort, int numOfElevators, Transport transport) throws GeneralException, IOException {
+
 		this.floors = new HashMap<String, FloorThread>();
 		this.numberOfFloors = numOfFloors;
 		this.setSchedulerAddress(schedulerAddress);
 		this.setFloorInitPort(floorInitPort);
-		this.sharedTimer = new Timer();
+		ConfigurationParser configurationParser = ConfigurationParser.getInstance();
+		this.sharedWheel = new TimingWheel("Floor event wheel", configurationParser.getInt(ConfigurationParser.FLOOR_EVENT_TICK),
+				configurationParser.getInt(ConfigurationParser.FLOOR_EVENT_WORKERS));
+		this.multiplexedSocket = transport;
+		if (multiplexedSocket != null) {
+			multiplexedSocket.start();
+		}
 		try {
 			readFile();
 
@@ -85,7 +116,14 @@ public class FloorSubsystem {
 				} else {
 					floorType = FloorType.NORMAL;
 				}
-				floors.put(FLOOR_NAME + i, new FloorThread(FLOOR_NAME + i, i, schedulerAddress, this.sharedTimer, numOfElevators, floorType));
+				floors.put(FLOOR_NAME + i, new FloorThread(FLOOR_NAME + i, i, schedulerAddress, this.sharedWheel, numOfElevators, floorType, multiplexedSocket));
+			}
+
+			// joined before the scheduler knows the floors, so no elevator state is missed
+			MulticastGroup floorStateGroup = MulticastGroup.getConfiguredGroup();
+			if (floorStateGroup != null) {
+				floorStateListener = new FloorStateListener(floorStateGroup, floors.values(), numOfElevators);
+				floorStateListener.start();
 			}
 
 			Runtime.getRuntime().addShutdownHook(new Thread() {
@@ -95,17 +133,39 @@ public class FloorSubsystem {
 							floors.get(FLOOR_NAME + i).terminate();
 						}
 					}
+					if (multiplexedSocket != null) {
+						multiplexedSocket.terminate();
+					}
+					if (floorStateListener != null) {
+						floorStateListener.terminate();
+					}
 					LoggingManager.terminate();
 				}
 			});
 
-			sendPortsToScheduler(floorInitPort);
+			if (multiplexedSocket != null) {
+				logger.info("Registering with SCHEDULER...");
+				for (FloorThread floor : floors.values()) {
+					multiplexedSocket.register(floor.getFloorNumber());
+				}
+			} else {
+				sendPortsToScheduler(floorInitPort);
+			}
 
 		} catch (InputParserException e) {
 			throw new FloorSubsystemException(e);
 		}
 	}
 
+	private static Transport openSocket(InetAddress schedulerAddress, int floorInitPort) throws GeneralException {
+
+		Transport transport = SharedMemoryTransport.getConfiguredTransport(SubsystemConstants.FLOOR, false);
+		if (transport == null && SharedMemoryTransport.isMultiplexed()) {
+			transport = new MultiplexedSocket(FLOOR_NAME + " socket", schedulerAddress, floorInitPort);
+		}
+		return transport;
+	}
+
 	public void shutdown() {
 
 		for (int i = 1; i <= numberOfFloors; i++) {
@@ -113,6 +173,12 @@ public class FloorSubsystem {
 				floors.get(FLOOR_NAME + i).terminate();
 			}
 		}
+		if (multiplexedSocket != null) {
+			multiplexedSocket.terminate();
+		}
+		if (floorStateListener != null) {
+			floorStateListener.terminate();
+		}
 		LoggingManager.terminate();
 
 	}
@@ -152,25 +218,26 @@ public class FloorSubsystem {
 
 			while (!received) {
 
-				byte[] packetData = createPortsArray((HashMap<String, FloorThread>) floors);
-				DatagramPacket packet = new DatagramPacket(packetData, packetData.length, schedulerAddress, initPort);
-				HostActions.send(packet, Optional.empty());
-
-				DatagramPacket recievePacket = new DatagramPacket(new byte[DATA_SIZE], DATA_SIZE);
-				DatagramSocket receiveSocket = new DatagramSocket(initSchedulerPort + 1);
-				logger.info("Waiting to receive port information from SCHEDULER...");
-				receiveSocket.setSoTimeout(PORT_TIMEOUT);
-				receiveSocket.receive(recievePacket);
-				received = true;
-				receiveSocket.close();
-				convertPacketToMap(recievePacket.getData(), recievePacket.getLength());
+				// bound before the ports are sent, so the reply of the scheduler cannot arrive before anyone listens for it
+				try (DatagramSocket receiveSocket = new DatagramSocket(initSchedulerPort + 1)) {
+					byte[] packetData = createPortsArray((HashMap<String, FloorThread>) floors);
+					DatagramPacket packet = new DatagramPacket(packetData, packetData.length, schedulerAddress, initPort);
+					HostActions.send(packet, Optional.empty());
+
+					DatagramPacket recievePacket = new DatagramPacket(new byte[DATA_SIZE], DATA_SIZE);
+					logger.info("Waiting to receive port information from SCHEDULER...");
+					receiveSocket.setSoTimeout(PORT_TIMEOUT);
+					receiveSocket.receive(recievePacket);
+					received = true;
+					convertPacketToMap(recievePacket.getData(), recievePacket.getLength());
+				} catch (SocketTimeoutException ste) {
+					// the scheduler was not listening yet, the ports are sent again
+				}
 			}
 		} catch (ConfigurationParserException e) {
 			logger.info("Unable to get Configuration Parser");
 		} catch (FloorSubsystemException fse) {
 
-		} catch (SocketTimeoutException ste) {
-			sendPortsToScheduler(floorInitPort);
 		}
 	}
 
@@ -210,6 +277,14 @@ public class FloorSubsystem {
 	 */
 	public void readFile() throws InputParserException {
 
+		try {
+			if (ConfigurationParser.getInstance().getBoolean(ConfigurationParser.STREAMING_TRACE)) {
+				trace = InputParser.openTrace();
+				return;
+			}
+		} catch (ConfigurationParserException e) {
+			throw new InputParserException("Error with the configuration file");
+		}
 		events = InputParser.parseCVSFile();
 	}
 
@@ -231,9 +306,46 @@ public class FloorSubsystem {
 	 */
 	public void startFloorThreads() {
 
-		addEvents();
+		if (trace == null) {
+			addEvents();
+		}
 		logger.info("Initializing floor threads.");
-		floors.forEach((k, v) -> v.start());
+		floors.forEach((k, v) -> ExecutionModel.start(v));
+		if (trace != null) {
+			ExecutionModel.start(new Thread(this::streamEvents, "Trace reader"));
+		}
+	}
+
+	/**
+	 * Hands the events of the trace to their floors as the trace is read, each no more than the lookahead before
+	 * its time
+	 */
+	private void streamEvents() {
+
+		SimulationClock clock = SimulationClock.getInstance();
+		long lastTime = -1;
+		long count = 0;
+		try (TraceSource reader = trace) {
+			long lookahead = ConfigurationParser.getInstance().getInt(ConfigurationParser.TRACE_LOOKAHEAD_SECONDS) * 1000L;
+			SimulationRequest request;
+			while ((request = reader.next()) != null) {
+				if (request.getEnd()) {
+					request.setStartTime(new Date(lastTime < 0 ? clock.currentTimeMillis() : lastTime));
+					floors.get(FLOOR_NAME + 1).addEvent(request);
+					break;
+				}
+				lastTime = request.getStartTime().getTime();
+				// the first event is handed over at once, in simulated time it sets the time the clock starts at
+				if (count > 0) {
+					clock.sleep(lastTime - lookahead - clock.currentTimeMillis());
+				}
+				floors.get(FLOOR_NAME + request.getFloor()).addEvent(request);
+				count++;
+			}
+			logger.info("Read " + count + " events of the trace");
+		} catch (InputParserException | ConfigurationParserException | IOException e) {
+			logger.error("Unable to read the trace", e);
+		}
 	}
 
 	public static Map<Integer, Integer> getSchedulerPorts() {
@@ -13,6 +13,7 @@ import org.apache.logging.log4j.Logger;
 
 import core.ConfigurationParser;
 import core.LoggingManager;
+import core.MetricsExporter;
 import ui.view.FloorSystemView;
 
 import java.net.InetAddress;
@@ -27,6 +28,7 @@ public class FloorSubsystemMain {
 		Thread.sleep(500);
 		try {
 			ConfigurationParser configurationParser = ConfigurationParser.getInstance();
+			MetricsExporter.startConfigured("floor");
 			
 			int numFloors = configurationParser.getInt(ConfigurationParser.NUMBER_OF_FLOORS);
 			
@@ -14,27 +14,33 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.SocketException;
-import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.Optional;
+import java.nio.ByteBuffer;
 import java.util.Queue;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import core.Direction;
+import core.Metrics;
 import core.PerformanceTimer;
+import core.RequestTracer;
 import core.Exceptions.CommunicationException;
 import core.Exceptions.GeneralException;
+import core.Exceptions.HostActionsException;
 import core.Messages.FloorMessage;
+import core.Messages.FloorStateMessage;
+import core.Messages.MessageCodec;
 import core.Utils.HostActions;
+import core.Utils.SimulationClock;
 import core.Utils.SimulationRequest;
+import core.Utils.TimingWheel;
+import core.Utils.Transport;
 
 /**
  * The FloorThread represents a floor on which a person can request an elevator.
- * Maintains a queue of events.
+ * Maintains a queue of the events waiting for their time.
  */
 public class FloorThread extends Thread {
 
@@ -45,29 +51,48 @@ public class FloorThread extends Thread {
 	private FloorType floorType;
 	private FloorButton[] floorButtons;
 	DatagramSocket receiveSocket;
+	private Transport multiplexedSocket;
 	private InetAddress schedulerAddress;
-	private Timer atFloorTimer;
+	private TimingWheel atFloorWheel;
 	private final int DATA_SIZE = 1024;
 	private int numOfElevators = 0;
 	private FloorStatus[] elevatorFloorStates;
+	private FloorStateMessage[] elevatorStates;
 	private DatagramPacket floorPacket;
-	private boolean shutdown = false;
+	private FloorMessage floorMessage = new FloorMessage();
+	private ByteBuffer sendBuffer = MessageCodec.allocate();
+	private DatagramPacket sendPacket = new DatagramPacket(sendBuffer.array(), sendBuffer.capacity());
+	private volatile boolean shutdown = false;
 	private PerformanceTimer timer;
+	private LongAdder packetsSent;
+	private LongAdder packetsReceived;
 	private boolean firstStart = true;
 
 	/**
 	 * Creates a floor thread
 	 */
-	public FloorThread(String name, int floorNumber, InetAddress schedulerAddress, Timer sharedTimer, int numElev, FloorType floorType) throws GeneralException {
+	public FloorThread(String name, int floorNumber, InetAddress schedulerAddress, TimingWheel sharedWheel, int numElev, FloorType floorType) throws GeneralException {
+
+		this(name, floorNumber, schedulerAddress, sharedWheel, numElev, floorType, null);
+	}
+
+	/**
+	 * Creates a floor thread that talks to the scheduler through the socket shared by all floors
+	 */
+	public FloorThread(String name, int floorNumber, InetAddress schedulerAddress, TimingWheel sharedWheel, int numElev, FloorType floorType,
+			Transport multiplexedSocket) throws GeneralException {
 
 		super(name);
 
-		events = new LinkedList<>();
+		this.multiplexedSocket = multiplexedSocket;
+
+		events = new ConcurrentLinkedQueue<>();
 		this.floorNumber = floorNumber;
 		this.schedulerAddress = schedulerAddress;
-		this.atFloorTimer = sharedTimer;
+		this.atFloorWheel = sharedWheel;
 		this.numOfElevators = numElev;
 		this.elevatorFloorStates = new FloorStatus[numElev];
+		this.elevatorStates = FloorStateMessage.createStates(numElev);
 		for (int i = 0; i < numElev; i++) {
 			this.elevatorFloorStates[i] = new FloorStatus(i + 1, 1, core.Direction.STATIONARY, 0, 0);
 
@@ -86,8 +111,14 @@ public class FloorThread extends Thread {
 		}
 		byte[] b = new byte[DATA_SIZE];
 		this.floorPacket = new DatagramPacket(b, b.length);
-		this.timer = new PerformanceTimer();
+		this.timer = new PerformanceTimer("Floor Interface");
+		this.packetsSent = Metrics.counter(Metrics.key("packets_sent", "subsystem", "floor", "floor", floorNumber));
+		this.packetsReceived = Metrics.counter(Metrics.key("packets_received", "subsystem", "floor", "floor", floorNumber));
 
+		if (multiplexedSocket != null) {
+			this.port = multiplexedSocket.getLocalPort();
+			return;
+		}
 		try {
 			receiveSocket = new DatagramSocket();
 			this.port = receiveSocket.getLocalPort();
@@ -105,14 +136,15 @@ public class FloorThread extends Thread {
 
 		events.add(e);
 
-		this.atFloorTimer.schedule(new TimerTask() {
-			public void run() {
-				try {
-					logger.info("Scheduling request: " + e.toString());
-					serviceRequest(e);
-				} catch (GeneralException e) {
-					logger.error(e);
-				}
+		// the requests of a floor run on one worker of the wheel, in the order of their time
+		SimulationClock.getInstance().schedule(atFloorWheel, floorNumber, () -> {
+			try {
+				// only the requests waiting for their time are kept, so a streamed trace stays in bounded memory
+				events.remove(e);
+				logger.info("Scheduling request: " + e.toString());
+				serviceRequest(e);
+			} catch (GeneralException ge) {
+				logger.error(ge);
 			}
 		}, e.getStartTime());
 
@@ -137,9 +169,12 @@ public class FloorThread extends Thread {
 					firstStart = false;
 				}
 
+				if (floorMessage == null) {
+					continue;
+				}
 				if (floorMessage.getShutdown()) {
 					shutdown = true;
-					atFloorTimer.cancel();
+					atFloorWheel.cancel();
 					break;
 				}
 				updateElevatorFloorState(floorMessage);
@@ -208,24 +243,24 @@ public class FloorThread extends Thread {
 
 	private void serviceRequest(SimulationRequest event) throws GeneralException {
 
-		FloorMessage floorPacket = null;
-		byte[] temp = new byte[DATA_SIZE]; // data to be sent to the Scheduler
-		byte[] data = new byte[DATA_SIZE]; // data to be sent to the Scheduler
-
+		// requests of a floor are sent from one worker of the shared wheel, so the send buffer is never used concurrently
 		if (event.getEnd()) {
-			data = "End".getBytes();
+			MessageCodec.encodeControl(sendBuffer, MessageCodec.END);
 		} else {
 			turnOnFloorButton(event);
-			floorPacket = new FloorMessage(event.getFloorButton(), event.getFloor(), event.getCarButton(), event.getErrorCode(), event.getErrorElevator());
-			data = floorPacket.generatePacketData();
+			FloorMessage.encode(sendBuffer, event.getFloorButton(), event.getFloor(), event.getCarButton(), 0, event.getErrorCode(), event.getErrorElevator(),
+					RequestTracer.nextRequestId(), RequestTracer.now());
 		}
+		packetsSent.increment();
 
-		DatagramPacket tempPacket = new DatagramPacket(temp, temp.length);
-		tempPacket.setData(data);
-		tempPacket.setAddress(this.schedulerAddress);
-		tempPacket.setPort(FloorSubsystem.getSchedulerPorts().get(floorNumber));
-		logger.info("Buffer Data: " + Arrays.toString(data));
-		HostActions.send(tempPacket, Optional.of(receiveSocket));
+		if (multiplexedSocket != null) {
+			multiplexedSocket.send(floorNumber, sendBuffer.array(), sendBuffer.limit());
+			return;
+		}
+		sendPacket.setData(sendBuffer.array(), 0, sendBuffer.limit());
+		sendPacket.setAddress(this.schedulerAddress);
+		sendPacket.setPort(FloorSubsystem.getSchedulerPorts().get(floorNumber));
+		HostActions.send(sendPacket, receiveSocket);
 	}
 
 	/**
@@ -247,7 +282,10 @@ public class FloorThread extends Thread {
 	}
 
 	public void terminate() {
-		receiveSocket.close();
+		shutdown = true;
+		if (receiveSocket != null) {
+			receiveSocket.close();
+		}
 		try {
 			timer.print("Floor Interface: ");
 		} catch (Exception e) {
@@ -258,7 +296,7 @@ public class FloorThread extends Thread {
 	 * updates the current position of the elevator as the floor sees it index =
 	 * elevNum-1
 	 */
-	private void updateElevatorFloorState(FloorMessage floorMessage) {
+	public void updateElevatorFloorState(FloorMessage floorMessage) {
 		synchronized (elevatorFloorStates) {
 			int index = floorMessage.getElevatorNum() - 1;
 			this.elevatorFloorStates[index].setFloorStatus(floorMessage.getSourceFloor());
@@ -270,9 +308,27 @@ public class FloorThread extends Thread {
 
 	public FloorMessage receivePacket(DatagramPacket packet) throws IOException, CommunicationException {
 
-		this.receiveSocket.receive(packet);
+		if (multiplexedSocket != null) {
+			try {
+				packet = multiplexedSocket.receive(floorNumber, 0);
+			} catch (HostActionsException e) {
+				throw new CommunicationException(e);
+			}
+		} else {
+			packet.setLength(DATA_SIZE);
+			this.receiveSocket.receive(packet);
+		}
+		packetsReceived.increment();
+
+		if (MessageCodec.getType(packet.getData(), packet.getLength()) == MessageCodec.FLOOR_STATE) {
+			FloorStateMessage state = FloorStateMessage.decode(elevatorStates, packet.getData(), packet.getLength());
+			return state == null ? null : state.toFloorMessage(floorMessage);
+		}
+		return floorMessage.decode(packet.getData(), packet.getLength());
+	}
 
-		return new FloorMessage(packet.getData(), packet.getLength());
+	public boolean isShutdown() {
+		return shutdown;
 	}
 
 	public FloorStatus[] getFloorStatus() {
@@ -0,0 +1,22 @@
+//****************************************************************************
+//
+// Filename: DispatchStrategy.java
+//
+// Description: Interface for the rules that assign a request to an elevator
+//
+//***************************************************************************
+package core.Subsystems.SchedulerSubsystem;
+
+/**
+ * Decides which elevator should serve a request. The strategy is picked by the DispatchStrategy tag
+ * in Configuration.xml, see DispatchStrategyFactory
+ */
+public interface DispatchStrategy {
+
+	/**
+	 * @param request the request to be scheduled
+	 * @param scheduler the scheduler holding the elevator states
+	 * @return the selected Elevator, or null if the request has to wait for an elevator to free up
+	 */
+	public Elevator selectElevator(SchedulerRequest request, SchedulerSubsystem scheduler);
+}
@@ -0,0 +1,49 @@
+//****************************************************************************
+//
+// Filename: DispatchStrategyFactory.java
+//
+// Description: Creates the dispatch strategy named in the configuration
+//
+//***************************************************************************
+package core.Subsystems.SchedulerSubsystem;
+
+import core.ConfigurationParser;
+import core.Exceptions.ConfigurationParserException;
+import core.Exceptions.SchedulerSubsystemException;
+
+public class DispatchStrategyFactory {
+
+	public static final String NEAREST_CAR = "NearestCar";
+	public static final String ESTIMATED_TIME_OF_ARRIVAL = "EstimatedTimeOfArrival";
+
+	/**
+	 * Creates the strategy set by the DispatchStrategy tag in Configuration.xml
+	 * @return DispatchStrategy
+	 * @throws SchedulerSubsystemException
+	 */
+	public static DispatchStrategy getConfiguredStrategy() throws SchedulerSubsystemException {
+
+		try {
+			return getStrategy(ConfigurationParser.getInstance().getString(ConfigurationParser.DISPATCH_STRATEGY));
+		} catch (ConfigurationParserException e) {
+			throw new SchedulerSubsystemException("Unable to read the dispatch strategy", e);
+		}
+	}
+
+	public static DispatchStrategy getStrategy(String name) throws SchedulerSubsystemException {
+
+		if (NEAREST_CAR.equalsIgnoreCase(name)) {
+			return new NearestCarStrategy();
+		} else if (ESTIMATED_TIME_OF_ARRIVAL.equalsIgnoreCase(name)) {
+			try {
+				ConfigurationParser configurationParser = ConfigurationParser.getInstance();
+				return new EstimatedTimeOfArrivalStrategy(
+						configurationParser.getInt(ConfigurationParser.ELEVATOR_FLOOR_TRAVEL_TIME_SECONDS),
+						configurationParser.getInt(ConfigurationParser.ELEVATOR_DOOR_TIME_SECONDS));
+			} catch (ConfigurationParserException e) {
+				throw new SchedulerSubsystemException("Unable to read the elevator timings", e);
+			}
+		}
+		throw new SchedulerSubsystemException("Unknown dispatch strategy: " + name);
+	}
+}
@@ -13,6 +13,8 @@ public class Elevator {
 	private int destFloor;
 	private Direction requestDirection;
 	private int numRequests = 0;
+	// set once the scheduler published this object as a snapshot, see freeze
+	private boolean frozen = false;
 
 	public Elevator(int i, int currentFloor, int destFloor, Direction currentDirection) {
 		super();
@@ -22,11 +24,22 @@ public class Elevator {
 		this.requestDirection = currentDirection;
 	}
 
+	/**
+	 * Copies the state of another elevator, the scheduler publishes such copies as snapshots. The copy can be
+	 * modified even if the elevator is frozen
+	 * @param elevator
+	 */
+	public Elevator(Elevator elevator) {
+		this(elevator.elevatorId, elevator.currentFloor, elevator.destFloor, elevator.requestDirection);
+		this.numRequests = elevator.numRequests;
+	}
+
 	public int getElevatorId() {
 		return elevatorId;
 	}
 
 	public void setElevatorId(int elevatorId) {
+		checkNotFrozen();
 		this.elevatorId = elevatorId;
 	}
 
@@ -35,6 +48,7 @@ public class Elevator {
 	}
 
 	public void setCurrentFloor(int currentFloor) {
+		checkNotFrozen();
 		this.currentFloor = currentFloor;
 	}
 
@@ -43,6 +57,7 @@ public class Elevator {
 	}
 
 	public void setRequestDirection(Direction currentDirection) {
+		checkNotFrozen();
 		this.requestDirection = currentDirection;
 	}
 
@@ -50,10 +65,12 @@ public class Elevator {
 		return destFloor;
 	}
 	public void setDestFloor(int destFloor) {
+		checkNotFrozen();
 		this.destFloor = destFloor;
 	}
 
 	public void incRequests() {
+		checkNotFrozen();
 		numRequests++;
 	}
 	
@@ -62,9 +79,30 @@ public class Elevator {
 	}
 	
 	public void setNumRequests(int requests) {
+		checkNotFrozen();
 		numRequests = requests;
 	}
 	
+	/**
+	 * Makes the elevator read only, the scheduler freezes its snapshots before publishing them so that every
+	 * reader sees the state the snapshot was published with
+	 * @return this elevator
+	 */
+	public Elevator freeze() {
+		frozen = true;
+		return this;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	private void checkNotFrozen() {
+		if (frozen) {
+			throw new IllegalStateException("Elevator " + elevatorId + " is a published snapshot and cannot be modified");
+		}
+	}
+
 	@Override
 	public String toString() {
 		return "Elevator " + elevatorId + " current floor: " + currentFloor + " destination floor: " + destFloor
@@ -0,0 +1,204 @@
+//****************************************************************************
+//
+// Filename: ElevatorIndex.java
+//
+// Description: Spatial index of the elevators known to the scheduler, keyed
+//              by direction and current floor
+//
+//***************************************************************************
+package core.Subsystems.SchedulerSubsystem;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import core.Direction;
+
+/**
+ * Keeps one floor-sorted tree per travel direction plus one for idle cars, so the scheduler can answer
+ * "nearest idle car" and "nearest car already travelling toward this floor" in logarithmic time instead
+ * of walking every elevator for every hall call.
+ *
+ * An elevator is idle when it has no requests assigned to it, otherwise it is filed under its request direction.
+ * Elevators that have requests but no direction yet are tracked, but are never returned as candidates.
+ *
+ * Lookups share a read lock, so the dispatch decisions of several floor pipelines run in parallel and only wait
+ * for the short updates of a car that moved.
+ */
+public class ElevatorIndex {
+
+	private TreeMap<Integer, TreeSet<Integer>> idleElevators = new TreeMap<Integer, TreeSet<Integer>>();
+	private TreeMap<Integer, TreeSet<Integer>> upElevators = new TreeMap<Integer, TreeSet<Integer>>();
+	private TreeMap<Integer, TreeSet<Integer>> downElevators = new TreeMap<Integer, TreeSet<Integer>>();
+	private Map<Integer, IndexEntry> entries = new HashMap<Integer, IndexEntry>();
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Lock readLock = lock.readLock();
+	private final Lock writeLock = lock.writeLock();
+
+	/**
+	 * Files the elevator under its current floor and direction, replacing wherever it was indexed before
+	 * @param elevator
+	 */
+	public void update(Elevator elevator) {
+
+		TreeMap<Integer, TreeSet<Integer>> tree = getTree(elevator);
+		IndexEntry entry = new IndexEntry(tree, elevator.getCurrentFloor());
+		writeLock.lock();
+		try {
+			removeEntry(elevator.getElevatorId());
+			if (tree != null) {
+				TreeSet<Integer> ids = tree.get(entry.floor);
+				if (ids == null) {
+					ids = new TreeSet<Integer>();
+					tree.put(entry.floor, ids);
+				}
+				ids.add(elevator.getElevatorId());
+			}
+			entries.put(elevator.getElevatorId(), entry);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the elevator from the index, i.e. when it is taken out of service
+	 * @param elevatorId
+	 */
+	public void remove(int elevatorId) {
+
+		writeLock.lock();
+		try {
+			removeEntry(elevatorId);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	private void removeEntry(int elevatorId) {
+
+		IndexEntry entry = entries.remove(elevatorId);
+		if (entry != null && entry.tree != null) {
+			TreeSet<Integer> ids = entry.tree.get(entry.floor);
+			if (ids != null) {
+				ids.remove(elevatorId);
+				if (ids.isEmpty()) {
+					entry.tree.remove(entry.floor);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the id of the idle elevator closest to the given floor, ties go to the lower floor
+	 * @param floor
+	 * @return elevator id or -1 if no elevator is idle
+	 */
+	public int getNearestIdle(int floor) {
+
+		readLock.lock();
+		try {
+			return getNearest(idleElevators, floor);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the id of the closest elevator that is travelling in the given direction and has not yet passed the floor.
+	 * @param floor
+	 * @param direction
+	 * @return elevator id or -1 if no elevator is approaching the floor
+	 */
+	public int getNearestApproaching(int floor, Direction direction) {
+
+		readLock.lock();
+		try {
+			Map.Entry<Integer, TreeSet<Integer>> entry = null;
+			if (direction == Direction.UP) {
+				entry = upElevators.floorEntry(floor);
+			} else if (direction == Direction.DOWN) {
+				entry = downElevators.ceilingEntry(floor);
+			}
+			return entry == null ? -1 : entry.getValue().first();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the id of the closest elevator travelling in the given direction, whether it has passed the floor or not
+	 * @param floor
+	 * @param direction
+	 * @return elevator id or -1 if no elevator is travelling in that direction
+	 */
+	public int getNearestMoving(int floor, Direction direction) {
+
+		readLock.lock();
+		try {
+			if (direction == Direction.UP) {
+				return getNearest(upElevators, floor);
+			} else if (direction == Direction.DOWN) {
+				return getNearest(downElevators, floor);
+			}
+			return -1;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	public int size() {
+
+		readLock.lock();
+		try {
+			return entries.size();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	private int getNearest(TreeMap<Integer, TreeSet<Integer>> tree, int floor) {
+
+		Map.Entry<Integer, TreeSet<Integer>> below = tree.floorEntry(floor);
+		Map.Entry<Integer, TreeSet<Integer>> above = tree.ceilingEntry(floor);
+		if (below == null && above == null) {
+			return -1;
+		} else if (below == null) {
+			return above.getValue().first();
+		} else if (above == null) {
+			return below.getValue().first();
+		}
+		if (above.getKey() - floor < floor - below.getKey()) {
+			return above.getValue().first();
+		}
+		return below.getValue().first();
+	}
+
+	private TreeMap<Integer, TreeSet<Integer>> getTree(Elevator elevator) {
+
+		if (elevator.getNumRequests() == 0) {
+			return idleElevators;
+		} else if (elevator.getRequestDirection() == Direction.UP) {
+			return upElevators;
+		} else if (elevator.getRequestDirection() == Direction.DOWN) {
+			return downElevators;
+		}
+		return null;
+	}
+
+	/**
+	 * Remembers where an elevator was filed, since the Elevator object itself may have moved on since
+	 */
+	private static class IndexEntry {
+
+		private TreeMap<Integer, TreeSet<Integer>> tree;
+		private int floor;
+
+		private IndexEntry(TreeMap<Integer, TreeSet<Integer>> tree, int floor) {
+			this.tree = tree;
+			this.floor = floor;
+		}
+	}
+}
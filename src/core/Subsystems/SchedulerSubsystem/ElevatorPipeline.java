@@ -11,16 +11,20 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import core.Management;
+import core.Metrics;
 import core.PerformanceTimer;
+import core.RequestTracer;
 import core.ConfigurationParser;
 import core.Direction;
 import core.Exceptions.CommunicationException;
@@ -29,13 +33,21 @@ import core.Exceptions.HostActionsException;
 import core.Exceptions.SchedulerPipelineException;
 import core.Exceptions.SchedulerSubsystemException;
 import core.Messages.ElevatorMessage;
+import core.Messages.FloorStateMessage;
+import core.Messages.ItineraryMessage;
+import core.Messages.MessageCodec;
+import core.Utils.AsyncSender;
+import core.Utils.ExecutionModel;
 import core.Utils.HostActions;
+import core.Utils.ReliableChannel;
+import core.Utils.SimulationClock;
 import core.Utils.SubsystemConstants;
+import core.Utils.Transport;
 
 /**
  * SchedulerPipeline is a receives incoming packets to the Scheduler and parses the data to a SchedulerEvent
  * */
-public class ElevatorPipeline extends Thread implements SchedulerPipeline{
+public class ElevatorPipeline extends Thread implements SchedulerPipeline, ElevatorPipelineMBean {
 
 	private static Logger logger = LogManager.getLogger(ElevatorPipeline.class);
 	private static final String ELEVATOR_PIPELINE = "Elevator pipeline ";
@@ -43,11 +55,20 @@ public class ElevatorPipeline extends Thread implements SchedulerPipeline{
 	
 	private DatagramSocket receiveSocket;
 	private DatagramSocket sendSocket; 
+	private AsyncSender sender;
+	private ReliableChannel channel;
+	private Transport multiplexedSocket;
+	private int receiveTimeout;
 	private int sendPort;
 	private int receivePort;
 	private SchedulerSubsystem schedulerSubsystem;
 	private Elevator elevator;
-	private LinkedList<SchedulerRequest> elevatorEvents;
+	private ElevatorStopQueue elevatorEvents;
+	// set for every added event; an idle pipeline parks on the clock, outside the monitor so it never pins a virtual
+	// thread's carrier, and in simulated time the clock knows it waits
+	private AtomicBoolean eventSignal = new AtomicBoolean(false);
+	private volatile Thread eventWaiter;
+	private SimulationClock clock = SimulationClock.getInstance();
 	private InetAddress elevatorSubsystemAddress;
 	private int portOffset;
 	
@@ -57,28 +78,84 @@ public class ElevatorPipeline extends Thread implements SchedulerPipeline{
 	private PerformanceTimer timer;
 	private boolean transientError = false;
 	private boolean hardErrorRecieved = false;
+	// only used by the pipeline thread, so one message and buffer serve every packet
+	private DatagramPacket receivePacket = new DatagramPacket(new byte[DATA_SIZE], DATA_SIZE);
+	private ElevatorMessage receivedMessage = new ElevatorMessage();
+	private ByteBuffer sendBuffer = MessageCodec.allocate();
+	private ByteBuffer floorStateBuffer = MessageCodec.allocate();
+	private FloorStateMessage floorState;
+	private ByteBuffer itineraryBuffer = ItineraryMessage.allocate();
+	// stops last sent to the car, less the ones it has reported reaching
+	private ItineraryMessage sentItinerary;
+	private ItineraryMessage plannedItinerary;
+	// planned from the queue as of plannedVersion, kept until the queue changes
+	private List<SchedulerRequest> plannedStops = new ArrayList<>();
+	private int plannedVersion = -1;
+	private int itineraryRevision = 0;
+	private boolean itineraryResync = false;
+	// the car has no stop left, as of its last report or the last itinerary sent to it
+	private boolean carIdle = true;
+	private LongAdder packetsSent;
+	private LongAdder packetsReceived;
+	private LongAdder doorFaults;
 
 
 	public ElevatorPipeline(SubsystemConstants objectType, int portOffset, SchedulerSubsystem subsystem) throws SchedulerPipelineException {
 
+		this(objectType, portOffset, subsystem, null);
+	}
+
+	/**
+	 * Creates a pipeline that talks to its elevator through the shared scheduler socket instead of its own ports
+	 * @param objectType
+	 * @param portOffset
+	 * @param subsystem
+	 * @param multiplexedSocket elevator facing socket of the scheduler, null to use a socket pair per pipeline
+	 * @throws SchedulerPipelineException
+	 */
+	public ElevatorPipeline(SubsystemConstants objectType, int portOffset, SchedulerSubsystem subsystem, Transport multiplexedSocket) throws SchedulerPipelineException {
+
 		this.setName(ELEVATOR_PIPELINE + portOffset);
 		this.objectType = objectType;
 		this.pipeNumber = portOffset;
 		this.portOffset = portOffset;
 		this.schedulerSubsystem = subsystem;
+		this.multiplexedSocket = multiplexedSocket;
 
-		this.elevatorEvents = new LinkedList<SchedulerRequest>();
+		this.elevatorEvents = new ElevatorStopQueue();
 		this.elevator = new Elevator(portOffset, 1, -1, Direction.STATIONARY);
-		this.timer = new PerformanceTimer();
+		this.floorState = new FloorStateMessage(portOffset);
+		this.sentItinerary = new ItineraryMessage(portOffset);
+		this.plannedItinerary = new ItineraryMessage(portOffset);
+		this.timer = new PerformanceTimer("The arrival sensor");
+		this.packetsSent = Metrics.counter(Metrics.key("packets_sent", "subsystem", "scheduler", "elevator", portOffset));
+		this.packetsReceived = Metrics.counter(Metrics.key("packets_received", "subsystem", "scheduler", "elevator", portOffset));
+		this.doorFaults = Metrics.counter(Metrics.key("door_faults", "subsystem", "scheduler", "elevator", portOffset));
+		Metrics.gauge(Metrics.key("queue_depth", "subsystem", "scheduler", "elevator", portOffset), () -> {
+			synchronized (elevatorEvents) {
+				return elevatorEvents.size();
+			}
+		});
+		Management.register(this, "ElevatorPipeline", portOffset);
 		try {
-			//need to make sure data is received the same way, matching the ports
-			this.receiveSocket = new DatagramSocket();
 			int elevatorTravelTime = ConfigurationParser.getInstance().getInt(ConfigurationParser.ELEVATOR_FLOOR_TRAVEL_TIME_SECONDS) * 1000;
 			int elevatorDoorTime = ConfigurationParser.getInstance().getInt(ConfigurationParser.ELEVATOR_DOOR_TIME_SECONDS) * 1000;
+			this.receiveTimeout = elevatorTravelTime + elevatorDoorTime + 3500;
 			
-			receiveSocket.setSoTimeout(elevatorTravelTime + elevatorDoorTime + 3500);
-			this.receivePort = receiveSocket.getLocalPort();
-			this.sendSocket = new DatagramSocket();
+			if (multiplexedSocket == null) {
+				//need to make sure data is received the same way, matching the ports
+				this.receiveSocket = new DatagramSocket();
+				receiveSocket.setSoTimeout(receiveTimeout);
+				this.receivePort = receiveSocket.getLocalPort();
+				this.sendSocket = new DatagramSocket();
+				if (ConfigurationParser.getInstance().getBoolean(ConfigurationParser.RELIABLE_TRANSPORT)) {
+					// sent from the receive socket, so the elevator's acknowledgements come back where they are read
+					this.sender = new AsyncSender(getName() + " sender", receiveSocket);
+					this.channel = new ReliableChannel(getName() + " channel", receiveSocket, sender);
+				} else {
+					this.sender = new AsyncSender(getName() + " sender", sendSocket);
+				}
+			}
 		}
 		catch(SocketException | ConfigurationParserException e) {
 			logger.info("Unable to create a DatagramSocket on Scheduler");
@@ -88,48 +165,32 @@ public class ElevatorPipeline extends Thread implements SchedulerPipeline{
 	@Override
 	public void run() {
 
-		this.sendPort = schedulerSubsystem.getElevatorPorts().get(portOffset);
-		this.elevatorSubsystemAddress = schedulerSubsystem.getElevatorSubsystemAddress();
+		if (multiplexedSocket == null) {
+			this.sendPort = schedulerSubsystem.getElevatorPorts().get(portOffset);
+			this.elevatorSubsystemAddress = schedulerSubsystem.getElevatorSubsystemAddress();
+			ExecutionModel.start(sender);
+		}
 		
 
 		while (!shutdown) {
+			boolean idle;
 			synchronized (elevatorEvents) {
-				if(shutdown) {
-					elevatorEvents.notifyAll();
-				}
-				if (elevatorEvents.isEmpty()) {
-					try {
-							elevatorEvents.wait();
-					} catch (InterruptedException e) {
-						logger.error(e.getLocalizedMessage());
-					}
-				}
+				idle = elevatorEvents.isEmpty() && sentItinerary.isEmpty();
+			}
+			// a car without stops needs nothing from the pipeline until an event is added
+			if (idle && !shutdown) {
+				awaitEvent();
 			}
 			if(!shutdown) {
 
 					
 				try {
 
-					if (elevator.getRequestDirection() == Direction.UP) {
-						Collections.sort(elevatorEvents, SchedulerRequest.BY_ASCENDING);
-					} else {
-						Collections.sort(elevatorEvents, SchedulerRequest.BY_DECENDING);
+					sendItinerary();
+					if (sentItinerary.isEmpty()) {
+						continue;
 					}
-					updateSubsystem(elevatorEvents.getFirst());
-					
-					Direction dir =null;
-					if (elevator.getDestFloor() > elevator.getCurrentFloor()) {
-						dir = Direction.UP;
-					} else if (elevator.getDestFloor() < elevator.getCurrentFloor()) {
-						dir = Direction.DOWN;
-					}
-					
-					ElevatorMessage elevatorMessage = new ElevatorMessage(elevator.getCurrentFloor(), elevator.getDestFloor(), elevator.getElevatorId(), dir, elevatorEvents.getFirst().getErrorCode(), elevatorEvents.getFirst().getErrorFloor());	
-					
-					byte[] data = elevatorMessage.generatePacketData();
-					DatagramPacket elevatorPacket = new DatagramPacket(data, data.length, elevatorSubsystemAddress, getSendPort());
-					HostActions.send(elevatorPacket, Optional.of(sendSocket));
-//					logger.debug("ELEVATOR MESSAGE SENT FOR ||"+ this.getName()+ "||:: " + elevatorMessage.toString());
+					long receiveStart = clock.currentTimeMillis();
 					timer.start();
 					ElevatorMessage elevatorRecieveMessage = recieve();
 					timer.end();
@@ -137,21 +198,30 @@ public class ElevatorPipeline extends Thread implements SchedulerPipeline{
 					int elevatorTravelTime = ConfigurationParser.getInstance().getInt(ConfigurationParser.ELEVATOR_FLOOR_TRAVEL_TIME_SECONDS) * 1000;
 					int elevatorDoorTime = ConfigurationParser.getInstance().getInt(ConfigurationParser.ELEVATOR_DOOR_TIME_SECONDS) * 1000;
 					
-					if ((!(timer.getDelta()/1000000 <= (elevatorTravelTime + elevatorDoorTime + 3500)) || hardErrorRecieved)) {
+					if ((!(clock.currentTimeMillis() - receiveStart <= (elevatorTravelTime + elevatorDoorTime + 3500)) || hardErrorRecieved)) {
 						schedulerSubsystem.removeElevator(elevator.getElevatorId());
 						break;
 					}
 					
 					if (elevatorRecieveMessage.getDoorFailureStatus()) {
+						doorFaults.increment();
 						transientError = true;
-						ElevatorMessage msg = new ElevatorMessage();	
-						data = msg.generateForceCloseMessage();
-						DatagramPacket packet = new DatagramPacket(data, data.length, elevatorSubsystemAddress, getSendPort());
-						HostActions.send(packet, Optional.of(sendSocket));
-						elevatorRecieveMessage = recieve();
+						MessageCodec.encodeControl(sendBuffer, MessageCodec.FORCE_CLOSE);
+						send(sendBuffer);
+						// the arrival report follows once the doors are closed
+						continue;
 					}
 
 					if (elevatorRecieveMessage.getArrivalSensor()) {
+						if (!sentItinerary.isEmpty() && sentItinerary.getFloor(0) == elevatorRecieveMessage.getCurrentFloor()) {
+							sentItinerary.removeFirstStop();
+						}
+						// the car reports the stop it heads for, which only differs if an amendment crossed this report;
+						// a car without stops reports -1, which arrives as 0
+						int reportedStop = Math.max(elevatorRecieveMessage.getDestinationFloor(), 0);
+						int expectedStop = sentItinerary.isEmpty() ? 0 : sentItinerary.getFloor(0);
+						itineraryResync = reportedStop != expectedStop;
+						carIdle = reportedStop == 0;
 						updateStates(elevatorRecieveMessage);
 					}
 					
@@ -163,50 +233,149 @@ public class ElevatorPipeline extends Thread implements SchedulerPipeline{
 	}
 
 	
+	/**
+	 * Wakes the pipeline thread if it waits for an event
+	 */
+	private void signalEvent() {
+
+		eventSignal.set(true);
+		Thread waiter = eventWaiter;
+		if (waiter != null) {
+			clock.unpark(waiter);
+		}
+	}
+
+	private void awaitEvent() {
+
+		eventWaiter = Thread.currentThread();
+		// the signal is set before the waiter is read, so one of the two sides sees the other
+		while (!eventSignal.getAndSet(false)) {
+			clock.park(this);
+		}
+		eventWaiter = null;
+	}
+
 	public void sendShutdownMessage() throws CommunicationException, HostActionsException {
 		
-		ElevatorMessage okayMessage = new ElevatorMessage();
-		byte[] data = okayMessage.generateShutdownMessage();
-		DatagramPacket elevatorPacket = new DatagramPacket(data, data.length, elevatorSubsystemAddress, getSendPort());
-		HostActions.send(elevatorPacket, Optional.of(sendSocket));
-		shutdown = true;
-		synchronized (elevatorEvents) {
-			elevatorEvents.notifyAll();
+		// called from outside the pipeline thread, so it does not touch the send buffer
+		send(ByteBuffer.wrap(MessageCodec.generateControlMessage(MessageCodec.SHUTDOWN)));
+		if (channel != null) {
+			// waits for the acknowledgement before the channel stops retransmitting
+			channel.flush(receiveTimeout);
+			channel.close();
+		}
+		if (sender != null) {
+			sender.close();
 		}
+		shutdown = true;
+		signalEvent();
 	}
 	
 	public void addEvent(SchedulerRequest request) {
 		synchronized (elevatorEvents) {
 			elevatorEvents.add(request);
-			elevatorEvents.notifyAll();
 		}
+		signalEvent();
 	}
 	
 	public ElevatorMessage recieve() throws CommunicationException {
 		
-		DatagramPacket packet = new DatagramPacket(new byte[DATA_SIZE], DATA_SIZE);
+		DatagramPacket packet = receivePacket;
 		try {
-			HostActions.receive(packet, receiveSocket);
+			if (multiplexedSocket != null) {
+				packet = multiplexedSocket.receive(pipeNumber, receiveTimeout);
+			} else if (channel != null) {
+				channel.receive(packet, receiveTimeout);
+			} else {
+				packet.setLength(DATA_SIZE);
+				HostActions.receive(packet, receiveSocket);
+			}
 		} catch (HostActionsException e) {
 			hardErrorRecieved = true;
+			// the reused packet still holds the previous message
+			packet.setLength(0);
 		}
-		ElevatorMessage recievedMessage = new ElevatorMessage(packet.getData(), packet.getLength());
+		if (packet.getLength() > 0) {
+			packetsReceived.increment();
+		}
+		ElevatorMessage recievedMessage = receivedMessage.decode(packet.getData(), packet.getLength());
 //		logger.debug("ELEVATOR MESSAGE RECIEVED FOR ||"+ this.getName()+ "||:: " + recievedMessage.toString());
 		return recievedMessage;
 	}
 	
+	private void send(ByteBuffer data) throws HostActionsException {
+		
+		packetsSent.increment();
+		if (multiplexedSocket != null) {
+			multiplexedSocket.send(pipeNumber, data.array(), data.limit());
+		} else if (channel != null) {
+			channel.send(data.array(), data.limit(), elevatorSubsystemAddress, getSendPort());
+		} else {
+			sender.send(data.array(), data.limit(), elevatorSubsystemAddress, getSendPort());
+		}
+	}
+
+	/**
+	 * Plans the stops of the car from its queued events and sends them if they differ from the stops it is serving.
+	 * The plan is only made again once the queue changed: until then the car follows it, and every floor and
+	 * direction it reports lies on the path the plan was made for. A car out of step is planned for again.
+	 */
+	private void sendItinerary() throws HostActionsException, SchedulerSubsystemException, CommunicationException {
+
+		List<SchedulerRequest> stops = plannedStops;
+		synchronized (elevatorEvents) {
+			if (itineraryResync || elevatorEvents.getVersion() != plannedVersion) {
+				stops = elevatorEvents.getItinerary(elevator.getRequestDirection(), elevator.getCurrentFloor(), ItineraryMessage.MAX_STOPS);
+				plannedVersion = elevatorEvents.getVersion();
+			}
+		}
+		if (stops != plannedStops) {
+			plannedStops = stops;
+			plannedItinerary.clear();
+			for (SchedulerRequest stop : stops) {
+				plannedItinerary.addStop(stop.getDestFloor(), stop.getErrorCode(), stop.getErrorFloor());
+			}
+		}
+		if (!itineraryResync && plannedItinerary.hasSameStops(sentItinerary)) {
+			return;
+		}
+		if (plannedItinerary.isEmpty() && carIdle) {
+			// an empty itinerary changes nothing for a car without stops, and an idle pipeline receives no reply
+			sentItinerary.clear();
+			itineraryResync = false;
+			return;
+		}
+		boolean wasIdle = sentItinerary.isEmpty();
+		plannedItinerary.encode(itineraryBuffer, itineraryRevision++, elevator.getCurrentFloor());
+		send(itineraryBuffer);
+		sentItinerary.copyStops(plannedItinerary);
+		itineraryResync = false;
+		carIdle = sentItinerary.isEmpty();
+		if (wasIdle && !stops.isEmpty()) {
+			updateSubsystem(stops.get(0));
+		}
+	}
+
+	private void updateFloorStates(int errorCode, int errorFloor) throws CommunicationException, HostActionsException {
+
+		floorState.encode(floorStateBuffer, elevator.getRequestDirection(), elevator.getCurrentFloor(), elevator.getDestFloor(), errorCode, errorFloor);
+		schedulerSubsystem.updateFloorStates(floorStateBuffer);
+	}
+	
 	private void updateSubsystem(SchedulerRequest packet) throws SchedulerSubsystemException, CommunicationException, HostActionsException {
 		
 		elevator.setDestFloor(packet.getDestFloor());
 		elevator.setRequestDirection(packet.getRequestDirection());
-		elevator.setNumRequests(elevatorEvents.size());
+		synchronized (elevatorEvents) {
+			elevator.setNumRequests(elevatorEvents.size());
+		}
 		schedulerSubsystem.updateElevatorState(elevator);
 		
 		if (packet.getErrorCode() == 1) {
-			schedulerSubsystem.updateFloorStates(new ElevatorMessage(elevator.getCurrentFloor(), elevator.getDestFloor(), elevator.getElevatorId(), elevator.getRequestDirection(), packet.getErrorCode(), packet.getErrorFloor()));
+			updateFloorStates(packet.getErrorCode(), packet.getErrorFloor());
 		}
 		else {
-			schedulerSubsystem.updateFloorStates(new ElevatorMessage(elevator.getCurrentFloor(), elevator.getDestFloor(), elevator.getElevatorId(), elevator.getRequestDirection()));
+			updateFloorStates(0, 0);
 		}
 	}
 	
@@ -215,43 +384,67 @@ public class ElevatorPipeline extends Thread implements SchedulerPipeline{
 		elevator.setCurrentFloor(request.getCurrentFloor());
 		
 		if (!shutdown) {
-			List<SchedulerRequest> tempList = new ArrayList<>();
-			for (SchedulerRequest event: elevatorEvents) {
-				if (event.getDestFloor() == elevator.getCurrentFloor() && event.getRequestDirection().equals(elevator.getRequestDirection())) {
-					tempList.add(event);
-				}
-			}
-			if (!tempList.isEmpty()) {
-//				logger.debug("\n" + "Removed events " + Arrays.toString(tempList.toArray()));
-			}
-			elevatorEvents.removeAll(tempList);
-			
-			if (elevator.getRequestDirection() == Direction.UP) {
-				Collections.sort(elevatorEvents, SchedulerRequest.BY_ASCENDING);
-			} else {
-				Collections.sort(elevatorEvents, SchedulerRequest.BY_DECENDING);
+			SchedulerRequest nextEvent;
+			int numRequests;
+			List<SchedulerRequest> served;
+			synchronized (elevatorEvents) {
+				served = elevatorEvents.drain(elevator.getCurrentFloor(), elevator.getRequestDirection());
+				nextEvent = elevatorEvents.getNextStop(elevator.getRequestDirection(), elevator.getCurrentFloor());
+				numRequests = elevatorEvents.size();
 			}
+			traceStop(request, served);
 			
-			if (!elevatorEvents.isEmpty()) {
-				elevator.setDestFloor(elevatorEvents.getFirst().getDestFloor());
-				elevator.setRequestDirection(elevatorEvents.getFirst().getRequestDirection());
+			if (nextEvent != null) {
+				elevator.setDestFloor(nextEvent.getDestFloor());
+				elevator.setRequestDirection(nextEvent.getRequestDirection());
 			} else {
 				elevator.setRequestDirection(Direction.STATIONARY);
 //				logger.debug("Elevator is stationary");
 			}
-			elevator.setNumRequests(elevatorEvents.size());
+			elevator.setNumRequests(numRequests);
+			// the car reports every floor it reaches, so the scheduler indexes it by its new position here
+			schedulerSubsystem.updateElevatorState(elevator);
 			if (transientError) {
-				schedulerSubsystem.updateFloorStates(new ElevatorMessage(elevator.getCurrentFloor(), elevator.getDestFloor(), elevator.getElevatorId(), elevator.getRequestDirection(), 2, 0));
+				updateFloorStates(2, 0);
 				transientError = false;
 
+			} else if (nextEvent != null && nextEvent.getErrorCode() == 1) {
+				updateFloorStates(nextEvent.getErrorCode(), nextEvent.getErrorFloor());
 			} else {
-				schedulerSubsystem.updateFloorStates(new ElevatorMessage(elevator.getCurrentFloor(), elevator.getDestFloor(), elevator.getElevatorId(), elevator.getRequestDirection()));
+				updateFloorStates(0, 0);
 			}
 		}
 	}
 
+	/**
+	 * Records the stop the car reported for the requests it served, from how long ago the car says it stopped
+	 * @param request arrival report of the car
+	 * @param served requests that ended on the floor of the report
+	 */
+	private void traceStop(ElevatorMessage request, List<SchedulerRequest> served) {
+
+		if (served.isEmpty()) {
+			return;
+		}
+		long now = RequestTracer.now();
+		long stopped = request.getStoppedMillis() < 0 ? now : now - request.getStoppedMillis();
+		long doorsOpened = request.getDoorsOpenMillis() < 0 ? stopped : now - request.getDoorsOpenMillis();
+		RequestTracer tracer = RequestTracer.getInstance();
+		for (SchedulerRequest event : served) {
+			tracer.stopped(event.getrRequestId(), request.getCurrentFloor(), stopped, doorsOpened);
+		}
+	}
+
 	public void terminate() {
-		this.receiveSocket.close();
+		if (this.channel != null) {
+			this.channel.close();
+		}
+		if (this.receiveSocket != null) {
+			this.receiveSocket.close();
+		}
+		if (this.sender != null) {
+			this.sender.close();
+		}
 		try {
 			timer.printMinusTravelTime("The arrival sensor");
 		} catch (ConfigurationParserException e) {
@@ -280,12 +473,125 @@ public class ElevatorPipeline extends Thread implements SchedulerPipeline{
 		return this.receivePort;
 	}
 
+	@Override
 	public int getPipeNumber() {
 		return this.pipeNumber;
 	}
 
-	public LinkedList<SchedulerRequest> getElevatorEvents() {
-		return elevatorEvents;
+	@Override
+	public int getCurrentFloor() {
+		Elevator published = schedulerSubsystem.getElevatorStatusMap().get(pipeNumber);
+		return published == null ? -1 : published.getCurrentFloor();
+	}
+
+	@Override
+	public int getDestinationFloor() {
+		Elevator published = schedulerSubsystem.getElevatorStatusMap().get(pipeNumber);
+		return published == null ? -1 : published.getDestFloor();
+	}
+
+	@Override
+	public String getDirection() {
+		Elevator published = schedulerSubsystem.getElevatorStatusMap().get(pipeNumber);
+		return published == null ? "OUT_OF_SERVICE" : published.getRequestDirection().toString();
+	}
+
+	@Override
+	public String getItinerary() {
+		// replaced by the pipeline thread on every send, so it may be a stop behind
+		return sentItinerary.toString();
+	}
+
+	@Override
+	public boolean isDrained() {
+		return schedulerSubsystem.isDrained(pipeNumber);
+	}
+
+	@Override
+	public String getArrivalSensorLatency() {
+		return timer.getHistogram().summary(0);
+	}
+
+	@Override
+	public String[] dumpQueue() {
+		return SchedulerSubsystem.toLines(getElevatorEvents());
+	}
+
+	@Override
+	public int drain() throws SchedulerSubsystemException, CommunicationException {
+		return schedulerSubsystem.drainElevator(pipeNumber);
+	}
+
+	@Override
+	public void restore() throws SchedulerSubsystemException, CommunicationException {
+		schedulerSubsystem.restoreElevator(pipeNumber);
+	}
+
+	/**
+	 * Gets a copy of the events queued on this elevator
+	 * @return List<SchedulerRequest>
+	 */
+	public List<SchedulerRequest> getElevatorEvents() {
+		synchronized (elevatorEvents) {
+			return elevatorEvents.toList();
+		}
+	}
+
+	@Override
+	public int getQueuedEventCount() {
+		synchronized (elevatorEvents) {
+			return elevatorEvents.size();
+		}
+	}
+
+	/**
+	 * Removes the requests the car has not picked up yet, i.e. when it is drained. A request assigned to a car away
+	 * from its floor is queued with a pickup leg carrying the same id, which ends on the floor of the request and
+	 * is drained once the car gets there.
+	 * @return the requests without their pickup legs
+	 */
+	public List<SchedulerRequest> drainWaitingEvents() {
+		List<SchedulerRequest> waiting = new ArrayList<>();
+		synchronized (elevatorEvents) {
+			Map<Long, SchedulerRequest> byId = new HashMap<>();
+			for (SchedulerRequest event : elevatorEvents.toList()) {
+				SchedulerRequest other = byId.put(event.getrRequestId(), event);
+				if (other == null) {
+					continue;
+				}
+				// the pickup leg heads for the floor of the request, the request itself for its target floor
+				SchedulerRequest request = event.getDestFloor() == event.getTargetFloor() ? event : other;
+				elevatorEvents.remove(event);
+				elevatorEvents.remove(other);
+				waiting.add(request);
+			}
+		}
+		signalEvent();
+		return waiting;
+	}
+
+	/**
+	 * Removes and returns every event queued on this elevator, i.e. when it is taken out of service
+	 * @return List<SchedulerRequest>
+	 */
+	public List<SchedulerRequest> drainEvents() {
+		synchronized (elevatorEvents) {
+			return elevatorEvents.drainAll();
+		}
+	}
+
+	/**
+	 * Gets a copy of the destination floors of the events queued on this elevator
+	 * @return List<Integer>
+	 */
+	public List<Integer> getQueuedStops() {
+		List<Integer> stops = new ArrayList<>();
+		synchronized (elevatorEvents) {
+			for (SchedulerRequest event : elevatorEvents.toList()) {
+				stops.add(event.getDestFloor());
+			}
+		}
+		return stops;
 	}
 
 }
@@ -0,0 +1,69 @@
+//****************************************************************************
+//
+// Filename: ElevatorPipelineMBean.java
+//
+// Description: Management interface of the pipeline of one elevator,
+//              registered with the platform MBean server
+//
+//***************************************************************************
+package core.Subsystems.SchedulerSubsystem;
+
+import core.Exceptions.CommunicationException;
+import core.Exceptions.SchedulerSubsystemException;
+
+/**
+ * State of a car as the scheduler sees it, see core.Management
+ */
+public interface ElevatorPipelineMBean {
+
+	public int getPipeNumber();
+
+	/**
+	 * @return floor of the last published state, -1 once the car is out of service
+	 */
+	public int getCurrentFloor();
+
+	public int getDestinationFloor();
+
+	/**
+	 * @return direction of the last published state, OUT_OF_SERVICE once the car is removed
+	 */
+	public String getDirection();
+
+	public int getQueuedEventCount();
+
+	/**
+	 * @return floors of the stops last sent to the car
+	 */
+	public String getItinerary();
+
+	/**
+	 * @return true while the car is taken out of dispatch
+	 */
+	public boolean isDrained();
+
+	/**
+	 * @return summary of the arrival sensor timer, shared by the pipelines of the process
+	 */
+	public String getArrivalSensorLatency();
+
+	/**
+	 * @return the events queued on the car, one per line
+	 */
+	public String[] dumpQueue();
+
+	/**
+	 * Takes the car out of dispatch, see SchedulerSubsystem.drainElevator
+	 * @return number of requests moved to other cars
+	 * @throws SchedulerSubsystemException
+	 * @throws CommunicationException
+	 */
+	public int drain() throws SchedulerSubsystemException, CommunicationException;
+
+	/**
+	 * Puts the car back into dispatch
+	 * @throws SchedulerSubsystemException
+	 * @throws CommunicationException
+	 */
+	public void restore() throws SchedulerSubsystemException, CommunicationException;
+}
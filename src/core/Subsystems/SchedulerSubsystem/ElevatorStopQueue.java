@@ -0,0 +1,247 @@
+//****************************************************************************
+//
+// Filename: ElevatorStopQueue.java
+//
+// Description: LOOK ordered queue of the events assigned to one elevator
+//
+//***************************************************************************
+package core.Subsystems.SchedulerSubsystem;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import core.Direction;
+
+/**
+ * Holds the events of one elevator in an up-sweep and a down-sweep tree keyed by source floor, so the next
+ * event is found in O(log n) instead of sorting the whole list on every hop. The up-sweep is served from its
+ * lowest floor and the down-sweep from its highest, the other sweep is only served once the current one is empty.
+ *
+ * A second set of trees keyed by destination floor lets every event that ends on the floor an elevator
+ * arrives at be drained in one step.
+ *
+ * Not thread safe, the owning ElevatorPipeline synchronizes on it.
+ */
+public class ElevatorStopQueue {
+
+	private TreeMap<Integer, LinkedList<SchedulerRequest>> upSweep = new TreeMap<Integer, LinkedList<SchedulerRequest>>();
+	private TreeMap<Integer, LinkedList<SchedulerRequest>> downSweep = new TreeMap<Integer, LinkedList<SchedulerRequest>>();
+	private Map<Direction, TreeMap<Integer, LinkedList<SchedulerRequest>>> arrivals = new EnumMap<Direction, TreeMap<Integer, LinkedList<SchedulerRequest>>>(Direction.class);
+	private int size = 0;
+	private int version = 0;
+
+	public ElevatorStopQueue() {
+
+		for (Direction direction : Direction.values()) {
+			arrivals.put(direction, new TreeMap<Integer, LinkedList<SchedulerRequest>>());
+		}
+	}
+
+	public void add(SchedulerRequest event) {
+
+		put(getSweep(event), event.getSourceFloor(), event);
+		put(arrivals.get(event.getRequestDirection()), event.getDestFloor(), event);
+		size++;
+		version++;
+	}
+
+	/**
+	 * Gets the event the elevator should serve next without removing it. An elevator going up continues with the
+	 * lowest up-sweep event and one going down with the highest down-sweep event; a stationary elevator starts with
+	 * the event closest to it.
+	 * @param direction current direction of the elevator
+	 * @param currentFloor current floor of the elevator
+	 * @return SchedulerRequest or null if the queue is empty
+	 */
+	public SchedulerRequest getNextStop(Direction direction, int currentFloor) {
+
+		Map.Entry<Integer, LinkedList<SchedulerRequest>> entry;
+		if (direction == Direction.UP) {
+			entry = upSweep.isEmpty() ? downSweep.lastEntry() : upSweep.firstEntry();
+		} else if (direction == Direction.DOWN) {
+			entry = downSweep.isEmpty() ? upSweep.firstEntry() : downSweep.lastEntry();
+		} else {
+			entry = getClosest(currentFloor);
+		}
+		return entry == null ? null : entry.getValue().getFirst();
+	}
+
+	/**
+	 * Removes every event travelling in the given direction that ends on the given floor
+	 * @param floor
+	 * @param direction
+	 * @return the removed events
+	 */
+	public List<SchedulerRequest> drain(int floor, Direction direction) {
+
+		LinkedList<SchedulerRequest> served = arrivals.get(direction).remove(floor);
+		if (served == null) {
+			return new ArrayList<SchedulerRequest>();
+		}
+		for (SchedulerRequest event : served) {
+			remove(getSweep(event), event.getSourceFloor(), event);
+			size--;
+		}
+		version++;
+		return served;
+	}
+
+	/**
+	 * Plans the stops of an elevator from the queued events without removing them. The elevator is followed floor
+	 * by floor the same way the events are served: it heads for the destination of the next event, events ending on
+	 * a floor it reaches are drained and make that floor a stop, and the next event is picked again on every floor.
+	 * @param direction current direction of the elevator
+	 * @param currentFloor current floor of the elevator
+	 * @param maxStops
+	 * @return the event each stop is made for, in the order the elevator reaches them
+	 */
+	public List<SchedulerRequest> getItinerary(Direction direction, int currentFloor, int maxStops) {
+
+		ElevatorStopQueue plan = new ElevatorStopQueue();
+		for (SchedulerRequest event : toList()) {
+			plan.add(event);
+		}
+		List<SchedulerRequest> stops = new ArrayList<SchedulerRequest>();
+		int floor = currentFloor;
+		while (!plan.isEmpty() && stops.size() < maxStops) {
+			SchedulerRequest next = plan.getNextStop(direction, floor);
+			direction = next.getRequestDirection();
+			floor += Integer.signum(next.getDestFloor() - floor);
+			List<SchedulerRequest> served = plan.drain(floor, direction);
+			if (floor == next.getDestFloor()) {
+				stops.add(next);
+			} else if (!served.isEmpty()) {
+				stops.add(served.get(0));
+			}
+		}
+		return stops;
+	}
+
+	/**
+	 * Removes one event from the queue
+	 * @param event
+	 * @return false if the event was not queued
+	 */
+	public boolean remove(SchedulerRequest event) {
+
+		if (!remove(getSweep(event), event.getSourceFloor(), event)) {
+			return false;
+		}
+		remove(arrivals.get(event.getRequestDirection()), event.getDestFloor(), event);
+		size--;
+		version++;
+		return true;
+	}
+
+	/**
+	 * Removes every event from the queue
+	 * @return the removed events
+	 */
+	public List<SchedulerRequest> drainAll() {
+
+		List<SchedulerRequest> events = toList();
+		upSweep.clear();
+		downSweep.clear();
+		for (TreeMap<Integer, LinkedList<SchedulerRequest>> tree : arrivals.values()) {
+			tree.clear();
+		}
+		size = 0;
+		version++;
+		return events;
+	}
+
+	/**
+	 * Gets a copy of the queued events in serving order for an elevator going up
+	 * @return List<SchedulerRequest>
+	 */
+	public List<SchedulerRequest> toList() {
+
+		List<SchedulerRequest> events = new ArrayList<SchedulerRequest>(size);
+		for (LinkedList<SchedulerRequest> floorEvents : upSweep.values()) {
+			events.addAll(floorEvents);
+		}
+		for (LinkedList<SchedulerRequest> floorEvents : downSweep.descendingMap().values()) {
+			events.addAll(floorEvents);
+		}
+		return events;
+	}
+
+	public boolean isEmpty() {
+
+		return size == 0;
+	}
+
+	public int size() {
+
+		return size;
+	}
+
+	/**
+	 * @return a number that changes whenever an event is added or removed, so a plan made from the queue can be
+	 * kept until then
+	 */
+	public int getVersion() {
+
+		return version;
+	}
+
+	private Map.Entry<Integer, LinkedList<SchedulerRequest>> getClosest(int floor) {
+
+		Map.Entry<Integer, LinkedList<SchedulerRequest>> closest = getCloser(downSweep.floorEntry(floor), downSweep.ceilingEntry(floor), floor);
+		closest = getCloser(closest, upSweep.floorEntry(floor), floor);
+		return getCloser(closest, upSweep.ceilingEntry(floor), floor);
+	}
+
+	private static Map.Entry<Integer, LinkedList<SchedulerRequest>> getCloser(Map.Entry<Integer, LinkedList<SchedulerRequest>> first,
+			Map.Entry<Integer, LinkedList<SchedulerRequest>> second, int floor) {
+
+		if (first == null) {
+			return second;
+		} else if (second == null) {
+			return first;
+		}
+		return Math.abs(second.getKey() - floor) < Math.abs(first.getKey() - floor) ? second : first;
+	}
+
+	private TreeMap<Integer, LinkedList<SchedulerRequest>> getSweep(SchedulerRequest event) {
+
+		return event.getRequestDirection() == Direction.DOWN ? downSweep : upSweep;
+	}
+
+	private static void put(TreeMap<Integer, LinkedList<SchedulerRequest>> tree, int floor, SchedulerRequest event) {
+
+		LinkedList<SchedulerRequest> floorEvents = tree.get(floor);
+		if (floorEvents == null) {
+			floorEvents = new LinkedList<SchedulerRequest>();
+			tree.put(floor, floorEvents);
+		}
+		floorEvents.add(event);
+	}
+
+	private static boolean remove(TreeMap<Integer, LinkedList<SchedulerRequest>> tree, int floor, SchedulerRequest event) {
+
+		LinkedList<SchedulerRequest> floorEvents = tree.get(floor);
+		if (floorEvents == null) {
+			return false;
+		}
+		// SchedulerRequest.equals matches different events with the same floors, so remove by identity
+		boolean removed = false;
+		Iterator<SchedulerRequest> iterator = floorEvents.iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next() == event) {
+				iterator.remove();
+				removed = true;
+				break;
+			}
+		}
+		if (floorEvents.isEmpty()) {
+			tree.remove(floor);
+		}
+		return removed;
+	}
+}
@@ -0,0 +1,103 @@
+//****************************************************************************
+//
+// Filename: EstimatedTimeOfArrivalStrategy.java
+//
+// Description: Dispatch strategy that picks the elevator with the lowest
+//              estimated time to reach the caller
+//
+//***************************************************************************
+package core.Subsystems.SchedulerSubsystem;
+
+import java.util.List;
+
+import core.Direction;
+
+/**
+ * Estimates for every eligible car how long it will take to reach the source floor of a request, counting
+ * the floors it has to travel and the door cycles for the stops already queued on the way, and picks the
+ * car with the lowest estimate.
+ *
+ * Eligible cars are the same as for NearestCarStrategy: idle cars and cars travelling in the request direction,
+ * except the cars an operator drained.
+ */
+public class EstimatedTimeOfArrivalStrategy implements DispatchStrategy {
+
+	private int floorTravelTime;
+	private int doorTime;
+
+	/**
+	 * @param floorTravelTime seconds to travel one floor
+	 * @param doorTime seconds the doors stay open at a stop
+	 */
+	public EstimatedTimeOfArrivalStrategy(int floorTravelTime, int doorTime) {
+
+		this.floorTravelTime = floorTravelTime;
+		this.doorTime = doorTime;
+	}
+
+	@Override
+	public Elevator selectElevator(SchedulerRequest request, SchedulerSubsystem scheduler) {
+
+		Elevator selectedElevator = null;
+		long bestTime = Long.MAX_VALUE;
+		for (Elevator elevator : scheduler.getElevatorStatusMap().values()) {
+			if (elevator.getNumRequests() != 0 && elevator.getRequestDirection() != request.getRequestDirection()) {
+				continue;
+			}
+			if (scheduler.isDrained(elevator.getElevatorId())) {
+				continue;
+			}
+			ElevatorPipeline pipeline = scheduler.getElevatorPipeline(elevator.getElevatorId());
+			List<Integer> stops = pipeline == null ? null : pipeline.getQueuedStops();
+			long time = getEstimatedTime(elevator, stops, request.getSourceFloor(), request.getRequestDirection());
+			if (time < bestTime || (time == bestTime && selectedElevator != null && elevator.getNumRequests() < selectedElevator.getNumRequests())) {
+				bestTime = time;
+				selectedElevator = elevator;
+			}
+		}
+		return selectedElevator;
+	}
+
+	/**
+	 * Estimates the seconds the elevator needs to reach the floor travelling in the given direction.
+	 * A car that is approaching the floor drives straight there, stopping at every queued stop on the way,
+	 * a car that already passed it has to finish its sweep first and serve all of its stops.
+	 * @param elevator
+	 * @param stops the destination floors queued on the elevator, may be null
+	 * @param floor
+	 * @param direction
+	 * @return estimated time in seconds
+	 */
+	public long getEstimatedTime(Elevator elevator, List<Integer> stops, int floor, Direction direction) {
+
+		int currentFloor = elevator.getCurrentFloor();
+		if (elevator.getNumRequests() == 0 || stops == null || stops.isEmpty()) {
+			return (long) Math.abs(currentFloor - floor) * floorTravelTime;
+		}
+
+		boolean approaching = (direction == Direction.UP && currentFloor <= floor)
+				|| (direction == Direction.DOWN && currentFloor >= floor);
+		int floors;
+		int numStops = 0;
+		if (approaching) {
+			floors = Math.abs(floor - currentFloor);
+			for (int stop : stops) {
+				if (Math.min(currentFloor, floor) <= stop && stop <= Math.max(currentFloor, floor) && stop != floor) {
+					numStops++;
+				}
+			}
+		} else {
+			int furthestStop = currentFloor;
+			for (int stop : stops) {
+				if (direction == Direction.UP) {
+					furthestStop = Math.max(furthestStop, stop);
+				} else {
+					furthestStop = Math.min(furthestStop, stop);
+				}
+			}
+			floors = Math.abs(furthestStop - currentFloor) + Math.abs(furthestStop - floor);
+			numStops = stops.size();
+		}
+		return (long) floors * floorTravelTime + (long) numStops * doorTime;
+	}
+}
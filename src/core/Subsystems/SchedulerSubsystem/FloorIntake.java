@@ -0,0 +1,148 @@
+//****************************************************************************
+//
+// Filename: FloorIntake.java
+//
+// Description: Thread that receives the packets of many floor pipelines
+//              through one selector
+//
+//***************************************************************************
+package core.Subsystems.SchedulerSubsystem;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import core.Exceptions.CommunicationException;
+import core.Exceptions.ConfigurationParserException;
+import core.Exceptions.SchedulerPipelineException;
+import core.Utils.AsyncSender;
+import core.Utils.SubsystemConstants;
+
+/**
+ * Serves the receive channels of a group of FloorPipelines from a single thread, so a building with many floors
+ * does not need a blocked thread per floor. The pipelines keep their own ports, so the port handshake is unchanged.
+ */
+public class FloorIntake extends Thread {
+
+	private static Logger logger = LogManager.getLogger(FloorIntake.class);
+	private static final String FLOOR_INTAKE = "Floor intake ";
+	private static final int DATA_SIZE = 50;
+	private static final int SELECT_TIMEOUT = 1000;
+
+	private Selector selector;
+	private DatagramSocket sendSocket;
+	private AsyncSender sender;
+	private List<FloorPipeline> pipelines = new ArrayList<FloorPipeline>();
+	private ByteBuffer buffer = ByteBuffer.allocate(DATA_SIZE);
+	private DatagramPacket packet = new DatagramPacket(buffer.array(), DATA_SIZE);
+
+	public FloorIntake(int intakeNumber) throws SchedulerPipelineException {
+
+		this.setName(FLOOR_INTAKE + intakeNumber);
+		try {
+			this.selector = Selector.open();
+			this.sendSocket = new DatagramSocket();
+			this.sender = new AsyncSender(getName() + " sender", sendSocket);
+		} catch (IOException | ConfigurationParserException e) {
+			throw new SchedulerPipelineException("Unable to create the selector of " + getName(), e);
+		}
+	}
+
+	/**
+	 * Creates a floor pipeline whose packets are received by this intake
+	 * @param portOffset floor number of the pipeline
+	 * @param subsystem
+	 * @return FloorPipeline
+	 * @throws SchedulerPipelineException
+	 */
+	public FloorPipeline createPipeline(int portOffset, SchedulerSubsystem subsystem) throws SchedulerPipelineException {
+
+		FloorPipeline pipeline = new FloorPipeline(SubsystemConstants.FLOOR, portOffset, subsystem, sendSocket, sender);
+		try {
+			pipeline.getReceiveChannel().register(selector, SelectionKey.OP_READ, pipeline);
+		} catch (IOException e) {
+			throw new SchedulerPipelineException("Unable to register floor pipeline " + portOffset + " with " + getName(), e);
+		}
+		pipelines.add(pipeline);
+		return pipeline;
+	}
+
+	@Override
+	public void run() {
+
+		for (FloorPipeline pipeline : pipelines) {
+			pipeline.initialize();
+		}
+		sender.start();
+
+		while (!isShutdown()) {
+			try {
+				if (selector.select(SELECT_TIMEOUT) == 0) {
+					continue;
+				}
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (key.isValid() && key.isReadable()) {
+						receive((DatagramChannel) key.channel(), (FloorPipeline) key.attachment());
+					}
+				}
+			} catch (IOException e) {
+				if (!selector.isOpen()) {
+					break;
+				}
+				logger.error("Unable to receive floor packet", e);
+			}
+		}
+		// every pipeline queued its shutdown message before reporting shut down
+		sender.close();
+		try {
+			selector.close();
+		} catch (IOException e) {
+			logger.error("Unable to close the selector of " + getName(), e);
+		}
+	}
+
+	/**
+	 * Drains every datagram waiting on the channel and hands it to the pipeline it belongs to
+	 */
+	private void receive(DatagramChannel channel, FloorPipeline pipeline) throws IOException {
+
+		while (true) {
+			buffer.clear();
+			InetSocketAddress address = (InetSocketAddress) channel.receive(buffer);
+			if (address == null) {
+				return;
+			}
+			packet.setData(buffer.array(), 0, buffer.position());
+			packet.setSocketAddress(address);
+			try {
+				pipeline.parsePacket(packet);
+			} catch (CommunicationException e) {
+				logger.error("Unable to parse floor packet", e);
+			}
+		}
+	}
+
+	private boolean isShutdown() {
+
+		for (FloorPipeline pipeline : pipelines) {
+			if (!pipeline.isShutdown()) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
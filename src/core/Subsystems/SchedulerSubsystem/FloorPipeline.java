@@ -11,23 +11,29 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.SocketException;
-import java.nio.charset.StandardCharsets;
-import java.util.Optional;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import core.Metrics;
 import core.PerformanceTimer;
+import core.RequestTracer;
 import core.Exceptions.CommunicationException;
+import core.Exceptions.ConfigurationParserException;
 import core.Exceptions.HostActionsException;
 import core.Exceptions.SchedulerPipelineException;
 import core.Exceptions.SchedulerSubsystemException;
-import core.Messages.ElevatorSysMessageFactory;
 import core.Messages.FloorMessage;
-import core.Messages.SubsystemMessage;
-import core.Utils.HostActions;
+import core.Messages.MessageCodec;
+import core.Utils.AsyncSender;
+import core.Utils.ExecutionModel;
 import core.Utils.SubsystemConstants;
+import core.Utils.Transport;
 
 /**
  * SchedulerPipeline is a receives incoming packets to the Scheduler and parses the data to a SchedulerEvent 
@@ -37,9 +43,14 @@ public class FloorPipeline extends Thread implements SchedulerPipeline{
 	private static Logger logger = LogManager.getLogger(FloorPipeline.class);
 	private static final String FLOOR_PIPELINE = "Floor pipeline ";
 	private static final int DATA_SIZE = 50;
+	private static final int RECEIVE_TIMEOUT = 10000;
 
 	private DatagramSocket receiveSocket;
+	private DatagramChannel receiveChannel;
 	private DatagramSocket sendSocket; 
+	private AsyncSender sender;
+	private boolean ownsSender = false;
+	private Transport multiplexedSocket;
 	private int sendPort;
 	private int receivePort;
 	private SchedulerSubsystem schedulerSubsystem;
@@ -48,8 +59,11 @@ public class FloorPipeline extends Thread implements SchedulerPipeline{
 	
 	private SubsystemConstants objectType;
 	private int pipeNumber;
-	private boolean shutdown = false;
+	private volatile boolean shutdown = false;
 	private PerformanceTimer timer;
+	private FloorMessage receivedMessage = new FloorMessage();
+	private LongAdder packetsSent;
+	private LongAdder packetsReceived;
 
 	public FloorPipeline(SubsystemConstants objectType, int portOffset, SchedulerSubsystem subsystem) throws SchedulerPipelineException {
 
@@ -58,30 +72,108 @@ public class FloorPipeline extends Thread implements SchedulerPipeline{
 		this.pipeNumber = portOffset;
 		this.schedulerSubsystem = subsystem;
 		this.portOffset = portOffset;
+		createCounters();
 		
 		try {
 			//need to make sure data is received the same way, matching the ports
 			this.receiveSocket = new DatagramSocket();
 			this.receivePort = receiveSocket.getLocalPort();
 			this.sendSocket = new DatagramSocket();
+			this.sender = new AsyncSender(getName() + " sender", sendSocket);
+			this.ownsSender = true;
 		}
-		catch(SocketException e) {
+		catch(SocketException | ConfigurationParserException e) {
 			logger.info("Unable to create a DatagramSocket on Scheduler");
 		}
 	}
 
+	/**
+	 * Creates a pipeline that is not run as its own thread, its packets are received by a FloorIntake
+	 * through a non-blocking channel and replies are sent from the shared send socket
+	 * @param objectType
+	 * @param portOffset
+	 * @param subsystem
+	 * @param sendSocket socket shared by the pipelines of one FloorIntake
+	 * @param sender sender of the shared socket, owned by the FloorIntake
+	 * @throws SchedulerPipelineException
+	 */
+	public FloorPipeline(SubsystemConstants objectType, int portOffset, SchedulerSubsystem subsystem, DatagramSocket sendSocket, AsyncSender sender) throws SchedulerPipelineException {
+
+		this.setName(FLOOR_PIPELINE + portOffset);
+		this.objectType = objectType;
+		this.pipeNumber = portOffset;
+		this.schedulerSubsystem = subsystem;
+		this.portOffset = portOffset;
+		createCounters();
+		this.sendSocket = sendSocket;
+		this.sender = sender;
+
+		try {
+			this.receiveChannel = DatagramChannel.open();
+			receiveChannel.bind(new InetSocketAddress(0));
+			receiveChannel.configureBlocking(false);
+			this.receiveSocket = receiveChannel.socket();
+			this.receivePort = receiveSocket.getLocalPort();
+		} catch (IOException e) {
+			throw new SchedulerPipelineException("Unable to create a DatagramChannel on Scheduler", e);
+		}
+	}
+
+	/**
+	 * Creates a pipeline that talks to its floor through the shared scheduler socket instead of its own ports
+	 * @param objectType
+	 * @param portOffset
+	 * @param subsystem
+	 * @param multiplexedSocket floor facing socket of the scheduler
+	 */
+	public FloorPipeline(SubsystemConstants objectType, int portOffset, SchedulerSubsystem subsystem, Transport multiplexedSocket) {
+
+		this.setName(FLOOR_PIPELINE + portOffset);
+		this.objectType = objectType;
+		this.pipeNumber = portOffset;
+		this.schedulerSubsystem = subsystem;
+		this.portOffset = portOffset;
+		createCounters();
+		this.multiplexedSocket = multiplexedSocket;
+	}
+
+	private void createCounters() {
+
+		packetsSent = Metrics.counter(Metrics.key("packets_sent", "subsystem", "scheduler", "floor", portOffset));
+		packetsReceived = Metrics.counter(Metrics.key("packets_received", "subsystem", "scheduler", "floor", portOffset));
+	}
+
+	/**
+	 * Reads the floor port and address received in the port handshake, must be called before any packet is handled
+	 */
+	public void initialize() {
+
+		if (multiplexedSocket == null) {
+			this.sendPort = schedulerSubsystem.getFloorPorts().get(portOffset);
+			this.floorSubSystemAddress = schedulerSubsystem.getFloorSubsystemAddress();
+			if (ownsSender) {
+				ExecutionModel.start(sender);
+			}
+		}
+		this.timer = new PerformanceTimer("Floor pipeline");
+	}
+
 	@Override
 	public void run() {
 
-		this.sendPort = schedulerSubsystem.getFloorPorts().get(portOffset);
-		this.floorSubSystemAddress = schedulerSubsystem.getFloorSubsystemAddress();
-		this.timer = new PerformanceTimer();
+		initialize();
 		
+		DatagramPacket receivePacket = new DatagramPacket(new byte[DATA_SIZE], DATA_SIZE);
 		while (!shutdown) {
-			DatagramPacket packet = new DatagramPacket(new byte[DATA_SIZE], DATA_SIZE);
+			DatagramPacket packet = receivePacket;
 			try {
 				timer.start();
-				receive(packet, receiveSocket);
+				if (multiplexedSocket != null) {
+					packet = multiplexedSocket.receive(pipeNumber, RECEIVE_TIMEOUT);
+				} else {
+					packet.setLength(DATA_SIZE);
+					receive(packet, receiveSocket);
+				}
 				timer.end();
 				parsePacket(packet);
 			} catch (CommunicationException | HostActionsException e) {
@@ -94,7 +186,7 @@ public class FloorPipeline extends Thread implements SchedulerPipeline{
 	public static void receive(DatagramPacket packet, DatagramSocket socket) throws HostActionsException {
 
 		try {
-			socket.setSoTimeout(10000);
+			socket.setSoTimeout(RECEIVE_TIMEOUT);
 			socket.receive(packet);
 		} catch (IOException e) {
 			throw new HostActionsException("Data packet not received.", e);
@@ -102,7 +194,7 @@ public class FloorPipeline extends Thread implements SchedulerPipeline{
 	}
 	
 	/**
-	 * Creates and returns a SchedulerEvent based on the DatagramPacket
+	 * Creates and returns a SchedulerEvent based on the DatagramPacket, only called by the one thread receiving for this pipeline
 	 * 
 	 * @return SchedulerEvent
 	 * @throws CommunicationException
@@ -111,18 +203,20 @@ public class FloorPipeline extends Thread implements SchedulerPipeline{
 	 */
 	public void parsePacket(DatagramPacket packet) throws CommunicationException {
 		
+		packetsReceived.increment();
 		try {
 			
-			String str = new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8);
-			if (str.equalsIgnoreCase("End")) {
+			byte type = MessageCodec.getType(packet.getData(), packet.getLength());
+			if (type == MessageCodec.END) {
 				schedulerSubsystem.end();
 				return;
 			}
 
-			SubsystemMessage message = ElevatorSysMessageFactory.generateMessage(packet.getData(), packet.getLength());
-			if (message instanceof FloorMessage) {
-				FloorMessage floorPacket = (FloorMessage) message;
-				SchedulerRequest schedulerPacket = floorPacket.toSchedulerRequest(packet.getAddress(),
+			if (type == MessageCodec.FLOOR) {
+				receivedMessage.decode(packet.getData(), packet.getLength());
+				RequestTracer.getInstance().received(receivedMessage.getRequestId(), receivedMessage.getSourceFloor(),
+						receivedMessage.getTargetFloor(), receivedMessage.getPressedTime(), RequestTracer.now());
+				SchedulerRequest schedulerPacket = receivedMessage.toSchedulerRequest(packet.getAddress(),
 						packet.getPort());
 				schedulerSubsystem.scheduleEvent(schedulerPacket);
 			} 
@@ -131,22 +225,44 @@ public class FloorPipeline extends Thread implements SchedulerPipeline{
 		}
 	}
 
-	public void sendElevatorStateToFloor(FloorMessage fMsg) throws HostActionsException, CommunicationException {
+	/**
+	 * Sends an elevator state that the caller encoded once for all floors
+	 * @param message encoded FloorMessage, copied before this returns
+	 * @throws HostActionsException
+	 */
+	public void sendElevatorStateToFloor(ByteBuffer message) throws HostActionsException {
 		
-		if (floorSubSystemAddress != null) {
-			byte[] data = fMsg.generatePacketData();
-			DatagramPacket fPacket = new DatagramPacket(data, data.length, floorSubSystemAddress, getSendPort());
-			HostActions.send(fPacket, Optional.of(sendSocket));
+		if (shutdown) {
+			return;
+		}
+		packetsSent.increment();
+		if (multiplexedSocket != null) {
+			if (multiplexedSocket.isRegistered(pipeNumber)) {
+				multiplexedSocket.send(pipeNumber, message.array(), message.limit());
+			}
+		} else if (floorSubSystemAddress != null) {
+			sender.send(message.array(), message.limit(), floorSubSystemAddress, getSendPort());
 		}
 	}
 	
 	public void sendShutdownMessage() throws CommunicationException, HostActionsException {
 		
 		FloorMessage message = new FloorMessage();
-		byte[] data = message.generateShutdownMessage();
-		DatagramPacket floorPacket = new DatagramPacket(data, data.length, floorSubSystemAddress, getSendPort());
-		HostActions.send(floorPacket, Optional.of(sendSocket));
+		send(message.generateShutdownMessage());
 		shutdown = true;
+		if (ownsSender) {
+			sender.close();
+		}
+	}
+
+	private void send(byte[] data) throws HostActionsException {
+
+		packetsSent.increment();
+		if (multiplexedSocket != null) {
+			multiplexedSocket.send(pipeNumber, data);
+		} else {
+			sender.send(data, data.length, floorSubSystemAddress, getSendPort());
+		}
 	}
 
 	public SubsystemConstants getObjectType() {
@@ -173,7 +289,23 @@ public class FloorPipeline extends Thread implements SchedulerPipeline{
 		return this.pipeNumber;
 	}
 
+	/**
+	 * @return the channel packets are received on, null unless the pipeline is served by a FloorIntake
+	 */
+	public DatagramChannel getReceiveChannel() {
+		return this.receiveChannel;
+	}
+
+	public boolean isShutdown() {
+		return this.shutdown;
+	}
+
 	public void terminate() {		
-		this.receiveSocket.close();
+		if (this.receiveSocket != null) {
+			this.receiveSocket.close();
+		}
+		if (ownsSender) {
+			sender.close();
+		}
 	}
 }
@@ -0,0 +1,29 @@
+//****************************************************************************
+//
+// Filename: NearestCarStrategy.java
+//
+// Description: Dispatch strategy that picks the closest available elevator
+//
+//***************************************************************************
+package core.Subsystems.SchedulerSubsystem;
+
+/**
+ * Picks the nearest idle car, otherwise the nearest car already travelling toward the source floor
+ * in the request direction, otherwise the nearest car travelling in the request direction at all
+ */
+public class NearestCarStrategy implements DispatchStrategy {
+
+	@Override
+	public Elevator selectElevator(SchedulerRequest request, SchedulerSubsystem scheduler) {
+
+		ElevatorIndex elevatorIndex = scheduler.getElevatorIndex();
+		int elevatorId = elevatorIndex.getNearestIdle(request.getSourceFloor());
+		if (elevatorId == -1) {
+			elevatorId = elevatorIndex.getNearestApproaching(request.getSourceFloor(), request.getRequestDirection());
+		}
+		if (elevatorId == -1) {
+			elevatorId = elevatorIndex.getNearestMoving(request.getSourceFloor(), request.getRequestDirection());
+		}
+		return scheduler.getElevatorStatusMap().get(elevatorId);
+	}
+}
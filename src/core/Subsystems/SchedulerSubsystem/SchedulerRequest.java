@@ -9,7 +9,7 @@ package core.Subsystems.SchedulerSubsystem;
 
 import java.net.DatagramPacket;
 import java.net.InetAddress;
-import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
 
 import core.Direction;
 import core.Messages.ElevatorMessage;
@@ -24,6 +24,8 @@ import core.Utils.SubsystemConstants;
  * Refactored by: Shounak Amladi
  * */
 public class SchedulerRequest implements Comparable<SchedulerRequest>{
+	// ids given here are negative, so they never collide with the positive ids the floors send with their requests
+	private static final AtomicLong untracedIds = new AtomicLong();
 	private SubsystemConstants type;
 	private int sourceFloor = -1;
 	private InetAddress receivedAddress;
@@ -60,7 +62,7 @@ public class SchedulerRequest implements Comparable<SchedulerRequest>{
 		this.receivedPort = receivedPort;
 		this.type = type;
 		this.sourceFloor = sourceFloor;
-		this.requestId = System.currentTimeMillis();
+		this.requestId = untracedIds.decrementAndGet();
 		this.destFloor = Integer.MIN_VALUE;
 		this.requestDirection = requestDirection;
 		this.elevatorNumber = -1;
@@ -76,7 +78,7 @@ public class SchedulerRequest implements Comparable<SchedulerRequest>{
 		this.receivedPort = receivedPort;
 		this.type = type;
 		this.sourceFloor = currentFloor;
-		this.requestId = System.currentTimeMillis() / 1000L;
+		this.requestId = untracedIds.decrementAndGet();
 		this.destFloor = destFloor; //next floor to visit
 		this.requestDirection = requestDirection;
 		this.elevatorNumber = elevNumber;
@@ -121,6 +123,14 @@ public class SchedulerRequest implements Comparable<SchedulerRequest>{
 		return requestId;
 	}
 
+	/**
+	 * Sets the id of the request, such as the one its floor sent or the one of the request it is a leg of
+	 * @param requestId
+	 */
+	public void setRequestId(long requestId) {
+		this.requestId = requestId;
+	}
+
 	/**
 	 * Gets the type of the request
 	 * @param
@@ -198,34 +208,6 @@ public class SchedulerRequest implements Comparable<SchedulerRequest>{
 		return -1;
 	}
 
-	static final Comparator<SchedulerRequest> BY_ASCENDING = new Comparator<SchedulerRequest>() {
-
-		@Override
-		public int compare(SchedulerRequest arg0, SchedulerRequest arg1) {
-			if (arg0.getSourceFloor() > arg1.getSourceFloor()) {
-				return 1;
-			}
-			else if(arg0.getSourceFloor() == arg1.getSourceFloor()) {
-				return 0;
-			}
-			return -1;
-		}
-	};
-	
-	static final Comparator<SchedulerRequest> BY_DECENDING = new Comparator<SchedulerRequest>() {
-
-		@Override
-		public int compare(SchedulerRequest arg0, SchedulerRequest arg1) {
-			if (arg0.getSourceFloor() < arg1.getSourceFloor()) {
-				return 1;
-			}
-			else if(arg0.getSourceFloor() == arg1.getSourceFloor()) {
-				return 0;
-			}
-			return -1;
-		}
-	};
-
 	@Override
 	public boolean equals(Object o) {
 		if(o instanceof SchedulerRequest && o != null) {
@@ -16,45 +16,70 @@ import java.net.InetAddress;
 import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import core.ConfigurationParser;
 import core.Direction;
+import core.LatencyHistogram;
 import core.LoggingManager;
+import core.Management;
+import core.Metrics;
+import core.RequestTracer;
 import core.Exceptions.CommunicationException;
 import core.Exceptions.ConfigurationParserException;
 import core.Exceptions.HostActionsException;
 import core.Exceptions.SchedulerPipelineException;
 import core.Exceptions.SchedulerSubsystemException;
-import core.Messages.ElevatorMessage;
-import core.Messages.FloorMessage;
+import core.Utils.AsyncSender;
 import core.Utils.HostActions;
+import core.Utils.MulticastGroup;
 import core.Utils.SubsystemConstants;
+import core.Utils.Transport;
 import core.Utils.Utils;
 
 /**
  * This creates SchedulerThreads based on the number of elevators and floors and starts it.
  * Schedules requests
  * */
-public class SchedulerSubsystem {
+public class SchedulerSubsystem implements SchedulerSubsystemMBean {
 
 	private static Logger logger = LogManager.getLogger(SchedulerSubsystem.class);
 
 	private ElevatorPipeline[] elevatorListeners;
 	private FloorPipeline[] floorListeners;
-	private static Set<SchedulerRequest> unscheduledEvents = new HashSet<SchedulerRequest>();
-	public HashMap<Integer, Elevator> elevatorStatus = new HashMap<Integer, Elevator>();
+	// unscheduled requests per direction in arrival order, retried when a car that could take them changes
+	private final Map<Direction, Deque<SchedulerRequest>> unscheduledEvents = new EnumMap<Direction, Deque<SchedulerRequest>>(Direction.class);
+	private final Queue<Direction> unblockedDirections = new ConcurrentLinkedQueue<Direction>();
+	private final AtomicLong availabilityEpoch = new AtomicLong();
+	private final LatencyHistogram dispatchTime = Metrics.histogram("Dispatch decision");
+	// published snapshots are frozen, a change replaces the whole entry with a modified copy
+	private final ConcurrentHashMap<Integer, Elevator> elevatorStatus = new ConcurrentHashMap<Integer, Elevator>();
+	private final Map<Integer, Elevator> elevatorStatusView = Collections.unmodifiableMap(elevatorStatus);
+	private ElevatorIndex elevatorIndex = new ElevatorIndex();
+	// cars taken out of dispatch by an operator, they keep their state published but are not indexed
+	private final Set<Integer> drainedElevators = ConcurrentHashMap.newKeySet();
+	private DispatchStrategy dispatchStrategy;
 	private Map<Integer, Integer> elevatorPorts = new HashMap<>();
 	private Map<Integer, Integer> floorPorts = new HashMap<>();
 	private final byte SPACER = (byte) 0;
@@ -63,13 +88,30 @@ public class SchedulerSubsystem {
 	private InetAddress elevatorSubsystemAddress;
 	private InetAddress floorSubsystemAddress;
 	private boolean end = false;
+	// set when elevator states are published to a multicast group instead of to each floor pipeline
+	private MulticastGroup floorStateGroup;
+	private AsyncSender floorStateSender;
 
 	public SchedulerSubsystem(int numElevators) throws SchedulerPipelineException, SchedulerSubsystemException, ConfigurationParserException, HostActionsException, IOException {
 
 		numberOfElevators = numElevators;
+		for (Direction direction : Direction.values()) {
+			unscheduledEvents.put(direction, new ConcurrentLinkedDeque<SchedulerRequest>());
+		}
+		Metrics.gauge(Metrics.key("unscheduled_backlog", "subsystem", "scheduler"), this::getUnscheduledCount);
+		Management.register(this, "Scheduler", 0);
+		dispatchStrategy = DispatchStrategyFactory.getConfiguredStrategy();
 
 		for (int i = 0; i < numberOfElevators; i++) {
-			elevatorStatus.put(i+1, new Elevator(i + 1, 1, -1, Direction.STATIONARY));
+			Elevator elevator = new Elevator(i + 1, 1, -1, Direction.STATIONARY).freeze();
+			elevatorStatus.put(i+1, elevator);
+			elevatorIndex.update(elevator);
+		}
+
+		floorStateGroup = MulticastGroup.getConfiguredGroup();
+		if (floorStateGroup != null) {
+			floorStateSender = new AsyncSender("Floor state sender", floorStateGroup.createSendSocket());
+			floorStateSender.start();
 		}
 	}
 
@@ -91,10 +133,21 @@ public class SchedulerSubsystem {
 						listener.terminate();
 					}
 				}
+				SchedulerSubsystem.this.terminate();
 				LoggingManager.terminate();
 			}
 		});
 	}
+
+	/**
+	 * Stops publishing elevator states, the states already queued are still sent
+	 */
+	public void terminate() {
+		if (floorStateSender != null) {
+			floorStateSender.close();
+		}
+		RequestTracer.getInstance().close();
+	}
 	
 	public void start(int elevatorInitPort, int floorInitPort) {
 		
@@ -111,6 +164,22 @@ public class SchedulerSubsystem {
 		}
 	}
 	
+	/**
+	 * Starts the shared scheduler sockets and waits until every elevator and every floor has registered on them
+	 * @param elevatorSocket
+	 * @param floorSocket
+	 * @throws InterruptedException
+	 */
+	public void start(Transport elevatorSocket, Transport floorSocket) throws InterruptedException {
+
+		elevatorSocket.start();
+		floorSocket.start();
+		logger.info("Waiting for " + SubsystemConstants.ELEVATOR + " to register...");
+		elevatorSocket.awaitRegistrations(elevatorListeners.length);
+		logger.info("Waiting for " + SubsystemConstants.FLOOR + " to register...");
+		floorSocket.awaitRegistrations(floorListeners.length);
+	}
+
 	public void shutDown() {
 
 		for (ElevatorPipeline listener: elevatorListeners) {
@@ -123,6 +192,7 @@ public class SchedulerSubsystem {
 				listener.terminate();
 			}
 		}
+		terminate();
 		
 		LoggingManager.terminate();
 	}
@@ -239,42 +309,39 @@ public class SchedulerSubsystem {
 	 * @formatter:on
 	 */
 
-	public synchronized void scheduleEvent(SchedulerRequest request) throws SchedulerSubsystemException, CommunicationException {
+	public void scheduleEvent(SchedulerRequest request) throws SchedulerSubsystemException, CommunicationException {
 		if(request != null) {
-			Elevator selectedElevator = getBestElevator(request);
-			if (selectedElevator != null) {
-				request.setElevatorNumber(selectedElevator.getElevatorId());
-				if (selectedElevator.getCurrentFloor() != request.getSourceFloor()) {
-					Direction dir = null;
-					if (selectedElevator.getCurrentFloor() > request.getDestFloor()) {
-						dir = Direction.DOWN;
-					} else {
-						dir = Direction.UP;
-					}
-					SchedulerRequest tempRequest = new SchedulerRequest(request.getReceivedAddress(),
-							request.getReceivedPort(), SubsystemConstants.FLOOR, selectedElevator.getCurrentFloor(),
-							dir, request.getSourceFloor(), selectedElevator.getElevatorId(),
-							request.getTargetFloor(), request.getErrorCode(), request.getErrorFloor());
-					elevatorListeners[selectedElevator.getElevatorId() - 1].addEvent(tempRequest);
-					logger.debug("Intermediate event added " + tempRequest.toString() + " FOR Elevator "
-							+ selectedElevator.getElevatorId());
-					selectedElevator.incRequests();
+			long epoch = availabilityEpoch.get();
+			if (!assignEvent(request, request.getErrorCode(), request.getErrorFloor())) {
+				addUnscheduledEvent(request);
+				if (availabilityEpoch.get() != epoch) {
+					// a car changed while this request was being placed, so its retry may have missed it
+					retryUnscheduledEvents(request.getRequestDirection());
 				}
-				logger.debug("Event added " + request.toString() + " FOR Elevator "
-						+ selectedElevator.getElevatorId());
-				elevatorListeners[selectedElevator.getElevatorId() - 1].addEvent(request);
-				selectedElevator.incRequests();
-			} else {
-				unscheduledEvents.add(request);
 			}
+			retryUnblockedEvents();
 		}
 	}
 
 
 	public void removeElevator(int id) throws SchedulerSubsystemException, CommunicationException {
 
-		LinkedList<SchedulerRequest> elevatorEvents = elevatorListeners[id - 1].getElevatorEvents();
-		Elevator selectedElevator = elevatorStatus.get(id);
+		ElevatorPipeline pipeline = getElevatorPipeline(id);
+		Elevator[] removedElevator = new Elevator[1];
+		List<SchedulerRequest> elevatorEvents = new ArrayList<>();
+		// drain the queue in the same step that unpublishes the car, so no assignment can land on it in between
+		elevatorStatus.computeIfPresent(id, (elevatorId, current) -> {
+			removedElevator[0] = current;
+			if (pipeline != null) {
+				elevatorEvents.addAll(pipeline.drainEvents());
+			}
+			elevatorIndex.remove(elevatorId);
+			return null;
+		});
+		Elevator selectedElevator = removedElevator[0];
+		if (selectedElevator == null) {
+			return;
+		}
 		List<SchedulerRequest> tempList = new ArrayList<>();
 		for (SchedulerRequest event: elevatorEvents) {
 			if (event.getDestFloor() == selectedElevator.getCurrentFloor() && event.getRequestDirection().equals(selectedElevator.getRequestDirection())) {
@@ -288,84 +355,310 @@ public class SchedulerSubsystem {
 			logger.debug("\n" + "Removed events " + Arrays.toString(tempList.toArray()));
 		}
 		elevatorEvents.removeAll(tempList);
-		unscheduledEvents.addAll(elevatorEvents);
-		elevatorStatus.remove(id);
+		for (SchedulerRequest event : elevatorEvents) {
+			if (!assignEvent(event, 0, 0)) {
+				addUnscheduledEvent(event);
+			}
+		}
+		retryUnblockedEvents();
+	}
+
+	/**
+	 * Takes a car out of dispatch without taking it out of service: it gets no new requests and the requests it
+	 * has not picked up yet, whose pickup leg is still queued, are given to other cars or wait for one. The car
+	 * still delivers the requests it picked up and keeps publishing its state.
+	 * @param id
+	 * @return number of requests moved off the car, -1 if the car is out of service
+	 * @throws SchedulerSubsystemException
+	 * @throws CommunicationException
+	 */
+	@Override
+	public int drainElevator(int id) throws SchedulerSubsystemException, CommunicationException {
+
+		ElevatorPipeline pipeline = getElevatorPipeline(id);
+		List<SchedulerRequest> waiting = new ArrayList<>();
+		boolean[] found = new boolean[1];
+		// same step as the assignments, so none can land on the car once it is drained
+		elevatorStatus.computeIfPresent(id, (elevatorId, current) -> {
+			found[0] = true;
+			drainedElevators.add(elevatorId);
+			elevatorIndex.remove(elevatorId);
+			Elevator updated = new Elevator(current);
+			if (pipeline != null) {
+				waiting.addAll(pipeline.drainWaitingEvents());
+				updated.setNumRequests(pipeline.getQueuedEventCount());
+			}
+			return updated.freeze();
+		});
+		if (!found[0]) {
+			return -1;
+		}
+		logger.info("Elevator " + id + " drained, moving " + waiting.size() + " waiting requests");
+		for (SchedulerRequest event : waiting) {
+			if (!assignEvent(event, event.getErrorCode(), event.getErrorFloor())) {
+				addUnscheduledEvent(event);
+			}
+		}
+		retryUnblockedEvents();
+		return waiting.size();
+	}
+
+	/**
+	 * Puts a drained car back into dispatch and retries the unscheduled requests, which it may take now
+	 * @param id
+	 * @throws SchedulerSubsystemException
+	 * @throws CommunicationException
+	 */
+	@Override
+	public void restoreElevator(int id) throws SchedulerSubsystemException, CommunicationException {
+
+		if (!drainedElevators.contains(id)) {
+			return;
+		}
+		elevatorStatus.computeIfPresent(id, (elevatorId, current) -> {
+			drainedElevators.remove(elevatorId);
+			Elevator updated = new Elevator(current);
+			publish(null, updated);
+			return updated.freeze();
+		});
+		logger.info("Elevator " + id + " restored");
 		reEvaluateEvents();
 	}
 
+	/**
+	 * @param id
+	 * @return true if the car is taken out of dispatch, see drainElevator
+	 */
+	public boolean isDrained(int id) {
+
+		return drainedElevators.contains(id);
+	}
+
+	/**
+	 * Retries every unscheduled request. Elevator updates only retry the requests their change could unblock,
+	 * see retryUnblockedEvents
+	 * @throws SchedulerSubsystemException
+	 * @throws CommunicationException
+	 */
+	@Override
 	public void reEvaluateEvents() throws SchedulerSubsystemException, CommunicationException {
-		List<SchedulerRequest> tempList = new ArrayList<>();
-		if(!unscheduledEvents.isEmpty()) {
-			for(SchedulerRequest request : unscheduledEvents) {
-				if(request != null) {
-					Elevator selectedElevator = getBestElevator(request);
-					if(selectedElevator != null) {
-						request.setElevatorNumber(selectedElevator.getElevatorId());
-						if(selectedElevator.getCurrentFloor() != request.getSourceFloor()) {
-							Direction dir = null;
-							if(selectedElevator.getCurrentFloor() > request.getDestFloor()) {
-								dir = Direction.DOWN;
-							} else {
-								dir = Direction.UP;
-							}
-							SchedulerRequest tempRequest = new SchedulerRequest(request.getReceivedAddress(), request.getReceivedPort(), SubsystemConstants.FLOOR,
-									selectedElevator.getCurrentFloor(), dir, request.getSourceFloor(), selectedElevator.getElevatorId(), request.getTargetFloor(), 0, 0);
-							elevatorListeners[selectedElevator.getElevatorId() - 1].addEvent(tempRequest);
-							logger.debug("\n" +"Intermediate event added " + tempRequest.toString() + " FOR Elevator " + selectedElevator.getElevatorId());
-							selectedElevator.incRequests();
-						}
-						logger.debug("\n" +"Event added " + request.toString() + " FOR Elevator " + selectedElevator.getElevatorId());
-						elevatorListeners[selectedElevator.getElevatorId() - 1].addEvent(request);
-						tempList.add(request);
-						selectedElevator.incRequests();
-					}else {
-						unscheduledEvents.add(request);
-					}
+		for (Deque<SchedulerRequest> bucket : unscheduledEvents.values()) {
+			// claim the whole bucket, then put the requests no car takes back in front in their original order
+			Deque<SchedulerRequest> failed = new ArrayDeque<>();
+			SchedulerRequest request;
+			while ((request = bucket.pollFirst()) != null) {
+				if (!assignEvent(request, 0, 0)) {
+					failed.push(request);
 				}
 			}
-			unscheduledEvents.removeAll(tempList);
+			while ((request = failed.poll()) != null) {
+				bucket.offerFirst(request);
+			}
 		}
+		retryUnblockedEvents();
 	}
 
-	private Elevator getBestElevator(SchedulerRequest request) {
-		Elevator tempElevator = null;
-		for (int i = 1; i <= numberOfElevators; i++) {
-			Elevator elevator = elevatorStatus.get(i);
-			if (elevator != null) {
-				if(elevator.getNumRequests() == 0) {
-					return elevator;
+	/**
+	 * Retries the unscheduled requests that the elevators changed since the last pass could take: all of them for
+	 * a car that became idle, the ones in its new direction for a car that changed direction.
+	 * @throws SchedulerSubsystemException
+	 * @throws CommunicationException
+	 */
+	private void retryUnblockedEvents() throws SchedulerSubsystemException, CommunicationException {
+		Direction availability;
+		while ((availability = unblockedDirections.poll()) != null) {
+			if (availability == Direction.STATIONARY) {
+				for (Direction direction : Direction.values()) {
+					retryUnscheduledEvents(direction);
 				}
-				if (elevator.getRequestDirection().equals(request.getRequestDirection())) {
-					if (tempElevator == null) {
-						tempElevator = elevator;
-					}
-					if (elevator.getRequestDirection().equals(Direction.DOWN)
-							&& elevator.getCurrentFloor() > request.getSourceFloor()) {
-						if (elevator.getNumRequests() < tempElevator.getNumRequests()) {
-							tempElevator = elevator;
-						}
-					} else if (elevator.getRequestDirection().equals(Direction.UP)
-							&& elevator.getCurrentFloor() < request.getDestFloor()) {
-						if (elevator.getNumRequests() < tempElevator.getNumRequests()) {
-							tempElevator = elevator;
-						}
+			} else {
+				retryUnscheduledEvents(availability);
+			}
+		}
+	}
+
+	/**
+	 * Assigns the requests of one direction in arrival order.
+	 *
+	 * The requests no car takes are put back in front of the bucket in their original order, so a request the
+	 * strategy keeps refusing does not hold back the ones behind it. Requests queued while the pass runs are left
+	 * to the retry of their own scheduleEvent. If a car changed meanwhile the pass is repeated, since the retry for
+	 * that change may have run while the requests were claimed by this pass.
+	 * @param direction
+	 */
+	private void retryUnscheduledEvents(Direction direction) {
+		Deque<SchedulerRequest> bucket = unscheduledEvents.get(direction);
+		while (true) {
+			long epoch = availabilityEpoch.get();
+			Deque<SchedulerRequest> failed = new ArrayDeque<>();
+			SchedulerRequest request;
+			for (int count = bucket.size(); count > 0 && (request = bucket.pollFirst()) != null; count--) {
+				if (!assignEvent(request, 0, 0)) {
+					failed.push(request);
+				}
+			}
+			if (failed.isEmpty()) {
+				return;
+			}
+			while ((request = failed.poll()) != null) {
+				bucket.offerFirst(request);
+			}
+			if (availabilityEpoch.get() == epoch) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Assigns the request to the car picked by the dispatch strategy. The car is only taken if the snapshot the
+	 * strategy chose it from is still the published one, otherwise the strategy is asked again.
+	 * @param request
+	 * @param errorCode error code of the intermediate event
+	 * @param errorFloor error floor of the intermediate event
+	 * @return false if no car can take the request
+	 */
+	private boolean assignEvent(SchedulerRequest request, int errorCode, int errorFloor) {
+		while (true) {
+			Elevator selectedElevator = getBestElevator(request);
+			if (selectedElevator == null) {
+				return false;
+			}
+			boolean[] taken = new boolean[1];
+			elevatorStatus.computeIfPresent(selectedElevator.getElevatorId(), (elevatorId, current) -> {
+				if (current != selectedElevator) {
+					return current;
+				}
+				taken[0] = true;
+				Elevator updated = new Elevator(current);
+				request.setElevatorNumber(elevatorId);
+				RequestTracer.getInstance().assigned(request.getrRequestId(), elevatorId, RequestTracer.now(),
+						current.getCurrentFloor() == request.getSourceFloor());
+				if (current.getCurrentFloor() != request.getSourceFloor()) {
+					Direction dir = null;
+					if (current.getCurrentFloor() > request.getDestFloor()) {
+						dir = Direction.DOWN;
+					} else {
+						dir = Direction.UP;
 					}
+					SchedulerRequest tempRequest = new SchedulerRequest(request.getReceivedAddress(),
+							request.getReceivedPort(), SubsystemConstants.FLOOR, current.getCurrentFloor(),
+							dir, request.getSourceFloor(), elevatorId,
+							request.getTargetFloor(), errorCode, errorFloor);
+					// the pickup leg is traced as part of the request
+					tempRequest.setRequestId(request.getrRequestId());
+					elevatorListeners[elevatorId - 1].addEvent(tempRequest);
+					logger.debug("Intermediate event added " + tempRequest.toString() + " FOR Elevator " + elevatorId);
+					updated.incRequests();
 				}
+				logger.debug("Event added " + request.toString() + " FOR Elevator " + elevatorId);
+				elevatorListeners[elevatorId - 1].addEvent(request);
+				updated.incRequests();
+				publish(current, updated);
+				return updated.freeze();
+			});
+			if (taken[0]) {
+				return true;
 			}
 		}
-		return tempElevator;
 	}
 
-	public void updateElevatorState(Elevator elevator) throws SchedulerSubsystemException, CommunicationException, HostActionsException {
-		synchronized (elevatorStatus) {
-			elevatorStatus.put(elevator.getElevatorId(), elevator);
-			this.reEvaluateEvents();
+	private void addUnscheduledEvent(SchedulerRequest request) {
+		if (request.getRequestDirection() == null) {
+			logger.error("Unable to queue request without a direction " + request.toString());
+			return;
+		}
+		unscheduledEvents.get(request.getRequestDirection()).offerLast(request);
+	}
+
+	/**
+	 * Indexes a new snapshot of a car and, when the change could unblock unscheduled requests, records which
+	 * requests the car can take now: STATIONARY when it became idle, its direction when it started moving
+	 * that way. Only called while the car's entry in elevatorStatus is locked.
+	 * @param previous snapshot that is being replaced, may be null to index the car again
+	 * @param elevator new snapshot
+	 */
+	private void publish(Elevator previous, Elevator elevator) {
+		if (drainedElevators.contains(elevator.getElevatorId())) {
+			// a drained car takes no requests, so it is neither indexed nor unblocks any
+			return;
 		}
+		elevatorIndex.update(elevator);
+		Direction availability = getAvailability(elevator);
+		if (availability != null && availability != getAvailability(previous)) {
+			availabilityEpoch.incrementAndGet();
+			unblockedDirections.offer(availability);
+		}
+	}
+
+	/**
+	 * @param elevator
+	 * @return STATIONARY when the car is idle, its direction when it is moving and null when it has requests but no direction yet
+	 */
+	private static Direction getAvailability(Elevator elevator) {
+		if (elevator == null) {
+			return null;
+		} else if (elevator.getNumRequests() == 0) {
+			return Direction.STATIONARY;
+		} else if (elevator.getRequestDirection() == Direction.STATIONARY) {
+			return null;
+		}
+		return elevator.getRequestDirection();
 	}
 
-	public void updateFloorStates (ElevatorMessage elevator) throws HostActionsException, CommunicationException {
-		FloorMessage floorState = new FloorMessage(elevator.getDirection(), elevator.getCurrentFloor(), elevator.getDestinationFloor(), elevator.getErrorCode(), elevator.getErrorFloor()); // source floor will be current floor, and dont need dest becuase this goes to floors to update buttons
-		floorState.setElevatorNum(elevator.getElevatorNumber());
+	private Elevator getBestElevator(SchedulerRequest request) {
+		long start = System.nanoTime();
+		Elevator elevator = dispatchStrategy.selectElevator(request, this);
+		dispatchTime.record(System.nanoTime() - start);
+		return elevator;
+	}
+
+	/**
+	 * @return number of requests waiting for a car, counted without a lock so it may be off while they are retried
+	 */
+	@Override
+	public int getUnscheduledCount() {
+		int count = 0;
+		for (Deque<SchedulerRequest> bucket : unscheduledEvents.values()) {
+			count += bucket.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Publishes a snapshot of the elevator. The number of requests is taken from the pipeline queue at the moment
+	 * of publishing, so assignments made since the pipeline read its queue are not lost.
+	 * @param elevator
+	 * @throws SchedulerSubsystemException
+	 * @throws CommunicationException
+	 * @throws HostActionsException
+	 */
+	public void updateElevatorState(Elevator elevator) throws SchedulerSubsystemException, CommunicationException, HostActionsException {
+		ElevatorPipeline pipeline = getElevatorPipeline(elevator.getElevatorId());
+		elevatorStatus.computeIfPresent(elevator.getElevatorId(), (elevatorId, current) -> {
+			Elevator snapshot = new Elevator(elevator);
+			if (pipeline != null) {
+				snapshot.setNumRequests(pipeline.getQueuedEventCount());
+			}
+			publish(current, snapshot);
+			return snapshot.freeze();
+		});
+		retryUnblockedEvents();
+	}
+
+	/**
+	 * Sends an elevator state to every floor, with a single send when the floors joined the multicast group
+	 * @param floorState FloorMessage encoded by the calling ElevatorPipeline
+	 * @throws HostActionsException
+	 */
+	public void updateFloorStates (ByteBuffer floorState) throws HostActionsException {
+		if (floorStateSender != null) {
+			// states published while the scheduler shuts down are no longer needed by the floors
+			if (floorStateSender.isClosed()) {
+				return;
+			}
+			floorStateSender.send(floorState.array(), floorState.limit(), floorStateGroup.getAddress(), floorStateGroup.getPort());
+			return;
+		}
 		for (FloorPipeline listeners : this.floorListeners) {
 			listeners.sendElevatorStateToFloor(floorState);
 		}
@@ -410,11 +703,86 @@ public class SchedulerSubsystem {
 		this.floorSubsystemAddress = floorSubsystemAddress;
 	}
 
+	/**
+	 * Gets a copy of the unscheduled requests
+	 * @return Set<SchedulerRequest>
+	 */
 	public Set<SchedulerRequest> getUnscheduledEventsSet() {
-		return SchedulerSubsystem.unscheduledEvents;
+		Set<SchedulerRequest> events = new LinkedHashSet<SchedulerRequest>();
+		for (Deque<SchedulerRequest> bucket : unscheduledEvents.values()) {
+			events.addAll(bucket);
+		}
+		return events;
+	}
+
+	/**
+	 * @return read only view of the published snapshots, which are frozen and replaced as a whole on every change
+	 */
+	public Map<Integer, Elevator> getElevatorStatusMap() {
+		return elevatorStatusView;
+	}
+
+	@Override
+	public String[] getUnscheduledRequests() {
+		return toLines(getUnscheduledEventsSet());
+	}
+
+	@Override
+	public String[] getElevatorStates() {
+		List<String> states = new ArrayList<>();
+		for (Elevator elevator : elevatorStatus.values()) {
+			states.add(elevator.toString() + " requests: " + elevator.getNumRequests()
+					+ (drainedElevators.contains(elevator.getElevatorId()) ? " drained" : ""));
+		}
+		return states.toArray(new String[0]);
+	}
+
+	@Override
+	public String[] getLatencies() {
+		List<LatencyHistogram> histograms = new ArrayList<LatencyHistogram>(LatencyHistogram.getNamed());
+		histograms.sort(Comparator.comparing(LatencyHistogram::getName));
+		String[] latencies = new String[histograms.size()];
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = histograms.get(i).getName() + ": " + histograms.get(i).summary(0);
+		}
+		return latencies;
+	}
+
+	@Override
+	public String[] dumpQueue(int elevatorId) {
+		ElevatorPipeline pipeline = getElevatorPipeline(elevatorId);
+		return pipeline == null ? new String[0] : pipeline.dumpQueue();
+	}
+
+	/**
+	 * @param events
+	 * @return the events, one per line
+	 */
+	static String[] toLines(Collection<SchedulerRequest> events) {
+		String[] lines = new String[events.size()];
+		int i = 0;
+		for (SchedulerRequest event : events) {
+			lines[i++] = event.toString();
+		}
+		return lines;
+	}
+
+	public ElevatorIndex getElevatorIndex() {
+		return this.elevatorIndex;
+	}
+
+	public ElevatorPipeline getElevatorPipeline(int elevatorId) {
+		if (elevatorListeners == null || elevatorId < 1 || elevatorId > elevatorListeners.length) {
+			return null;
+		}
+		return elevatorListeners[elevatorId - 1];
+	}
+
+	public DispatchStrategy getDispatchStrategy() {
+		return this.dispatchStrategy;
 	}
 
-	public HashMap<Integer, Elevator> getElevatorStatusMap() {
-		return this.elevatorStatus;
+	public void setDispatchStrategy(DispatchStrategy dispatchStrategy) {
+		this.dispatchStrategy = dispatchStrategy;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+//****************************************************************************
+//
+// Filename: SchedulerSubsystemMBean.java
+//
+// Description: Management interface of the scheduler, registered with the
+//              platform MBean server
+//
+//***************************************************************************
+package core.Subsystems.SchedulerSubsystem;
+
+import core.Exceptions.CommunicationException;
+import core.Exceptions.SchedulerSubsystemException;
+
+/**
+ * Live state of the scheduler and the operations to rebalance it while it runs, see core.Management
+ */
+public interface SchedulerSubsystemMBean {
+
+	/**
+	 * @return number of requests waiting for a car
+	 */
+	public int getUnscheduledCount();
+
+	/**
+	 * @return the requests waiting for a car, one per line
+	 */
+	public String[] getUnscheduledRequests();
+
+	/**
+	 * @return the published state of every car in service, one per line
+	 */
+	public String[] getElevatorStates();
+
+	/**
+	 * @return summary of every timer histogram of the process, one per line
+	 */
+	public String[] getLatencies();
+
+	/**
+	 * Retries every unscheduled request
+	 * @throws SchedulerSubsystemException
+	 * @throws CommunicationException
+	 */
+	public void reEvaluateEvents() throws SchedulerSubsystemException, CommunicationException;
+
+	/**
+	 * Takes a car out of dispatch, see SchedulerSubsystem.drainElevator
+	 * @param elevatorId
+	 * @return number of requests moved to other cars
+	 * @throws SchedulerSubsystemException
+	 * @throws CommunicationException
+	 */
+	public int drainElevator(int elevatorId) throws SchedulerSubsystemException, CommunicationException;
+
+	/**
+	 * Puts a drained car back into dispatch
+	 * @param elevatorId
+	 * @throws SchedulerSubsystemException
+	 * @throws CommunicationException
+	 */
+	public void restoreElevator(int elevatorId) throws SchedulerSubsystemException, CommunicationException;
+
+	/**
+	 * @param elevatorId
+	 * @return the events queued on the car, one per line
+	 */
+	public String[] dumpQueue(int elevatorId);
+}
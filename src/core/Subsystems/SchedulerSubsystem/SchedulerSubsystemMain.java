@@ -13,7 +13,13 @@ import org.apache.logging.log4j.Logger;
 
 import core.ConfigurationParser;
 import core.LoggingManager;
+import core.MetricsExporter;
+import core.Exceptions.SchedulerPipelineException;
+import core.Utils.ExecutionModel;
+import core.Utils.MultiplexedSocket;
+import core.Utils.SharedMemoryTransport;
 import core.Utils.SubsystemConstants;
+import core.Utils.Transport;
 
 public class SchedulerSubsystemMain {
 
@@ -24,46 +30,133 @@ public class SchedulerSubsystemMain {
 		logger.info(LoggingManager.BANNER + "Scheduler Subsystem\n");
 		try {
 			ConfigurationParser configurationParser = ConfigurationParser.getInstance();
+			MetricsExporter.startConfigured("scheduler");
 
-			int numElevators = configurationParser.getInt(ConfigurationParser.NUMBER_OF_ELEVATORS);
-			int numFloors = configurationParser.getInt(ConfigurationParser.NUMBER_OF_FLOORS);
 			int elevatorInitPort = configurationParser.getInt(ConfigurationParser.ELEVATOR_INIT_PORT);
 			int floorInitPort = configurationParser.getInt(ConfigurationParser.FLOOR_INIT_PORT);
 
-			SchedulerSubsystem scheduler = new SchedulerSubsystem(numElevators);
-			
-			ElevatorPipeline[] elevatorListeners = new ElevatorPipeline[numElevators];
-			FloorPipeline[] floorListeners = new FloorPipeline[numFloors];
-
-			for (int i = 0; i < numElevators; i++) {
-				elevatorListeners[i] = new ElevatorPipeline(SubsystemConstants.ELEVATOR, i+1, scheduler);
-			}
-			for (int i = 0; i < numFloors; i++) {
-				floorListeners[i] = new FloorPipeline(SubsystemConstants.FLOOR, i+1, scheduler);
+			Transport elevatorSocket = null;
+			Transport floorSocket = null;
+			if (SharedMemoryTransport.isMultiplexed()) {
+				elevatorSocket = SharedMemoryTransport.getConfiguredTransport(SubsystemConstants.ELEVATOR, true);
+				if (elevatorSocket == null) {
+					elevatorSocket = new MultiplexedSocket("Elevator socket", elevatorInitPort);
+				}
+				floorSocket = SharedMemoryTransport.getConfiguredTransport(SubsystemConstants.FLOOR, true);
+				if (floorSocket == null) {
+					floorSocket = new MultiplexedSocket("Floor socket", floorInitPort);
+				}
 			}
-			scheduler.addListeners(elevatorListeners, floorListeners);
+			run(elevatorSocket, floorSocket);
+		} catch (Exception e) {
+			logger.error("", e);
+			System.exit(-1);
+		}
+	}
+
+	/**
+	 * Runs the scheduler until the shutdown thread finishes
+	 * @param elevatorSocket transport shared by all elevators, null to use a socket pair per pipeline
+	 * @param floorSocket transport shared by all floors, null to use a socket pair per pipeline
+	 * @throws Exception
+	 */
+	public static void run(Transport elevatorSocket, Transport floorSocket) throws Exception {
+
+		start(elevatorSocket, floorSocket).run();
+	}
+
+	/**
+	 * Starts the scheduler and its listeners once the elevators and floors registered
+	 * @param elevatorSocket transport shared by all elevators, null to use a socket pair per pipeline
+	 * @param floorSocket transport shared by all floors, null to use a socket pair per pipeline
+	 * @return the shutdown thread, not started, whose run returns once the scheduler shut the subsystems down
+	 * @throws Exception
+	 */
+	public static ShutdownThread start(Transport elevatorSocket, Transport floorSocket) throws Exception {
+
+		ConfigurationParser configurationParser = ConfigurationParser.getInstance();
+
+		int numElevators = configurationParser.getInt(ConfigurationParser.NUMBER_OF_ELEVATORS);
+		int numFloors = configurationParser.getInt(ConfigurationParser.NUMBER_OF_FLOORS);
+		int elevatorInitPort = configurationParser.getInt(ConfigurationParser.ELEVATOR_INIT_PORT);
+		int floorInitPort = configurationParser.getInt(ConfigurationParser.FLOOR_INIT_PORT);
+		int floorIntakeThreads = configurationParser.getInt(ConfigurationParser.FLOOR_INTAKE_THREADS);
+		boolean multiplexed = elevatorSocket != null;
+
+		SchedulerSubsystem scheduler = new SchedulerSubsystem(numElevators);
+
+		ElevatorPipeline[] elevatorListeners = new ElevatorPipeline[numElevators];
+		FloorIntake[] floorIntakes = createFloorIntakes(multiplexed ? 0 : floorIntakeThreads);
+
+		for (int i = 0; i < numElevators; i++) {
+			elevatorListeners[i] = new ElevatorPipeline(SubsystemConstants.ELEVATOR, i+1, scheduler, elevatorSocket);
+		}
+		FloorPipeline[] floorListeners = createFloorPipelines(numFloors, scheduler, floorSocket, floorIntakes);
+		scheduler.addListeners(elevatorListeners, floorListeners);
+		if (multiplexed) {
+			scheduler.start(elevatorSocket, floorSocket);
+		} else {
 			scheduler.start(elevatorInitPort, floorInitPort);
-			
-			
-			logger.info("Starting listeners...");
-			for (int i = 0; i < elevatorListeners.length; i++) {
-				elevatorListeners[i].start();
-				Thread.sleep(100);
-			}
+		}
+		
+		
+		logger.info("Starting listeners...");
+		for (int i = 0; i < elevatorListeners.length; i++) {
+			ExecutionModel.start(elevatorListeners[i]);
+			Thread.sleep(100);
+		}
 
+		if (floorIntakes.length == 0) {
 			for (int i = 0; i < floorListeners.length; i++) {
-				floorListeners[i].start();
+				ExecutionModel.start(floorListeners[i]);
 				Thread.sleep(100);
 			}
-			logger.log(LoggingManager.getSuccessLevel(), LoggingManager.SUCCESS_MESSAGE);
-			
-			
-			ShutdownThread shutdownThread = new ShutdownThread(scheduler, elevatorListeners, floorListeners);
-			shutdownThread.run();
+		}
+		for (int i = 0; i < floorIntakes.length; i++) {
+			floorIntakes[i].start();
+		}
+		logger.log(LoggingManager.getSuccessLevel(), LoggingManager.SUCCESS_MESSAGE);
 		
-		} catch (Exception e) {
-			logger.error("", e);
-			System.exit(-1);
+		
+		return new ShutdownThread(scheduler, elevatorListeners, floorListeners);
+	}
+
+	/**
+	 * @param floorIntakeThreads the FloorIntakeThreads setting, 0 or less to run every floor pipeline as its own thread
+	 * @return the intakes, not started
+	 * @throws SchedulerPipelineException
+	 */
+	public static FloorIntake[] createFloorIntakes(int floorIntakeThreads) throws SchedulerPipelineException {
+
+		FloorIntake[] floorIntakes = new FloorIntake[Math.max(floorIntakeThreads, 0)];
+		for (int i = 0; i < floorIntakes.length; i++) {
+			floorIntakes[i] = new FloorIntake(i+1);
+		}
+		return floorIntakes;
+	}
+
+	/**
+	 * Creates the floor pipelines: on the shared floor transport if there is one, otherwise spread over the intakes
+	 * in turn, otherwise each with its own blocking socket
+	 * @param numFloors
+	 * @param scheduler
+	 * @param floorSocket transport shared by all floors, null to use a socket pair per pipeline
+	 * @param floorIntakes intakes receiving for the pipelines, empty to run every pipeline as its own thread
+	 * @return the pipelines, not started
+	 * @throws SchedulerPipelineException
+	 */
+	public static FloorPipeline[] createFloorPipelines(int numFloors, SchedulerSubsystem scheduler, Transport floorSocket, FloorIntake[] floorIntakes) throws SchedulerPipelineException {
+
+		FloorPipeline[] floorListeners = new FloorPipeline[numFloors];
+		for (int i = 0; i < numFloors; i++) {
+			if (floorSocket != null) {
+				floorListeners[i] = new FloorPipeline(SubsystemConstants.FLOOR, i+1, scheduler, floorSocket);
+			} else if (floorIntakes.length == 0) {
+				floorListeners[i] = new FloorPipeline(SubsystemConstants.FLOOR, i+1, scheduler);
+			} else {
+				floorListeners[i] = floorIntakes[i % floorIntakes.length].createPipeline(i+1, scheduler);
+			}
 		}
+		return floorListeners;
 	}
 }
\ No newline at end of file
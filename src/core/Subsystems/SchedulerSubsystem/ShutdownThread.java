@@ -1,9 +1,12 @@
 package core.Subsystems.SchedulerSubsystem;
 
 import core.Direction;
+import core.Utils.Utils;
 
 public class ShutdownThread extends Thread {
 
+	// checked on the clock, so in simulated time the check runs in turn with the subsystems
+	private static final int POLL_TIME = 1000;
 	private SchedulerSubsystem scheduler;
 	private ElevatorPipeline[] elevatorListeners;
 	private FloorPipeline[] floorListeners;
@@ -23,8 +26,8 @@ public class ShutdownThread extends Thread {
 			if (scheduler.getEnd()) {
 				
 				boolean areMoving = false;
-				for (int i: scheduler.elevatorStatus.keySet()) {
-					if (scheduler.elevatorStatus.get(i).getRequestDirection() != Direction.STATIONARY) {
+				for (Elevator elevator: scheduler.getElevatorStatusMap().values()) {
+					if (elevator.getRequestDirection() != Direction.STATIONARY) {
 						areMoving = true;
 					}
 				}
@@ -38,11 +41,12 @@ public class ShutdownThread extends Thread {
 						for (FloorPipeline f: floorListeners) {
 							f.sendShutdownMessage();
 						}
+						scheduler.terminate();
 						break;
 					}
 				} catch (Exception e) {System.out.println(e);}
 			}
-			
+			Utils.Sleep(POLL_TIME);
 		}
 	}
 }
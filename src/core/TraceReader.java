@@ -0,0 +1,273 @@
+//****************************************************************************
+//
+// Filename: TraceReader.java
+//
+// Description: Reads the simulation event file one row at a time, for traces
+//              too long to parse up front
+//
+//***************************************************************************
+
+package core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+import core.Exceptions.InputParserException;
+import core.Utils.SimulationRequest;
+
+/**
+ * Streaming alternative to InputParser. The header is read once to find the column of every field, and each row
+ * is then split and parsed straight into primitive fields, without a map per row or a date format. Rows are read
+ * only when asked for, so a day-long trace starts at once and only the rows not yet injected are in memory.
+ *
+ * The trace has to be in time order, as recorded traces are: rows are not sorted, and a row earlier than the one
+ * before it is an error. Like InputParser, the times of day are taken as times of today.
+ */
+public class TraceReader implements TraceSource {
+
+	private static final String END = "End";
+	private static final String TIME_HEADER = "Time";
+	private static final String FLOOR_BUTTON_HEADER = "Floor_Button";
+	private static final String CAR_BUTTON_HEADER = "Car_Button";
+	private static final String FLOOR_HEADER = "Floor";
+	private static final String ERROR_CODE_HEADER = "ErrorCode";
+	private static final String ERROR_FLOOR_HEADER = "ErrorFloor";
+	private static final String[] HEADERS = { TIME_HEADER, FLOOR_HEADER, FLOOR_BUTTON_HEADER, CAR_BUTTON_HEADER, ERROR_CODE_HEADER,
+			ERROR_FLOOR_HEADER };
+	private static final int TIME = 0;
+	private static final int FLOOR = 1;
+	private static final int FLOOR_BUTTON = 2;
+	private static final int CAR_BUTTON = 3;
+	private static final int ERROR_CODE = 4;
+	private static final int ERROR_FLOOR = 5;
+
+	private final BufferedReader reader;
+	private final long dayStart;
+	// column of every field, -1 for a missing ErrorFloor column
+	private final int[] columns = new int[HEADERS.length];
+	private final String[] fields;
+	private long rowNumber = 1;
+	private long firstTime = -1;
+	private long previousTime = -1;
+	private boolean end = false;
+
+	// the current row
+	private long time;
+	private int floor;
+	private Direction floorButton;
+	private int carButton;
+	private int errorCode;
+	private int errorFloor;
+
+	/**
+	 * Opens the trace and reads its header
+	 * @param file
+	 * @throws InputParserException if the file cannot be read or a column is missing
+	 */
+	public TraceReader(File file) throws InputParserException {
+
+		this.dayStart = LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		try {
+			this.reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+			String header = reader.readLine();
+			if (header == null) {
+				throw new InputParserException("File is empty");
+			}
+			String[] names = header.trim().split(" +");
+			this.fields = new String[names.length];
+			for (int i = 0; i < HEADERS.length; i++) {
+				columns[i] = -1;
+				for (int j = 0; j < names.length; j++) {
+					if (names[j].equals(HEADERS[i])) {
+						columns[i] = j;
+					}
+				}
+				if (columns[i] < 0 && i != ERROR_FLOOR) {
+					close();
+					throw new InputParserException("File has no " + HEADERS[i] + " column");
+				}
+			}
+		} catch (IOException e) {
+			throw new InputParserException("Unable to read file", e);
+		}
+	}
+
+	/**
+	 * Reads the next row
+	 * @return the request of the row, the end request for an End row, or null at the end of the file
+	 * @throws InputParserException if the row is not in the proper format or earlier than the row before it
+	 */
+	@Override
+	public SimulationRequest next() throws InputParserException {
+
+		if (end) {
+			return null;
+		}
+		String line;
+		try {
+			do {
+				line = reader.readLine();
+				rowNumber++;
+			} while (line != null && line.trim().isEmpty());
+		} catch (IOException e) {
+			throw new InputParserException("Unable to read file", e);
+		}
+		if (line == null) {
+			return null;
+		}
+		int count = split(line);
+		if (count > 0 && fields[columns[TIME]] != null && fields[columns[TIME]].equalsIgnoreCase(END)) {
+			end = true;
+			return new SimulationRequest(true);
+		}
+		parse(count, line);
+
+		if (firstTime < 0) {
+			firstTime = time;
+		}
+		previousTime = time;
+		SimulationRequest request = new SimulationRequest(new Date(dayStart + time), floor, floorButton, carButton, errorCode, errorFloor);
+		request.setIntervalTime(time - firstTime);
+		return request;
+	}
+
+	/**
+	 * @return time of day of the last row read, in milliseconds since midnight
+	 */
+	public long getTime() {
+
+		return time;
+	}
+
+	/**
+	 * @return number of the last row read, counting the header as row 1
+	 */
+	public long getRowNumber() {
+
+		return rowNumber;
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		reader.close();
+	}
+
+	private int split(String line) {
+
+		int count = 0;
+		int length = line.length();
+		int i = 0;
+		while (i < length && count < fields.length) {
+			while (i < length && line.charAt(i) == ' ') {
+				i++;
+			}
+			int start = i;
+			while (i < length && line.charAt(i) != ' ') {
+				i++;
+			}
+			if (i > start) {
+				fields[count++] = line.substring(start, i);
+			}
+		}
+		for (int j = count; j < fields.length; j++) {
+			fields[j] = null;
+		}
+		return count;
+	}
+
+	private void parse(int count, String line) throws InputParserException {
+
+		try {
+			time = parseTime(field(TIME));
+			floor = parseNumber(field(FLOOR));
+			carButton = parseNumber(field(CAR_BUTTON));
+			errorCode = parseNumber(field(ERROR_CODE));
+			String direction = field(FLOOR_BUTTON);
+			if (direction.equalsIgnoreCase("Up")) {
+				floorButton = Direction.UP;
+			} else if (direction.equalsIgnoreCase("Down")) {
+				floorButton = Direction.DOWN;
+			} else {
+				throw new InputParserException("Floor Button string is not valid");
+			}
+			String errorFloorField = columns[ERROR_FLOOR] < 0 ? null : fields[columns[ERROR_FLOOR]];
+			if (errorCode == 2) {
+				if (errorFloorField != null) {
+					throw new NumberFormatException();
+				}
+				errorFloor = -1;
+			} else {
+				errorFloor = parseNumber(errorFloorField);
+			}
+		} catch (NumberFormatException e) {
+			throw new InputParserException("Row " + rowNumber + " \"" + line + "\": not in the proper format or empty");
+		}
+		if (time < previousTime) {
+			throw new InputParserException("Row " + rowNumber + " is earlier than the row before it, the trace has to be in time order");
+		}
+	}
+
+	private String field(int column) {
+
+		String field = fields[columns[column]];
+		if (field == null) {
+			throw new NumberFormatException();
+		}
+		return field;
+	}
+
+	/**
+	 * @return milliseconds since midnight of HH:mm:ss with an optional fraction of a second, where hours past 23
+	 *         continue into the following days
+	 */
+	static long parseTime(String time) {
+
+		int hours = time.indexOf(':');
+		if (hours < 2 || hours > 6 || time.length() < hours + 6 || time.charAt(hours + 3) != ':') {
+			throw new NumberFormatException();
+		}
+		int seconds = hours + 6;
+		long millis = (parseDigits(time, 0, hours) * 3600 + parseDigits(time, hours + 1, hours + 3) * 60 + parseDigits(time, hours + 4, seconds)) * 1000;
+		if (time.length() > seconds) {
+			if (time.charAt(seconds) != '.' || time.length() == seconds + 1) {
+				throw new NumberFormatException();
+			}
+			int end = Math.min(time.length(), seconds + 4);
+			long fraction = parseDigits(time, seconds + 1, end);
+			for (int i = end; i < seconds + 4; i++) {
+				fraction *= 10;
+			}
+			parseDigits(time, end, time.length());
+			millis += fraction;
+		}
+		return millis;
+	}
+
+	private static int parseNumber(String number) {
+
+		if (number == null || number.isEmpty() || number.length() > 9) {
+			throw new NumberFormatException();
+		}
+		return (int) parseDigits(number, 0, number.length());
+	}
+
+	private static long parseDigits(String s, int start, int end) {
+
+		long value = 0;
+		for (int i = start; i < end; i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new NumberFormatException();
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+}
@@ -0,0 +1,27 @@
+//****************************************************************************
+//
+// Filename: TraceSource.java
+//
+// Description: Simulation event file read one request at a time
+//
+//***************************************************************************
+
+package core;
+
+import java.io.Closeable;
+
+import core.Exceptions.InputParserException;
+import core.Utils.SimulationRequest;
+
+/**
+ * A simulation event file in time order, read one request at a time. InputParser.openTrace opens the configured
+ * file as a CSV or binary trace.
+ */
+public interface TraceSource extends Closeable {
+
+	/**
+	 * @return the next request, the end request for an End row, or null at the end of the trace
+	 * @throws InputParserException if the trace is not in the proper format
+	 */
+	SimulationRequest next() throws InputParserException;
+}
@@ -0,0 +1,259 @@
+//****************************************************************************
+//
+// Filename: TrafficGenerator.java
+//
+// Description: Generates the simulation requests of a synthetic traffic
+//              profile, to be simulated directly or written as a CSV file
+//
+//***************************************************************************
+
+package core;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.SplittableRandom;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import core.Exceptions.ConfigurationParserException;
+import core.Exceptions.InputParserException;
+import core.Utils.SimulationRequest;
+
+/**
+ * Generates the calls of a traffic profile one at a time, in time order, followed by the end request. Every floor
+ * is a Poisson process of calls whose rates add up to the configured calls per minute, so the time between calls
+ * is exponentially distributed and the floor of a call is drawn from the share of the floor in the profile:
+ * <ul>
+ * <li>interfloor: every floor calls to every other floor alike
+ * <li>uppeak: PEAK_SHARE of the calls go from the lobby up, the rest are interfloor
+ * <li>downpeak: PEAK_SHARE of the calls go down to the lobby, the rest are interfloor
+ * <li>lunch: LUNCH_SHARE of the calls go up from the lobby and as many down to it, the rest are interfloor
+ * </ul>
+ * A share of the calls carries ErrorCode 1, with an error floor between the floor of the call and its destination,
+ * and another share ErrorCode 2. The same seed always generates the same calls.
+ */
+public class TrafficGenerator implements TraceSource {
+
+	private static Logger logger = LogManager.getLogger(TrafficGenerator.class);
+	public static final String INTERFLOOR = "interfloor";
+	public static final String UP_PEAK = "uppeak";
+	public static final String DOWN_PEAK = "downpeak";
+	public static final String LUNCH = "lunch";
+	public static final double PEAK_SHARE = 0.85;
+	public static final double LUNCH_SHARE = 0.45;
+	private static final int LOBBY = 1;
+	private static final String CSV_HEADER = "Time Floor Floor_Button Car_Button ErrorCode ErrorFloor";
+
+	private final String profile;
+	private final int numFloors;
+	private final double meanInterval;
+	private final long calls;
+	private final long startTime;
+	private final double errorCode1Rate;
+	private final double errorCode2Rate;
+	private final long dayStart;
+	private final SplittableRandom random;
+	private double time;
+	private long generated = 0;
+	private boolean endGenerated = false;
+
+	/**
+	 * @param profile interfloor, uppeak, downpeak or lunch
+	 * @param numFloors
+	 * @param callsPerMinute mean number of calls per minute of the whole building
+	 * @param calls number of calls to generate
+	 * @param startTime time of day of the start of the traffic, in milliseconds since midnight
+	 * @param errorCode1Rate share of the calls with ErrorCode 1
+	 * @param errorCode2Rate share of the calls with ErrorCode 2
+	 * @param seed
+	 */
+	public TrafficGenerator(String profile, int numFloors, double callsPerMinute, long calls, long startTime, double errorCode1Rate,
+			double errorCode2Rate, long seed) {
+
+		if (!INTERFLOOR.equals(profile) && !UP_PEAK.equals(profile) && !DOWN_PEAK.equals(profile) && !LUNCH.equals(profile)) {
+			throw new IllegalArgumentException("Unknown traffic profile " + profile);
+		}
+		if (numFloors < 2 || callsPerMinute <= 0 || errorCode1Rate < 0 || errorCode2Rate < 0 || errorCode1Rate + errorCode2Rate > 1) {
+			throw new IllegalArgumentException("Traffic needs two floors, a positive call rate and error rates that add up to at most 1");
+		}
+		this.profile = profile;
+		this.numFloors = numFloors;
+		this.meanInterval = 60 * 1000 / callsPerMinute;
+		this.calls = calls;
+		this.startTime = startTime;
+		this.errorCode1Rate = errorCode1Rate;
+		this.errorCode2Rate = errorCode2Rate;
+		this.dayStart = LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		this.random = new SplittableRandom(seed);
+		this.time = startTime;
+	}
+
+	/**
+	 * Creates the generator of the traffic profile of the configuration
+	 * @return the generator, or null if TrafficProfile is empty
+	 * @throws ConfigurationParserException
+	 */
+	public static TrafficGenerator fromConfiguration() throws ConfigurationParserException {
+
+		ConfigurationParser configurationParser = ConfigurationParser.getInstance();
+		String profile = configurationParser.getString(ConfigurationParser.TRAFFIC_PROFILE);
+		if (profile == null || profile.trim().isEmpty()) {
+			return null;
+		}
+		long startTime;
+		try {
+			startTime = TraceReader.parseTime(configurationParser.getString(ConfigurationParser.TRAFFIC_START_TIME));
+		} catch (NumberFormatException e) {
+			throw new ConfigurationParserException("TrafficStartTime is not a time of day HH:mm:ss", e);
+		}
+		try {
+			return new TrafficGenerator(profile.trim().toLowerCase(), configurationParser.getInt(ConfigurationParser.NUMBER_OF_FLOORS),
+					configurationParser.getDouble(ConfigurationParser.TRAFFIC_CALLS_PER_MINUTE), configurationParser.getInt(ConfigurationParser.TRAFFIC_CALLS),
+					startTime, configurationParser.getDouble(ConfigurationParser.TRAFFIC_ERROR_CODE_1_RATE),
+					configurationParser.getDouble(ConfigurationParser.TRAFFIC_ERROR_CODE_2_RATE), configurationParser.getInt(ConfigurationParser.TRAFFIC_SEED));
+		} catch (IllegalArgumentException e) {
+			throw new ConfigurationParserException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @return the next call, the end request after the last call, then null
+	 */
+	@Override
+	public SimulationRequest next() {
+
+		if (generated == calls) {
+			if (endGenerated) {
+				return null;
+			}
+			endGenerated = true;
+			return new SimulationRequest(true);
+		}
+		generated++;
+		time += -Math.log(1 - random.nextDouble()) * meanInterval;
+		long callTime = (long) time;
+
+		int floor;
+		int destination;
+		double share = random.nextDouble();
+		if ((UP_PEAK.equals(profile) && share < PEAK_SHARE) || (LUNCH.equals(profile) && share < LUNCH_SHARE)) {
+			floor = LOBBY;
+			destination = random.nextInt(LOBBY + 1, numFloors + 1);
+		} else if ((DOWN_PEAK.equals(profile) && share < PEAK_SHARE) || (LUNCH.equals(profile) && share < 2 * LUNCH_SHARE)) {
+			floor = random.nextInt(LOBBY + 1, numFloors + 1);
+			destination = LOBBY;
+		} else {
+			floor = random.nextInt(1, numFloors + 1);
+			destination = random.nextInt(1, numFloors);
+			if (destination >= floor) {
+				destination++;
+			}
+		}
+
+		int errorCode = 0;
+		int errorFloor = 0;
+		double fault = random.nextDouble();
+		if (fault < errorCode1Rate && Math.abs(destination - floor) > 1) {
+			errorCode = 1;
+			errorFloor = random.nextInt(Math.min(floor, destination) + 1, Math.max(floor, destination));
+		} else if (fault >= errorCode1Rate && fault < errorCode1Rate + errorCode2Rate) {
+			errorCode = 2;
+			errorFloor = -1;
+		}
+
+		SimulationRequest request = new SimulationRequest(new Date(dayStart + callTime), floor, destination > floor ? Direction.UP : Direction.DOWN,
+				destination, errorCode, errorFloor);
+		request.setIntervalTime(callTime - startTime);
+		return request;
+	}
+
+	@Override
+	public void close() {
+	}
+
+	/**
+	 * Writes the requests in the CSV format of the simulation event files
+	 * @param source
+	 * @param file CSV file to create or replace
+	 * @return number of requests written, not counting the end request
+	 * @throws InputParserException
+	 * @throws IOException
+	 */
+	public static long writeCsv(TraceSource source, File file) throws InputParserException, IOException {
+
+		long count = 0;
+		long dayStart = LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		StringBuilder row = new StringBuilder();
+		try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+			writer.write(CSV_HEADER);
+			writer.newLine();
+			SimulationRequest request;
+			while ((request = source.next()) != null) {
+				if (request.getEnd()) {
+					writer.write("end");
+					writer.newLine();
+					break;
+				}
+				row.setLength(0);
+				long time = request.getStartTime().getTime() - dayStart;
+				appendDigits(row, time / 3600000, 2).append(':');
+				appendDigits(row, time / 60000 % 60, 2).append(':');
+				appendDigits(row, time / 1000 % 60, 2).append('.');
+				appendDigits(row, time % 1000, 3).append(' ');
+				row.append(request.getFloor()).append(' ');
+				row.append(request.getFloorButton() == Direction.UP ? "up" : "down").append(' ');
+				row.append(request.getCarButton()).append(' ');
+				row.append(request.getErrorCode());
+				// a row with ErrorCode 2 has no error floor
+				if (request.getErrorCode() != 2) {
+					row.append(' ').append(request.getErrorElevator());
+				}
+				writer.append(row);
+				writer.newLine();
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static StringBuilder appendDigits(StringBuilder row, long value, int digits) {
+
+		String number = Long.toString(value);
+		for (int i = number.length(); i < digits; i++) {
+			row.append('0');
+		}
+		return row.append(number);
+	}
+
+	/**
+	 * Writes the traffic of the configuration to the CSV file given as argument
+	 */
+	public static void main(String[] args) {
+
+		if (args.length != 1) {
+			System.err.println("Usage: java core.TrafficGenerator <output csv>");
+			System.exit(-1);
+		}
+		try {
+			TrafficGenerator generator = fromConfiguration();
+			if (generator == null) {
+				logger.error("TrafficProfile is empty, nothing to generate");
+				System.exit(-1);
+			}
+			long start = System.currentTimeMillis();
+			long count = writeCsv(generator, new File(args[0]));
+			logger.info("Wrote " + count + " calls of " + generator.profile + " traffic to " + args[0] + " in "
+					+ (System.currentTimeMillis() - start) + " ms");
+		} catch (ConfigurationParserException | InputParserException | IOException e) {
+			logger.error("Unable to generate " + args[0], e);
+			System.exit(-1);
+		}
+	}
+}
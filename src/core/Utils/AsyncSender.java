@@ -0,0 +1,186 @@
+//****************************************************************************
+//
+// Filename: AsyncSender.java
+//
+// Description: Thread that sends the packets queued for one socket
+//
+//***************************************************************************
+package core.Utils;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import core.ConfigurationParser;
+import core.Exceptions.ConfigurationParserException;
+import core.Exceptions.HostActionsException;
+
+/**
+ * Owns the sending side of one socket. Callers copy their data into one of a fixed number of preallocated packets
+ * and return immediately, the sender thread drains whatever has queued up in one batch. Callers only wait when
+ * every packet is queued, so a slow socket cannot grow the queue without bound, and senders on different sockets
+ * never wait on each other. A caller never waits longer than FREE_TIMEOUT, and not at all once the sender thread
+ * stopped or was closed before it started, since no packet will be freed then.
+ *
+ * Closing lets the callers that got past the closed check finish queueing, and the thread only ends once
+ * their packets are sent.
+ */
+public class AsyncSender extends Thread {
+
+	private static Logger logger = LogManager.getLogger(AsyncSender.class);
+	public static final int DATA_SIZE = 50;
+	private static final int POLL_TIMEOUT = 1000;
+	public static final int FREE_TIMEOUT = 10000;
+	private static final int FREE_POLL_TIMEOUT = 100;
+
+	private DatagramSocket socket;
+	private BlockingQueue<DatagramPacket> pending;
+	private BlockingQueue<DatagramPacket> free;
+	private List<DatagramPacket> batch;
+	private volatile boolean closed = false;
+	private volatile boolean started = false;
+	private volatile boolean stopped = false;
+	// callers between their closed check and queueing their packet
+	private final AtomicInteger queueing = new AtomicInteger();
+
+	/**
+	 * Creates a sender with the SendQueueCapacity of the configuration
+	 * @param name
+	 * @param socket
+	 * @throws ConfigurationParserException
+	 */
+	public AsyncSender(String name, DatagramSocket socket) throws ConfigurationParserException {
+
+		this(name, socket, ConfigurationParser.getInstance().getInt(ConfigurationParser.SEND_QUEUE_CAPACITY));
+	}
+
+	public AsyncSender(String name, DatagramSocket socket, int capacity) {
+
+		super(name);
+		this.socket = socket;
+		this.pending = new ArrayBlockingQueue<DatagramPacket>(capacity);
+		this.free = new ArrayBlockingQueue<DatagramPacket>(capacity);
+		this.batch = new ArrayList<DatagramPacket>(capacity);
+		for (int i = 0; i < capacity; i++) {
+			free.add(new DatagramPacket(new byte[DATA_SIZE], DATA_SIZE));
+		}
+	}
+
+	/**
+	 * Queues a copy of the data, so the caller can reuse its buffer as soon as this returns
+	 * @param data
+	 * @param length
+	 * @param address
+	 * @param port
+	 * @throws HostActionsException if the sender is closed, the data does not fit in a packet or no packet was
+	 * freed in time
+	 */
+	public void send(byte[] data, int length, InetAddress address, int port) throws HostActionsException {
+
+		queueing.incrementAndGet();
+		try {
+			if (closed) {
+				throw new HostActionsException(getName() + " is closed");
+			}
+			if (length > DATA_SIZE) {
+				throw new HostActionsException("Packet of " + length + " bytes does not fit in " + getName());
+			}
+			DatagramPacket packet = takeFree();
+			System.arraycopy(data, 0, packet.getData(), 0, length);
+			packet.setLength(length);
+			packet.setAddress(address);
+			packet.setPort(port);
+			pending.add(packet);
+		} finally {
+			queueing.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Waits for a free packet while the sender thread can still free one
+	 */
+	private DatagramPacket takeFree() throws HostActionsException {
+
+		long deadline = System.currentTimeMillis() + FREE_TIMEOUT;
+		try {
+			while (true) {
+				DatagramPacket packet = free.poll(FREE_POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+				if (packet != null) {
+					return packet;
+				}
+				if (stopped || (closed && !started)) {
+					throw new HostActionsException(getName() + " is not running, no packet will be freed");
+				}
+				if (System.currentTimeMillis() >= deadline) {
+					throw new HostActionsException("No packet of " + getName() + " was freed within " + FREE_TIMEOUT + " ms");
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new HostActionsException("Interrupted while waiting to queue a packet on " + getName(), e);
+		}
+	}
+
+	@Override
+	public void run() {
+
+		started = true;
+		try {
+			while (true) {
+				DatagramPacket packet;
+				try {
+					packet = pending.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					break;
+				}
+				if (packet == null) {
+					// callers that passed the closed check before close still queue their packets
+					if (closed && queueing.get() == 0 && pending.isEmpty()) {
+						break;
+					}
+					continue;
+				}
+				batch.add(packet);
+				pending.drainTo(batch);
+				for (int i = 0; i < batch.size(); i++) {
+					try {
+						socket.send(batch.get(i));
+					} catch (IOException e) {
+						logger.error("Unable to send packet from " + getName(), e);
+					}
+					free.add(batch.get(i));
+				}
+				batch.clear();
+			}
+		} finally {
+			stopped = true;
+		}
+	}
+
+	/**
+	 * Stops accepting packets, the ones already queued are still sent before the thread ends
+	 */
+	public void close() {
+
+		closed = true;
+	}
+
+	public boolean isClosed() {
+
+		return closed;
+	}
+
+	public int getQueuedCount() {
+
+		return pending.size();
+	}
+}
@@ -0,0 +1,206 @@
+//****************************************************************************
+//
+// Filename: ExecutionModel.java
+//
+// Description: Starts the car, floor and pipeline activities on platform or
+//              virtual threads
+//
+//***************************************************************************
+package core.Utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import core.ConfigurationParser;
+import core.Exceptions.ConfigurationParserException;
+
+/**
+ * Every car, floor and pipeline is written as a thread that blocks while it waits for a message or for time to
+ * pass. With the platform model each of them gets an operating system thread of its own. With the virtual model
+ * its run method is started on a virtual thread instead: a blocked activity parks and frees its carrier, and the
+ * JVM runs every activity on a carrier pool bounded by the number of cores, so thousands of cars do not need
+ * thousands of operating system threads. The activity object itself is never started and holds no thread.
+ *
+ * In simulated time the activity runs on a thread of its own either way, registered with the SimulationClock
+ * before it starts, so the activities take their turns in the order they were started.
+ *
+ * Virtual threads never keep the JVM alive, so while any runs one platform thread waits for them, as the
+ * activities themselves would have.
+ *
+ * Virtual threads need Java 21. The project builds and runs on Java 17, where the virtual model has no effect: it
+ * logs a warning and every activity runs on a platform thread as in the platform model. Virtual threads are reached
+ * through reflection only so that the same build uses them when it is run on a Java 21 or later JVM.
+ */
+public class ExecutionModel {
+
+	private static Logger logger = LogManager.getLogger(ExecutionModel.class);
+	public static final String PLATFORM = "platform";
+	public static final String VIRTUAL = "virtual";
+
+	private static final Object lock = new Object();
+	private static volatile Boolean virtual;
+	private static int running = 0;
+	private static Thread keeper;
+	// null when the running JVM has no virtual threads
+	private static final ThreadFactory virtualThreads = createVirtualThreadFactory();
+	private static final Method isVirtualMethod = getIsVirtualMethod();
+
+	/**
+	 * Starts the activity in the configured execution model
+	 * @param activity thread whose run method is the activity
+	 */
+	public static void start(Thread activity) {
+
+		start(activity, isVirtual());
+	}
+
+	/**
+	 * Starts the activity on a virtual thread or on its own platform thread
+	 * @param activity thread whose run method is the activity
+	 * @param onVirtualThread
+	 */
+	public static void start(Thread activity, boolean onVirtualThread) {
+
+		SimulationClock clock = SimulationClock.getInstance();
+		Runnable body = activity;
+		if (clock.isSimulated()) {
+			// in simulated time the activity takes turns with the others, from a thread the clock knows before it starts
+			body = () -> {
+				clock.attach();
+				try {
+					activity.run();
+				} finally {
+					clock.detach();
+				}
+			};
+		}
+		if (!onVirtualThread || virtualThreads == null) {
+			if (!clock.isSimulated()) {
+				activity.start();
+				return;
+			}
+			Thread thread = new Thread(body, activity.getName());
+			clock.register(thread);
+			thread.start();
+			return;
+		}
+		synchronized (lock) {
+			running++;
+			if (keeper == null) {
+				keeper = new Thread(ExecutionModel::keepAlive, "Virtual thread keeper");
+				keeper.start();
+			}
+		}
+		Runnable started = body;
+		Thread thread = virtualThreads.newThread(() -> {
+			try {
+				started.run();
+			} finally {
+				synchronized (lock) {
+					running--;
+					lock.notifyAll();
+				}
+			}
+		});
+		thread.setName(activity.getName());
+		clock.register(thread);
+		thread.start();
+	}
+
+	/**
+	 * @return true if the running JVM has virtual threads
+	 */
+	public static boolean isVirtualAvailable() {
+
+		return virtualThreads != null;
+	}
+
+	/**
+	 * @param thread
+	 * @return true if the thread is a virtual thread
+	 */
+	public static boolean isVirtualThread(Thread thread) {
+
+		if (isVirtualMethod == null) {
+			return false;
+		}
+		try {
+			return (Boolean) isVirtualMethod.invoke(thread);
+		} catch (ReflectiveOperationException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return true if ExecutionModel in the configuration selects virtual threads
+	 */
+	public static boolean isVirtual() {
+
+		if (virtual == null) {
+			String model = PLATFORM;
+			try {
+				model = ConfigurationParser.getInstance().getString(ConfigurationParser.EXECUTION_MODEL);
+			} catch (ConfigurationParserException e) {
+				logger.error("Unable to read the execution model, using platform threads", e);
+			}
+			if (!PLATFORM.equalsIgnoreCase(model) && !VIRTUAL.equalsIgnoreCase(model)) {
+				logger.error("Unknown execution model " + model + ", using platform threads");
+			}
+			virtual = VIRTUAL.equalsIgnoreCase(model);
+			if (virtual && virtualThreads == null) {
+				logger.warn("Virtual threads need Java 21 or later, the virtual execution model has no effect on Java "
+						+ Runtime.version().feature() + ", using platform threads");
+			}
+		}
+		return virtual;
+	}
+
+	/**
+	 * @return number of activities running on virtual threads
+	 */
+	public static int getRunningCount() {
+
+		synchronized (lock) {
+			return running;
+		}
+	}
+
+	/**
+	 * @return the factory of Thread.ofVirtual(), or null before Java 21
+	 */
+	private static ThreadFactory createVirtualThreadFactory() {
+
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	private static Method getIsVirtualMethod() {
+
+		try {
+			return Thread.class.getMethod("isVirtual");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private static void keepAlive() {
+
+		synchronized (lock) {
+			try {
+				while (running > 0) {
+					lock.wait();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			keeper = null;
+		}
+	}
+}
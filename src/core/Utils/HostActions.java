@@ -24,26 +24,29 @@ import core.Exceptions.HostActionsException;
 
 public class HostActions {
 	private static Logger logger = LogManager.getLogger(HostActions.class);
+	private static volatile DatagramSocket sharedSocket;
 	/**
 	 * @param packet
-	 * @param socket
+	 * @param socket socket to send on, when empty the socket shared by all such callers is used
 	 * @throws HostActionsException
 	 */
-	public synchronized static void send(DatagramPacket packet, Optional<DatagramSocket> socket) throws HostActionsException {
+	public static void send(DatagramPacket packet, Optional<DatagramSocket> socket) throws HostActionsException {
 		
-		DatagramSocket hostSocket = null;
-		try {
-			hostSocket = socket.isPresent() ? socket.get() : new DatagramSocket();
-		} catch (SocketException e) {
-			throw new HostActionsException("Socket creation failure.", e);
-		}
+		send(packet, socket.isPresent() ? socket.get() : getSharedSocket());
+	}
+	/**
+	 * Sends on a socket the caller owns
+	 * @param packet
+	 * @param socket
+	 * @throws HostActionsException
+	 */
+	public static void send(DatagramPacket packet, DatagramSocket socket) throws HostActionsException {
 
 		try {
-			hostSocket.send(packet);
+			socket.send(packet);
 		} catch (IOException e) {
 			throw new HostActionsException("Data packet not sent.", e);
 		}
-
 	}
 	/**
 	 * @param packet
@@ -58,4 +61,20 @@ public class HostActions {
 			throw new HostActionsException("Data packet not received.", e);
 		}
 	}
+
+	private static DatagramSocket getSharedSocket() throws HostActionsException {
+
+		if (sharedSocket == null) {
+			synchronized (HostActions.class) {
+				if (sharedSocket == null) {
+					try {
+						sharedSocket = new DatagramSocket();
+					} catch (SocketException e) {
+						throw new HostActionsException("Socket creation failure.", e);
+					}
+				}
+			}
+		}
+		return sharedSocket;
+	}
 }
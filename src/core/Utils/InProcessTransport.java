@@ -0,0 +1,327 @@
+//****************************************************************************
+//
+// Filename: InProcessTransport.java
+//
+// Description: Transport between subsystems running in the same process
+//
+//***************************************************************************
+package core.Utils;
+
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import core.Exceptions.HostActionsException;
+
+/**
+ * Hands messages between two halves of a transport in memory, without sockets or system calls. Every entity has
+ * an inbox on each half, read only by the thread serving the entity. An inbox has a lane for every thread that
+ * sends to it: a lock-free single producer, single consumer queue of packets, and a second one that carries the
+ * packets back once they are received. Neither side ever takes a lock, and the receiving thread takes from the
+ * lanes in turn.
+ *
+ * The scheduler creates the transport and passes getPeer() to the elevator or floor subsystem. Messages keep the
+ * encoding used on the wire, copied once into a pooled packet from the loopback address, so the subsystems run
+ * unchanged on top of it and a message allocates nothing once the lanes are warm. A received packet is reused
+ * after the next message of the same entity is received.
+ *
+ * Waiting receivers and senders park on the SimulationClock, so in simulated time a message in an inbox keeps its
+ * receiver runnable and the clock still until it is handled.
+ */
+public class InProcessTransport implements Transport {
+
+	public static final int INBOX_CAPACITY = 1024;
+	private static final long FULL_WAIT = 100000;
+	private static final int PACKET_SIZE = 64;
+
+	private final boolean schedulerSide;
+	private final SimulationClock clock;
+	private InProcessTransport peer;
+	private Map<Integer, Inbox> inboxes = new ConcurrentHashMap<Integer, Inbox>();
+	private Set<Integer> registered = ConcurrentHashMap.newKeySet();
+	private Object registrationLock = new Object();
+	private volatile boolean shutdown = false;
+
+	/**
+	 * Creates the scheduler side along with its elevator or floor side peer, on the clock of the process
+	 */
+	public InProcessTransport() {
+
+		this(SimulationClock.getInstance());
+	}
+
+	/**
+	 * Creates the scheduler side along with its elevator or floor side peer
+	 * @param clock clock the receivers wait on
+	 */
+	public InProcessTransport(SimulationClock clock) {
+
+		this(true, clock);
+		this.peer = new InProcessTransport(false, clock);
+		this.peer.peer = this;
+	}
+
+	private InProcessTransport(boolean schedulerSide, SimulationClock clock) {
+
+		this.schedulerSide = schedulerSide;
+		this.clock = clock;
+	}
+
+	/**
+	 * @return the other half of the transport
+	 */
+	public InProcessTransport getPeer() {
+
+		return peer;
+	}
+
+	@Override
+	public void start() {
+		// nothing to start, messages are delivered by the sending thread
+	}
+
+	@Override
+	public void send(int entityId, byte[] data) throws HostActionsException {
+
+		send(entityId, data, data.length);
+	}
+
+	@Override
+	public void send(int entityId, byte[] data, int length) throws HostActionsException {
+
+		Inbox inbox = peer.getInbox(entityId);
+		Lane lane = inbox.lanes.get();
+		DatagramPacket packet = lane.free.poll();
+		if (packet == null) {
+			packet = new DatagramPacket(new byte[Math.max(length, PACKET_SIZE)], 0, InetAddress.getLoopbackAddress(), 0);
+		} else if (packet.getData().length < length) {
+			packet.setData(new byte[length]);
+		}
+		System.arraycopy(data, 0, packet.getData(), 0, length);
+		packet.setLength(length);
+		while (!lane.queue.offer(packet)) {
+			if (shutdown || inbox.closed) {
+				throw new HostActionsException("Unable to send to " + entityId + ", transport was closed");
+			}
+			clock.parkNanos(lane, FULL_WAIT);
+		}
+		inbox.wake();
+	}
+
+	/**
+	 * Waits for the next message of the entity. The packet is reused once the next message of the entity is
+	 * received, so it has to be read before.
+	 */
+	@Override
+	public DatagramPacket receive(int entityId, int timeout) throws HostActionsException {
+
+		try {
+			DatagramPacket packet = getInbox(entityId).take(timeout);
+			if (packet == null) {
+				throw new HostActionsException("Data packet not received.");
+			}
+			return packet;
+		} catch (InterruptedException e) {
+			throw new HostActionsException("Data packet not received.", e);
+		}
+	}
+
+	/**
+	 * Registers the entity with the scheduler, which takes effect immediately
+	 * @param entityId
+	 * @throws HostActionsException
+	 */
+	@Override
+	public void register(int entityId) throws HostActionsException {
+
+		if (shutdown) {
+			throw new HostActionsException("Unable to register " + entityId + ", transport was closed");
+		}
+		InProcessTransport scheduler = schedulerSide ? this : peer;
+		synchronized (scheduler.registrationLock) {
+			scheduler.registered.add(entityId);
+			scheduler.registrationLock.notifyAll();
+		}
+		registered.add(entityId);
+	}
+
+	@Override
+	public void awaitRegistrations(int count) throws InterruptedException {
+
+		synchronized (registrationLock) {
+			while (registered.size() < count) {
+				registrationLock.wait();
+			}
+		}
+	}
+
+	@Override
+	public boolean isRegistered(int entityId) {
+
+		return registered.contains(entityId);
+	}
+
+	@Override
+	public int getLocalPort() {
+
+		return 0;
+	}
+
+	/**
+	 * Closes this half, waking its receivers once their queued messages are taken
+	 */
+	@Override
+	public void terminate() {
+
+		shutdown = true;
+		for (Inbox inbox : inboxes.values()) {
+			inbox.close();
+		}
+	}
+
+	private Inbox getInbox(int entityId) {
+
+		Inbox inbox = inboxes.get(entityId);
+		if (inbox != null) {
+			return inbox;
+		}
+		return inboxes.computeIfAbsent(entityId, id -> {
+			Inbox created = new Inbox(clock);
+			if (shutdown) {
+				created.close();
+			}
+			return created;
+		});
+	}
+
+	/**
+	 * Queues of one sending thread to an inbox
+	 */
+	private static class Lane {
+
+		private final Thread sender = Thread.currentThread();
+		private final SpscQueue<DatagramPacket> queue = new SpscQueue<DatagramPacket>(INBOX_CAPACITY);
+		// a lane never holds more packets than its queue, the one being filled and the one last received
+		private final SpscQueue<DatagramPacket> free = new SpscQueue<DatagramPacket>(INBOX_CAPACITY + 2);
+	}
+
+	/**
+	 * Messages of one entity, from a lane per sending thread
+	 */
+	private static class Inbox {
+
+		private final SimulationClock clock;
+		private final ThreadLocal<Lane> lanes = ThreadLocal.withInitial(this::addLane);
+		private volatile Lane[] all = new Lane[0];
+		private volatile Thread waiter;
+		private volatile boolean closed = false;
+
+		// only used by the receiving thread
+		private int nextLane = 0;
+		private Lane polledLane;
+		private Lane receivedLane;
+		private DatagramPacket received;
+
+		private Inbox(SimulationClock clock) {
+
+			this.clock = clock;
+		}
+
+		/**
+		 * Adds the lane of the calling thread, dropping the drained lanes of threads that ended
+		 */
+		private synchronized Lane addLane() {
+
+			Lane lane = new Lane();
+			Lane[] grown = new Lane[all.length + 1];
+			int count = 0;
+			for (Lane other : all) {
+				if (other.sender.isAlive() || other.queue.size() > 0) {
+					grown[count++] = other;
+				}
+			}
+			grown[count++] = lane;
+			all = Arrays.copyOf(grown, count);
+			return lane;
+		}
+
+		/**
+		 * Removes the oldest packet of the next lane that has one
+		 * @return the packet, null if every lane is empty
+		 */
+		private DatagramPacket poll() {
+
+			Lane[] current = all;
+			for (int i = 0; i < current.length; i++) {
+				int index = (nextLane + i) % current.length;
+				DatagramPacket packet = current[index].queue.poll();
+				if (packet != null) {
+					nextLane = index + 1;
+					polledLane = current[index];
+					return packet;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Waits for the next packet and hands the previous one back to its lane
+		 * @param timeout milliseconds to wait, 0 waits until a packet arrives or the inbox is closed
+		 * @return the packet, null if none arrived in time or the inbox was closed
+		 */
+		private DatagramPacket take(long timeout) throws InterruptedException {
+
+			DatagramPacket packet = poll();
+			if (packet == null) {
+				long deadline = clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+				waiter = Thread.currentThread();
+				try {
+					// a sender publishes before reading the waiter, so one of the two polls sees its packet
+					while ((packet = poll()) == null) {
+						if (closed) {
+							return null;
+						}
+						if (Thread.interrupted()) {
+							throw new InterruptedException();
+						}
+						if (timeout == 0) {
+							clock.park(this);
+						} else {
+							long remaining = deadline - clock.nanoTime();
+							if (remaining <= 0) {
+								return null;
+							}
+							clock.parkNanos(this, remaining);
+						}
+					}
+				} finally {
+					waiter = null;
+				}
+			}
+			if (received != null) {
+				receivedLane.free.offer(received);
+			}
+			received = packet;
+			receivedLane = polledLane;
+			return packet;
+		}
+
+		private void wake() {
+
+			Thread consumer = waiter;
+			if (consumer != null) {
+				clock.unpark(consumer);
+			}
+		}
+
+		private void close() {
+
+			closed = true;
+			wake();
+		}
+	}
+}
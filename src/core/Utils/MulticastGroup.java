@@ -0,0 +1,131 @@
+//****************************************************************************
+//
+// Filename: MulticastGroup.java
+//
+// Description: Multicast group the scheduler publishes elevator states on
+//
+//***************************************************************************
+package core.Utils;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.UnknownHostException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import core.ConfigurationParser;
+import core.Exceptions.ConfigurationParserException;
+import core.Exceptions.HostActionsException;
+
+/**
+ * Group that elevator states are published on. The scheduler sends each state once to the group and every floor
+ * subsystem that joined it receives its own copy, so the cost of a state change does not grow with the number of
+ * floors. Packets are sent on the loopback interface with a time to live of 0, so they never leave the host.
+ */
+public class MulticastGroup {
+
+	private static Logger logger = LogManager.getLogger(MulticastGroup.class);
+
+	private InetAddress address;
+	private int port;
+	private NetworkInterface networkInterface;
+
+	public MulticastGroup(InetAddress address, int port) throws HostActionsException {
+
+		if (!address.isMulticastAddress()) {
+			throw new HostActionsException(address + " is not a multicast address");
+		}
+		this.address = address;
+		this.port = port;
+		try {
+			this.networkInterface = NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress());
+		} catch (IOException e) {
+			throw new HostActionsException("Unable to find the loopback interface", e);
+		}
+	}
+
+	/**
+	 * Gets the group of the configuration
+	 * @return MulticastGroup, null when FloorStateMulticast is disabled
+	 * @throws ConfigurationParserException
+	 * @throws HostActionsException
+	 */
+	public static MulticastGroup getConfiguredGroup() throws ConfigurationParserException, HostActionsException {
+
+		ConfigurationParser configurationParser = ConfigurationParser.getInstance();
+		if (!configurationParser.getBoolean(ConfigurationParser.FLOOR_STATE_MULTICAST)) {
+			return null;
+		}
+		String group = configurationParser.getString(ConfigurationParser.FLOOR_STATE_MULTICAST_GROUP);
+		try {
+			return new MulticastGroup(InetAddress.getByName(group),
+					configurationParser.getInt(ConfigurationParser.FLOOR_STATE_MULTICAST_PORT));
+		} catch (UnknownHostException e) {
+			throw new HostActionsException("Unknown multicast group " + group, e);
+		}
+	}
+
+	/**
+	 * Creates a socket for sending to the group
+	 * @return MulticastSocket
+	 * @throws HostActionsException
+	 */
+	public MulticastSocket createSendSocket() throws HostActionsException {
+
+		try {
+			MulticastSocket socket = new MulticastSocket();
+			socket.setNetworkInterface(networkInterface);
+			socket.setTimeToLive(0);
+			return socket;
+		} catch (IOException e) {
+			throw new HostActionsException("Unable to create a socket for " + this, e);
+		}
+	}
+
+	/**
+	 * Creates a socket that receives every packet sent to the group
+	 * @return MulticastSocket
+	 * @throws HostActionsException
+	 */
+	public MulticastSocket join() throws HostActionsException {
+
+		try {
+			MulticastSocket socket = new MulticastSocket(port);
+			socket.joinGroup(new InetSocketAddress(address, port), networkInterface);
+			return socket;
+		} catch (IOException e) {
+			throw new HostActionsException("Unable to join " + this, e);
+		}
+	}
+
+	/**
+	 * Leaves the group and closes the socket
+	 * @param socket socket created by join
+	 */
+	public void leave(MulticastSocket socket) {
+
+		try {
+			socket.leaveGroup(new InetSocketAddress(address, port), networkInterface);
+		} catch (IOException e) {
+			logger.debug("Unable to leave " + this, e);
+		}
+		socket.close();
+	}
+
+	public InetAddress getAddress() {
+		return this.address;
+	}
+
+	public int getPort() {
+		return this.port;
+	}
+
+	@Override
+	public String toString() {
+		return "multicast group " + address.getHostAddress() + ":" + port;
+	}
+}
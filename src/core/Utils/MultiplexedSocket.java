@@ -0,0 +1,333 @@
+//****************************************************************************
+//
+// Filename: MultiplexedSocket.java
+//
+// Description: One datagram socket shared by all elevators or all floors,
+//              packets are routed by the entity id in their header
+//
+//***************************************************************************
+package core.Utils;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import core.Metrics;
+import core.Exceptions.HostActionsException;
+
+/**
+ * Carries the traffic of many elevators or floors over a single socket. Every packet starts with a two byte
+ * header holding the id of the elevator or floor it belongs to, followed by the usual message.
+ *
+ * The scheduler opens one on a known port and learns the address of every entity from the registration message
+ * the entity sends, which replaces the port table handshake. The elevator and floor subsystems open one on any
+ * port and send everything to the scheduler.
+ *
+ * Packets are only delivered for the entities that registered: the scheduler side drops anything else, and the
+ * entity side only takes packets for the entities whose registration was acknowledged. Every entity has a bounded
+ * inbox, a packet that arrives while it is full is dropped and counted. Received packets are copied into pooled
+ * packets, which are reused once the next message of the same entity is received, and every sending thread keeps
+ * one frame, so a packet allocates nothing once the pools are warm.
+ */
+public class MultiplexedSocket extends Thread implements Transport {
+
+	private static Logger logger = LogManager.getLogger(MultiplexedSocket.class);
+	public static final int HEADER_SIZE = 2;
+	private static final int DATA_SIZE = 1024;
+	public static final int MAX_PAYLOAD_SIZE = DATA_SIZE - HEADER_SIZE;
+	public static final int INBOX_CAPACITY = 256;
+	private static final int REGISTER_RETRY_TIME = 1000;
+	private static final byte[] REGISTER = "Register".getBytes(StandardCharsets.UTF_8);
+
+	private DatagramSocket socket;
+	private InetSocketAddress schedulerAddress;
+	private Map<Integer, Inbox> inboxes = new ConcurrentHashMap<Integer, Inbox>();
+	private Map<Integer, InetSocketAddress> entityAddresses = new ConcurrentHashMap<Integer, InetSocketAddress>();
+	private Object registrationLock = new Object();
+	private volatile boolean shutdown = false;
+	// only used by the receiving thread
+	private DatagramPacket receivePacket = new DatagramPacket(new byte[DATA_SIZE], DATA_SIZE);
+	private ThreadLocal<DatagramPacket> sendFrames = ThreadLocal.withInitial(() -> new DatagramPacket(new byte[DATA_SIZE], DATA_SIZE));
+	private LongAdder packetsDropped;
+
+	/**
+	 * Opens the scheduler side on the given port, entities register with it before they send anything else
+	 * @param name
+	 * @param port
+	 * @throws HostActionsException
+	 */
+	public MultiplexedSocket(String name, int port) throws HostActionsException {
+
+		super(name);
+		this.setDaemon(true);
+		this.packetsDropped = Metrics.counter(Metrics.key("packets_dropped", "socket", name));
+		try {
+			this.socket = new DatagramSocket(port);
+		} catch (SocketException e) {
+			throw new HostActionsException("Unable to create a DatagramSocket on port " + port, e);
+		}
+	}
+
+	/**
+	 * Opens the elevator or floor side on any free port, everything is sent to the scheduler
+	 * @param name
+	 * @param schedulerAddress
+	 * @param schedulerPort
+	 * @throws HostActionsException
+	 */
+	public MultiplexedSocket(String name, InetAddress schedulerAddress, int schedulerPort) throws HostActionsException {
+
+		this(name, 0);
+		this.schedulerAddress = new InetSocketAddress(schedulerAddress, schedulerPort);
+	}
+
+	@Override
+	public void run() {
+
+		DatagramPacket packet = receivePacket;
+		while (!shutdown) {
+			packet.setLength(DATA_SIZE);
+			try {
+				socket.receive(packet);
+			} catch (IOException e) {
+				if (socket.isClosed()) {
+					break;
+				}
+				logger.error("Unable to receive multiplexed packet", e);
+				continue;
+			}
+			if (packet.getLength() < HEADER_SIZE) {
+				continue;
+			}
+			int entityId = getEntityId(packet.getData());
+			if (isRegistration(packet)) {
+				// the scheduler records where the entity is and acknowledges, the entity side records the acknowledgement
+				register(entityId, (InetSocketAddress) packet.getSocketAddress());
+				if (schedulerAddress == null) {
+					acknowledge(entityId);
+				}
+				continue;
+			}
+			if (!entityAddresses.containsKey(entityId)) {
+				packetsDropped.increment();
+				logger.debug(getName() + " dropped a packet of unregistered entity " + entityId);
+				continue;
+			}
+			if (schedulerAddress == null) {
+				entityAddresses.put(entityId, (InetSocketAddress) packet.getSocketAddress());
+			}
+			getInbox(entityId).deliver(packet, packetsDropped);
+		}
+	}
+
+	/**
+	 * Sends the data to the entity, or to the scheduler on the elevator and floor side
+	 * @param entityId
+	 * @param data
+	 * @throws HostActionsException
+	 */
+	public void send(int entityId, byte[] data) throws HostActionsException {
+
+		send(entityId, data, data.length);
+	}
+
+	/**
+	 * Sends the first length bytes of the data to the entity, or to the scheduler on the elevator and floor side
+	 * @param entityId
+	 * @param data
+	 * @param length
+	 * @throws HostActionsException
+	 */
+	public void send(int entityId, byte[] data, int length) throws HostActionsException {
+
+		InetSocketAddress address = schedulerAddress != null ? schedulerAddress : entityAddresses.get(entityId);
+		if (address == null) {
+			throw new HostActionsException("Entity " + entityId + " has not registered");
+		}
+		if (length > MAX_PAYLOAD_SIZE) {
+			throw new HostActionsException("Data packet of " + length + " bytes is larger than " + MAX_PAYLOAD_SIZE + " bytes");
+		}
+		DatagramPacket frame = sendFrames.get();
+		byte[] packetData = frame.getData();
+		packetData[0] = (byte) (entityId >> 8);
+		packetData[1] = (byte) entityId;
+		System.arraycopy(data, 0, packetData, HEADER_SIZE, length);
+		frame.setLength(HEADER_SIZE + length);
+		frame.setSocketAddress(address);
+		try {
+			socket.send(frame);
+		} catch (IOException e) {
+			throw new HostActionsException("Data packet not sent.", e);
+		}
+	}
+
+	/**
+	 * Waits for the next packet of the entity. The packet is reused once the next message of the entity is
+	 * received, so it has to be read before.
+	 * @param entityId
+	 * @param timeout milliseconds to wait, 0 waits until a packet arrives
+	 * @return packet without the header
+	 * @throws HostActionsException if no packet arrived in time
+	 */
+	public DatagramPacket receive(int entityId, int timeout) throws HostActionsException {
+
+		try {
+			DatagramPacket packet = getInbox(entityId).take(timeout);
+			if (packet == null) {
+				throw new HostActionsException("Data packet not received.");
+			}
+			return packet;
+		} catch (InterruptedException e) {
+			throw new HostActionsException("Data packet not received.", e);
+		}
+	}
+
+	/**
+	 * Registers the entity with the scheduler, retrying until the scheduler acknowledges it
+	 * @param entityId
+	 * @throws HostActionsException
+	 */
+	public void register(int entityId) throws HostActionsException {
+
+		synchronized (registrationLock) {
+			while (!entityAddresses.containsKey(entityId)) {
+				if (shutdown) {
+					throw new HostActionsException("Unable to register " + entityId + ", socket was closed");
+				}
+				send(entityId, REGISTER);
+				try {
+					registrationLock.wait(REGISTER_RETRY_TIME);
+				} catch (InterruptedException e) {
+					throw new HostActionsException("Unable to register " + entityId, e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits on the scheduler side until the given number of entities registered
+	 * @param count
+	 * @throws InterruptedException
+	 */
+	public void awaitRegistrations(int count) throws InterruptedException {
+
+		synchronized (registrationLock) {
+			while (entityAddresses.size() < count) {
+				registrationLock.wait();
+			}
+		}
+	}
+
+	public boolean isRegistered(int entityId) {
+
+		return entityAddresses.containsKey(entityId);
+	}
+
+	public int getLocalPort() {
+
+		return socket.getLocalPort();
+	}
+
+	public void terminate() {
+
+		shutdown = true;
+		socket.close();
+	}
+
+	private void register(int entityId, InetSocketAddress address) {
+
+		synchronized (registrationLock) {
+			entityAddresses.put(entityId, address);
+			registrationLock.notifyAll();
+		}
+	}
+
+	private void acknowledge(int entityId) {
+
+		try {
+			send(entityId, REGISTER);
+		} catch (HostActionsException e) {
+			logger.error("Unable to acknowledge registration of " + entityId, e);
+		}
+	}
+
+	/**
+	 * Gets the inbox of the entity, created for the entities this side receives for or that registered
+	 */
+	private Inbox getInbox(int entityId) {
+
+		Inbox inbox = inboxes.get(entityId);
+		if (inbox != null) {
+			return inbox;
+		}
+		return inboxes.computeIfAbsent(entityId, id -> new Inbox());
+	}
+
+	private static int getEntityId(byte[] data) {
+
+		return ((data[0] & 0xFF) << 8) | (data[1] & 0xFF);
+	}
+
+	private static boolean isRegistration(DatagramPacket packet) {
+
+		return Arrays.equals(packet.getData(), HEADER_SIZE, packet.getLength(), REGISTER, 0, REGISTER.length);
+	}
+
+	/**
+	 * Packets received for one entity, read by the single thread serving it. The packets are pooled: the one
+	 * handed out last goes back to the pool on the next take, so at most INBOX_CAPACITY + 1 are ever allocated.
+	 */
+	private static class Inbox {
+
+		private final BlockingQueue<DatagramPacket> packets = new ArrayBlockingQueue<DatagramPacket>(INBOX_CAPACITY);
+		private final BlockingQueue<DatagramPacket> free = new ArrayBlockingQueue<DatagramPacket>(INBOX_CAPACITY + 1);
+		private DatagramPacket taken;
+
+		/**
+		 * Copies the message of the received frame into a pooled packet and queues it, or drops it if the inbox is full
+		 */
+		private void deliver(DatagramPacket frame, LongAdder packetsDropped) {
+
+			DatagramPacket packet = free.poll();
+			if (packet == null) {
+				packet = new DatagramPacket(new byte[MAX_PAYLOAD_SIZE], MAX_PAYLOAD_SIZE);
+			}
+			int length = frame.getLength() - HEADER_SIZE;
+			System.arraycopy(frame.getData(), HEADER_SIZE, packet.getData(), 0, length);
+			packet.setLength(length);
+			packet.setSocketAddress(frame.getSocketAddress());
+			if (!packets.offer(packet)) {
+				free.offer(packet);
+				packetsDropped.increment();
+			}
+		}
+
+		private DatagramPacket take(int timeout) throws InterruptedException {
+
+			if (taken != null) {
+				free.offer(taken);
+				taken = null;
+			}
+			if (timeout == 0) {
+				taken = packets.take();
+			} else {
+				taken = packets.poll(timeout, TimeUnit.MILLISECONDS);
+			}
+			return taken;
+		}
+	}
+}
@@ -0,0 +1,515 @@
+//****************************************************************************
+//
+// Filename: ReliableChannel.java
+//
+// Description: Acknowledged and retransmitted packets over one socket
+//
+//***************************************************************************
+package core.Utils;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import core.Exceptions.HostActionsException;
+import core.Messages.MessageCodec;
+
+/**
+ * Adds acknowledgements, retransmission and duplicate filtering to the packets sent over one socket. Every packet
+ * gets a 16 bit sequence number and is sent again until the peer acknowledges it, with a timeout that follows the
+ * measured round trip time (RFC 6298) and doubles on every retry. Acknowledgements are selective: each one holds
+ * the highest sequence number received without gaps and a bitmap of the 32 after it, so a lost packet does not
+ * cause the ones after it to be sent again. Packets are handed to the caller in the order they arrive, duplicates
+ * are dropped.
+ *
+ * Every channel also picks a random 16 bit epoch that its packets carry and its peer echoes in the
+ * acknowledgements. A packet with an epoch the receiver has not seen comes from a restarted peer: the receiver
+ * starts over from that packet instead of taking the new sequence numbers for duplicates. A stream whose first
+ * packet is within the receive window of sequence 0 is taken as a fresh one, so its early packets may still
+ * arrive out of order. The receive side tracks one peer, as each channel talks to a single peer.
+ *
+ * Every channel has a thread that receives from its socket, so acknowledgements are handled as they arrive, also
+ * while the owner is not receiving. That thread acknowledges the data packets and queues them for receive; once
+ * RECEIVE_WINDOW packets are queued, new ones are dropped without an acknowledgement and the peer sends them again.
+ * Packets without the reliable header are queued unchanged. Sockets are only used outside the lock of the channel,
+ * so neither the shared timer thread nor the receiving thread waits on a sender.
+ */
+public class ReliableChannel {
+
+	private static Logger logger = LogManager.getLogger(ReliableChannel.class);
+	public static final int HEADER_SIZE = MessageCodec.HEADER_SIZE + 4;
+	public static final int MAX_PAYLOAD_SIZE = AsyncSender.DATA_SIZE - HEADER_SIZE;
+	public static final int WINDOW = 32;
+	public static final int MAX_RETRANSMITS = 6;
+	public static final int INITIAL_RTO = 200;
+	public static final int MIN_RTO = 20;
+	public static final int MAX_RTO = 2000;
+
+	private static final int SEQUENCE_MASK = 0xFFFF;
+	private static final int ACK_SIZE = MessageCodec.HEADER_SIZE + 8;
+	private static final int RECEIVE_WINDOW = 64;
+	private static final int POLL_TIMEOUT = 1000;
+	// one timer thread serves the retransmissions of every channel, it sends straight to the sockets
+	private static final Timer retransmitTimer = new Timer("Reliable channel timer", true);
+
+	private String name;
+	private final int epoch = ThreadLocalRandom.current().nextInt(SEQUENCE_MASK + 1);
+	private DatagramSocket socket;
+	private AsyncSender sender;
+	private PendingPacket[] pending = new PendingPacket[WINDOW];
+	private int nextSequence = 0;
+	private int inFlight = 0;
+	private double smoothedRtt = -1;
+	private double rttVariance;
+	private long rto = INITIAL_RTO;
+	private volatile boolean closed = false;
+	// keeps the packets of concurrent senders in sequence order on the wire
+	private Object sendLock = new Object();
+
+	// receive side, only used by the receiver thread
+	private Thread receiver;
+	private int received = SEQUENCE_MASK;
+	private long receivedAhead = 0;
+	private int peerEpoch = -1;
+	private byte[] ack = new byte[ACK_SIZE];
+	private DatagramPacket ackPacket = new DatagramPacket(ack, ACK_SIZE);
+	private BlockingQueue<DatagramPacket> inbox = new ArrayBlockingQueue<DatagramPacket>(RECEIVE_WINDOW);
+	private BlockingQueue<DatagramPacket> free = new ArrayBlockingQueue<DatagramPacket>(RECEIVE_WINDOW);
+
+	private int retransmitCount = 0;
+	private volatile int duplicateCount = 0;
+	private volatile int peerRestartCount = 0;
+
+	/**
+	 * Starts the receiver thread of the channel, which owns the receiving side of the socket from now on
+	 * @param name
+	 * @param socket socket the packets are sent from and the acknowledgements are received on
+	 * @param sender sender of the socket, null to send on the socket from the calling thread
+	 */
+	public ReliableChannel(String name, DatagramSocket socket, AsyncSender sender) {
+
+		this.name = name;
+		this.socket = socket;
+		this.sender = sender;
+		for (int i = 0; i < WINDOW; i++) {
+			pending[i] = new PendingPacket();
+		}
+		for (int i = 0; i < RECEIVE_WINDOW; i++) {
+			free.add(new DatagramPacket(new byte[AsyncSender.DATA_SIZE], AsyncSender.DATA_SIZE));
+		}
+		receiver = new Thread(this::receiveLoop, name + " receiver");
+		receiver.setDaemon(true);
+		receiver.start();
+	}
+
+	/**
+	 * Sends a copy of the data and keeps sending it until it is acknowledged. Waits while WINDOW packets are
+	 * unacknowledged.
+	 * @param data
+	 * @param length
+	 * @param address
+	 * @param port
+	 * @throws HostActionsException if the channel is closed or the data does not fit in a packet
+	 */
+	public void send(byte[] data, int length, InetAddress address, int port) throws HostActionsException {
+
+		if (length > MAX_PAYLOAD_SIZE) {
+			throw new HostActionsException("Packet of " + length + " bytes does not fit in " + name);
+		}
+		synchronized (sendLock) {
+			transmit(reserve(data, length, address, port));
+		}
+	}
+
+	/**
+	 * Copies the data into the next pending packet and starts its retransmit timeout
+	 */
+	private synchronized PendingPacket reserve(byte[] data, int length, InetAddress address, int port) throws HostActionsException {
+
+		PendingPacket packet = pending[nextSequence % WINDOW];
+		while (packet.inUse && !closed) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				throw new HostActionsException("Interrupted while waiting to send on " + name, e);
+			}
+		}
+		if (closed) {
+			throw new HostActionsException(name + " is closed");
+		}
+		packet.sequence = nextSequence;
+		nextSequence = (nextSequence + 1) & SEQUENCE_MASK;
+		packet.data[0] = MessageCodec.RELIABLE;
+		packet.data[1] = MessageCodec.VERSION;
+		packet.data[2] = (byte) (packet.sequence >> 8);
+		packet.data[3] = (byte) packet.sequence;
+		packet.data[4] = (byte) (epoch >> 8);
+		packet.data[5] = (byte) epoch;
+		System.arraycopy(data, 0, packet.data, HEADER_SIZE, length);
+		packet.length = HEADER_SIZE + length;
+		packet.address = address;
+		packet.port = port;
+		packet.datagram.setData(packet.data, 0, packet.length);
+		packet.datagram.setAddress(address);
+		packet.datagram.setPort(port);
+		packet.attempts = 0;
+		packet.inUse = true;
+		inFlight++;
+		schedule(packet);
+		return packet;
+	}
+
+	/**
+	 * Takes the next packet of the peer received by the receiver thread. The reliable header is removed, so the
+	 * packet holds the data as it was passed to send.
+	 * @param packet
+	 * @param timeout in milliseconds, 0 to wait without limit
+	 * @throws HostActionsException if nothing was received in time or the channel is closed
+	 */
+	public void receive(DatagramPacket packet, int timeout) throws HostActionsException {
+
+		long deadline = System.currentTimeMillis() + timeout;
+		DatagramPacket next = null;
+		while (next == null) {
+			if (closed || !receiver.isAlive()) {
+				throw new HostActionsException(name + " is closed");
+			}
+			long wait = POLL_TIMEOUT;
+			if (timeout > 0) {
+				wait = Math.min(wait, deadline - System.currentTimeMillis());
+				if (wait <= 0) {
+					throw new HostActionsException("Data packet not received on " + name);
+				}
+			}
+			try {
+				next = inbox.poll(wait, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				throw new HostActionsException("Interrupted while receiving on " + name, e);
+			}
+		}
+		int length = Math.min(next.getLength(), packet.getData().length - packet.getOffset());
+		System.arraycopy(next.getData(), 0, packet.getData(), packet.getOffset(), length);
+		packet.setLength(length);
+		packet.setAddress(next.getAddress());
+		packet.setPort(next.getPort());
+		free.add(next);
+	}
+
+	/**
+	 * Body of the receiver thread, ends once the channel or the socket is closed
+	 */
+	private void receiveLoop() {
+
+		DatagramPacket packet = new DatagramPacket(new byte[AsyncSender.DATA_SIZE], AsyncSender.DATA_SIZE);
+		try {
+			socket.setSoTimeout(POLL_TIMEOUT);
+		} catch (IOException e) {
+			logger.error("Unable to receive on " + name, e);
+			return;
+		}
+		while (!closed) {
+			try {
+				packet.setLength(AsyncSender.DATA_SIZE);
+				socket.receive(packet);
+			} catch (SocketTimeoutException e) {
+				continue;
+			} catch (IOException e) {
+				if (!closed && !socket.isClosed()) {
+					logger.error("Unable to receive on " + name, e);
+				}
+				return;
+			}
+
+			byte type = MessageCodec.getType(packet.getData(), packet.getLength());
+			if (type == MessageCodec.ACK) {
+				handleAck(packet.getData(), packet.getLength());
+				continue;
+			}
+			if (type == MessageCodec.RELIABLE && packet.getLength() < HEADER_SIZE) {
+				continue;
+			}
+			// a full queue drops the packet before it is acknowledged
+			DatagramPacket queued = free.poll();
+			if (queued == null) {
+				continue;
+			}
+			int offset = 0;
+			if (type == MessageCodec.RELIABLE) {
+				try {
+					if (!accept(packet)) {
+						free.add(queued);
+						continue;
+					}
+				} catch (HostActionsException e) {
+					logger.error("Unable to acknowledge packet on " + name, e);
+				}
+				offset = HEADER_SIZE;
+			}
+			System.arraycopy(packet.getData(), offset, queued.getData(), 0, packet.getLength() - offset);
+			queued.setLength(packet.getLength() - offset);
+			queued.setAddress(packet.getAddress());
+			queued.setPort(packet.getPort());
+			inbox.add(queued);
+		}
+	}
+
+	/**
+	 * Records the sequence number of a received packet and acknowledges it
+	 * @return false if the packet is a duplicate or too far ahead to be recorded
+	 */
+	private boolean accept(DatagramPacket packet) throws HostActionsException {
+
+		byte[] data = packet.getData();
+		int sequence = ((data[2] & 0xFF) << 8) | (data[3] & 0xFF);
+		int packetEpoch = ((data[4] & 0xFF) << 8) | (data[5] & 0xFF);
+		if (packetEpoch != peerEpoch) {
+			restart(sequence, packetEpoch);
+		}
+		boolean accepted = false;
+		if (isNewer(sequence, received)) {
+			int distance = ((sequence - received) & SEQUENCE_MASK) - 1;
+			if (distance < RECEIVE_WINDOW && (receivedAhead & (1L << distance)) == 0) {
+				receivedAhead |= 1L << distance;
+				while ((receivedAhead & 1) != 0) {
+					received = (received + 1) & SEQUENCE_MASK;
+					receivedAhead >>>= 1;
+				}
+				accepted = true;
+			} else if (distance >= RECEIVE_WINDOW) {
+				// not recorded and not acknowledged, the peer sends it again
+				return false;
+			}
+		}
+		if (!accepted) {
+			duplicateCount++;
+		}
+		// duplicates are acknowledged again, the first acknowledgement may have been lost
+		ack[0] = MessageCodec.ACK;
+		ack[1] = MessageCodec.VERSION;
+		ack[2] = (byte) (received >> 8);
+		ack[3] = (byte) received;
+		int bitmap = (int) receivedAhead;
+		for (int i = 0; i < 4; i++) {
+			ack[4 + i] = (byte) (bitmap >> (24 - 8 * i));
+		}
+		ack[8] = (byte) (peerEpoch >> 8);
+		ack[9] = (byte) peerEpoch;
+		ackPacket.setAddress(packet.getAddress());
+		ackPacket.setPort(packet.getPort());
+		send(ackPacket);
+		return accepted;
+	}
+
+	/**
+	 * Forgets the sequence numbers of the previous peer. A stream that starts near sequence 0 is received from
+	 * its beginning, otherwise the peer was already sending before this channel started and the packet is the
+	 * first one that is received.
+	 */
+	private void restart(int sequence, int packetEpoch) {
+
+		if (peerEpoch != -1) {
+			peerRestartCount++;
+			logger.info("Peer of " + name + " restarted, receiving from sequence " + sequence);
+		}
+		peerEpoch = packetEpoch;
+		received = sequence < RECEIVE_WINDOW ? SEQUENCE_MASK : (sequence - 1) & SEQUENCE_MASK;
+		receivedAhead = 0;
+	}
+
+	private synchronized void handleAck(byte[] data, int length) {
+
+		// acknowledgements of an earlier channel on the same port do not apply to this one
+		if (length < ACK_SIZE || (((data[8] & 0xFF) << 8) | (data[9] & 0xFF)) != epoch) {
+			return;
+		}
+		int cumulative = ((data[2] & 0xFF) << 8) | (data[3] & 0xFF);
+		int bitmap = ((data[4] & 0xFF) << 24) | ((data[5] & 0xFF) << 16) | ((data[6] & 0xFF) << 8) | (data[7] & 0xFF);
+		long now = System.currentTimeMillis();
+		for (PendingPacket packet : pending) {
+			if (!packet.inUse) {
+				continue;
+			}
+			int distance = ((packet.sequence - cumulative) & SEQUENCE_MASK) - 1;
+			boolean acknowledged = !isNewer(packet.sequence, cumulative) || (distance < 32 && (bitmap & (1 << distance)) != 0);
+			if (acknowledged) {
+				// only packets sent once give a round trip time that can be trusted (Karn)
+				if (packet.attempts == 0) {
+					updateRto(now - packet.sentAt);
+				}
+				release(packet);
+			}
+		}
+	}
+
+	private void updateRto(long sample) {
+
+		if (smoothedRtt < 0) {
+			smoothedRtt = sample;
+			rttVariance = sample / 2.0;
+		} else {
+			rttVariance = 0.75 * rttVariance + 0.25 * Math.abs(smoothedRtt - sample);
+			smoothedRtt = 0.875 * smoothedRtt + 0.125 * sample;
+		}
+		rto = Math.max(MIN_RTO, Math.min(MAX_RTO, Math.round(smoothedRtt + 4 * rttVariance)));
+	}
+
+	/**
+	 * Starts the timeout after which the packet is sent again, called while holding the lock
+	 */
+	private void schedule(PendingPacket packet) {
+
+		packet.sentAt = System.currentTimeMillis();
+		long timeout = Math.min(MAX_RTO, rto << packet.attempts);
+		packet.task = new TimerTask() {
+			@Override
+			public void run() {
+				retransmit(packet);
+			}
+		};
+		retransmitTimer.schedule(packet.task, timeout);
+	}
+
+	/**
+	 * First transmission of a packet, through the sender if the channel has one
+	 */
+	private void transmit(PendingPacket packet) throws HostActionsException {
+
+		if (sender != null) {
+			sender.send(packet.data, packet.length, packet.address, packet.port);
+		} else {
+			send(packet.datagram);
+		}
+	}
+
+	/**
+	 * Runs on the timer thread, the packet is sent straight to the socket after the lock is released, so the
+	 * timer never waits for a free packet of the sender
+	 */
+	private void retransmit(PendingPacket packet) {
+
+		synchronized (this) {
+			if (!packet.inUse || closed) {
+				return;
+			}
+			if (socket.isClosed()) {
+				release(packet);
+				return;
+			}
+			if (packet.attempts >= MAX_RETRANSMITS) {
+				logger.warn("Packet " + packet.sequence + " on " + name + " was not acknowledged after " + MAX_RETRANSMITS + " retransmits");
+				release(packet);
+				return;
+			}
+			packet.attempts++;
+			retransmitCount++;
+			schedule(packet);
+		}
+		// the data of a pending packet does not change until it is released and sent again under a new sequence
+		try {
+			send(packet.datagram);
+		} catch (HostActionsException e) {
+			// the next timeout sends it again or gives it up
+			logger.error("Unable to retransmit packet " + packet.sequence + " on " + name, e);
+		}
+	}
+
+	private void send(DatagramPacket packet) throws HostActionsException {
+
+		try {
+			socket.send(packet);
+		} catch (IOException e) {
+			throw new HostActionsException("Unable to send packet on " + name, e);
+		}
+	}
+
+	private void release(PendingPacket packet) {
+
+		if (packet.task != null) {
+			packet.task.cancel();
+		}
+		packet.inUse = false;
+		inFlight--;
+		notifyAll();
+	}
+
+	private static boolean isNewer(int sequence, int last) {
+
+		return (short) (sequence - last) > 0;
+	}
+
+	/**
+	 * Waits until every packet sent is acknowledged, for senders that are done
+	 * @param timeout in milliseconds
+	 */
+	public synchronized void flush(int timeout) {
+
+		long deadline = System.currentTimeMillis() + timeout;
+		long remaining;
+		while (inFlight > 0 && (remaining = deadline - System.currentTimeMillis()) > 0) {
+			try {
+				wait(remaining);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Stops retransmitting and receiving, packets that are still unacknowledged are given up
+	 */
+	public synchronized void close() {
+
+		closed = true;
+		for (PendingPacket packet : pending) {
+			if (packet.inUse) {
+				release(packet);
+			}
+		}
+	}
+
+	public synchronized int getInFlightCount() {
+		return inFlight;
+	}
+
+	public synchronized long getRto() {
+		return rto;
+	}
+
+	public synchronized int getRetransmitCount() {
+		return retransmitCount;
+	}
+
+	public int getDuplicateCount() {
+		return duplicateCount;
+	}
+
+	public int getPeerRestartCount() {
+		return peerRestartCount;
+	}
+
+	private static class PendingPacket {
+
+		private int sequence;
+		private byte[] data = new byte[AsyncSender.DATA_SIZE];
+		private int length;
+		private InetAddress address;
+		private int port;
+		private long sentAt;
+		private int attempts;
+		private boolean inUse = false;
+		private TimerTask task;
+		private DatagramPacket datagram = new DatagramPacket(data, data.length);
+	}
+}
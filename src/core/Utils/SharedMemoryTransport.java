@@ -0,0 +1,378 @@
+//****************************************************************************
+//
+// Filename: SharedMemoryTransport.java
+//
+// Description: Transport between subsystem processes on the same host over
+//              a memory-mapped file
+//
+//***************************************************************************
+package core.Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import core.ConfigurationParser;
+import core.Exceptions.ConfigurationParserException;
+import core.Exceptions.HostActionsException;
+
+/**
+ * Carries the messages of one link, the elevators or the floors, through a file that the scheduler process and
+ * the elevator or floor process both map into memory. Every entity has two single producer, single consumer
+ * rings in the file, one towards the scheduler and one towards the entity, so a message is copied once into the
+ * ring and once out of it, without a system call.
+ *
+ * Each ring holds its tail, written only by the producer, and its head, written only by the consumer, on their
+ * own cache lines, followed by fixed size slots holding the length and bytes of a message in its usual encoding.
+ * A waiting consumer either spins on the tail or, with the park wait strategy, spins briefly and then parks for
+ * PARK_TIME at a time, as a process cannot unpark a thread of another.
+ *
+ * The scheduler creates the file and the other subsystem opens it, so the scheduler has to be started first,
+ * as with every other transport.
+ */
+public class SharedMemoryTransport implements Transport {
+
+	private static Logger logger = LogManager.getLogger(SharedMemoryTransport.class);
+	public static final int SLOT_SIZE = 128;
+	public static final int MAX_PAYLOAD = SLOT_SIZE - 4;
+	public static final int RING_CAPACITY = 256;
+	public static final String WAIT_SPIN = "spin";
+	public static final String WAIT_PARK = "park";
+
+	private static final int MAGIC = 0x454C5652;
+	private static final int CACHE_LINE = 64;
+	private static final int MAGIC_OFFSET = 0;
+	private static final int COUNT_OFFSET = 4;
+	private static final int CLOSED_OFFSET = 8;
+	private static final int FILE_HEADER_SIZE = CACHE_LINE;
+	private static final int TAIL_OFFSET = 0;
+	private static final int HEAD_OFFSET = CACHE_LINE;
+	private static final int REGISTERED_OFFSET = 2 * CACHE_LINE;
+	private static final int SLOTS_OFFSET = 3 * CACHE_LINE;
+	private static final int RING_SIZE = SLOTS_OFFSET + RING_CAPACITY * SLOT_SIZE;
+	private static final int SPIN_TRIES = 1000;
+	private static final long PARK_TIME = TimeUnit.MICROSECONDS.toNanos(50);
+	private static final int OPEN_RETRY_TIME = 100;
+	private static final int OPEN_TIMEOUT = 30000;
+	private static final int REGISTRATION_POLL_TIME = 10;
+	// ordered access to the counters and flags the other process reads, the slots are published by the tail
+	private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+	private final File file;
+	private final MappedByteBuffer buffer;
+	private final boolean schedulerSide;
+	private final boolean busySpin;
+	private final int entityCount;
+	private final Ring[] inbound;
+	private final Ring[] outbound;
+	private Set<Integer> registered = ConcurrentHashMap.newKeySet();
+	private volatile boolean shutdown = false;
+
+	/**
+	 * Creates the file on the scheduler side, or opens it on the elevator or floor side once the scheduler created it
+	 * @param file
+	 * @param entityCount number of elevators or floors, numbered from 1
+	 * @param schedulerSide
+	 * @param busySpin true to spin while waiting instead of parking
+	 * @throws HostActionsException
+	 */
+	public SharedMemoryTransport(File file, int entityCount, boolean schedulerSide, boolean busySpin) throws HostActionsException {
+
+		this.file = file;
+		this.entityCount = entityCount;
+		this.schedulerSide = schedulerSide;
+		this.busySpin = busySpin;
+		long size = FILE_HEADER_SIZE + 2L * entityCount * RING_SIZE;
+		if (schedulerSide) {
+			// a file left behind by an earlier run must not hand its messages or registrations to this one
+			file.delete();
+		} else {
+			awaitFile(size);
+		}
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+			if (schedulerSide) {
+				randomAccessFile.setLength(size);
+			}
+			this.buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		} catch (IOException e) {
+			throw new HostActionsException("Unable to map " + file, e);
+		}
+		this.inbound = new Ring[entityCount];
+		this.outbound = new Ring[entityCount];
+		for (int i = 0; i < entityCount; i++) {
+			Ring toScheduler = new Ring(FILE_HEADER_SIZE + 2 * i * RING_SIZE);
+			Ring toEntity = new Ring(toScheduler.offset + RING_SIZE);
+			inbound[i] = schedulerSide ? toScheduler : toEntity;
+			outbound[i] = schedulerSide ? toEntity : toScheduler;
+		}
+		if (schedulerSide) {
+			buffer.putInt(COUNT_OFFSET, entityCount);
+			INT.setRelease(buffer, MAGIC_OFFSET, MAGIC);
+		} else if (buffer.getInt(COUNT_OFFSET) != entityCount) {
+			throw new HostActionsException(file + " holds " + buffer.getInt(COUNT_OFFSET) + " entities, expected " + entityCount);
+		}
+	}
+
+	/**
+	 * Gets the transport of the link if SharedMemoryElevatorLink or SharedMemoryFloorLink selects it
+	 * @param link ELEVATOR or FLOOR
+	 * @param schedulerSide
+	 * @return SharedMemoryTransport, null when the link runs over sockets
+	 * @throws ConfigurationParserException
+	 * @throws HostActionsException
+	 */
+	public static SharedMemoryTransport getConfiguredTransport(SubsystemConstants link, boolean schedulerSide) throws ConfigurationParserException, HostActionsException {
+
+		ConfigurationParser configurationParser = ConfigurationParser.getInstance();
+		if (!isConfigured(link)) {
+			return null;
+		}
+		int entityCount;
+		int initPort;
+		if (link == SubsystemConstants.ELEVATOR) {
+			entityCount = configurationParser.getInt(ConfigurationParser.NUMBER_OF_ELEVATORS);
+			initPort = configurationParser.getInt(ConfigurationParser.ELEVATOR_INIT_PORT);
+		} else {
+			entityCount = configurationParser.getInt(ConfigurationParser.NUMBER_OF_FLOORS);
+			initPort = configurationParser.getInt(ConfigurationParser.FLOOR_INIT_PORT);
+		}
+		String directory = configurationParser.getString(ConfigurationParser.SHARED_MEMORY_DIRECTORY);
+		if (directory == null || directory.trim().isEmpty()) {
+			directory = System.getProperty("java.io.tmpdir");
+		}
+		String waitStrategy = configurationParser.getString(ConfigurationParser.SHARED_MEMORY_WAIT_STRATEGY);
+		if (!WAIT_SPIN.equalsIgnoreCase(waitStrategy) && !WAIT_PARK.equalsIgnoreCase(waitStrategy)) {
+			throw new ConfigurationParserException("Unknown wait strategy " + waitStrategy + ", expected " + WAIT_SPIN + " or " + WAIT_PARK);
+		}
+		// named after the port the link would otherwise use, so two systems on one host do not share a file
+		File file = new File(directory, link.name().toLowerCase() + "-" + initPort + ".ring");
+		logger.info("Using shared memory " + file + " for the " + link + " link");
+		return new SharedMemoryTransport(file, entityCount, schedulerSide, WAIT_SPIN.equalsIgnoreCase(waitStrategy));
+	}
+
+	/**
+	 * Shared memory links address every message by entity like the multiplexed socket, so a link that does not
+	 * use shared memory runs over a multiplexed socket once the other one does
+	 * @return true if the links carry messages addressed by entity
+	 * @throws ConfigurationParserException
+	 */
+	public static boolean isMultiplexed() throws ConfigurationParserException {
+
+		return ConfigurationParser.getInstance().getBoolean(ConfigurationParser.MULTIPLEXED_TRANSPORT)
+				|| isConfigured(SubsystemConstants.ELEVATOR) || isConfigured(SubsystemConstants.FLOOR);
+	}
+
+	/**
+	 * @param link ELEVATOR or FLOOR
+	 * @return true if the configuration puts the link on shared memory
+	 * @throws ConfigurationParserException
+	 */
+	public static boolean isConfigured(SubsystemConstants link) throws ConfigurationParserException {
+
+		ConfigurationParser configurationParser = ConfigurationParser.getInstance();
+		if (link == SubsystemConstants.ELEVATOR) {
+			return configurationParser.getBoolean(ConfigurationParser.SHARED_MEMORY_ELEVATOR_LINK);
+		}
+		return configurationParser.getBoolean(ConfigurationParser.SHARED_MEMORY_FLOOR_LINK);
+	}
+
+	@Override
+	public void start() {
+		// nothing to start, messages are read by the receiving thread
+	}
+
+	@Override
+	public void send(int entityId, byte[] data) throws HostActionsException {
+
+		send(entityId, data, data.length);
+	}
+
+	@Override
+	public void send(int entityId, byte[] data, int length) throws HostActionsException {
+
+		if (length > MAX_PAYLOAD) {
+			throw new HostActionsException("Message of " + length + " bytes does not fit a slot of " + MAX_PAYLOAD);
+		}
+		Ring ring = outbound[getIndex(entityId)];
+		// several threads of this process may send to one entity, the other process never writes this tail
+		synchronized (ring) {
+			long tail = (long) LONG.getOpaque(buffer, ring.offset + TAIL_OFFSET);
+			while (tail - (long) LONG.getAcquire(buffer, ring.offset + HEAD_OFFSET) == RING_CAPACITY) {
+				if (isClosed()) {
+					throw new HostActionsException("Unable to send to " + entityId + ", transport was closed");
+				}
+				LockSupport.parkNanos(PARK_TIME);
+			}
+			int slot = ring.offset + SLOTS_OFFSET + (int) (tail % RING_CAPACITY) * SLOT_SIZE;
+			ring.producerView.clear();
+			ring.producerView.position(slot);
+			ring.producerView.putInt(length);
+			ring.producerView.put(data, 0, length);
+			LONG.setRelease(buffer, ring.offset + TAIL_OFFSET, tail + 1);
+		}
+	}
+
+	@Override
+	public DatagramPacket receive(int entityId, int timeout) throws HostActionsException {
+
+		Ring ring = inbound[getIndex(entityId)];
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		int idle = 0;
+		long head = (long) LONG.getOpaque(buffer, ring.offset + HEAD_OFFSET);
+		while ((long) LONG.getAcquire(buffer, ring.offset + TAIL_OFFSET) == head) {
+			if (isClosed() || Thread.currentThread().isInterrupted()
+					|| (timeout > 0 && System.nanoTime() - deadline > 0)) {
+				throw new HostActionsException("Data packet not received.");
+			}
+			if (!busySpin && idle++ > SPIN_TRIES) {
+				LockSupport.parkNanos(PARK_TIME);
+			}
+		}
+		int slot = ring.offset + SLOTS_OFFSET + (int) (head % RING_CAPACITY) * SLOT_SIZE;
+		ring.consumerView.clear();
+		ring.consumerView.position(slot);
+		int length = ring.consumerView.getInt();
+		byte[] data = new byte[length];
+		ring.consumerView.get(data);
+		LONG.setRelease(buffer, ring.offset + HEAD_OFFSET, head + 1);
+		return new DatagramPacket(data, length, InetAddress.getLoopbackAddress(), 0);
+	}
+
+	/**
+	 * Registers the entity with the scheduler, which sees it on its next look at the file
+	 * @param entityId
+	 * @throws HostActionsException
+	 */
+	@Override
+	public void register(int entityId) throws HostActionsException {
+
+		if (isClosed()) {
+			throw new HostActionsException("Unable to register " + entityId + ", transport was closed");
+		}
+		Ring ring = schedulerSide ? inbound[getIndex(entityId)] : outbound[getIndex(entityId)];
+		INT.setRelease(buffer, ring.offset + REGISTERED_OFFSET, 1);
+		registered.add(entityId);
+	}
+
+	@Override
+	public void awaitRegistrations(int count) throws InterruptedException {
+
+		while (countRegistrations() < count) {
+			Thread.sleep(REGISTRATION_POLL_TIME);
+		}
+	}
+
+	@Override
+	public boolean isRegistered(int entityId) {
+
+		if (!schedulerSide) {
+			return registered.contains(entityId);
+		}
+		return entityId >= 1 && entityId <= entityCount
+				&& (int) INT.getAcquire(buffer, inbound[entityId - 1].offset + REGISTERED_OFFSET) != 0;
+	}
+
+	@Override
+	public int getLocalPort() {
+
+		return 0;
+	}
+
+	/**
+	 * Closes this side. Closing the scheduler side also closes the other and removes the file, the mapping of a
+	 * process that still has it open stays valid.
+	 */
+	@Override
+	public void terminate() {
+
+		shutdown = true;
+		if (schedulerSide) {
+			INT.setRelease(buffer, CLOSED_OFFSET, 1);
+			file.delete();
+		}
+	}
+
+	public File getFile() {
+
+		return file;
+	}
+
+	private boolean isClosed() {
+
+		return shutdown || (int) INT.getAcquire(buffer, CLOSED_OFFSET) != 0;
+	}
+
+	private int countRegistrations() {
+
+		int count = 0;
+		for (int i = 1; i <= entityCount; i++) {
+			if (isRegistered(i)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private int getIndex(int entityId) throws HostActionsException {
+
+		if (entityId < 1 || entityId > entityCount) {
+			throw new HostActionsException("No ring for " + entityId + ", the file holds " + entityCount);
+		}
+		return entityId - 1;
+	}
+
+	private void awaitFile(long size) throws HostActionsException {
+
+		long deadline = System.currentTimeMillis() + OPEN_TIMEOUT;
+		while (!file.isFile() || file.length() != size || readMagic() != MAGIC) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new HostActionsException("Timed out waiting for the scheduler to create " + file);
+			}
+			try {
+				Thread.sleep(OPEN_RETRY_TIME);
+			} catch (InterruptedException e) {
+				throw new HostActionsException("Interrupted waiting for " + file, e);
+			}
+		}
+	}
+
+	private int readMagic() {
+
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+			return randomAccessFile.readInt();
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	private class Ring {
+
+		private final int offset;
+		// positioned by the sending and the receiving thread, so neither moves the other's position
+		private final ByteBuffer producerView;
+		private final ByteBuffer consumerView;
+
+		private Ring(int offset) {
+
+			this.offset = offset;
+			this.producerView = buffer.duplicate();
+			this.consumerView = buffer.duplicate();
+		}
+	}
+}
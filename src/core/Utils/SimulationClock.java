@@ -0,0 +1,581 @@
+//****************************************************************************
+//
+// Filename: SimulationClock.java
+//
+// Description: Clock the elevator and floor threads wait on, in real or
+//              simulated time
+//
+//***************************************************************************
+package core.Utils;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import core.ConfigurationParser;
+import core.Exceptions.ConfigurationParserException;
+
+/**
+ * In real time the clock sleeps, parks and schedules with the system clock. In simulated time it is a discrete
+ * event scheduler: every sleep, wait timeout and scheduled task is an event in a priority queue ordered by its
+ * simulated time, and a driver thread jumps straight to the next event instead of waiting for it, so a trace of
+ * a whole day runs in the time it takes to process its messages.
+ *
+ * To know when nothing is left to do at the current time, the activities take turns: a registered thread only
+ * runs while it holds the turn, and hands it to the next runnable one in order when it parks on the clock. Time
+ * only advances once no activity holds the turn or waits for it, and each event is handled on its own, so the
+ * same trace and seed always run the same way. The activities only block through the clock, the in-process
+ * transport and the clock's park and unpark, which is why simulated time needs InProcessTransport. A thread
+ * blocked anywhere else while holding the turn is a bug: after the configured turn timeout the others run anyway
+ * and an error is logged, since the run is no longer deterministic from then on.
+ */
+public class SimulationClock {
+
+	private static Logger logger = LogManager.getLogger(SimulationClock.class);
+	public static final int DEFAULT_TURN_TIMEOUT = 2000;
+	private static final int TURN_CHECK = 10;
+
+	private static volatile SimulationClock instance;
+
+	private final boolean simulated;
+	// wall clock milliseconds, 0 to never take the turn from a blocked activity
+	private final int turnTimeout;
+	private final PriorityQueue<Event> events = new PriorityQueue<Event>();
+	private Thread driver;
+	private long now;
+	private long startTime;
+	private long sequence = 0;
+	private boolean started = false;
+	private boolean scheduled = false;
+	private boolean held = false;
+
+	// only used in simulated time
+	private final Map<Thread, Activity> activities = new HashMap<Thread, Activity>();
+	private final ArrayDeque<Activity> runnable = new ArrayDeque<Activity>();
+	// thread holding the turn, null while none is
+	private volatile Thread running;
+	private long turnStarted;
+
+	/**
+	 * @param simulated true for simulated time, false for the system clock
+	 */
+	public SimulationClock(boolean simulated) {
+
+		this(simulated, DEFAULT_TURN_TIMEOUT);
+	}
+
+	/**
+	 * @param simulated true for simulated time, false for the system clock
+	 * @param turnTimeout milliseconds an activity blocked outside the clock may hold its turn, 0 without limit
+	 */
+	public SimulationClock(boolean simulated, int turnTimeout) {
+
+		this.simulated = simulated;
+		this.turnTimeout = turnTimeout;
+		// simulated time starts from the day the traces are dated on, until the first scheduled task moves it
+		this.now = simulated ? LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli() : System.currentTimeMillis();
+		this.startTime = now;
+	}
+
+	/**
+	 * Gets the clock of the process, in the mode set by SimulatedTime in the configuration
+	 * @return SimulationClock
+	 */
+	public static SimulationClock getInstance() {
+
+		if (instance == null) {
+			synchronized (SimulationClock.class) {
+				if (instance == null) {
+					boolean simulated = false;
+					int turnTimeout = DEFAULT_TURN_TIMEOUT;
+					try {
+						ConfigurationParser configurationParser = ConfigurationParser.getInstance();
+						simulated = configurationParser.getBoolean(ConfigurationParser.SIMULATED_TIME);
+						if (simulated && !configurationParser.getBoolean(ConfigurationParser.IN_PROCESS_TRANSPORT)) {
+							logger.warn("SimulatedTime needs InProcessTransport, using real time");
+							simulated = false;
+						}
+					} catch (ConfigurationParserException e) {
+						logger.error("Unable to read the clock mode, using real time", e);
+					}
+					if (simulated) {
+						try {
+							turnTimeout = ConfigurationParser.getInstance().getInt(ConfigurationParser.SIMULATION_TURN_TIMEOUT);
+						} catch (ConfigurationParserException e) {
+							logger.error("Unable to read the turn timeout, using " + DEFAULT_TURN_TIMEOUT + " ms", e);
+						}
+					}
+					instance = new SimulationClock(simulated, turnTimeout);
+				}
+			}
+		}
+		return instance;
+	}
+
+	public boolean isSimulated() {
+
+		return simulated;
+	}
+
+	public long currentTimeMillis() {
+
+		// real time never touches the lock, every message and sleep reads the clock
+		if (!simulated) {
+			return System.currentTimeMillis();
+		}
+		synchronized (this) {
+			return now;
+		}
+	}
+
+	/**
+	 * @return current time in nanoseconds, only to measure waits against
+	 */
+	public long nanoTime() {
+
+		return simulated ? TimeUnit.MILLISECONDS.toNanos(currentTimeMillis()) : System.nanoTime();
+	}
+
+	/**
+	 * @return time passed since the first scheduled task, or since the clock was created in real time
+	 */
+	public long getElapsedMillis() {
+
+		if (!simulated) {
+			return System.currentTimeMillis() - startTime;
+		}
+		synchronized (this) {
+			return now - startTime;
+		}
+	}
+
+	/**
+	 * Keeps simulated time still until release is called, while the subsystems are being started
+	 */
+	public synchronized void hold() {
+
+		held = true;
+	}
+
+	public synchronized void release() {
+
+		held = false;
+		notifyAll();
+	}
+
+	/**
+	 * Makes a thread that is about to be started take turns with the other activities, in the order they were
+	 * registered. The thread has to call attach first and detach last.
+	 * @param thread
+	 */
+	public synchronized void register(Thread thread) {
+
+		if (simulated && !activities.containsKey(thread)) {
+			makeRunnable(getActivity(thread));
+		}
+	}
+
+	/**
+	 * Waits for the turn of the calling thread, registering it if needed
+	 */
+	public void attach() {
+
+		if (!simulated) {
+			return;
+		}
+		Thread current = Thread.currentThread();
+		register(current);
+		awaitTurn(current, this);
+	}
+
+	/**
+	 * Stops the calling thread from taking turns, handing its turn on
+	 */
+	public synchronized void detach() {
+
+		if (!simulated) {
+			return;
+		}
+		Thread current = Thread.currentThread();
+		Activity activity = activities.remove(current);
+		if (activity != null) {
+			runnable.remove(activity);
+			cancelTimeout(activity);
+		}
+		if (running == current) {
+			passTurn();
+		}
+	}
+
+	/**
+	 * Blocks the calling thread until it is unparked, as LockSupport.park does
+	 * @param blocker
+	 */
+	public void park(Object blocker) {
+
+		if (!simulated) {
+			LockSupport.park(blocker);
+			return;
+		}
+		parkSimulated(blocker, 0);
+	}
+
+	/**
+	 * Blocks the calling thread until it is unparked or the time has passed, as LockSupport.parkNanos does. In
+	 * simulated time the wait is rounded up to a whole millisecond.
+	 * @param blocker
+	 * @param nanos
+	 */
+	public void parkNanos(Object blocker, long nanos) {
+
+		if (!simulated) {
+			LockSupport.parkNanos(blocker, nanos);
+			return;
+		}
+		if (nanos > 0) {
+			parkSimulated(blocker, (nanos + 999999) / 1000000);
+		}
+	}
+
+	/**
+	 * Ends the park of the thread, or the next one if it is not parked
+	 * @param thread
+	 */
+	public void unpark(Thread thread) {
+
+		if (simulated) {
+			synchronized (this) {
+				Activity activity = activities.get(thread);
+				if (activity != null) {
+					if (activity.waiting) {
+						cancelTimeout(activity);
+						activity.waiting = false;
+						makeRunnable(activity);
+					} else {
+						activity.permit = true;
+					}
+					return;
+				}
+			}
+		}
+		LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Blocks the calling thread for the given time
+	 * @param millis
+	 */
+	public void sleep(long millis) {
+
+		if (millis <= 0) {
+			return;
+		}
+		if (!simulated) {
+			try {
+				Thread.sleep(millis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return;
+		}
+		long wakeup = currentTimeMillis() + millis;
+		long remaining;
+		// an unpark meant for a park of the thread ends the wait early, so it waits again for the rest
+		while ((remaining = wakeup - currentTimeMillis()) > 0) {
+			parkSimulated(this, remaining);
+		}
+	}
+
+	/**
+	 * Runs the task at the given time. In real time the task is scheduled on the timer, so cancelling the timer
+	 * still cancels it; in simulated time it runs on the driver thread.
+	 * @param timer
+	 * @param task
+	 * @param time
+	 */
+	public void schedule(Timer timer, TimerTask task, Date time) {
+
+		if (!simulated) {
+			timer.schedule(task, time);
+			return;
+		}
+		scheduleSimulated(task, time);
+	}
+
+	/**
+	 * Runs the task at the given time. In real time the task is scheduled on the timing wheel, so cancelling the
+	 * wheel still cancels it; in simulated time it runs on the driver thread.
+	 * @param wheel
+	 * @param key tasks of the same key run one at a time on the wheel
+	 * @param task
+	 * @param time
+	 */
+	public void schedule(TimingWheel wheel, int key, Runnable task, Date time) {
+
+		if (!simulated) {
+			wheel.schedule(key, task, time.getTime());
+			return;
+		}
+		scheduleSimulated(task, time);
+	}
+
+	private synchronized void scheduleSimulated(Runnable task, Date time) {
+
+		// a trace starts from its first event, whatever the time of day it was recorded at
+		if (!started && (!scheduled || time.getTime() < now)) {
+			moveTo(time.getTime());
+		}
+		scheduled = true;
+		add(Math.max(time.getTime(), now), task, null);
+	}
+
+	/**
+	 * @return number of sleeps, wait timeouts and tasks waiting for their time
+	 */
+	public synchronized int getPendingCount() {
+
+		int count = 0;
+		for (Event event : events) {
+			if (!event.cancelled) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Moves the clock before it started, keeping the waits already begun as long as they were
+	 */
+	private void moveTo(long time) {
+
+		long shift = time - now;
+		List<Event> pending = new ArrayList<Event>(events);
+		events.clear();
+		for (Event event : pending) {
+			if (event.activity != null) {
+				event.time += shift;
+			}
+			events.add(event);
+		}
+		now = time;
+		startTime = time;
+	}
+
+	private void parkSimulated(Object blocker, long millis) {
+
+		Thread current = Thread.currentThread();
+		synchronized (this) {
+			Activity activity = getActivity(current);
+			if (activity.permit) {
+				activity.permit = false;
+				return;
+			}
+			activity.waiting = true;
+			if (millis > 0) {
+				activity.timeout = add(now + millis, null, activity);
+			}
+			if (running == current) {
+				passTurn();
+			}
+		}
+		awaitTurn(current, blocker);
+	}
+
+	/**
+	 * Parks outside the monitor until the thread holds the turn, so a waiting virtual thread does not pin its
+	 * carrier. An interrupt does not end the wait, it is kept for the thread to see once it runs.
+	 */
+	private void awaitTurn(Thread current, Object blocker) {
+
+		boolean interrupted = false;
+		while (running != current) {
+			LockSupport.park(blocker);
+			interrupted |= Thread.interrupted();
+		}
+		if (interrupted) {
+			current.interrupt();
+		}
+	}
+
+	private Activity getActivity(Thread thread) {
+
+		Activity activity = activities.get(thread);
+		if (activity == null) {
+			activity = new Activity(thread);
+			activities.put(thread, activity);
+		}
+		return activity;
+	}
+
+	private void makeRunnable(Activity activity) {
+
+		runnable.add(activity);
+		if (running == null) {
+			passTurn();
+		}
+	}
+
+	private void passTurn() {
+
+		Activity next = runnable.poll();
+		turnStarted = System.nanoTime();
+		if (next == null) {
+			running = null;
+			notifyAll();
+			return;
+		}
+		running = next.thread;
+		LockSupport.unpark(next.thread);
+	}
+
+	private void cancelTimeout(Activity activity) {
+
+		if (activity.timeout != null) {
+			activity.timeout.cancelled = true;
+			activity.timeout = null;
+		}
+	}
+
+	private Event add(long time, Runnable task, Activity activity) {
+
+		Event event = new Event(time, sequence++, task, activity);
+		events.add(event);
+		if (driver == null) {
+			driver = new Thread(this::drive, "Simulation clock");
+			driver.setDaemon(true);
+			driver.start();
+		}
+		notifyAll();
+		return event;
+	}
+
+	/**
+	 * @return the next event once nothing is left to run at the current time, null before
+	 */
+	private Event nextEvent() {
+
+		if (held || running != null || !runnable.isEmpty()) {
+			return null;
+		}
+		while (!events.isEmpty() && events.peek().cancelled) {
+			events.poll();
+		}
+		return events.poll();
+	}
+
+	/**
+	 * Hands the turn on if its holder ended without detaching, or is blocked somewhere the clock cannot see
+	 */
+	private void checkTurn() {
+
+		Thread holder = running;
+		if (holder == null) {
+			return;
+		}
+		if (holder.getState() == Thread.State.TERMINATED) {
+			activities.remove(holder);
+			passTurn();
+		} else if (turnTimeout > 0 && System.nanoTime() - turnStarted > TimeUnit.MILLISECONDS.toNanos(turnTimeout)) {
+			logger.error(holder.getName() + " is blocked outside the clock and held its turn for more than " + turnTimeout
+					+ " ms, letting the others run, the simulation is no longer deterministic");
+			passTurn();
+		}
+	}
+
+	private void drive() {
+
+		Thread current = Thread.currentThread();
+		while (true) {
+			Event next;
+			synchronized (this) {
+				try {
+					while ((next = nextEvent()) == null) {
+						wait(TURN_CHECK);
+						checkTurn();
+					}
+				} catch (InterruptedException e) {
+					return;
+				}
+				started = true;
+				now = Math.max(now, next.time);
+				if (next.activity != null) {
+					// a sleep or wait timeout that was not cancelled, so the thread is still waiting
+					next.activity.timeout = null;
+					next.activity.waiting = false;
+					makeRunnable(next.activity);
+					continue;
+				}
+				// the task holds the turn, so what it sends is handled before time moves on
+				running = current;
+				turnStarted = System.nanoTime();
+			}
+			try {
+				next.task.run();
+			} catch (RuntimeException e) {
+				logger.error("Scheduled task failed", e);
+			}
+			synchronized (this) {
+				if (running == current) {
+					passTurn();
+				}
+			}
+		}
+	}
+
+	/**
+	 * A thread taking turns
+	 */
+	private static class Activity {
+
+		private final Thread thread;
+		// parked until unparked or its timeout
+		private boolean waiting = false;
+		private boolean permit = false;
+		private Event timeout;
+
+		private Activity(Thread thread) {
+
+			this.thread = thread;
+		}
+	}
+
+	private static class Event implements Comparable<Event> {
+
+		private long time;
+		private final long sequence;
+		private final Runnable task;
+		// the waiting thread for a sleep or wait timeout, null for a task
+		private final Activity activity;
+		private boolean cancelled = false;
+
+		private Event(long time, long sequence, Runnable task, Activity activity) {
+
+			this.time = time;
+			this.sequence = sequence;
+			this.task = task;
+			this.activity = activity;
+		}
+
+		@Override
+		public int compareTo(Event other) {
+
+			if (time != other.time) {
+				return Long.compare(time, other.time);
+			}
+			return Long.compare(sequence, other.sequence);
+		}
+	}
+}
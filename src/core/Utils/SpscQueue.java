@@ -0,0 +1,144 @@
+//****************************************************************************
+//
+// Filename: SpscQueue.java
+//
+// Description: Bounded lock-free queue between one producer thread and one
+//              consumer thread
+//
+//***************************************************************************
+package core.Utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ring buffer for exactly one producer and one consumer. The producer only writes the tail and the consumer
+ * only writes the head, so neither side ever takes a lock. A consumer waiting for an item parks, and the
+ * producer unparks it after publishing; both sides check the other's volatile before relying on it, so a
+ * wakeup cannot be lost.
+ */
+public class SpscQueue<T> {
+
+	private final Object[] items;
+	private final int mask;
+	// next slot to read, only written by the consumer
+	private final AtomicLong head = new AtomicLong();
+	// next slot to write, only written by the producer
+	private final AtomicLong tail = new AtomicLong();
+	private volatile Thread waiter;
+	private volatile boolean closed = false;
+
+	/**
+	 * @param capacity rounded up to a power of two
+	 */
+	public SpscQueue(int capacity) {
+
+		int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+		this.items = new Object[size];
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Adds the item, only called by the producer
+	 * @param item
+	 * @return false if the queue is full
+	 */
+	public boolean offer(T item) {
+
+		long t = tail.get();
+		if (t - head.get() == items.length) {
+			return false;
+		}
+		items[(int) t & mask] = item;
+		tail.set(t + 1);
+		Thread consumer = waiter;
+		if (consumer != null) {
+			LockSupport.unpark(consumer);
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the oldest item, only called by the consumer
+	 * @return the item, null if the queue is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public T poll() {
+
+		long h = head.get();
+		if (h == tail.get()) {
+			return null;
+		}
+		int index = (int) h & mask;
+		T item = (T) items[index];
+		items[index] = null;
+		head.set(h + 1);
+		return item;
+	}
+
+	/**
+	 * Removes the oldest item, waiting for one if the queue is empty. Only called by the consumer.
+	 * @param timeout milliseconds to wait, 0 waits until an item arrives or the queue is closed
+	 * @return the item, null if none arrived in time or the queue was closed
+	 * @throws InterruptedException
+	 */
+	public T poll(long timeout) throws InterruptedException {
+
+		T item = poll();
+		if (item != null) {
+			return item;
+		}
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		waiter = Thread.currentThread();
+		try {
+			while ((item = poll()) == null) {
+				if (closed) {
+					return null;
+				}
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				if (timeout == 0) {
+					LockSupport.park(this);
+				} else {
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0) {
+						return null;
+					}
+					LockSupport.parkNanos(this, remaining);
+				}
+			}
+			return item;
+		} finally {
+			waiter = null;
+		}
+	}
+
+	/**
+	 * Wakes a waiting consumer, which then only takes the items already queued
+	 */
+	public void close() {
+
+		closed = true;
+		Thread consumer = waiter;
+		if (consumer != null) {
+			LockSupport.unpark(consumer);
+		}
+	}
+
+	public boolean isClosed() {
+
+		return closed;
+	}
+
+	public int size() {
+
+		return (int) (tail.get() - head.get());
+	}
+
+	public int capacity() {
+
+		return items.length;
+	}
+}
@@ -0,0 +1,287 @@
+//****************************************************************************
+//
+// Filename: TimingWheel.java
+//
+// Description: Hierarchical timing wheel that fires the tasks due in a tick
+//              as one batch on a pool of workers
+//
+//***************************************************************************
+package core.Utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Replaces a java.util.Timer for traces with millions of events. Scheduling is constant time: a task goes into
+ * the slot of its tick in the lowest level of the wheel that reaches it, and every level is WHEEL_SIZE times
+ * coarser than the one below it, so a few levels cover any trace. As the wheel turns the slots of a higher level
+ * are poured into the lower ones, and every tick the tasks of the current slot are fired as one batch.
+ *
+ * Ticks are counted from the system clock rather than from the previous tick, so a late tick is caught up and the
+ * wheel never drifts; a task never runs before its time and at most one tick after it. The ticker only collects
+ * the batch: the tasks run on a pool of workers, and the tasks of one key always run on the same worker in the
+ * order of their time, so a slow task holds back only the tasks of its own key.
+ */
+public class TimingWheel {
+
+	private static Logger logger = LogManager.getLogger(TimingWheel.class);
+	public static final int WHEEL_BITS = 8;
+	public static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+	private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+	private static final int MAX_LEVEL = 63 / WHEEL_BITS - 1;
+
+	private final String name;
+	private final long tickMillis;
+	private final ExecutorService[] workers;
+	private final List<List<List<Entry>>> levels = new ArrayList<List<List<Entry>>>();
+	private final List<Entry> due = new ArrayList<Entry>();
+	private long currentTick;
+	private long sequence = 0;
+	private int pending = 0;
+	private volatile boolean cancelled = false;
+	private Thread ticker;
+
+	/**
+	 * @param name name of the ticker and worker threads
+	 * @param tickMillis length of a tick, the precision of the wheel
+	 * @param workerCount number of threads that run the tasks
+	 */
+	public TimingWheel(String name, long tickMillis, int workerCount) {
+
+		if (tickMillis <= 0 || workerCount <= 0) {
+			throw new IllegalArgumentException("Tick and worker count must be positive");
+		}
+		this.name = name;
+		this.tickMillis = tickMillis;
+		this.workers = new ExecutorService[workerCount];
+		for (int i = 0; i < workerCount; i++) {
+			String workerName = name + " worker " + (i + 1);
+			workers[i] = Executors.newSingleThreadExecutor(r -> new Thread(r, workerName));
+		}
+		levels.add(createLevel());
+		currentTick = System.currentTimeMillis() / tickMillis;
+	}
+
+	/**
+	 * Runs the task at the given time, or in the next tick if the time has passed
+	 * @param key tasks of the same key run one at a time, in the order of their time
+	 * @param task
+	 * @param time time in milliseconds since the epoch
+	 */
+	public synchronized void schedule(int key, Runnable task, long time) {
+
+		if (cancelled) {
+			throw new IllegalStateException("Timing wheel already cancelled");
+		}
+		if (pending == 0) {
+			// the ticker does not turn an empty wheel
+			currentTick = Math.max(currentTick, System.currentTimeMillis() / tickMillis);
+		}
+		place(new Entry(Math.floorDiv(time + tickMillis - 1, tickMillis), time, sequence++, key, task));
+		pending++;
+		if (ticker == null) {
+			ticker = new Thread(this::turn, name);
+			ticker.start();
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Discards the waiting tasks and stops the wheel once the running tasks are done
+	 */
+	public synchronized void cancel() {
+
+		if (cancelled) {
+			return;
+		}
+		cancelled = true;
+		for (List<List<Entry>> level : levels) {
+			for (List<Entry> slot : level) {
+				slot.clear();
+			}
+		}
+		due.clear();
+		pending = 0;
+		for (ExecutorService worker : workers) {
+			worker.shutdown();
+		}
+		notifyAll();
+	}
+
+	/**
+	 * @return number of tasks waiting for their time
+	 */
+	public synchronized int getPendingCount() {
+
+		return pending;
+	}
+
+	/**
+	 * @return length of a tick in milliseconds
+	 */
+	public long getTickMillis() {
+
+		return tickMillis;
+	}
+
+	private void turn() {
+
+		List<Entry> batch = new ArrayList<Entry>();
+		while (true) {
+			synchronized (this) {
+				try {
+					while (!cancelled && pending == 0) {
+						wait();
+					}
+					while (!cancelled && due.isEmpty()) {
+						long wait = (currentTick + 1) * tickMillis - System.currentTimeMillis();
+						if (wait <= 0) {
+							break;
+						}
+						wait(wait);
+					}
+				} catch (InterruptedException e) {
+					return;
+				}
+				if (cancelled) {
+					return;
+				}
+				long nowTick = System.currentTimeMillis() / tickMillis;
+				while (currentTick < nowTick) {
+					advance();
+				}
+				batch.addAll(due);
+				due.clear();
+				pending -= batch.size();
+			}
+			if (!batch.isEmpty()) {
+				fire(batch);
+				batch = new ArrayList<Entry>();
+			}
+		}
+	}
+
+	private void advance() {
+
+		currentTick++;
+		// a higher level slot is poured into the lower levels when the ticks below it wrap around
+		for (int level = levels.size() - 1; level > 0; level--) {
+			int shift = WHEEL_BITS * level;
+			if ((currentTick & ((1L << shift) - 1)) == 0) {
+				List<Entry> slot = levels.get(level).get((int) ((currentTick >>> shift) & WHEEL_MASK));
+				if (!slot.isEmpty()) {
+					List<Entry> poured = new ArrayList<Entry>(slot);
+					slot.clear();
+					for (Entry entry : poured) {
+						place(entry);
+					}
+				}
+			}
+		}
+		List<Entry> slot = levels.get(0).get((int) (currentTick & WHEEL_MASK));
+		due.addAll(slot);
+		slot.clear();
+	}
+
+	private void place(Entry entry) {
+
+		long ticks = entry.tick - currentTick;
+		if (ticks <= 0) {
+			due.add(entry);
+			return;
+		}
+		int level = 0;
+		while (level < MAX_LEVEL && ticks >= 1L << (WHEEL_BITS * (level + 1))) {
+			level++;
+		}
+		while (levels.size() <= level) {
+			levels.add(createLevel());
+		}
+		levels.get(level).get((int) ((entry.tick >>> (WHEEL_BITS * level)) & WHEEL_MASK)).add(entry);
+	}
+
+	private void fire(List<Entry> batch) {
+
+		Collections.sort(batch);
+		// one batch per worker, so the tasks of a key keep their order
+		List<List<Entry>> batches = new ArrayList<List<Entry>>(workers.length);
+		for (int i = 0; i < workers.length; i++) {
+			batches.add(null);
+		}
+		for (Entry entry : batch) {
+			int worker = Math.floorMod(entry.key, workers.length);
+			if (batches.get(worker) == null) {
+				batches.set(worker, new ArrayList<Entry>());
+			}
+			batches.get(worker).add(entry);
+		}
+		for (int i = 0; i < workers.length; i++) {
+			List<Entry> workerBatch = batches.get(i);
+			if (workerBatch == null) {
+				continue;
+			}
+			try {
+				workers[i].execute(() -> run(workerBatch));
+			} catch (RuntimeException e) {
+				// cancelled while the batch was collected
+				return;
+			}
+		}
+	}
+
+	private void run(List<Entry> batch) {
+
+		for (Entry entry : batch) {
+			if (cancelled) {
+				return;
+			}
+			try {
+				entry.task.run();
+			} catch (RuntimeException e) {
+				logger.error("Scheduled task failed", e);
+			}
+		}
+	}
+
+	private static List<List<Entry>> createLevel() {
+
+		List<List<Entry>> level = new ArrayList<List<Entry>>(WHEEL_SIZE);
+		for (int i = 0; i < WHEEL_SIZE; i++) {
+			level.add(new ArrayList<Entry>());
+		}
+		return level;
+	}
+
+	private static class Entry implements Comparable<Entry> {
+
+		private final long tick;
+		private final long time;
+		private final long sequence;
+		private final int key;
+		private final Runnable task;
+
+		private Entry(long tick, long time, long sequence, int key, Runnable task) {
+
+			this.tick = tick;
+			this.time = time;
+			this.sequence = sequence;
+			this.key = key;
+			this.task = task;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+
+			if (time != other.time) {
+				return Long.compare(time, other.time);
+			}
+			return Long.compare(sequence, other.sequence);
+		}
+	}
+}
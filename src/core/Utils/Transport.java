@@ -0,0 +1,75 @@
+//****************************************************************************
+//
+// Filename: Transport.java
+//
+// Description: Carries the messages of many elevators or floors, addressed
+//              by their id
+//
+//***************************************************************************
+package core.Utils;
+
+import java.net.DatagramPacket;
+
+import core.Exceptions.HostActionsException;
+
+/**
+ * Connection between the scheduler and all elevators or all floors. Every message is addressed by the id of the
+ * elevator or floor it belongs to: the scheduler side sends to that entity, the elevator and floor side always
+ * sends to the scheduler. Entities register before they send anything else.
+ */
+public interface Transport {
+
+	/**
+	 * Starts delivering received messages
+	 */
+	void start();
+
+	/**
+	 * Sends the data to the entity, or to the scheduler on the elevator and floor side
+	 * @param entityId
+	 * @param data
+	 * @throws HostActionsException
+	 */
+	void send(int entityId, byte[] data) throws HostActionsException;
+
+	/**
+	 * Sends the first length bytes of the data to the entity, or to the scheduler on the elevator and floor side
+	 * @param entityId
+	 * @param data
+	 * @param length
+	 * @throws HostActionsException
+	 */
+	void send(int entityId, byte[] data, int length) throws HostActionsException;
+
+	/**
+	 * Waits for the next message of the entity
+	 * @param entityId
+	 * @param timeout milliseconds to wait, 0 waits until a message arrives
+	 * @return packet holding the message, valid until the next message of the entity is received
+	 * @throws HostActionsException if no message arrived in time
+	 */
+	DatagramPacket receive(int entityId, int timeout) throws HostActionsException;
+
+	/**
+	 * Registers the entity with the scheduler
+	 * @param entityId
+	 * @throws HostActionsException
+	 */
+	void register(int entityId) throws HostActionsException;
+
+	/**
+	 * Waits on the scheduler side until the given number of entities registered
+	 * @param count
+	 * @throws InterruptedException
+	 */
+	void awaitRegistrations(int count) throws InterruptedException;
+
+	boolean isRegistered(int entityId);
+
+	/**
+	 * @return port of the underlying socket, 0 if there is none
+	 */
+	int getLocalPort();
+
+	void terminate();
+}
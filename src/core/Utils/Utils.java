@@ -279,10 +279,6 @@ public class Utils {
 
 	public static void Sleep(long millis) {
 
-		try {
-			Thread.sleep(millis);
-		} catch (InterruptedException e) {
-			Thread.currentThread().interrupt();
-		}
+		SimulationClock.getInstance().sleep(millis);
 	}
 }
@@ -0,0 +1,248 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.Exceptions.HostActionsException;
+import core.Utils.AsyncSender;
+
+public class AsyncSenderTest {
+
+	private DatagramSocket sendSocket;
+	private DatagramSocket receiveSocket;
+	private AsyncSender sender;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		sendSocket = new DatagramSocket();
+		receiveSocket = new DatagramSocket();
+		receiveSocket.setSoTimeout(2000);
+		sender = new AsyncSender("Test sender", sendSocket, 4);
+		sender.start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		sender.close();
+		sendSocket.close();
+		receiveSocket.close();
+	}
+
+	private void send(AsyncSender sender, byte... data) throws HostActionsException {
+		sender.send(data, data.length, InetAddress.getLoopbackAddress(), receiveSocket.getLocalPort());
+	}
+
+	private DatagramPacket receive() throws Exception {
+		DatagramPacket packet = new DatagramPacket(new byte[AsyncSender.DATA_SIZE], AsyncSender.DATA_SIZE);
+		receiveSocket.receive(packet);
+		return packet;
+	}
+
+	@Test
+	@DisplayName("Testing queued packets keep their data when the caller reuses its buffer")
+	void TestA() throws Exception {
+		byte[] data = new byte[2];
+		for (int i = 0; i < 10; i++) {
+			data[0] = (byte) i;
+			data[1] = (byte) (i * 2);
+			sender.send(data, data.length, InetAddress.getLoopbackAddress(), receiveSocket.getLocalPort());
+		}
+		DatagramPacket packet = new DatagramPacket(new byte[AsyncSender.DATA_SIZE], AsyncSender.DATA_SIZE);
+		for (int i = 0; i < 10; i++) {
+			packet.setLength(AsyncSender.DATA_SIZE);
+			receiveSocket.receive(packet);
+			assertEquals(2, packet.getLength());
+			assertEquals(i, packet.getData()[0]);
+			assertEquals(i * 2, packet.getData()[1]);
+		}
+	}
+
+	@Test
+	@DisplayName("Testing a closed sender rejects packets")
+	void TestB() {
+		sender.close();
+		assertThrows(HostActionsException.class, () -> sender.send(new byte[1], 1, InetAddress.getLoopbackAddress(), receiveSocket.getLocalPort()));
+		assertThrows(HostActionsException.class, () -> new AsyncSender("Small sender", sendSocket, 1).send(new byte[AsyncSender.DATA_SIZE + 1],
+				AsyncSender.DATA_SIZE + 1, InetAddress.getLoopbackAddress(), receiveSocket.getLocalPort()));
+	}
+
+	@Test
+	@DisplayName("Testing a caller waits once every packet is queued and goes on when the sender frees one")
+	void TestC() throws Exception {
+		AsyncSender unstarted = new AsyncSender("Unstarted sender", sendSocket, 2);
+		send(unstarted, (byte) 1);
+		send(unstarted, (byte) 2);
+		assertEquals(2, unstarted.getQueuedCount());
+
+		Thread caller = new Thread(() -> {
+			try {
+				send(unstarted, (byte) 3);
+			} catch (HostActionsException e) {
+			}
+		});
+		caller.start();
+		caller.join(300);
+		assertTrue(caller.isAlive());
+
+		unstarted.start();
+		caller.join(2000);
+		assertFalse(caller.isAlive());
+		for (int i = 1; i <= 3; i++) {
+			assertEquals(i, receive().getData()[0]);
+		}
+		unstarted.close();
+	}
+
+	@Test
+	@DisplayName("Testing the packets queued before closing are still sent and the thread then ends")
+	void TestD() throws Exception {
+		AsyncSender unstarted = new AsyncSender("Unstarted sender", sendSocket, 4);
+		for (int i = 0; i < 4; i++) {
+			send(unstarted, (byte) i);
+		}
+		unstarted.close();
+		assertTrue(unstarted.isClosed());
+		unstarted.start();
+
+		for (int i = 0; i < 4; i++) {
+			assertEquals(i, receive().getData()[0]);
+		}
+		unstarted.join(3000);
+		assertFalse(unstarted.isAlive());
+	}
+
+	@Test
+	@DisplayName("Testing callers on several threads each get every packet through once and in order")
+	void TestE() throws Exception {
+		int callers = 4;
+		int packets = 50;
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int c = 0; c < callers; c++) {
+			byte caller = (byte) c;
+			Thread thread = new Thread(() -> {
+				try {
+					for (int i = 0; i < packets; i++) {
+						send(sender, caller, (byte) i);
+					}
+				} catch (HostActionsException e) {
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+
+		int[] next = new int[callers];
+		for (int i = 0; i < callers * packets; i++) {
+			DatagramPacket packet = receive();
+			assertEquals(2, packet.getLength());
+			int caller = packet.getData()[0];
+			assertEquals(next[caller]++, packet.getData()[1]);
+		}
+		for (Thread thread : threads) {
+			thread.join(1000);
+		}
+		assertEquals(0, sender.getQueuedCount());
+	}
+
+	@Test
+	@DisplayName("Testing a packet the socket fails to send is freed again, so callers never wait for it")
+	void TestF() {
+		sendSocket.close();
+		assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+			for (int i = 0; i < 20; i++) {
+				send(sender, (byte) i);
+			}
+		});
+		assertTrue(sender.isAlive());
+	}
+
+	@Test
+	@DisplayName("Testing a caller waiting for a packet gives up once the sender is closed or its thread ended")
+	void TestG() throws Exception {
+		AsyncSender unstarted = new AsyncSender("Unstarted sender", sendSocket, 1);
+		send(unstarted, (byte) 1);
+		List<HostActionsException> errors = new ArrayList<HostActionsException>();
+		Thread caller = new Thread(() -> {
+			try {
+				send(unstarted, (byte) 2);
+			} catch (HostActionsException e) {
+				errors.add(e);
+			}
+		});
+		caller.start();
+		caller.join(300);
+		assertTrue(caller.isAlive());
+
+		// closed before it ever ran, nothing will free the packet
+		unstarted.close();
+		caller.join(2000);
+		assertFalse(caller.isAlive());
+		assertEquals(1, errors.size());
+		assertThrows(HostActionsException.class, () -> send(unstarted, (byte) 3));
+
+		// once the thread sent the queued packet and ended, sends are rejected instead of waiting
+		unstarted.start();
+		assertEquals(1, receive().getData()[0]);
+		unstarted.join(5000);
+		assertFalse(unstarted.isAlive());
+		assertTimeoutPreemptively(Duration.ofSeconds(2), () -> assertThrows(HostActionsException.class, () -> send(unstarted, (byte) 4)));
+	}
+
+	@Test
+	@DisplayName("Testing packets sent while the sender closes are either sent or rejected, never lost")
+	void TestH() throws Exception {
+		int callers = 4;
+		AtomicInteger accepted = new AtomicInteger();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int c = 0; c < callers; c++) {
+			Thread thread = new Thread(() -> {
+				for (int i = 0; i < 200; i++) {
+					try {
+						send(sender, (byte) i);
+						accepted.incrementAndGet();
+					} catch (HostActionsException e) {
+						return;
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		Thread.sleep(5);
+		sender.close();
+		for (Thread thread : threads) {
+			thread.join(5000);
+			assertFalse(thread.isAlive());
+		}
+		sender.join(5000);
+		assertFalse(sender.isAlive());
+
+		int received = 0;
+		receiveSocket.setSoTimeout(500);
+		try {
+			while (true) {
+				receive();
+				received++;
+			}
+		} catch (SocketTimeoutException e) {
+		}
+		assertEquals(accepted.get(), received);
+	}
+}
@@ -0,0 +1,168 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.BinaryTrace;
+import core.BinaryTraceReader;
+import core.Direction;
+import core.TraceReader;
+import core.Exceptions.InputParserException;
+import core.Utils.SimulationRequest;
+
+public class BinaryTraceTest {
+
+	private static final String CSV = "Time Floor Floor_Button Car_Button ErrorCode ErrorFloor\n"
+			+ "05:15:02.0 1 up 5 0 0\n"
+			+ "05:15:03.5 7 down 2 1 4\n"
+			+ "05:16:00.0 3 up 9 2\n"
+			+ "end\n";
+
+	@Test
+	@DisplayName("Testing a converted trace reads back the same requests as its CSV file")
+	void TestA() throws Exception {
+		File csv = createFile(".csv", CSV);
+		File trace = File.createTempFile("trace", BinaryTrace.EXTENSION);
+
+		assertEquals(3, BinaryTrace.convert(csv, trace));
+		assertEquals(BinaryTrace.HEADER_SIZE + 3 * BinaryTrace.RECORD_SIZE, trace.length());
+
+		BinaryTraceReader binary = new BinaryTraceReader(trace);
+		assertEquals(3, binary.size());
+		assertTrue(binary.hasEnd());
+		assertEquals(7, binary.getFloor(1));
+		assertEquals(Direction.DOWN, binary.getFloorButton(1));
+		assertEquals(58000, binary.getTimeOffset(2));
+		assertEquals(-1, binary.getErrorFloor(2));
+		try (TraceReader text = new TraceReader(csv)) {
+			SimulationRequest expected;
+			while ((expected = text.next()) != null) {
+				SimulationRequest actual = binary.next();
+				assertEquals(expected.getEnd(), actual.getEnd());
+				if (!expected.getEnd()) {
+					assertEquals(expected.getStartTime(), actual.getStartTime());
+					assertEquals(expected.getIntervalTime(), actual.getIntervalTime());
+					assertEquals(expected.getFloor(), actual.getFloor());
+					assertEquals(expected.getFloorButton(), actual.getFloorButton());
+					assertEquals(expected.getCarButton(), actual.getCarButton());
+					assertEquals(expected.getErrorCode(), actual.getErrorCode());
+					assertEquals(expected.getErrorElevator(), actual.getErrorElevator());
+				}
+			}
+		}
+		assertNull(binary.next());
+		csv.delete();
+		trace.delete();
+	}
+
+	@Test
+	@DisplayName("Testing a truncated or foreign file is not read as a binary trace")
+	void TestB() throws Exception {
+		File csv = createFile(".csv", CSV.replace("end\n", ""));
+		File trace = File.createTempFile("trace", BinaryTrace.EXTENSION);
+		File truncated = File.createTempFile("trace", BinaryTrace.EXTENSION);
+		BinaryTrace.convert(csv, trace);
+		BinaryTrace.convert(csv, truncated);
+		assertFalse(new BinaryTraceReader(trace).hasEnd());
+
+		try (RandomAccessFile file = new RandomAccessFile(truncated, "rw")) {
+			file.setLength(truncated.length() - 1);
+		}
+		assertThrows(InputParserException.class, () -> new BinaryTraceReader(truncated));
+		assertThrows(InputParserException.class, () -> new BinaryTraceReader(csv));
+		csv.delete();
+		trace.delete();
+		truncated.delete();
+	}
+
+	@Test
+	@DisplayName("Testing a trace longer than the write buffer is read back in full, by index and in turn")
+	void TestC() throws Exception {
+		int rows = 10000;
+		Random random = new Random(3);
+		int[] floors = new int[rows];
+		int[] carButtons = new int[rows];
+		File csv = File.createTempFile("trace", ".csv");
+		try (BufferedWriter writer = Files.newBufferedWriter(csv.toPath(), StandardCharsets.UTF_8)) {
+			writer.write("Time Floor Floor_Button Car_Button ErrorCode ErrorFloor\n");
+			for (int i = 0; i < rows; i++) {
+				floors[i] = random.nextInt(300) + 1;
+				carButtons[i] = random.nextInt(300) + 1;
+				long millis = 3600000 + i * 1001L;
+				writer.write(String.format("%02d:%02d:%02d.%03d %d %s %d 0 0%n", millis / 3600000, millis / 60000 % 60, millis / 1000 % 60, millis % 1000,
+						floors[i], i % 3 == 0 ? "down" : "up", carButtons[i]));
+			}
+		}
+		File trace = File.createTempFile("trace", BinaryTrace.EXTENSION);
+		assertEquals(rows, BinaryTrace.convert(csv, trace));
+
+		BinaryTraceReader reader = new BinaryTraceReader(trace);
+		assertEquals(rows, reader.size());
+		assertFalse(reader.hasEnd());
+		for (int i = rows - 1; i >= 0; i -= 997) {
+			assertEquals(floors[i], reader.getFloor(i));
+			assertEquals(i * 1001, reader.getTimeOffset(i));
+		}
+		for (int i = 0; i < rows; i++) {
+			SimulationRequest request = reader.next();
+			assertEquals(floors[i], request.getFloor());
+			assertEquals(carButtons[i], request.getCarButton());
+			assertEquals(i % 3 == 0 ? Direction.DOWN : Direction.UP, request.getFloorButton());
+		}
+		assertNull(reader.next());
+		assertThrows(IndexOutOfBoundsException.class, () -> reader.getFloor(rows));
+		assertThrows(IndexOutOfBoundsException.class, () -> reader.getFloor(-1));
+
+		// converting a shorter trace into the same file leaves nothing of the longer one
+		File shorter = createFile(".csv", CSV);
+		assertEquals(3, BinaryTrace.convert(shorter, trace));
+		assertEquals(3, new BinaryTraceReader(trace).size());
+		csv.delete();
+		shorter.delete();
+		trace.delete();
+	}
+
+	@Test
+	@DisplayName("Testing rows that do not fit a record, an empty trace and another version of the format")
+	void TestD() throws Exception {
+		File trace = File.createTempFile("trace", BinaryTrace.EXTENSION);
+		File csv = createFile(".csv", "Time Floor Floor_Button Car_Button ErrorCode ErrorFloor\n05:15:02.0 40000 up 5 0 0\n");
+		assertThrows(InputParserException.class, () -> BinaryTrace.convert(csv, trace));
+		Files.write(csv.toPath(), "Time Floor Floor_Button Car_Button ErrorCode ErrorFloor\n05:15:02.0 1 up 5 200 0\n".getBytes(StandardCharsets.UTF_8));
+		assertThrows(InputParserException.class, () -> BinaryTrace.convert(csv, trace));
+
+		Files.write(csv.toPath(), "Time Floor Floor_Button Car_Button ErrorCode ErrorFloor\nend\n".getBytes(StandardCharsets.UTF_8));
+		assertEquals(0, BinaryTrace.convert(csv, trace));
+		BinaryTraceReader empty = new BinaryTraceReader(trace);
+		assertEquals(0, empty.size());
+		assertTrue(empty.next().getEnd());
+		assertNull(empty.next());
+
+		try (RandomAccessFile file = new RandomAccessFile(trace, "rw")) {
+			file.seek(4);
+			file.writeShort(BinaryTrace.VERSION + 1);
+		}
+		assertThrows(InputParserException.class, () -> new BinaryTraceReader(trace));
+		csv.delete();
+		trace.delete();
+	}
+
+	private static File createFile(String suffix, String content) throws Exception {
+		File file = File.createTempFile("trace", suffix);
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+}
@@ -0,0 +1,190 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.Direction;
+import core.Exceptions.SchedulerSubsystemException;
+import core.Subsystems.SchedulerSubsystem.DispatchStrategy;
+import core.Subsystems.SchedulerSubsystem.DispatchStrategyFactory;
+import core.Subsystems.SchedulerSubsystem.Elevator;
+import core.Subsystems.SchedulerSubsystem.ElevatorPipeline;
+import core.Subsystems.SchedulerSubsystem.EstimatedTimeOfArrivalStrategy;
+import core.Subsystems.SchedulerSubsystem.FloorPipeline;
+import core.Subsystems.SchedulerSubsystem.NearestCarStrategy;
+import core.Subsystems.SchedulerSubsystem.SchedulerRequest;
+import core.Subsystems.SchedulerSubsystem.SchedulerSubsystem;
+import core.Utils.SubsystemConstants;
+
+public class DispatchStrategyTest {
+
+	private SchedulerSubsystem scheduler;
+	private ElevatorPipeline[] pipelines = new ElevatorPipeline[0];
+
+	@AfterEach
+	void tearDown() {
+		for (ElevatorPipeline pipeline : pipelines) {
+			pipeline.terminate();
+		}
+	}
+
+	/**
+	 * Creates a scheduler with the given number of idle cars on floor 1
+	 */
+	private void createScheduler(int count) throws Exception {
+		scheduler = new SchedulerSubsystem(count);
+		pipelines = new ElevatorPipeline[count];
+		for (int i = 0; i < pipelines.length; i++) {
+			pipelines[i] = new ElevatorPipeline(SubsystemConstants.ELEVATOR, i + 1, scheduler);
+		}
+		scheduler.addListeners(pipelines, new FloorPipeline[0]);
+	}
+
+	/**
+	 * Queues a request for every stop on the car and publishes it on the floor, travelling in the direction
+	 */
+	private void setCar(int id, int floor, Direction direction, int... stops) throws Exception {
+		for (int stop : stops) {
+			pipelines[id - 1].addEvent(new SchedulerRequest(null, 0, SubsystemConstants.FLOOR, floor, direction, stop, stop, 0, 0));
+		}
+		scheduler.updateElevatorState(new Elevator(id, floor, stops.length == 0 ? -1 : stops[0], direction));
+	}
+
+	private static SchedulerRequest createRequest(int sourceFloor, Direction direction, int destFloor) {
+		return new SchedulerRequest(null, 0, SubsystemConstants.FLOOR, sourceFloor, direction, destFloor, destFloor, 0, 0);
+	}
+
+	/**
+	 * The rules the scheduler used before the strategies: the first idle car, otherwise the car with the fewest
+	 * requests among the cars moving in the request direction
+	 */
+	private Elevator getOldSelection(SchedulerRequest request, int count) {
+		Elevator tempElevator = null;
+		for (int i = 1; i <= count; i++) {
+			Elevator elevator = scheduler.getElevatorStatusMap().get(i);
+			if (elevator.getNumRequests() == 0) {
+				return elevator;
+			}
+			if (elevator.getRequestDirection().equals(request.getRequestDirection())) {
+				if (tempElevator == null || elevator.getNumRequests() < tempElevator.getNumRequests()) {
+					tempElevator = elevator;
+				}
+			}
+		}
+		return tempElevator;
+	}
+
+	private static int getId(Elevator elevator) {
+		return elevator == null ? -1 : elevator.getElevatorId();
+	}
+
+	@Test
+	@DisplayName("Testing the factory creates the named strategies and rejects unknown or empty names")
+	void TestA() throws Exception {
+		assertTrue(DispatchStrategyFactory.getStrategy("NearestCar") instanceof NearestCarStrategy);
+		assertTrue(DispatchStrategyFactory.getStrategy("nearestcar") instanceof NearestCarStrategy);
+		assertTrue(DispatchStrategyFactory.getStrategy("EstimatedTimeOfArrival") instanceof EstimatedTimeOfArrivalStrategy);
+		assertTrue(DispatchStrategyFactory.getConfiguredStrategy() instanceof NearestCarStrategy);
+		for (String name : Arrays.asList("", " ", "Nearest", "NearestCar ", "Random", null)) {
+			SchedulerSubsystemException e = assertThrows(SchedulerSubsystemException.class, () -> DispatchStrategyFactory.getStrategy(name));
+			assertTrue(e.getMessage().endsWith(": " + name));
+		}
+	}
+
+	@Test
+	@DisplayName("Testing the nearest car picks the same car as the old rules wherever those had a single candidate")
+	void TestB() throws Exception {
+		createScheduler(3);
+		DispatchStrategy strategy = new NearestCarStrategy();
+		scheduler.setDispatchStrategy(strategy);
+
+		// a single idle car among busy ones
+		setCar(1, 4, Direction.UP, 9);
+		setCar(2, 10, Direction.DOWN, 2);
+		SchedulerRequest up = createRequest(6, Direction.UP, 12);
+		SchedulerRequest down = createRequest(6, Direction.DOWN, 1);
+		for (SchedulerRequest request : Arrays.asList(up, down)) {
+			assertEquals(3, getId(strategy.selectElevator(request, scheduler)));
+			assertEquals(3, getId(getOldSelection(request, 3)));
+		}
+
+		// no idle car, one moving each way
+		setCar(3, 7, Direction.UP, 9, 11);
+		assertEquals(1, getId(strategy.selectElevator(up, scheduler)));
+		assertEquals(1, getId(getOldSelection(up, 3)));
+		assertEquals(2, getId(strategy.selectElevator(down, scheduler)));
+		assertEquals(2, getId(getOldSelection(down, 3)));
+
+		// no car moving down
+		setCar(2, 10, Direction.UP, 12);
+		assertNull(strategy.selectElevator(down, scheduler));
+		assertNull(getOldSelection(down, 3));
+
+		// with several idle cars the nearest one wins instead of the lowest numbered one
+		createScheduler(2);
+		setCar(2, 8, Direction.STATIONARY);
+		SchedulerRequest request = createRequest(9, Direction.DOWN, 1);
+		assertEquals(1, getId(getOldSelection(request, 2)));
+		assertEquals(2, getId(strategy.selectElevator(request, scheduler)));
+	}
+
+	@Test
+	@DisplayName("Testing the estimated time counts the floors and the door cycles of the stops on the way")
+	void TestC() throws Exception {
+		EstimatedTimeOfArrivalStrategy strategy = new EstimatedTimeOfArrivalStrategy(2, 10);
+		Elevator idle = new Elevator(1, 3, -1, Direction.STATIONARY);
+		assertEquals(10, strategy.getEstimatedTime(idle, null, 8, Direction.UP));
+		assertEquals(10, strategy.getEstimatedTime(idle, List.of(), 8, Direction.DOWN));
+
+		Elevator up = new Elevator(2, 6, 9, Direction.UP);
+		up.setNumRequests(3);
+		// approaching: the stop at 7 is on the way, 9 is past the floor and 8 is the floor itself
+		assertEquals(2 * 2 + 10, strategy.getEstimatedTime(up, List.of(7, 8, 9), 8, Direction.UP));
+		// already passed: up to 10, back down to 3, stopping at all three floors
+		assertEquals((4 + 7) * 2 + 3 * 10, strategy.getEstimatedTime(up, List.of(7, 10, 9), 3, Direction.UP));
+
+		Elevator down = new Elevator(3, 12, 4, Direction.DOWN);
+		down.setNumRequests(2);
+		assertEquals(4 * 2 + 10, strategy.getEstimatedTime(down, List.of(10, 4), 8, Direction.DOWN));
+		// the reversal runs down to 4 and back up to 14
+		assertEquals((8 + 10) * 2 + 2 * 10, strategy.getEstimatedTime(down, List.of(10, 4), 14, Direction.DOWN));
+	}
+
+	@Test
+	@DisplayName("Testing the estimated time ranks the cars by their queued stops and skips drained and opposite cars")
+	void TestD() throws Exception {
+		createScheduler(3);
+		setCar(1, 2, Direction.STATIONARY);
+		setCar(2, 6, Direction.UP, 7, 9);
+		setCar(3, 9, Direction.DOWN, 3);
+		SchedulerRequest request = createRequest(8, Direction.UP, 12);
+
+		// slow doors: the idle car 6 floors away beats the one with a stop 2 floors away
+		scheduler.setDispatchStrategy(new EstimatedTimeOfArrivalStrategy(2, 10));
+		assertEquals(1, getId(scheduler.getDispatchStrategy().selectElevator(request, scheduler)));
+		// slow floors: the car with the stop wins
+		scheduler.setDispatchStrategy(new EstimatedTimeOfArrivalStrategy(5, 1));
+		assertEquals(2, getId(scheduler.getDispatchStrategy().selectElevator(request, scheduler)));
+
+		// the car moving down is closest but not eligible, and the drained cars are skipped
+		setCar(3, 8, Direction.DOWN, 3);
+		assertEquals(2, getId(scheduler.getDispatchStrategy().selectElevator(request, scheduler)));
+		assertEquals(0, scheduler.drainElevator(2));
+		assertEquals(1, getId(scheduler.getDispatchStrategy().selectElevator(request, scheduler)));
+		scheduler.drainElevator(1);
+		assertNull(scheduler.getDispatchStrategy().selectElevator(request, scheduler));
+		scheduler.restoreElevator(2);
+		Elevator selected = scheduler.getDispatchStrategy().selectElevator(request, scheduler);
+		assertSame(scheduler.getElevatorStatusMap().get(2), selected);
+	}
+}
@@ -0,0 +1,203 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.Direction;
+import core.Subsystems.SchedulerSubsystem.Elevator;
+import core.Subsystems.SchedulerSubsystem.ElevatorPipeline;
+import core.Subsystems.SchedulerSubsystem.FloorPipeline;
+import core.Subsystems.SchedulerSubsystem.NearestCarStrategy;
+import core.Subsystems.SchedulerSubsystem.SchedulerRequest;
+import core.Subsystems.SchedulerSubsystem.SchedulerSubsystem;
+import core.Utils.SubsystemConstants;
+
+public class ElevatorAssignmentTest {
+
+	private SchedulerSubsystem scheduler;
+	private ElevatorPipeline[] pipelines = new ElevatorPipeline[0];
+	private ExecutorService executor = Executors.newFixedThreadPool(8);
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		executor.shutdownNow();
+		executor.awaitTermination(5, TimeUnit.SECONDS);
+		for (ElevatorPipeline pipeline : pipelines) {
+			pipeline.terminate();
+		}
+	}
+
+	private void createScheduler(int count) throws Exception {
+		scheduler = new SchedulerSubsystem(count);
+		scheduler.setDispatchStrategy(new NearestCarStrategy());
+		pipelines = new ElevatorPipeline[count];
+		for (int i = 0; i < pipelines.length; i++) {
+			pipelines[i] = new ElevatorPipeline(SubsystemConstants.ELEVATOR, i + 1, scheduler);
+		}
+		scheduler.addListeners(pipelines, new FloorPipeline[0]);
+	}
+
+	private static SchedulerRequest createRequest(int sourceFloor, Direction direction, int destFloor) {
+		return new SchedulerRequest(InetAddress.getLoopbackAddress(), 0, SubsystemConstants.FLOOR, sourceFloor, direction, destFloor, destFloor, 0, 0);
+	}
+
+	/**
+	 * Counts the events queued on the car that are the request itself, not its pickup leg
+	 */
+	private static int countQueued(ElevatorPipeline pipeline, SchedulerRequest request) {
+		int count = 0;
+		for (SchedulerRequest event : pipeline.getElevatorEvents()) {
+			if (event == request) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Test
+	@DisplayName("Testing two floors racing for the only idle car, exactly one gets it and the other waits")
+	void TestA() throws Exception {
+		createScheduler(1);
+		ElevatorPipeline pipeline = pipelines[0];
+		CyclicBarrier barrier = new CyclicBarrier(2);
+		for (int round = 0; round < 200; round++) {
+			SchedulerRequest up = createRequest(5, Direction.UP, 9);
+			SchedulerRequest down = createRequest(8, Direction.DOWN, 2);
+			List<Future<?>> futures = new ArrayList<>();
+			for (SchedulerRequest request : new SchedulerRequest[] { up, down }) {
+				futures.add(executor.submit(() -> {
+					barrier.await();
+					scheduler.scheduleEvent(request);
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get(5, TimeUnit.SECONDS);
+			}
+
+			// the car has requests but no direction yet, so the loser cannot ride along
+			SchedulerRequest winner = up.getElevatorNumber() == 1 ? up : down;
+			SchedulerRequest loser = winner == up ? down : up;
+			assertEquals(-1, loser.getElevatorNumber(), "round " + round);
+			assertEquals(1, countQueued(pipeline, winner));
+			assertEquals(0, countQueued(pipeline, loser));
+			assertEquals(1, scheduler.getUnscheduledCount());
+			assertEquals(pipeline.getQueuedEventCount(), scheduler.getElevatorStatusMap().get(1).getNumRequests());
+
+			// the car becoming idle again hands it to the loser
+			pipeline.drainEvents();
+			scheduler.updateElevatorState(new Elevator(1, 1, -1, Direction.STATIONARY));
+			assertEquals(1, loser.getElevatorNumber());
+			assertEquals(0, scheduler.getUnscheduledCount());
+			pipeline.drainEvents();
+			scheduler.updateElevatorState(new Elevator(1, 1, -1, Direction.STATIONARY));
+		}
+	}
+
+	@Test
+	@DisplayName("Testing requests scheduled from many threads while cars move are each queued on at most one car")
+	void TestB() throws Exception {
+		createScheduler(4);
+		int threads = 6;
+		int requestsPerThread = 300;
+		SchedulerRequest[][] requests = new SchedulerRequest[threads][requestsPerThread];
+		AtomicBoolean running = new AtomicBoolean(true);
+		// the cars keep reporting new floors and directions, which unblocks waiting requests
+		Future<?> cars = executor.submit(() -> {
+			Random random = new Random(5);
+			while (running.get()) {
+				int id = random.nextInt(pipelines.length) + 1;
+				Direction direction = Direction.values()[random.nextInt(Direction.values().length)];
+				scheduler.updateElevatorState(new Elevator(id, random.nextInt(20) + 1, -1, direction));
+			}
+			return null;
+		});
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			SchedulerRequest[] own = requests[t];
+			Random random = new Random(t);
+			futures.add(executor.submit(() -> {
+				for (int i = 0; i < own.length; i++) {
+					int floor = random.nextInt(18) + 2;
+					own[i] = random.nextBoolean() ? createRequest(floor, Direction.UP, floor + 1) : createRequest(floor, Direction.DOWN, floor - 1);
+					scheduler.scheduleEvent(own[i]);
+				}
+				return null;
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get(60, TimeUnit.SECONDS);
+		}
+		running.set(false);
+		cars.get(5, TimeUnit.SECONDS);
+
+		// nothing drains the queues, so every request is either queued once on the car it was given or still waiting
+		Set<SchedulerRequest> unscheduled = Collections.newSetFromMap(new IdentityHashMap<SchedulerRequest, Boolean>());
+		unscheduled.addAll(scheduler.getUnscheduledEventsSet());
+		int waiting = 0;
+		for (SchedulerRequest[] own : requests) {
+			for (SchedulerRequest request : own) {
+				int queued = 0;
+				for (ElevatorPipeline pipeline : pipelines) {
+					queued += countQueued(pipeline, request);
+				}
+				if (unscheduled.contains(request)) {
+					assertEquals(0, queued);
+					waiting++;
+				} else {
+					assertEquals(1, queued);
+					assertEquals(1, countQueued(pipelines[request.getElevatorNumber() - 1], request));
+				}
+			}
+		}
+		assertEquals(scheduler.getUnscheduledCount(), waiting);
+		for (ElevatorPipeline pipeline : pipelines) {
+			Elevator published = scheduler.getElevatorStatusMap().get(pipeline.getPipeNumber());
+			assertEquals(pipeline.getQueuedEventCount(), published.getNumRequests());
+		}
+	}
+
+	@Test
+	@DisplayName("Testing published snapshots cannot be modified or replaced from outside the scheduler")
+	void TestC() throws Exception {
+		createScheduler(2);
+		Elevator published = scheduler.getElevatorStatusMap().get(1);
+		assertTrue(published.isFrozen());
+		assertThrows(IllegalStateException.class, () -> published.setCurrentFloor(7));
+		assertThrows(IllegalStateException.class, () -> published.incRequests());
+		assertThrows(UnsupportedOperationException.class, () -> scheduler.getElevatorStatusMap().put(1, new Elevator(1, 7, -1, Direction.UP)));
+		assertEquals(1, published.getCurrentFloor());
+
+		// a change publishes a new frozen copy and leaves the reported object alone
+		Elevator reported = new Elevator(1, 6, 9, Direction.UP);
+		scheduler.updateElevatorState(reported);
+		Elevator current = scheduler.getElevatorStatusMap().get(1);
+		assertTrue(current != reported && current.isFrozen() && !reported.isFrozen());
+		assertEquals(6, current.getCurrentFloor());
+		Elevator copy = new Elevator(current);
+		copy.incRequests();
+		assertEquals(current.getNumRequests() + 1, copy.getNumRequests());
+
+		scheduler.scheduleEvent(createRequest(8, Direction.UP, 12));
+		assertTrue(scheduler.getElevatorStatusMap().values().stream().allMatch(Elevator::isFrozen));
+	}
+}
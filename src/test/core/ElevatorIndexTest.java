@@ -0,0 +1,73 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.Direction;
+import core.Subsystems.SchedulerSubsystem.Elevator;
+import core.Subsystems.SchedulerSubsystem.ElevatorIndex;
+
+public class ElevatorIndexTest {
+
+	private ElevatorIndex index;
+
+	@BeforeEach
+	void setUp() {
+		index = new ElevatorIndex();
+	}
+
+	@Test
+	@DisplayName("Testing nearest idle elevator")
+	void TestA() {
+		index.update(new Elevator(1, 2, -1, Direction.STATIONARY));
+		index.update(new Elevator(2, 9, -1, Direction.STATIONARY));
+		index.update(new Elevator(3, 15, -1, Direction.STATIONARY));
+		assertEquals(2, index.getNearestIdle(10));
+		assertEquals(1, index.getNearestIdle(1));
+		assertEquals(3, index.getNearestIdle(22));
+	}
+
+	@Test
+	@DisplayName("Testing busy elevators are not idle")
+	void TestB() {
+		Elevator elevator = new Elevator(1, 5, 8, Direction.UP);
+		index.update(elevator);
+		assertEquals(1, index.getNearestIdle(5));
+		elevator.incRequests();
+		index.update(elevator);
+		assertEquals(-1, index.getNearestIdle(5));
+		assertEquals(1, index.getNearestMoving(5, Direction.UP));
+	}
+
+	@Test
+	@DisplayName("Testing approaching elevators")
+	void TestC() {
+		Elevator up = new Elevator(1, 4, 10, Direction.UP);
+		Elevator down = new Elevator(2, 12, 1, Direction.DOWN);
+		up.incRequests();
+		down.incRequests();
+		index.update(up);
+		index.update(down);
+		assertEquals(1, index.getNearestApproaching(6, Direction.UP));
+		assertEquals(-1, index.getNearestApproaching(3, Direction.UP));
+		assertEquals(2, index.getNearestApproaching(6, Direction.DOWN));
+		assertEquals(-1, index.getNearestApproaching(13, Direction.DOWN));
+	}
+
+	@Test
+	@DisplayName("Testing removed and moved elevators")
+	void TestD() {
+		Elevator elevator = new Elevator(1, 3, -1, Direction.STATIONARY);
+		index.update(elevator);
+		elevator.setCurrentFloor(7);
+		index.update(elevator);
+		index.update(new Elevator(2, 4, -1, Direction.STATIONARY));
+		assertEquals(1, index.getNearestIdle(8));
+		index.remove(1);
+		assertEquals(2, index.getNearestIdle(8));
+		assertEquals(1, index.size());
+	}
+}
@@ -0,0 +1,182 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.Direction;
+import core.Exceptions.HostActionsException;
+import core.Messages.ElevatorMessage;
+import core.Messages.FloorStateMessage;
+import core.Messages.ItineraryMessage;
+import core.Messages.MessageCodec;
+import core.Subsystems.SchedulerSubsystem.ElevatorPipeline;
+import core.Subsystems.SchedulerSubsystem.FloorPipeline;
+import core.Subsystems.SchedulerSubsystem.SchedulerRequest;
+import core.Subsystems.SchedulerSubsystem.SchedulerSubsystem;
+import core.Utils.InProcessTransport;
+import core.Utils.SubsystemConstants;
+
+public class ElevatorPipelineTest {
+
+	private InProcessTransport transport;
+	private InProcessTransport car;
+	private SchedulerSubsystem scheduler;
+	private ElevatorPipeline pipeline;
+	private ItineraryMessage itinerary = new ItineraryMessage(1);
+	private ByteBuffer report = MessageCodec.allocate();
+
+	@BeforeEach
+	void setUp() throws Exception {
+		transport = new InProcessTransport();
+		car = transport.getPeer();
+		scheduler = new SchedulerSubsystem(1);
+		pipeline = new ElevatorPipeline(SubsystemConstants.ELEVATOR, 1, scheduler, transport);
+		scheduler.addListeners(new ElevatorPipeline[] { pipeline }, new FloorPipeline[0]);
+		pipeline.start();
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		pipeline.sendShutdownMessage();
+		transport.terminate();
+		car.terminate();
+		pipeline.join(5000);
+		pipeline.terminate();
+	}
+
+	/**
+	 * Receives the next itinerary the pipeline sends to the car
+	 */
+	private ItineraryMessage receiveItinerary() throws HostActionsException {
+		DatagramPacket packet = car.receive(1, 1000);
+		assertEquals(MessageCodec.ITINERARY, MessageCodec.getType(packet.getData(), packet.getLength()));
+		assertTrue(itinerary.decode(packet.getData(), packet.getLength()));
+		return itinerary;
+	}
+
+	/**
+	 * Reports the car reaching a floor
+	 * @param nextStop stop the car heads for, -1 if it has none left
+	 */
+	private void reportArrival(int floor, int nextStop) throws HostActionsException {
+		ElevatorMessage.encode(report, floor, nextStop, true, 1, 0, 0);
+		car.send(1, report.array(), report.limit());
+	}
+
+	/**
+	 * Receives any further itineraries until the pipeline sends no more, the events of a call are queued one at a time
+	 * @return the last itinerary received
+	 */
+	private ItineraryMessage receiveLastItinerary() throws HostActionsException {
+		while (true) {
+			try {
+				DatagramPacket packet = car.receive(1, 300);
+				assertTrue(itinerary.decode(packet.getData(), packet.getLength()));
+			} catch (HostActionsException e) {
+				return itinerary;
+			}
+		}
+	}
+
+	private void assignRequest() throws Exception {
+		scheduler.scheduleEvent(new SchedulerRequest(InetAddress.getLocalHost(), 0, SubsystemConstants.FLOOR, 5, Direction.UP, 8, 8, 0, 0));
+		// the car is sent the pickup, the target floor follows once it is picked up
+		ItineraryMessage sent = receiveItinerary();
+		assertTrue(sent.getStopCount() >= 1);
+		assertEquals(5, sent.getFloor(0));
+	}
+
+	@Test
+	@DisplayName("Testing a car that reports no stops left gets no empty itinerary once its requests are drained")
+	void TestA() throws Exception {
+		assignRequest();
+		assertEquals(1, scheduler.drainElevator(1));
+
+		// a car that never applied the itinerary gets resynced, but there is nothing left to send
+		reportArrival(4, -1);
+		assertThrows(HostActionsException.class, () -> car.receive(1, 500));
+		assertEquals("[]", pipeline.getItinerary());
+	}
+
+	@Test
+	@DisplayName("Testing a moving car whose requests are drained is sent an empty itinerary to stop it")
+	void TestB() throws Exception {
+		assignRequest();
+		assertEquals(1, scheduler.drainElevator(1));
+
+		reportArrival(3, 5);
+		assertEquals(0, receiveItinerary().getStopCount());
+		// the pipeline keeps the itinerary it sent once the send returned
+		long deadline = System.currentTimeMillis() + 1000;
+		while (!pipeline.getItinerary().equals("[]") && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals("[]", pipeline.getItinerary());
+		assertThrows(HostActionsException.class, () -> car.receive(1, 500));
+	}
+
+	@Test
+	@DisplayName("Testing a car that picked up its passenger is sent the target floor under a newer revision")
+	void TestC() throws Exception {
+		assignRequest();
+		int revision = itinerary.getRevision();
+
+		reportArrival(5, -1);
+		receiveItinerary();
+		ItineraryMessage amended = receiveLastItinerary();
+		assertTrue(FloorStateMessage.isNewer(amended.getRevision(), revision));
+		assertEquals(1, amended.getStopCount());
+		assertEquals(8, amended.getFloor(0));
+		assertEquals(5, amended.getCurrentFloor());
+
+		// the car reached the target, nothing is left to serve and nothing more is sent
+		reportArrival(8, -1);
+		assertThrows(HostActionsException.class, () -> car.receive(1, 500));
+		assertEquals(0, pipeline.getQueuedEventCount());
+	}
+
+	@Test
+	@DisplayName("Testing a door failure is answered with a forced close and the stops are kept")
+	void TestD() throws Exception {
+		assignRequest();
+		MessageCodec.encodeControl(report, MessageCodec.DOOR_FAILURE);
+		car.send(1, report.array(), report.limit());
+
+		DatagramPacket packet = car.receive(1, 1000);
+		assertEquals(MessageCodec.FORCE_CLOSE, MessageCodec.getType(packet.getData(), packet.getLength()));
+		// the pickup is still the first stop, the target floor may have been added meanwhile
+		ItineraryMessage stops = receiveLastItinerary();
+		assertEquals(5, stops.getFloor(0));
+		assertEquals(stops.toString(), pipeline.getItinerary());
+	}
+
+	@Test
+	@DisplayName("Testing a call added while the car travels amends its itinerary in serving order")
+	void TestE() throws Exception {
+		assignRequest();
+		reportArrival(5, -1);
+		receiveItinerary();
+		assertEquals("[8]", receiveLastItinerary().toString());
+		int revision = itinerary.getRevision();
+
+		// a call from floor 7 going up is picked up on the way, the car learns of it at the next floor it reports
+		scheduler.scheduleEvent(new SchedulerRequest(InetAddress.getLocalHost(), 0, SubsystemConstants.FLOOR, 7, Direction.UP, 9, 9, 0, 0));
+		assertThrows(HostActionsException.class, () -> car.receive(1, 300));
+		reportArrival(6, 8);
+		receiveItinerary();
+		ItineraryMessage amended = receiveLastItinerary();
+		assertTrue(FloorStateMessage.isNewer(amended.getRevision(), revision));
+		assertEquals(7, amended.getFloor(0));
+		assertEquals(8, amended.getFloor(1));
+	}
+}
@@ -0,0 +1,169 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.Direction;
+import core.Subsystems.SchedulerSubsystem.ElevatorStopQueue;
+import core.Subsystems.SchedulerSubsystem.SchedulerRequest;
+import core.Utils.SubsystemConstants;
+
+public class ElevatorStopQueueTest {
+
+	private ElevatorStopQueue queue;
+
+	@BeforeEach
+	void setUp() {
+		queue = new ElevatorStopQueue();
+	}
+
+	private static SchedulerRequest createRequest(int sourceFloor, int destFloor, Direction direction) {
+		return new SchedulerRequest(null, 0, SubsystemConstants.FLOOR, sourceFloor, direction, destFloor, 1, 0, 0);
+	}
+
+	@Test
+	@DisplayName("Testing sweep order of the next stop")
+	void TestA() {
+		SchedulerRequest upLow = createRequest(2, 6, Direction.UP);
+		SchedulerRequest upHigh = createRequest(5, 9, Direction.UP);
+		SchedulerRequest downLow = createRequest(4, 1, Direction.DOWN);
+		SchedulerRequest downHigh = createRequest(8, 3, Direction.DOWN);
+		queue.add(upHigh);
+		queue.add(downLow);
+		queue.add(upLow);
+		queue.add(downHigh);
+		assertEquals(upLow, queue.getNextStop(Direction.UP, 1));
+		assertEquals(downHigh, queue.getNextStop(Direction.DOWN, 9));
+		assertEquals(downLow, queue.getNextStop(Direction.STATIONARY, 4));
+		assertEquals(4, queue.size());
+	}
+
+	@Test
+	@DisplayName("Testing events are drained at their destination")
+	void TestB() {
+		SchedulerRequest first = createRequest(2, 6, Direction.UP);
+		SchedulerRequest second = createRequest(3, 6, Direction.UP);
+		SchedulerRequest down = createRequest(9, 6, Direction.DOWN);
+		queue.add(first);
+		queue.add(second);
+		queue.add(down);
+		assertTrue(queue.drain(6, Direction.STATIONARY).isEmpty());
+		assertEquals(2, queue.drain(6, Direction.UP).size());
+		assertEquals(down, queue.getNextStop(Direction.UP, 6));
+		assertEquals(1, queue.size());
+		assertEquals(1, queue.drainAll().size());
+		assertTrue(queue.isEmpty());
+		assertNull(queue.getNextStop(Direction.DOWN, 6));
+	}
+
+	@Test
+	@DisplayName("Testing a removed event leaves the others of its floors in both indexes")
+	void TestC() {
+		SchedulerRequest first = createRequest(3, 7, Direction.UP);
+		SchedulerRequest second = createRequest(3, 7, Direction.UP);
+		SchedulerRequest other = createRequest(3, 8, Direction.UP);
+		queue.add(first);
+		queue.add(second);
+		queue.add(other);
+
+		assertTrue(queue.remove(first));
+		assertFalse(queue.remove(first));
+		assertFalse(queue.remove(createRequest(3, 7, Direction.DOWN)));
+		assertEquals(2, queue.size());
+		// SchedulerRequest.equals matches the two events of the same floors, so they are told apart by identity
+		assertSame(second, queue.getNextStop(Direction.UP, 1));
+		List<SchedulerRequest> drained = queue.drain(7, Direction.UP);
+		assertEquals(1, drained.size());
+		assertSame(second, drained.get(0));
+		assertSame(other, queue.toList().get(0));
+		assertEquals(1, queue.size());
+	}
+
+	@Test
+	@DisplayName("Testing random adds, removes and drains keep both indexes in step with a plain list")
+	void TestD() {
+		Random random = new Random(4);
+		List<SchedulerRequest> expected = new ArrayList<SchedulerRequest>();
+		Direction[] directions = { Direction.UP, Direction.DOWN };
+		for (int i = 0; i < 5000; i++) {
+			int action = random.nextInt(10);
+			if (action < 5) {
+				SchedulerRequest event = createRequest(1 + random.nextInt(10), 1 + random.nextInt(10), directions[random.nextInt(2)]);
+				queue.add(event);
+				expected.add(event);
+			} else if (action < 8 && !expected.isEmpty()) {
+				SchedulerRequest event = expected.remove(random.nextInt(expected.size()));
+				assertTrue(queue.remove(event));
+			} else {
+				int floor = 1 + random.nextInt(10);
+				Direction direction = directions[random.nextInt(2)];
+				List<SchedulerRequest> drained = queue.drain(floor, direction);
+				List<SchedulerRequest> ending = new ArrayList<SchedulerRequest>();
+				for (SchedulerRequest event : expected) {
+					if (event.getDestFloor() == floor && event.getRequestDirection() == direction) {
+						ending.add(event);
+					}
+				}
+				// SchedulerRequest.equals ignores the direction, so the events are compared by identity
+				assertEquals(ending.size(), drained.size());
+				for (int j = 0; j < ending.size(); j++) {
+					assertSame(ending.get(j), drained.get(j));
+				}
+				expected.removeIf(event -> event.getDestFloor() == floor && event.getRequestDirection() == direction);
+			}
+			assertEquals(expected.size(), queue.size());
+		}
+		Set<SchedulerRequest> queued = Collections.newSetFromMap(new IdentityHashMap<SchedulerRequest, Boolean>());
+		queued.addAll(queue.toList());
+		assertEquals(expected.size(), queued.size());
+		assertTrue(queued.containsAll(expected));
+		assertEquals(expected.size(), queue.drainAll().size());
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	@DisplayName("Testing the version changes with every add and removal but not with planning")
+	void TestE() {
+		int version = queue.getVersion();
+		SchedulerRequest up = createRequest(2, 6, Direction.UP);
+		SchedulerRequest down = createRequest(9, 3, Direction.DOWN);
+		queue.add(up);
+		queue.add(down);
+		assertNotEquals(version, queue.getVersion());
+
+		version = queue.getVersion();
+		queue.getItinerary(Direction.UP, 1, 12);
+		queue.getNextStop(Direction.UP, 1);
+		queue.toList();
+		assertEquals(version, queue.getVersion());
+		// nothing ends on the floor, so nothing changes
+		queue.drain(4, Direction.UP);
+		assertFalse(queue.remove(createRequest(5, 7, Direction.UP)));
+		assertEquals(version, queue.getVersion());
+
+		queue.drain(6, Direction.UP);
+		assertNotEquals(version, queue.getVersion());
+		version = queue.getVersion();
+		assertTrue(queue.remove(down));
+		assertNotEquals(version, queue.getVersion());
+		queue.add(up);
+		version = queue.getVersion();
+		queue.drainAll();
+		assertNotEquals(version, queue.getVersion());
+	}
+}
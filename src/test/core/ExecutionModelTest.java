@@ -0,0 +1,151 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.ConfigurationParser;
+import core.Utils.ExecutionModel;
+
+public class ExecutionModelTest {
+
+	@Test
+	@DisplayName("Testing thousands of blocking activities run under their own names, on virtual threads when the JVM has them")
+	void TestA() throws Exception {
+		int count = 5000;
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch finished = new CountDownLatch(count);
+		AtomicInteger virtual = new AtomicInteger();
+		for (int i = 0; i < count; i++) {
+			String name = "Activity" + i;
+			ExecutionModel.start(new Thread(name) {
+				@Override
+				public void run() {
+					Thread current = Thread.currentThread();
+					if (ExecutionModel.isVirtualThread(current) == ExecutionModel.isVirtualAvailable() && current.getName().equals(name)) {
+						virtual.incrementAndGet();
+					}
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+					}
+					finished.countDown();
+				}
+			}, true);
+		}
+		// activities falling back to platform threads are not counted
+		assertEquals(ExecutionModel.isVirtualAvailable() ? count : 0, ExecutionModel.getRunningCount());
+		release.countDown();
+		assertTrue(finished.await(10, TimeUnit.SECONDS));
+		assertEquals(count, virtual.get());
+	}
+
+	@Test
+	@DisplayName("Testing the platform model starts the activity as its own thread")
+	void TestB() throws Exception {
+		Thread activity = new Thread(() -> assertFalse(ExecutionModel.isVirtualThread(Thread.currentThread())), "Platform activity");
+		ExecutionModel.start(activity, false);
+		activity.join(1000);
+		assertFalse(activity.isAlive());
+	}
+
+	/**
+	 * @return the thread keeping the JVM alive for the virtual activities, null if none runs
+	 */
+	private static Thread findKeeper() {
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().equals("Virtual thread keeper")) {
+				return thread;
+			}
+		}
+		return null;
+	}
+
+	private static void awaitNoneRunning() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while ((ExecutionModel.getRunningCount() > 0 || findKeeper() != null) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	@DisplayName("Testing one platform thread keeps the JVM alive while virtual activities run and ends after the last")
+	void TestC() throws Exception {
+		awaitNoneRunning();
+		CountDownLatch release = new CountDownLatch(1);
+		for (int i = 0; i < 3; i++) {
+			ExecutionModel.start(new Thread("Blocked activity" + i) {
+				@Override
+				public void run() {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+					}
+				}
+			}, true);
+		}
+		Thread keeper = findKeeper();
+		if (ExecutionModel.isVirtualAvailable()) {
+			assertTrue(keeper.isAlive());
+			assertFalse(keeper.isDaemon());
+			assertEquals(3, ExecutionModel.getRunningCount());
+		} else {
+			assertEquals(null, keeper);
+		}
+		release.countDown();
+		awaitNoneRunning();
+		assertEquals(0, ExecutionModel.getRunningCount());
+		assertEquals(null, findKeeper());
+	}
+
+	@Test
+	@DisplayName("Testing an activity that fails is no longer counted as running")
+	void TestD() throws Exception {
+		awaitNoneRunning();
+		CountDownLatch failing = new CountDownLatch(3);
+		for (int i = 0; i < 3; i++) {
+			Thread activity = new Thread("Failing activity" + i) {
+				@Override
+				public void run() {
+					failing.countDown();
+					throw new IllegalStateException("activity failed on purpose");
+				}
+			};
+			ExecutionModel.start(activity, true);
+		}
+		assertTrue(failing.await(5, TimeUnit.SECONDS));
+		awaitNoneRunning();
+		assertEquals(0, ExecutionModel.getRunningCount());
+	}
+
+	@Test
+	@DisplayName("Testing activities started without a model follow ExecutionModel of the configuration")
+	void TestE() throws Exception {
+		String model = ConfigurationParser.getInstance().getString(ConfigurationParser.EXECUTION_MODEL);
+		assertEquals(ExecutionModel.VIRTUAL.equalsIgnoreCase(model), ExecutionModel.isVirtual());
+
+		AtomicReference<Thread> running = new AtomicReference<Thread>();
+		Thread activity = new Thread(() -> running.set(Thread.currentThread()), "Configured activity");
+		ExecutionModel.start(activity);
+		long deadline = System.currentTimeMillis() + 1000;
+		while (running.get() == null && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		if (ExecutionModel.isVirtual() && ExecutionModel.isVirtualAvailable()) {
+			assertTrue(ExecutionModel.isVirtualThread(running.get()));
+		} else {
+			// the platform model runs the activity as the thread it is
+			assertSame(activity, running.get());
+		}
+		assertEquals("Configured activity", running.get().getName());
+	}
+}
@@ -0,0 +1,232 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.ConfigurationParser;
+import core.Direction;
+import core.Metrics;
+import core.Messages.FloorMessage;
+import core.Messages.MessageCodec;
+import core.Subsystems.SchedulerSubsystem.ElevatorPipeline;
+import core.Subsystems.SchedulerSubsystem.FloorIntake;
+import core.Subsystems.SchedulerSubsystem.FloorPipeline;
+import core.Subsystems.SchedulerSubsystem.SchedulerRequest;
+import core.Subsystems.SchedulerSubsystem.SchedulerSubsystem;
+import core.Subsystems.SchedulerSubsystem.SchedulerSubsystemMain;
+import core.Utils.SubsystemConstants;
+
+public class FloorIntakeTest {
+
+	private SchedulerSubsystem scheduler;
+	private ElevatorPipeline[] elevatorPipelines = new ElevatorPipeline[0];
+	private FloorPipeline[] floorPipelines = new FloorPipeline[0];
+	private DatagramSocket[] floors = new DatagramSocket[0];
+
+	@AfterEach
+	void tearDown() {
+		for (ElevatorPipeline pipeline : elevatorPipelines) {
+			pipeline.terminate();
+		}
+		for (FloorPipeline pipeline : floorPipelines) {
+			pipeline.terminate();
+		}
+		for (DatagramSocket floor : floors) {
+			floor.close();
+		}
+	}
+
+	/**
+	 * Creates a scheduler with two cars and the floor pipelines, and opens a socket for every floor that the
+	 * scheduler learns as the floor's port, as if the port handshake had run
+	 */
+	private void createScheduler(int numFloors, FloorIntake[] floorIntakes) throws Exception {
+		scheduler = new SchedulerSubsystem(2);
+		elevatorPipelines = new ElevatorPipeline[2];
+		for (int i = 0; i < elevatorPipelines.length; i++) {
+			elevatorPipelines[i] = new ElevatorPipeline(SubsystemConstants.ELEVATOR, i + 1, scheduler);
+		}
+		floorPipelines = SchedulerSubsystemMain.createFloorPipelines(numFloors, scheduler, null, floorIntakes);
+		scheduler.addListeners(elevatorPipelines, floorPipelines);
+		floors = new DatagramSocket[numFloors];
+		Map<Integer, Integer> floorPorts = new HashMap<>();
+		for (int i = 0; i < numFloors; i++) {
+			floors[i] = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+			floors[i].setSoTimeout(2000);
+			floorPorts.put(i + 1, floors[i].getLocalPort());
+		}
+		scheduler.setFloorPorts(floorPorts);
+		scheduler.setFloorSubsystemAddress(InetAddress.getLoopbackAddress());
+	}
+
+	private void sendRequest(int floor, int targetFloor) throws Exception {
+		byte[] data = new FloorMessage(Direction.UP, floor, targetFloor, 0, 0).generatePacketData();
+		floors[floor - 1].send(new DatagramPacket(data, data.length, InetAddress.getLoopbackAddress(), floorPipelines[floor - 1].getReceivePort()));
+	}
+
+	private static LongAdder getReceivedCounter(int floor) {
+		return Metrics.counter(Metrics.key("packets_received", "subsystem", "scheduler", "floor", floor));
+	}
+
+	private static void awaitCount(LongAdder counter, long expected) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (counter.sum() < expected && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(expected, counter.sum());
+	}
+
+	/**
+	 * @return every request the scheduler holds, queued on a car or waiting for one
+	 */
+	private List<SchedulerRequest> getScheduledRequests() {
+		List<SchedulerRequest> requests = new ArrayList<>(scheduler.getUnscheduledEventsSet());
+		for (ElevatorPipeline pipeline : elevatorPipelines) {
+			for (SchedulerRequest event : pipeline.getElevatorEvents()) {
+				// the pickup legs are queued next to the request they belong to
+				if (event.getDestFloor() == event.getTargetFloor()) {
+					requests.add(event);
+				}
+			}
+		}
+		return requests;
+	}
+
+	@Test
+	@DisplayName("Testing packets of many floors on two intakes reach the pipelines of their floors and replies go back to each floor")
+	void TestA() throws Exception {
+		int numFloors = 6;
+		int packetsPerFloor = 15;
+		FloorIntake[] intakes = SchedulerSubsystemMain.createFloorIntakes(2);
+		createScheduler(numFloors, intakes);
+		for (FloorPipeline pipeline : floorPipelines) {
+			assertNotNull(pipeline.getReceiveChannel());
+		}
+		long[] before = new long[numFloors];
+		for (int i = 0; i < numFloors; i++) {
+			before[i] = getReceivedCounter(i + 1).sum();
+		}
+		for (FloorIntake intake : intakes) {
+			intake.start();
+		}
+
+		// the floors send in turn, so every selector sees datagrams of several channels at once
+		for (int round = 0; round < packetsPerFloor; round++) {
+			for (int floor = 1; floor <= numFloors; floor++) {
+				sendRequest(floor, floor + 1 + round % 3);
+			}
+		}
+		for (int i = 0; i < numFloors; i++) {
+			awaitCount(getReceivedCounter(i + 1), before[i] + packetsPerFloor);
+		}
+		long deadline = System.currentTimeMillis() + 5000;
+		while (getScheduledRequests().size() < numFloors * packetsPerFloor && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		List<SchedulerRequest> requests = getScheduledRequests();
+		assertEquals(numFloors * packetsPerFloor, requests.size());
+		int[] perFloor = new int[numFloors];
+		for (SchedulerRequest request : requests) {
+			// the pipeline of the floor took the sender of the datagram as the floor's address
+			assertEquals(floors[request.getSourceFloor() - 1].getLocalPort(), request.getReceivedPort());
+			perFloor[request.getSourceFloor() - 1]++;
+		}
+		for (int count : perFloor) {
+			assertEquals(packetsPerFloor, count);
+		}
+
+		// replies of every pipeline leave through the shared socket of its intake to its own floor only
+		byte[] state = new byte[] { 1, 2, 3, 4 };
+		floorPipelines[4].sendElevatorStateToFloor(ByteBuffer.wrap(state));
+		floorPipelines[1].sendElevatorStateToFloor(ByteBuffer.wrap(state, 0, 2));
+		DatagramPacket packet = new DatagramPacket(new byte[16], 16);
+		floors[4].receive(packet);
+		assertArrayEquals(state, Arrays.copyOf(packet.getData(), packet.getLength()));
+		floors[1].receive(packet);
+		assertEquals(2, packet.getLength());
+		floors[0].setSoTimeout(200);
+		assertThrows(SocketTimeoutException.class, () -> floors[0].receive(new DatagramPacket(new byte[16], 16)));
+
+		// an end message reaches the scheduler through any floor
+		byte[] end = new FloorMessage().generateEndMessage();
+		assertFalse(scheduler.getEnd());
+		floors[3].send(new DatagramPacket(end, end.length, InetAddress.getLoopbackAddress(), floorPipelines[3].getReceivePort()));
+		deadline = System.currentTimeMillis() + 5000;
+		while (!scheduler.getEnd() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(scheduler.getEnd());
+
+		// the intakes stop once all of their pipelines sent the shutdown message
+		for (FloorPipeline pipeline : floorPipelines) {
+			pipeline.sendShutdownMessage();
+		}
+		for (int i = 0; i < numFloors; i++) {
+			floors[i].receive(packet);
+			assertEquals(MessageCodec.SHUTDOWN, MessageCodec.getType(packet.getData(), packet.getLength()));
+		}
+		for (FloorIntake intake : intakes) {
+			intake.join(5000);
+			assertFalse(intake.isAlive());
+		}
+	}
+
+	@Test
+	@DisplayName("Testing with no intake threads every floor pipeline receives on its own blocking socket")
+	void TestB() throws Exception {
+		assertEquals(0, ConfigurationParser.getInstance().getInt(ConfigurationParser.FLOOR_INTAKE_THREADS));
+		FloorIntake[] intakes = SchedulerSubsystemMain.createFloorIntakes(ConfigurationParser.getInstance().getInt(ConfigurationParser.FLOOR_INTAKE_THREADS));
+		assertEquals(0, intakes.length);
+		assertEquals(0, SchedulerSubsystemMain.createFloorIntakes(-1).length);
+
+		createScheduler(3, intakes);
+		long before = getReceivedCounter(2).sum();
+		for (FloorPipeline pipeline : floorPipelines) {
+			assertNull(pipeline.getReceiveChannel());
+			assertNotNull(pipeline.getReceiveSocket());
+			pipeline.start();
+		}
+		sendRequest(2, 7);
+		awaitCount(getReceivedCounter(2), before + 1);
+		long deadline = System.currentTimeMillis() + 5000;
+		while (getScheduledRequests().isEmpty() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		List<SchedulerRequest> requests = getScheduledRequests();
+		assertEquals(1, requests.size());
+		assertEquals(2, requests.get(0).getSourceFloor());
+		assertEquals(floors[1].getLocalPort(), requests.get(0).getReceivedPort());
+
+		// each pipeline stops once it sent the shutdown message and its socket is closed
+		DatagramPacket packet = new DatagramPacket(new byte[16], 16);
+		for (int i = 0; i < floorPipelines.length; i++) {
+			floorPipelines[i].sendShutdownMessage();
+			floors[i].receive(packet);
+			assertEquals(MessageCodec.SHUTDOWN, MessageCodec.getType(packet.getData(), packet.getLength()));
+			floorPipelines[i].terminate();
+			floorPipelines[i].join(5000);
+			assertFalse(floorPipelines[i].isAlive());
+		}
+	}
+}
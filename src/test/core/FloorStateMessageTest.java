@@ -0,0 +1,163 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.Direction;
+import core.Messages.FloorStateMessage;
+import core.Messages.MessageCodec;
+
+public class FloorStateMessageTest {
+
+	private static byte[] encode(FloorStateMessage sender, Direction direction, int sourceFloor, int targetFloor) throws Exception {
+		ByteBuffer buffer = MessageCodec.allocate();
+		sender.encode(buffer, direction, sourceFloor, targetFloor, 0, 0);
+		return Arrays.copyOf(buffer.array(), buffer.limit());
+	}
+
+	@Test
+	@DisplayName("Testing deltas only carry the fields that changed and are applied on top of their keyframe")
+	void TestA() throws Exception {
+		FloorStateMessage sender = new FloorStateMessage(2);
+		FloorStateMessage[] states = FloorStateMessage.createStates(4);
+
+		byte[] keyframe = encode(sender, Direction.STATIONARY, 1, 0);
+		byte[] moving = encode(sender, Direction.UP, 2, 6);
+		byte[] stopped = encode(sender, Direction.STATIONARY, 1, 0);
+		assertEquals(FloorStateMessage.MAX_MESSAGE_SIZE, keyframe.length);
+		assertTrue(moving.length < keyframe.length);
+		assertEquals(0, sender.getLastMask());
+
+		assertNotNull(FloorStateMessage.decode(states, keyframe, keyframe.length));
+		FloorStateMessage state = FloorStateMessage.decode(states, moving, moving.length);
+		assertEquals(2, state.getElevatorNum());
+		assertEquals(Direction.UP, state.getDirection());
+		assertEquals(2, state.getSourceFloor());
+		assertEquals(6, state.getTargetFloor());
+
+		// fields back at their keyframe values are left out and still restored
+		FloorStateMessage.decode(states, stopped, stopped.length);
+		assertEquals(Direction.STATIONARY, state.getDirection());
+		assertEquals(1, state.getSourceFloor());
+	}
+
+	@Test
+	@DisplayName("Testing reordered states are dropped and a lost delta does not affect later states")
+	void TestB() throws Exception {
+		FloorStateMessage sender = new FloorStateMessage(1);
+		FloorStateMessage[] states = FloorStateMessage.createStates(1);
+
+		byte[] keyframe = encode(sender, Direction.UP, 1, 9);
+		byte[] second = encode(sender, Direction.UP, 2, 9);
+		byte[] third = encode(sender, Direction.UP, 3, 9);
+		byte[] fourth = encode(sender, Direction.DOWN, 3, 1);
+
+		FloorStateMessage.decode(states, keyframe, keyframe.length);
+		assertNotNull(FloorStateMessage.decode(states, third, third.length));
+		assertNull(FloorStateMessage.decode(states, second, second.length));
+		assertEquals(3, states[0].getSourceFloor());
+
+		assertNotNull(FloorStateMessage.decode(states, fourth, fourth.length));
+		assertEquals(Direction.DOWN, states[0].getDirection());
+		assertEquals(1, states[0].getTargetFloor());
+
+		assertTrue(FloorStateMessage.isNewer(0, 0xFFFF));
+		assertNull(FloorStateMessage.decode(states, new byte[] {MessageCodec.FLOOR, MessageCodec.VERSION}, 2));
+	}
+
+	@Test
+	@DisplayName("Testing states keep being applied when the sequence number wraps around")
+	void TestC() throws Exception {
+		FloorStateMessage sender = new FloorStateMessage(1);
+		FloorStateMessage[] states = FloorStateMessage.createStates(1);
+		ByteBuffer buffer = MessageCodec.allocate();
+		// skip ahead to just before the wrap, the receiver joins at the last keyframe before it
+		for (int i = 0; i < 0xFFF8; i++) {
+			sender.encode(buffer, Direction.UP, i % 20, 20, 0, 0);
+		}
+		byte[] beforeWrap = null;
+		for (int floor = 1; floor <= 12; floor++) {
+			byte[] data = encode(sender, Direction.UP, floor, 20);
+			if (floor == 7) {
+				beforeWrap = data;
+			}
+			assertNotNull(FloorStateMessage.decode(states, data, data.length), "state " + sender.getSequence());
+			assertEquals(floor, states[0].getSourceFloor());
+		}
+		assertEquals(3, states[0].getSequence());
+		assertNull(FloorStateMessage.decode(states, beforeWrap, beforeWrap.length));
+		assertFalse(FloorStateMessage.isNewer(0xFFFF, 3));
+	}
+
+	@Test
+	@DisplayName("Testing a receiver that missed the keyframe is consistent again at the next one")
+	void TestD() throws Exception {
+		FloorStateMessage sender = new FloorStateMessage(1);
+		FloorStateMessage[] states = FloorStateMessage.createStates(1);
+		encode(sender, Direction.DOWN, 9, 2);
+		byte[] delta = encode(sender, Direction.DOWN, 8, 2);
+
+		// only the floor changed, the direction and target are unknown until the next keyframe
+		FloorStateMessage.decode(states, delta, delta.length);
+		assertEquals(8, states[0].getSourceFloor());
+		assertEquals(Direction.STATIONARY, states[0].getDirection());
+		assertEquals(0, states[0].getTargetFloor());
+
+		byte[] data = null;
+		for (int i = 2; i <= FloorStateMessage.KEYFRAME_INTERVAL; i++) {
+			data = encode(sender, Direction.DOWN, 9 - i, 2);
+		}
+		FloorStateMessage.decode(states, data, data.length);
+		assertEquals(FloorStateMessage.ALL_FIELDS, states[0].getLastMask());
+		assertEquals(Direction.DOWN, states[0].getDirection());
+		assertEquals(2, states[0].getTargetFloor());
+		assertEquals(9 - FloorStateMessage.KEYFRAME_INTERVAL, states[0].getSourceFloor());
+
+		// truncated fields and cars the receiver does not know are dropped
+		assertNull(FloorStateMessage.decode(states, data, data.length - 1));
+		data[2] = 2;
+		assertNull(FloorStateMessage.decode(states, data, data.length));
+	}
+
+	@Test
+	@DisplayName("Testing states lost and reordered at random never move a car backwards and settle on the last state")
+	void TestE() throws Exception {
+		Random random = new Random(11);
+		FloorStateMessage sender = new FloorStateMessage(1);
+		FloorStateMessage[] states = FloorStateMessage.createStates(1);
+		for (int round = 0; round < 50; round++) {
+			List<byte[]> sent = new ArrayList<byte[]>();
+			for (int i = round == 0 ? 0 : 1; i < FloorStateMessage.KEYFRAME_INTERVAL; i++) {
+				sent.add(encode(sender, random.nextBoolean() ? Direction.UP : Direction.DOWN, random.nextInt(20), random.nextInt(20)));
+			}
+			Collections.shuffle(sent, random);
+			int sequence = states[0].getSequence();
+			for (byte[] data : sent) {
+				if (random.nextInt(4) != 0 && FloorStateMessage.decode(states, data, data.length) != null) {
+					assertTrue(sequence < 0 || FloorStateMessage.isNewer(states[0].getSequence(), sequence));
+					sequence = states[0].getSequence();
+				}
+			}
+			// the next keyframe brings every receiver up to date whatever it missed
+			byte[] keyframe = encode(sender, Direction.STATIONARY, round % 20, 0);
+			assertNotNull(FloorStateMessage.decode(states, keyframe, keyframe.length));
+			assertEquals(FloorStateMessage.ALL_FIELDS, states[0].getLastMask());
+			assertEquals(Direction.STATIONARY, states[0].getDirection());
+			assertEquals(round % 20, states[0].getSourceFloor());
+			assertEquals(0, states[0].getTargetFloor());
+		}
+	}
+}
@@ -0,0 +1,178 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.Exceptions.HostActionsException;
+import core.Utils.InProcessTransport;
+import core.Utils.SpscQueue;
+
+public class InProcessTransportTest {
+
+	@Test
+	@DisplayName("Testing messages reach the entity in order and are unaffected by reusing the send buffer")
+	void TestA() throws Exception {
+		InProcessTransport scheduler = new InProcessTransport();
+		InProcessTransport floors = scheduler.getPeer();
+		floors.register(3);
+		scheduler.awaitRegistrations(1);
+		assertTrue(scheduler.isRegistered(3));
+
+		byte[] buffer = {1, 2, 3, 4};
+		floors.send(3, buffer, 2);
+		buffer[0] = 9;
+		floors.send(3, buffer);
+
+		DatagramPacket first = scheduler.receive(3, 1000);
+		assertEquals(2, first.getLength());
+		assertArrayEquals(new byte[] {1, 2}, Arrays.copyOf(first.getData(), first.getLength()));
+		DatagramPacket second = scheduler.receive(3, 1000);
+		assertArrayEquals(new byte[] {9, 2, 3, 4}, Arrays.copyOf(second.getData(), second.getLength()));
+
+		scheduler.send(3, new byte[] {7});
+		assertEquals(7, floors.receive(3, 1000).getData()[0]);
+		assertThrows(HostActionsException.class, () -> floors.receive(5, 10));
+	}
+
+	@Test
+	@DisplayName("Testing a consumer waiting on an empty queue is woken by the producer and by closing the queue")
+	void TestB() throws Exception {
+		SpscQueue<Integer> queue = new SpscQueue<Integer>(3);
+		assertEquals(4, queue.capacity());
+		for (int i = 0; i < 4; i++) {
+			assertTrue(queue.offer(i));
+		}
+		assertTrue(!queue.offer(4));
+		for (int i = 0; i < 4; i++) {
+			assertEquals(i, (int) queue.poll());
+		}
+
+		Thread producer = new Thread(() -> {
+			for (int i = 0; i < 10000; i++) {
+				while (!queue.offer(i)) {
+					Thread.yield();
+				}
+			}
+		});
+		producer.start();
+		for (int i = 0; i < 10000; i++) {
+			assertEquals(i, (int) queue.poll(1000));
+		}
+		producer.join();
+
+		Thread closer = new Thread(() -> {
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+			}
+			queue.close();
+		});
+		closer.start();
+		assertNull(queue.poll(0));
+		closer.join();
+	}
+
+	@Test
+	@DisplayName("Testing a received packet is handed back to its sender once the next one is received")
+	void TestC() throws Exception {
+		InProcessTransport scheduler = new InProcessTransport();
+		InProcessTransport elevators = scheduler.getPeer();
+
+		elevators.send(1, new byte[] {1});
+		DatagramPacket first = scheduler.receive(1, 1000);
+		// the first packet is still held by the receiver, so the sender takes a new one
+		elevators.send(1, new byte[] {2});
+		DatagramPacket second = scheduler.receive(1, 1000);
+		assertNotSame(first, second);
+		assertEquals(2, second.getData()[0]);
+
+		elevators.send(1, new byte[] {3, 4, 5});
+		DatagramPacket third = scheduler.receive(1, 1000);
+		assertSame(first, third);
+		assertArrayEquals(new byte[] {3, 4, 5}, Arrays.copyOf(third.getData(), third.getLength()));
+		assertEquals(InetAddress.getLoopbackAddress(), third.getAddress());
+
+		// a message longer than a pooled packet still arrives whole
+		byte[] longer = new byte[200];
+		longer[199] = 6;
+		elevators.send(1, longer);
+		DatagramPacket fourth = scheduler.receive(1, 1000);
+		assertEquals(200, fourth.getLength());
+		assertEquals(6, fourth.getData()[199]);
+	}
+
+	@Test
+	@DisplayName("Testing several senders to one entity each keep their order and lose nothing")
+	void TestD() throws Exception {
+		InProcessTransport scheduler = new InProcessTransport();
+		InProcessTransport floors = scheduler.getPeer();
+		int senders = 4;
+		int messages = 3 * InProcessTransport.INBOX_CAPACITY;
+
+		Thread[] threads = new Thread[senders];
+		for (int i = 0; i < senders; i++) {
+			int sender = i;
+			threads[i] = new Thread(() -> {
+				byte[] data = new byte[5];
+				try {
+					for (int n = 0; n < messages; n++) {
+						data[0] = (byte) sender;
+						ByteBuffer.wrap(data, 1, 4).putInt(n);
+						scheduler.send(2, data);
+					}
+				} catch (HostActionsException e) {
+				}
+			});
+			threads[i].start();
+		}
+
+		int[] next = new int[senders];
+		for (int i = 0; i < senders * messages; i++) {
+			DatagramPacket packet = floors.receive(2, 5000);
+			ByteBuffer data = ByteBuffer.wrap(packet.getData(), 0, packet.getLength());
+			int sender = data.get();
+			assertEquals(next[sender]++, data.getInt());
+		}
+		for (int i = 0; i < senders; i++) {
+			threads[i].join();
+			assertEquals(messages, next[i]);
+		}
+		assertThrows(HostActionsException.class, () -> floors.receive(2, 10));
+	}
+
+	@Test
+	@DisplayName("Testing terminating a half wakes its waiting receiver and fails sends to a full inbox")
+	void TestE() throws Exception {
+		InProcessTransport scheduler = new InProcessTransport();
+		InProcessTransport elevators = scheduler.getPeer();
+
+		Thread closer = new Thread(() -> {
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+			}
+			elevators.terminate();
+		});
+		closer.start();
+		assertThrows(HostActionsException.class, () -> elevators.receive(4, 0));
+		closer.join();
+
+		for (int i = 0; i < InProcessTransport.INBOX_CAPACITY; i++) {
+			scheduler.send(4, new byte[] {1});
+		}
+		assertThrows(HostActionsException.class, () -> scheduler.send(4, new byte[] {1}));
+	}
+}
@@ -0,0 +1,123 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.Direction;
+import core.Messages.ItineraryMessage;
+import core.Messages.MessageCodec;
+import core.Subsystems.SchedulerSubsystem.ElevatorStopQueue;
+import core.Subsystems.SchedulerSubsystem.SchedulerRequest;
+import core.Utils.ReliableChannel;
+import core.Utils.SubsystemConstants;
+
+public class ItineraryMessageTest {
+
+	private static SchedulerRequest createRequest(int sourceFloor, int destFloor, Direction direction) {
+		return new SchedulerRequest(null, 0, SubsystemConstants.FLOOR, sourceFloor, direction, destFloor, 1, 0, 0);
+	}
+
+	@Test
+	@DisplayName("Testing an amended itinerary replaces the stops and an older revision is dropped")
+	void TestA() {
+		ItineraryMessage scheduler = new ItineraryMessage(3);
+		ItineraryMessage car = new ItineraryMessage(3);
+		ByteBuffer first = ItineraryMessage.allocate();
+		ByteBuffer amended = ItineraryMessage.allocate();
+
+		scheduler.addStop(4, 0, 0);
+		scheduler.addStop(7, 2, 0);
+		scheduler.encode(first, 0, 1);
+		scheduler.addStop(9, 0, 0);
+		scheduler.encode(amended, 1, 2);
+
+		assertTrue(car.decode(amended.array(), amended.limit()));
+		assertFalse(car.decode(first.array(), first.limit()));
+		assertEquals(3, car.getStopCount());
+		assertEquals(2, car.getCurrentFloor());
+		assertEquals(2, car.getErrorCode(1));
+		assertTrue(car.hasSameStops(scheduler));
+
+		car.removeFirstStop();
+		assertEquals(7, car.getFloor(0));
+		assertEquals(9, car.getFloor(1));
+	}
+
+	@Test
+	@DisplayName("Testing the planned stops follow the serving order without removing the queued events")
+	void TestB() {
+		ElevatorStopQueue queue = new ElevatorStopQueue();
+		queue.add(createRequest(2, 6, Direction.UP));
+		queue.add(createRequest(3, 4, Direction.UP));
+		queue.add(createRequest(9, 2, Direction.DOWN));
+
+		List<SchedulerRequest> stops = queue.getItinerary(Direction.STATIONARY, 1, ItineraryMessage.MAX_STOPS);
+		assertEquals(3, stops.size());
+		assertEquals(4, stops.get(0).getDestFloor());
+		assertEquals(6, stops.get(1).getDestFloor());
+		assertEquals(2, stops.get(2).getDestFloor());
+		assertEquals(3, queue.size());
+
+		assertEquals(1, queue.getItinerary(Direction.UP, 1, 1).size());
+	}
+
+	@Test
+	@DisplayName("Testing a full itinerary fits in a reliable packet and the revision wraps around")
+	void TestC() {
+		ItineraryMessage scheduler = new ItineraryMessage(1);
+		ItineraryMessage car = new ItineraryMessage(1);
+		ByteBuffer buffer = ItineraryMessage.allocate();
+		for (int i = 0; i < ItineraryMessage.MAX_STOPS; i++) {
+			assertTrue(scheduler.addStop(i + 1, 0, 0));
+		}
+		assertFalse(scheduler.addStop(20, 0, 0));
+		assertTrue(ItineraryMessage.MAX_MESSAGE_SIZE <= ReliableChannel.MAX_PAYLOAD_SIZE);
+
+		scheduler.encode(buffer, 0xFFFF, 1);
+		assertEquals(ItineraryMessage.MAX_MESSAGE_SIZE, buffer.limit());
+		assertTrue(car.decode(buffer.array(), buffer.limit()));
+		assertEquals(ItineraryMessage.MAX_STOPS, car.getStopCount());
+		assertEquals(ItineraryMessage.MAX_STOPS, car.getFloor(ItineraryMessage.MAX_STOPS - 1));
+
+		// revision 0x10000 is sent as 0 and is still newer
+		scheduler.clear();
+		scheduler.addStop(3, 0, 0);
+		scheduler.encode(buffer, 0x10000, 1);
+		assertTrue(car.decode(buffer.array(), buffer.limit()));
+		assertEquals(0, car.getRevision());
+		assertEquals("[3]", car.toString());
+	}
+
+	@Test
+	@DisplayName("Testing a truncated or malformed itinerary leaves the stops held by the car unchanged")
+	void TestD() {
+		ItineraryMessage scheduler = new ItineraryMessage(1);
+		ItineraryMessage car = new ItineraryMessage(1);
+		ByteBuffer buffer = ItineraryMessage.allocate();
+		scheduler.addStop(4, 0, 0);
+		scheduler.encode(buffer, 0, 1);
+		assertTrue(car.decode(buffer.array(), buffer.limit()));
+
+		scheduler.addStop(6, 0, 0);
+		scheduler.encode(buffer, 1, 1);
+		byte[] data = buffer.array();
+		assertFalse(car.decode(data, buffer.limit() - 1));
+		// a stop count beyond MAX_STOPS
+		data[buffer.limit() - 2 * ItineraryMessage.STOP_SIZE - 1] = (byte) (ItineraryMessage.MAX_STOPS + 1);
+		assertFalse(car.decode(data, ItineraryMessage.MAX_MESSAGE_SIZE));
+		assertFalse(car.decode(MessageCodec.generateControlMessage(MessageCodec.ITINERARY), MessageCodec.HEADER_SIZE));
+		assertEquals("[4]", car.toString());
+		assertEquals(0, car.getRevision());
+
+		car.removeFirstStop();
+		car.removeFirstStop();
+		assertTrue(car.isEmpty());
+	}
+}
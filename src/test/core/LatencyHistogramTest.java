@@ -0,0 +1,119 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.LatencyHistogram;
+
+public class LatencyHistogramTest {
+
+	@Test
+	@DisplayName("Testing percentiles are within the bucket precision from nanoseconds to seconds")
+	void TestA() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram("Test");
+		double precision = 1.0 / (LatencyHistogram.SUB_BUCKETS / 2);
+		// 1 to 1000000 microseconds, so percentile p is p * 10000 microseconds
+		for (long i = 1; i <= 1000000; i++) {
+			histogram.record(i * 1000);
+		}
+
+		assertEquals(1000000, histogram.getCount());
+		assertEquals(1000, histogram.getMin());
+		assertEquals(1000000000L, histogram.getMax());
+		assertEquals(500000500.0, histogram.getMean(), 1);
+		assertEquals(500000000L, histogram.getPercentile(50), 500000000L * precision);
+		assertEquals(900000000L, histogram.getPercentile(90), 900000000L * precision);
+		assertEquals(990000000L, histogram.getPercentile(99), 990000000L * precision);
+		assertEquals(999000000L, histogram.getPercentile(99.9), 999000000L * precision);
+		assertEquals(1000000000L, histogram.getPercentile(100));
+
+		LatencyHistogram small = new LatencyHistogram("Small");
+		for (long i = 0; i < 100; i++) {
+			small.record(i);
+		}
+		assertEquals(49, small.getPercentile(50));
+		assertEquals(0, new LatencyHistogram("Empty").getPercentile(99));
+	}
+
+	@Test
+	@DisplayName("Testing threads recording into a shared histogram lose no samples")
+	void TestB() throws Exception {
+		LatencyHistogram histogram = LatencyHistogram.named("Shared test");
+		assertSame(histogram, LatencyHistogram.named("Shared test"));
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			long value = (t + 1) * 1000000L;
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 100000; i++) {
+					histogram.record(value);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(800000, histogram.getCount());
+		assertEquals(1000000L, histogram.getMin());
+		assertEquals(8000000L, histogram.getMax());
+		assertEquals(4500000.0, histogram.getMean(), 0.001);
+	}
+
+	@Test
+	@DisplayName("Testing values at bucket edges, negative values and the largest value land in range")
+	void TestC() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram("Edges");
+		histogram.record(-5);
+		assertEquals(0, histogram.getMin());
+		assertEquals(0, histogram.getPercentile(100));
+
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, histogram.getMax());
+		assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+		assertEquals(Long.MAX_VALUE, histogram.getPercentile(150));
+
+		// a single value is its own percentile, whatever the width of its bucket
+		for (long value : new long[] { 127, 128, 255, 256, 1000001, 1L << 40 }) {
+			LatencyHistogram single = new LatencyHistogram("Single");
+			single.record(value);
+			assertEquals(value, single.getPercentile(1));
+			assertEquals(value, single.getPercentile(99.99));
+		}
+
+		// every value of a bucket reads back as its highest value, never below the value
+		LatencyHistogram edges = new LatencyHistogram("Buckets");
+		for (long value = 120; value < 600; value++) {
+			edges.record(value);
+		}
+		double precision = 1.0 / (LatencyHistogram.SUB_BUCKETS / 2);
+		for (double p = 1; p <= 100; p += 1) {
+			long exact = 120 + (long) Math.ceil(p / 100 * 480) - 1;
+			long percentile = edges.getPercentile(p);
+			assertTrue(percentile >= exact && percentile <= exact * (1 + precision), "p" + p + " " + percentile);
+		}
+	}
+
+	@Test
+	@DisplayName("Testing the variance is estimated from the buckets and the summary subtracts the offset")
+	void TestD() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram("Variance");
+		long n = 100000;
+		for (long i = 1; i <= n; i++) {
+			histogram.record(i * 1000);
+		}
+		// variance of 1 to n microseconds
+		double variance = (n * n - 1) / 12.0 * 1e6;
+		assertEquals(variance, histogram.getVariance(), variance * 0.02);
+		assertEquals(0, new LatencyHistogram("One").getVariance());
+
+		LatencyHistogram summary = new LatencyHistogram("Summary");
+		summary.record(5000000);
+		assertEquals("1 samples, p50 2.000 ms, p90 2.000 ms, p99 2.000 ms, p99.9 2.000 ms, max 2.000 ms", summary.summary(3000000));
+		assertTrue(summary.summary(9000000).endsWith("max 0.000 ms"));
+	}
+}
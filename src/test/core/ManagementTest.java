@@ -0,0 +1,159 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.Arrays;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.Direction;
+import core.Management;
+import core.Subsystems.ElevatorSubsystem.ElevatorCarThread;
+import core.Subsystems.SchedulerSubsystem.ElevatorPipeline;
+import core.Subsystems.SchedulerSubsystem.FloorPipeline;
+import core.Subsystems.SchedulerSubsystem.SchedulerRequest;
+import core.Subsystems.SchedulerSubsystem.SchedulerSubsystem;
+import core.Utils.SubsystemConstants;
+
+public class ManagementTest {
+
+	@Test
+	@DisplayName("Testing a drained car hands its waiting calls over and gets none until it is restored")
+	void TestA() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		SchedulerSubsystem scheduler = new SchedulerSubsystem(2);
+		ElevatorPipeline[] pipelines = new ElevatorPipeline[2];
+		for (int i = 0; i < pipelines.length; i++) {
+			pipelines[i] = new ElevatorPipeline(SubsystemConstants.ELEVATOR, i + 1, scheduler);
+		}
+		scheduler.addListeners(pipelines, new FloorPipeline[0]);
+		ObjectName schedulerName = Management.getObjectName("Scheduler", 0);
+		try {
+			SchedulerRequest request = new SchedulerRequest(InetAddress.getLocalHost(), 0, SubsystemConstants.FLOOR, 5, Direction.UP, 8, 8, 0, 0);
+			scheduler.scheduleEvent(request);
+			int first = request.getElevatorNumber();
+			int second = 3 - first;
+			ObjectName firstName = Management.getObjectName("ElevatorPipeline", first);
+			// the call and the leg to pick it up
+			assertEquals(2, server.getAttribute(firstName, "QueuedEventCount"));
+			assertEquals("STATIONARY", server.getAttribute(firstName, "Direction"));
+
+			assertEquals(1, server.invoke(firstName, "drain", null, null));
+			assertEquals(true, server.getAttribute(firstName, "Drained"));
+			assertEquals(0, server.getAttribute(firstName, "QueuedEventCount"));
+			assertEquals(second, request.getElevatorNumber());
+			String[] queue = (String[]) server.invoke(schedulerName, "dumpQueue", new Object[] { second }, new String[] { int.class.getName() });
+			assertEquals(2, queue.length);
+
+			// with both cars drained the call waits for one
+			scheduler.drainElevator(second);
+			assertEquals(1, server.getAttribute(schedulerName, "UnscheduledCount"));
+			assertEquals(1, ((String[]) server.getAttribute(schedulerName, "UnscheduledRequests")).length);
+			assertTrue(Arrays.stream((String[]) server.getAttribute(schedulerName, "ElevatorStates")).allMatch(state -> state.endsWith(" drained")));
+
+			server.invoke(schedulerName, "restoreElevator", new Object[] { first }, new String[] { int.class.getName() });
+			assertEquals(false, server.getAttribute(firstName, "Drained"));
+			assertEquals(0, server.getAttribute(schedulerName, "UnscheduledCount"));
+			assertEquals(first, request.getElevatorNumber());
+			assertEquals(2, pipelines[first - 1].getQueuedEventCount());
+			assertTrue(Arrays.stream((String[]) server.getAttribute(schedulerName, "Latencies")).anyMatch(line -> line.startsWith("Dispatch decision: ")));
+		} finally {
+			for (ElevatorPipeline pipeline : pipelines) {
+				pipeline.terminate();
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("Testing a car exposes its state under its elevator number")
+	void TestB() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ElevatorCarThread car = new ElevatorCarThread("Elevator 17", 10, InetAddress.getLocalHost());
+		try {
+			ObjectName name = Management.getObjectName("ElevatorCar", 17);
+			assertEquals("ElevatorControlSystem:type=ElevatorCar,elevator=17", name.toString());
+			assertEquals(17, server.getAttribute(name, "ElevatorNumber"));
+			assertEquals("ELEV_MOTOR_IDLE", server.getAttribute(name, "MotorState"));
+			assertEquals("ELEV_DOORS_CLOSE", server.getAttribute(name, "DoorState"));
+			assertEquals("[]", server.getAttribute(name, "Itinerary"));
+			assertFalse(((String) server.getAttribute(name, "InterfaceLatency")).isEmpty());
+		} finally {
+			car.getElevSocket().close();
+		}
+	}
+
+	/**
+	 * Creates a scheduler with the given number of pipelines, which register their beans
+	 */
+	private static ElevatorPipeline[] createPipelines(SchedulerSubsystem scheduler, int count) throws Exception {
+		ElevatorPipeline[] pipelines = new ElevatorPipeline[count];
+		for (int i = 0; i < pipelines.length; i++) {
+			pipelines[i] = new ElevatorPipeline(SubsystemConstants.ELEVATOR, i + 1, scheduler);
+		}
+		scheduler.addListeners(pipelines, new FloorPipeline[0]);
+		return pipelines;
+	}
+
+	@Test
+	@DisplayName("Testing a scheduler created again in the process replaces the beans of the earlier one")
+	void TestC() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName schedulerName = Management.getObjectName("Scheduler", 0);
+		ElevatorPipeline[] earlier = createPipelines(new SchedulerSubsystem(3), 3);
+		ElevatorPipeline[] later = new ElevatorPipeline[0];
+		try {
+			assertEquals(3, ((String[]) server.getAttribute(schedulerName, "ElevatorStates")).length);
+			SchedulerSubsystem scheduler = new SchedulerSubsystem(1);
+			later = createPipelines(scheduler, 1);
+			assertEquals(1, ((String[]) server.getAttribute(schedulerName, "ElevatorStates")).length);
+
+			// draining through the bean reaches the later scheduler
+			ObjectName pipelineName = Management.getObjectName("ElevatorPipeline", 1);
+			server.invoke(pipelineName, "drain", null, null);
+			assertTrue(scheduler.isDrained(1));
+			assertEquals(1, server.queryNames(pipelineName, null).size());
+		} finally {
+			for (ElevatorPipeline pipeline : earlier) {
+				pipeline.terminate();
+			}
+			for (ElevatorPipeline pipeline : later) {
+				pipeline.terminate();
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("Testing operations on unknown or running cars change nothing and a bean that cannot register is skipped")
+	void TestD() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName schedulerName = Management.getObjectName("Scheduler", 0);
+		SchedulerSubsystem scheduler = new SchedulerSubsystem(2);
+		ElevatorPipeline[] pipelines = createPipelines(scheduler, 2);
+		try {
+			String[] intType = new String[] { int.class.getName() };
+			assertEquals(-1, server.invoke(schedulerName, "drainElevator", new Object[] { 7 }, intType));
+			assertEquals(0, ((String[]) server.invoke(schedulerName, "dumpQueue", new Object[] { 7 }, intType)).length);
+			server.invoke(schedulerName, "restoreElevator", new Object[] { 2 }, intType);
+			assertFalse(scheduler.isDrained(2));
+			assertFalse(Arrays.stream((String[]) server.getAttribute(schedulerName, "ElevatorStates")).anyMatch(state -> state.endsWith(" drained")));
+
+			// an object without an MBean interface is logged and not registered
+			Management.register(new Object(), "NotABean", 0);
+			assertThrows(InstanceNotFoundException.class, () -> server.getMBeanInfo(Management.getObjectName("NotABean", 0)));
+		} finally {
+			for (ElevatorPipeline pipeline : pipelines) {
+				pipeline.terminate();
+			}
+		}
+	}
+}
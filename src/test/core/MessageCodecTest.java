@@ -0,0 +1,118 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.Direction;
+import core.Messages.ElevatorMessage;
+import core.Messages.FloorMessage;
+import core.Messages.MessageCodec;
+
+public class MessageCodecTest {
+
+	@Test
+	@DisplayName("Testing messages are decoded from a reused buffer into a reused message")
+	void TestA() throws Exception {
+		ByteBuffer buffer = MessageCodec.allocate();
+		ElevatorMessage elevatorMessage = new ElevatorMessage();
+
+		ElevatorMessage.encode(buffer, 3, 7, true, 2, 1, 5);
+		assertEquals(MessageCodec.ELEVATOR_MESSAGE_SIZE, buffer.limit());
+		assertSame(elevatorMessage, elevatorMessage.decode(buffer.array(), buffer.limit()));
+		assertTrue(elevatorMessage.isValid());
+		assertEquals(3, elevatorMessage.getCurrentFloor());
+		assertEquals(7, elevatorMessage.getDestinationFloor());
+		assertTrue(elevatorMessage.getArrivalSensor());
+		assertEquals(2, elevatorMessage.getElevatorNumber());
+		assertEquals(5, elevatorMessage.getErrorFloor());
+
+		MessageCodec.encodeControl(buffer, MessageCodec.FORCE_CLOSE);
+		elevatorMessage.decode(buffer.array(), buffer.limit());
+		assertTrue(elevatorMessage.getForceCloseStatus());
+		assertFalse(elevatorMessage.getArrivalSensor());
+
+		FloorMessage floorMessage = new FloorMessage();
+		FloorMessage.encode(buffer, Direction.DOWN, 9, 4, 3, 0, 0);
+		floorMessage.decode(buffer.array(), buffer.limit());
+		assertTrue(floorMessage.isValid());
+		assertEquals(Direction.DOWN, floorMessage.getDirection());
+		assertEquals(9, floorMessage.getSourceFloor());
+		assertEquals(4, floorMessage.getTargetFloor());
+		assertEquals(3, floorMessage.getElevatorNum());
+	}
+
+	@Test
+	@DisplayName("Testing messages in the older format are still recognised")
+	void TestB() {
+		byte[] shutdown = "Shutdown".getBytes(StandardCharsets.UTF_8);
+		byte[] end = "end".getBytes(StandardCharsets.UTF_8);
+		byte[] elevator = {1, 4, 0, 6, 0, 1, 0, 2, 0, 0, 0, 0, 0};
+		assertEquals(MessageCodec.SHUTDOWN, MessageCodec.getType(shutdown, shutdown.length));
+		assertEquals(MessageCodec.END, MessageCodec.getType(end, end.length));
+		assertEquals(MessageCodec.UNKNOWN, MessageCodec.getType(new byte[] {MessageCodec.FLOOR, 9}, 2));
+
+		ElevatorMessage message = new ElevatorMessage(elevator, elevator.length);
+		assertTrue(message.isValid());
+		assertEquals(4, message.getCurrentFloor());
+		assertEquals(6, message.getDestinationFloor());
+		assertTrue(message.getArrivalSensor());
+		assertEquals(2, message.getElevatorNumber());
+	}
+
+	@Test
+	@DisplayName("Testing the traced fields survive the round trip and are zero in a message without them")
+	void TestC() throws Exception {
+		ByteBuffer buffer = MessageCodec.allocate();
+		FloorMessage message = new FloorMessage();
+		FloorMessage.encode(buffer, Direction.UP, 2, 120, 1, 0, 0, 0x7FFF0001, Long.MAX_VALUE - 5);
+		assertEquals(MessageCodec.FLOOR_MESSAGE_SIZE, buffer.limit());
+		message.decode(buffer.array(), buffer.limit());
+		assertEquals(0x7FFF0001, message.getRequestId());
+		assertEquals(Long.MAX_VALUE - 5, message.getPressedTime());
+		assertEquals(120, message.getTargetFloor());
+
+		// a sender that predates tracing stops after the untraced fields, the reused message drops the old trace
+		message.decode(buffer.array(), MessageCodec.UNTRACED_MESSAGE_SIZE);
+		assertTrue(message.isValid());
+		assertEquals(2, message.getSourceFloor());
+		assertEquals(0, message.getRequestId());
+		assertEquals(0, message.getPressedTime());
+	}
+
+	@Test
+	@DisplayName("Testing empty, truncated and foreign messages are rejected")
+	void TestD() throws Exception {
+		ByteBuffer buffer = MessageCodec.allocate();
+		FloorMessage message = new FloorMessage();
+		FloorMessage.encode(buffer, Direction.DOWN, 6, 1, 2, 0, 0);
+		byte[] data = Arrays.copyOf(buffer.array(), buffer.limit());
+
+		assertEquals(MessageCodec.UNKNOWN, MessageCodec.getType(data, 0));
+		assertEquals(MessageCodec.UNKNOWN, MessageCodec.getType(data, 1));
+		assertFalse(message.decode(data, MessageCodec.UNTRACED_MESSAGE_SIZE - 1).isValid());
+
+		// another version of the format
+		data[1] = MessageCodec.VERSION + 1;
+		assertEquals(MessageCodec.UNKNOWN, MessageCodec.getType(data, data.length));
+		assertFalse(message.decode(data, data.length).isValid());
+
+		// a direction byte out of range
+		data[1] = MessageCodec.VERSION;
+		data[MessageCodec.HEADER_SIZE] = 9;
+		assertFalse(message.decode(data, data.length).isValid());
+
+		byte[] end = "END".getBytes(StandardCharsets.UTF_8);
+		byte[] other = "Ends".getBytes(StandardCharsets.UTF_8);
+		assertEquals(MessageCodec.END, MessageCodec.getType(end, end.length));
+		assertEquals(MessageCodec.UNKNOWN, MessageCodec.getType(other, other.length));
+	}
+}
@@ -0,0 +1,143 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.ConfigurationParser;
+import core.Metrics;
+import core.MetricsExporter;
+
+public class MetricsTest {
+
+	@Test
+	@DisplayName("Testing counters and gauges are read by their line protocol keys")
+	void TestA() throws Exception {
+		String key = Metrics.key("packets_sent", "subsystem", "test", "pipeline", "Floor pipeline 1");
+		assertEquals("packets_sent,subsystem=test,pipeline=Floor\\ pipeline\\ 1", key);
+		assertSame(Metrics.counter(key), Metrics.counter(key));
+		Metrics.counter(key).add(3);
+		Metrics.counter(key).increment();
+
+		AtomicLong depth = new AtomicLong(7);
+		String gauge = Metrics.key("queue_depth", "subsystem", "test");
+		Metrics.gauge(gauge, depth::get);
+		assertEquals(4L, Metrics.snapshot().get(key).longValue());
+		assertEquals(7L, Metrics.snapshot().get(gauge).longValue());
+		depth.set(2);
+		assertEquals(2L, Metrics.snapshot().get(gauge).longValue());
+		Metrics.removeGauge(gauge);
+		assertFalse(Metrics.snapshot().containsKey(gauge));
+	}
+
+	@Test
+	@DisplayName("Testing every snapshot appends the counters, gauges and histograms with one timestamp")
+	void TestB() throws Exception {
+		File file = File.createTempFile("metrics", MetricsExporter.EXTENSION);
+		String counter = Metrics.key("door_faults", "subsystem", "export test");
+		Metrics.counter(counter).add(2);
+		Metrics.gauge(Metrics.key("unscheduled_backlog", "subsystem", "export test"), () -> 5);
+		Metrics.histogram("Export test").record(1500);
+
+		MetricsExporter exporter = new MetricsExporter(file, 60000);
+		exporter.export();
+		Metrics.counter(counter).increment();
+		exporter.close();
+		exporter.export();
+
+		List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		List<String> counters = lines.stream().filter(line -> line.startsWith(counter + " ")).collect(Collectors.toList());
+		assertEquals(2, counters.size());
+		String first = counters.get(0);
+		String last = counters.get(1);
+		assertTrue(first.contains(" value=2i "));
+		assertTrue(last.contains(" value=3i "));
+		assertTrue(lines.stream().anyMatch(line -> line.startsWith("unscheduled_backlog,subsystem=export\\ test value=5i ")));
+		String histogram = lines.stream().filter(line -> line.startsWith("latency,name=Export\\ test ")).findFirst().get();
+		assertTrue(histogram.contains(" count=1i,p50=1500i,"));
+		assertTrue(histogram.contains(",max=1500i "));
+		// every line of a snapshot has the same timestamp
+		String timestamp = first.substring(first.lastIndexOf(' '));
+		assertTrue(histogram.endsWith(timestamp));
+		file.delete();
+	}
+
+	@Test
+	@DisplayName("Testing counters shared by many threads lose no increments and keys escape reserved characters")
+	void TestC() throws Exception {
+		String key = Metrics.key("concurrent_test", "name", "a,b=c d", "unpaired");
+		assertEquals("concurrent_test,name=a\\,b\\=c\\ d", key);
+		Set<LongAdder> seen = ConcurrentHashMap.newKeySet();
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 100000; i++) {
+					LongAdder counter = Metrics.counter(key);
+					seen.add(counter);
+					counter.increment();
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(1, seen.size());
+		assertEquals(800000L, Metrics.snapshot().get(key).longValue());
+
+		List<String> keys = new ArrayList<String>(Metrics.snapshot().keySet());
+		List<String> sorted = new ArrayList<String>(keys);
+		sorted.sort(null);
+		assertEquals(sorted, keys);
+	}
+
+	@Test
+	@DisplayName("Testing the exporter appends a snapshot every period to an existing file until it is closed")
+	void TestD() throws Exception {
+		File file = File.createTempFile("metrics", MetricsExporter.EXTENSION);
+		Files.write(file.toPath(), "earlier run\n".getBytes(StandardCharsets.UTF_8));
+		String gauge = Metrics.key("periodic_test", "subsystem", "test");
+		Metrics.gauge(gauge, () -> 1);
+		// a gauge registered again replaces the one before
+		Metrics.gauge(gauge, () -> 2);
+
+		MetricsExporter exporter = new MetricsExporter(file, 50);
+		exporter.start();
+		Thread.sleep(400);
+		exporter.close();
+		int written = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size();
+		Thread.sleep(200);
+		Metrics.removeGauge(gauge);
+
+		List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		assertEquals(written, lines.size());
+		assertEquals("earlier run", lines.get(0));
+		List<String> snapshots = lines.stream().filter(line -> line.startsWith(gauge + " ")).collect(Collectors.toList());
+		assertTrue(snapshots.size() >= 4, snapshots.size() + " snapshots");
+		assertTrue(snapshots.stream().allMatch(line -> line.contains(" value=2i ")));
+		file.delete();
+	}
+
+	@Test
+	@DisplayName("Testing no exporter is started unless a metrics directory is configured")
+	void TestE() throws Exception {
+		assertEquals("", ConfigurationParser.getInstance().getString(ConfigurationParser.METRICS_DIRECTORY).trim());
+		assertNull(MetricsExporter.startConfigured("test"));
+	}
+}
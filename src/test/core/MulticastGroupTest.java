@@ -0,0 +1,87 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.net.SocketTimeoutException;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.ConfigurationParser;
+import core.Exceptions.HostActionsException;
+import core.Utils.MulticastGroup;
+
+public class MulticastGroupTest {
+
+	@Test
+	@DisplayName("Testing one packet sent to the group is received by every socket that joined it")
+	void TestA() throws Exception {
+		MulticastGroup group = new MulticastGroup(InetAddress.getByName("239.255.0.2"), 46010);
+		MulticastSocket first = group.join();
+		MulticastSocket second = group.join();
+		MulticastSocket sendSocket = group.createSendSocket();
+		try {
+			first.setSoTimeout(2000);
+			second.setSoTimeout(2000);
+			sendSocket.send(new DatagramPacket(new byte[] {1, 2, 3}, 3, group.getAddress(), group.getPort()));
+
+			for (MulticastSocket socket : new MulticastSocket[] {first, second}) {
+				DatagramPacket packet = new DatagramPacket(new byte[10], 10);
+				socket.receive(packet);
+				assertEquals(3, packet.getLength());
+				assertEquals(3, packet.getData()[2]);
+			}
+		} finally {
+			group.leave(first);
+			group.leave(second);
+			sendSocket.close();
+		}
+	}
+
+	@Test
+	@DisplayName("Testing a unicast address is not accepted as a group")
+	void TestB() {
+		assertThrows(HostActionsException.class, () -> new MulticastGroup(InetAddress.getLoopbackAddress(), 46010));
+	}
+
+	@Test
+	@DisplayName("Testing a socket that left the group gets nothing more while the ones still in it do")
+	void TestC() throws Exception {
+		MulticastGroup group = new MulticastGroup(InetAddress.getByName("239.255.0.3"), 46011);
+		MulticastSocket leaving = group.join();
+		MulticastSocket staying = group.join();
+		MulticastSocket sendSocket = group.createSendSocket();
+		try {
+			staying.setSoTimeout(2000);
+			group.leave(leaving);
+			// leaving closes the socket as well
+			assertThrows(Exception.class, () -> leaving.receive(new DatagramPacket(new byte[10], 10)));
+
+			sendSocket.send(new DatagramPacket(new byte[] {4}, 1, group.getAddress(), group.getPort()));
+			DatagramPacket packet = new DatagramPacket(new byte[10], 10);
+			staying.receive(packet);
+			assertEquals(4, packet.getData()[0]);
+			// one copy per member, nothing is left over
+			staying.setSoTimeout(300);
+			assertThrows(SocketTimeoutException.class, () -> staying.receive(packet));
+		} finally {
+			group.leave(staying);
+			sendSocket.close();
+		}
+	}
+
+	@Test
+	@DisplayName("Testing no group is configured while FloorStateMulticast is off")
+	void TestD() throws Exception {
+		if (!ConfigurationParser.getInstance().getBoolean(ConfigurationParser.FLOOR_STATE_MULTICAST)) {
+			assertNull(MulticastGroup.getConfiguredGroup());
+		} else {
+			assertEquals(ConfigurationParser.getInstance().getInt(ConfigurationParser.FLOOR_STATE_MULTICAST_PORT), MulticastGroup.getConfiguredGroup().getPort());
+		}
+	}
+}
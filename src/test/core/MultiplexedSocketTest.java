@@ -0,0 +1,205 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.Metrics;
+import core.Exceptions.HostActionsException;
+import core.Utils.MultiplexedSocket;
+
+public class MultiplexedSocketTest {
+
+	private MultiplexedSocket schedulerSocket;
+	private MultiplexedSocket entitySocket;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		schedulerSocket = new MultiplexedSocket("Scheduler socket", 0);
+		schedulerSocket.start();
+		entitySocket = new MultiplexedSocket("Entity socket", InetAddress.getLoopbackAddress(), schedulerSocket.getLocalPort());
+		entitySocket.start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		entitySocket.terminate();
+		schedulerSocket.terminate();
+	}
+
+	private static byte[] getData(DatagramPacket packet) {
+		return Arrays.copyOf(packet.getData(), packet.getLength());
+	}
+
+	@Test
+	@DisplayName("Testing packets are routed by entity id")
+	void TestA() throws Exception {
+		entitySocket.register(1);
+		entitySocket.register(2);
+		schedulerSocket.awaitRegistrations(2);
+		assertTrue(schedulerSocket.isRegistered(2));
+
+		entitySocket.send(2, new byte[] {2, 2});
+		entitySocket.send(1, new byte[] {1});
+		assertArrayEquals(new byte[] {1}, getData(schedulerSocket.receive(1, 1000)));
+		assertArrayEquals(new byte[] {2, 2}, getData(schedulerSocket.receive(2, 1000)));
+
+		schedulerSocket.send(1, new byte[] {3});
+		assertArrayEquals(new byte[] {3}, getData(entitySocket.receive(1, 1000)));
+	}
+
+	@Test
+	@DisplayName("Testing unregistered entities are rejected")
+	void TestB() {
+		assertThrows(HostActionsException.class, () -> schedulerSocket.send(5, new byte[] {1}));
+		assertThrows(HostActionsException.class, () -> schedulerSocket.receive(5, 100));
+	}
+
+	@Test
+	@DisplayName("Testing entities sending at the same time keep their packets apart and in order")
+	void TestC() throws Exception {
+		int entities = 8;
+		int packets = 20;
+		List<Thread> senders = new ArrayList<Thread>();
+		for (int id = 1; id <= entities; id++) {
+			entitySocket.register(id);
+		}
+		schedulerSocket.awaitRegistrations(entities);
+		for (int id = 1; id <= entities; id++) {
+			int entityId = id;
+			Thread sender = new Thread(() -> {
+				try {
+					for (int i = 0; i < packets; i++) {
+						entitySocket.send(entityId, new byte[] {(byte) entityId, (byte) i});
+					}
+				} catch (HostActionsException e) {
+				}
+			});
+			senders.add(sender);
+			sender.start();
+		}
+		for (Thread sender : senders) {
+			sender.join(5000);
+		}
+
+		for (int id = entities; id >= 1; id--) {
+			for (int i = 0; i < packets; i++) {
+				assertArrayEquals(new byte[] {(byte) id, (byte) i}, getData(schedulerSocket.receive(id, 1000)));
+			}
+		}
+		assertThrows(HostActionsException.class, () -> schedulerSocket.receive(1, 200));
+	}
+
+	@Test
+	@DisplayName("Testing ids above one byte, partial sends and packets queued before anyone receives")
+	void TestD() throws Exception {
+		int entityId = 0x1234;
+		entitySocket.register(entityId);
+		assertFalse(schedulerSocket.isRegistered(0x34));
+
+		entitySocket.send(entityId, new byte[] {7, 8, 9}, 2);
+		entitySocket.send(entityId, new byte[0]);
+		// both packets wait in the inbox until the scheduler asks for them
+		Thread.sleep(200);
+		assertArrayEquals(new byte[] {7, 8}, getData(schedulerSocket.receive(entityId, 1000)));
+		DatagramPacket empty = schedulerSocket.receive(entityId, 1000);
+		assertEquals(0, empty.getLength());
+		assertThrows(HostActionsException.class, () -> schedulerSocket.receive(0x34, 100));
+	}
+
+	@Test
+	@DisplayName("Testing a closed socket refuses to register and sends nothing")
+	void TestE() throws Exception {
+		entitySocket.register(1);
+		entitySocket.terminate();
+		entitySocket.join(1000);
+		assertFalse(entitySocket.isAlive());
+		assertThrows(HostActionsException.class, () -> entitySocket.register(2));
+		assertThrows(HostActionsException.class, () -> entitySocket.send(1, new byte[] {1}));
+	}
+
+	@Test
+	@DisplayName("Testing packets of entities that did not register are dropped and oversized sends are refused")
+	void TestF() throws Exception {
+		LongAdder dropped = Metrics.counter(Metrics.key("packets_dropped", "socket", "Scheduler socket"));
+		long before = dropped.sum();
+		entitySocket.register(1);
+		schedulerSocket.awaitRegistrations(1);
+		try (DatagramSocket rogue = new DatagramSocket()) {
+			// frames for entity 9 that never registered, and one for entity 1 sent before any registration of its own
+			for (int i = 0; i < 5; i++) {
+				byte[] frame = new byte[] {0, 9, (byte) i};
+				rogue.send(new DatagramPacket(frame, frame.length, InetAddress.getLoopbackAddress(), schedulerSocket.getLocalPort()));
+			}
+			byte[] frame = new byte[] {0, 1, 42};
+			rogue.send(new DatagramPacket(frame, frame.length, InetAddress.getLoopbackAddress(), schedulerSocket.getLocalPort()));
+		}
+		assertThrows(HostActionsException.class, () -> schedulerSocket.receive(9, 200));
+		assertFalse(schedulerSocket.isRegistered(9));
+		assertEquals(before + 5, dropped.sum());
+		// entity 1 registered, so its frame is taken whoever sent it
+		assertArrayEquals(new byte[] {42}, getData(schedulerSocket.receive(1, 1000)));
+
+		byte[] largest = new byte[MultiplexedSocket.MAX_PAYLOAD_SIZE];
+		largest[largest.length - 1] = 5;
+		entitySocket.send(1, largest);
+		assertArrayEquals(largest, getData(schedulerSocket.receive(1, 1000)));
+		assertThrows(HostActionsException.class, () -> entitySocket.send(1, new byte[MultiplexedSocket.MAX_PAYLOAD_SIZE + 1]));
+	}
+
+	@Test
+	@DisplayName("Testing a full inbox drops the packets it cannot hold and received packets are reused")
+	void TestG() throws Exception {
+		LongAdder dropped = Metrics.counter(Metrics.key("packets_dropped", "socket", "Scheduler socket"));
+		entitySocket.register(3);
+		schedulerSocket.awaitRegistrations(1);
+		long before = dropped.sum();
+		int extra = 20;
+		for (int i = 0; i < MultiplexedSocket.INBOX_CAPACITY + extra; i++) {
+			entitySocket.send(3, new byte[] {(byte) (i >> 8), (byte) i});
+			if (i % 32 == 31) {
+				// keeps the socket buffer from dropping the packets before the inbox does
+				Thread.sleep(5);
+			}
+		}
+		long deadline = System.currentTimeMillis() + 5000;
+		while (dropped.sum() < before + extra && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(before + extra, dropped.sum());
+		for (int i = 0; i < MultiplexedSocket.INBOX_CAPACITY; i++) {
+			assertArrayEquals(new byte[] {(byte) (i >> 8), (byte) i}, getData(schedulerSocket.receive(3, 1000)));
+		}
+		assertThrows(HostActionsException.class, () -> schedulerSocket.receive(3, 100));
+
+		// a packet goes back to the pool once the next one of its entity is received, so taking them one at a time
+		// never needs more than the one handed out and the one being filled
+		entitySocket.register(4);
+		Set<DatagramPacket> packets = Collections.newSetFromMap(new IdentityHashMap<DatagramPacket, Boolean>());
+		for (int i = 1; i <= 50; i++) {
+			entitySocket.send(4, new byte[i]);
+			DatagramPacket packet = schedulerSocket.receive(4, 1000);
+			assertEquals(i, packet.getLength());
+			packets.add(packet);
+		}
+		assertTrue(packets.size() <= 2);
+	}
+}
@@ -0,0 +1,268 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.Exceptions.HostActionsException;
+import core.Utils.ReliableChannel;
+
+public class ReliableChannelTest {
+
+	private DatagramSocket senderSocket;
+	private DatagramSocket receiverSocket;
+	private DatagramSocket relaySocket;
+	private ReliableChannel sender;
+	private ReliableChannel receiver;
+	private Thread relay;
+
+	// decide by the number of the packet, counted from 1 in each direction
+	private volatile IntPredicate dropFromSender = n -> n == 1;
+	private volatile IntPredicate duplicateFromSender = n -> n == 2;
+	private volatile IntPredicate dropFromReceiver = n -> false;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		senderSocket = new DatagramSocket();
+		receiverSocket = new DatagramSocket();
+		relaySocket = new DatagramSocket();
+		sender = new ReliableChannel("Test sender", senderSocket, null);
+		receiver = new ReliableChannel("Test receiver", receiverSocket, null);
+
+		relay = new Thread(() -> {
+			DatagramPacket packet = new DatagramPacket(new byte[100], 100);
+			int fromSender = 0;
+			int fromReceiver = 0;
+			try {
+				while (true) {
+					packet.setLength(100);
+					relaySocket.receive(packet);
+					boolean isFromSender = packet.getPort() == senderSocket.getLocalPort();
+					packet.setAddress(InetAddress.getLoopbackAddress());
+					packet.setPort(isFromSender ? receiverSocket.getLocalPort() : senderSocket.getLocalPort());
+					if (isFromSender ? dropFromSender.test(++fromSender) : dropFromReceiver.test(++fromReceiver)) {
+						continue;
+					}
+					relaySocket.send(packet);
+					if (isFromSender && duplicateFromSender.test(fromSender)) {
+						relaySocket.send(packet);
+					}
+				}
+			} catch (Exception e) {
+			}
+		});
+		relay.start();
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		sender.close();
+		receiver.close();
+		relaySocket.close();
+		relay.join();
+		senderSocket.close();
+		receiverSocket.close();
+	}
+
+	/**
+	 * Sends to the receiver through the relay, which answers to the sender through the relay as well
+	 */
+	private void sendThroughRelay(byte[] data) throws HostActionsException {
+		sender.send(data, data.length, InetAddress.getLoopbackAddress(), relaySocket.getLocalPort());
+	}
+
+	private void awaitAcknowledged(ReliableChannel channel, long timeout) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+		while (channel.getInFlightCount() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	@DisplayName("Testing a lost packet is sent again and a duplicated packet is delivered once")
+	void TestA() throws Exception {
+		byte[] data = {(byte) 0x81, 1, 4, 6};
+		sendThroughRelay(data);
+
+		DatagramPacket packet = new DatagramPacket(new byte[50], 50);
+		receiver.receive(packet, 3000);
+		assertArrayEquals(data, Arrays.copyOf(packet.getData(), packet.getLength()));
+
+		sender.flush(3000);
+		assertEquals(0, sender.getInFlightCount());
+		assertTrue(sender.getRetransmitCount() >= 1);
+
+		assertThrows(HostActionsException.class, () -> receiver.receive(packet, 500));
+		assertEquals(1, receiver.getDuplicateCount());
+	}
+
+	@Test
+	@DisplayName("Testing packets acknowledged without a retransmit adjust the retransmit timeout")
+	void TestB() throws Exception {
+		byte[] data = {(byte) 0x84, 1};
+		DatagramPacket packet = new DatagramPacket(new byte[50], 50);
+		// the first packet is dropped by the relay, so it is sent directly
+		sender.send(data, data.length, InetAddress.getLoopbackAddress(), receiverSocket.getLocalPort());
+		receiver.receive(packet, 3000);
+		sender.flush(3000);
+
+		assertEquals(0, sender.getRetransmitCount());
+		assertTrue(sender.getRto() < ReliableChannel.INITIAL_RTO);
+	}
+
+	@Test
+	@DisplayName("Testing a lost acknowledgement makes the sender retransmit and the receiver deliver the packet once")
+	void TestC() throws Exception {
+		dropFromSender = n -> false;
+		duplicateFromSender = n -> false;
+		dropFromReceiver = n -> n == 1;
+		byte[] data = {(byte) 0x81, 2, 3, 9};
+		sendThroughRelay(data);
+
+		DatagramPacket packet = new DatagramPacket(new byte[50], 50);
+		receiver.receive(packet, 3000);
+		assertArrayEquals(data, Arrays.copyOf(packet.getData(), packet.getLength()));
+
+		sender.flush(3000);
+		assertEquals(0, sender.getInFlightCount());
+		assertEquals(1, sender.getRetransmitCount());
+		// the retransmit is acknowledged again and not handed to the receiver
+		assertEquals(1, receiver.getDuplicateCount());
+		assertThrows(HostActionsException.class, () -> receiver.receive(packet, 500));
+	}
+
+	@Test
+	@DisplayName("Testing packets are acknowledged while neither owner is receiving")
+	void TestD() throws Exception {
+		dropFromSender = n -> false;
+		duplicateFromSender = n -> false;
+		byte[] data = {(byte) 0x84, 3};
+		for (int i = 0; i < 3; i++) {
+			sendThroughRelay(data);
+		}
+
+		// nobody calls receive or flush, the receiver threads of both channels do the work
+		awaitAcknowledged(sender, 3000);
+		assertEquals(0, sender.getInFlightCount());
+		Thread.sleep(3 * ReliableChannel.INITIAL_RTO);
+		assertEquals(0, sender.getRetransmitCount());
+
+		DatagramPacket packet = new DatagramPacket(new byte[50], 50);
+		for (int i = 0; i < 3; i++) {
+			receiver.receive(packet, 1000);
+			assertArrayEquals(data, Arrays.copyOf(packet.getData(), packet.getLength()));
+		}
+	}
+
+	@Test
+	@DisplayName("Testing more packets than the window survive a lossy link, each delivered once")
+	void TestE() throws Exception {
+		int count = 3 * ReliableChannel.WINDOW;
+		dropFromSender = n -> n % 5 == 0;
+		duplicateFromSender = n -> n % 7 == 0;
+		dropFromReceiver = n -> n % 4 == 0;
+
+		Thread producer = new Thread(() -> {
+			try {
+				for (int i = 0; i < count; i++) {
+					sendThroughRelay(new byte[] {(byte) 0x84, (byte) i});
+				}
+			} catch (HostActionsException e) {
+			}
+		});
+		producer.start();
+
+		boolean[] delivered = new boolean[count];
+		DatagramPacket packet = new DatagramPacket(new byte[50], 50);
+		for (int i = 0; i < count; i++) {
+			receiver.receive(packet, 5000);
+			assertEquals(2, packet.getLength());
+			int number = packet.getData()[1] & 0xFF;
+			assertTrue(!delivered[number], "packet " + number + " delivered twice");
+			delivered[number] = true;
+		}
+		producer.join(5000);
+		sender.flush(5000);
+		assertEquals(0, sender.getInFlightCount());
+		assertTrue(sender.getRetransmitCount() > 0);
+		assertThrows(HostActionsException.class, () -> receiver.receive(packet, 300));
+	}
+
+	@Test
+	@DisplayName("Testing closing gives up the unacknowledged packets and fails later sends and receives")
+	void TestF() throws Exception {
+		dropFromSender = n -> true;
+		byte[] data = {(byte) 0x84, 4};
+		sendThroughRelay(data);
+		assertEquals(1, sender.getInFlightCount());
+
+		sender.close();
+		assertEquals(0, sender.getInFlightCount());
+		assertThrows(HostActionsException.class, () -> sendThroughRelay(data));
+		assertThrows(HostActionsException.class, () -> sender.receive(new DatagramPacket(new byte[50], 50), 0));
+	}
+
+	@Test
+	@DisplayName("Testing a restarted peer is received from again, whether the sending or the receiving side restarted")
+	void TestG() throws Exception {
+		dropFromSender = n -> false;
+		duplicateFromSender = n -> false;
+		int count = ReliableChannel.WINDOW * 3;
+		DatagramPacket packet = new DatagramPacket(new byte[50], 50);
+		for (int i = 0; i < count; i++) {
+			sendThroughRelay(new byte[] {(byte) 0x84, (byte) i});
+			receiver.receive(packet, 3000);
+		}
+		sender.flush(3000);
+
+		// a new sender starts again at sequence 0, which the receiver has already seen from the old one
+		DatagramSocket restartedSocket = new DatagramSocket();
+		ReliableChannel restarted = new ReliableChannel("Restarted sender", restartedSocket, null);
+		try {
+			for (int i = 0; i < 3; i++) {
+				byte[] data = {(byte) 0x81, (byte) i};
+				restarted.send(data, data.length, InetAddress.getLoopbackAddress(), receiverSocket.getLocalPort());
+				receiver.receive(packet, 3000);
+				assertArrayEquals(data, Arrays.copyOf(packet.getData(), packet.getLength()));
+			}
+			restarted.flush(3000);
+			assertEquals(0, restarted.getInFlightCount());
+			assertEquals(0, receiver.getDuplicateCount());
+			assertEquals(1, receiver.getPeerRestartCount());
+		} finally {
+			restarted.close();
+			restartedSocket.close();
+		}
+
+		// a new receiver gets the old sender mid-stream, far past the window of a fresh stream
+		restartedSocket = new DatagramSocket();
+		restarted = new ReliableChannel("Restarted receiver", restartedSocket, null);
+		try {
+			for (int i = 0; i < 3; i++) {
+				byte[] data = {(byte) 0x84, (byte) i};
+				sender.send(data, data.length, InetAddress.getLoopbackAddress(), restartedSocket.getLocalPort());
+				restarted.receive(packet, 3000);
+				assertArrayEquals(data, Arrays.copyOf(packet.getData(), packet.getLength()));
+			}
+			sender.flush(3000);
+			assertEquals(0, sender.getInFlightCount());
+			assertEquals(0, restarted.getDuplicateCount());
+			assertEquals(0, restarted.getPeerRestartCount());
+		} finally {
+			restarted.close();
+			restartedSocket.close();
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.Direction;
+import core.LatencyHistogram;
+import core.RequestTracer;
+import core.Messages.ElevatorMessage;
+import core.Messages.FloorMessage;
+import core.Messages.MessageCodec;
+
+public class RequestTracerTest {
+
+	@Test
+	@DisplayName("Testing the request id, press time and stop ages are carried by the messages")
+	void TestA() throws Exception {
+		ByteBuffer buffer = MessageCodec.allocate();
+		int id = RequestTracer.nextRequestId();
+		assertTrue(RequestTracer.nextRequestId() > id);
+
+		FloorMessage.encode(buffer, Direction.UP, 2, 9, 0, 0, 0, id, 1234567890123L);
+		assertEquals(MessageCodec.FLOOR_MESSAGE_SIZE, buffer.limit());
+		FloorMessage floorMessage = new FloorMessage().decode(buffer.array(), buffer.limit());
+		assertTrue(floorMessage.isValid());
+		assertEquals(id, floorMessage.getRequestId());
+		assertEquals(1234567890123L, floorMessage.getPressedTime());
+		assertEquals(id, floorMessage.toSchedulerRequest(null, 0).getrRequestId());
+
+		// a message without the traced fields is still read, as an untraced request
+		floorMessage.decode(buffer.array(), MessageCodec.UNTRACED_MESSAGE_SIZE);
+		assertTrue(floorMessage.isValid());
+		assertEquals(9, floorMessage.getTargetFloor());
+		assertEquals(0, floorMessage.getRequestId());
+		assertTrue(floorMessage.toSchedulerRequest(null, 0).getrRequestId() < 0);
+
+		ElevatorMessage.encode(buffer, 4, 7, true, 1, 0, 0, 3500, 3400);
+		ElevatorMessage elevatorMessage = new ElevatorMessage().decode(buffer.array(), buffer.limit());
+		assertEquals(3500, elevatorMessage.getStoppedMillis());
+		assertEquals(3400, elevatorMessage.getDoorsOpenMillis());
+		elevatorMessage.decode(buffer.array(), MessageCodec.UNTRACED_MESSAGE_SIZE);
+		assertTrue(elevatorMessage.isValid());
+		assertEquals(-1, elevatorMessage.getStoppedMillis());
+	}
+
+	@Test
+	@DisplayName("Testing a delivered call is exported with its wait and ride, and an undelivered one on close")
+	void TestB() throws Exception {
+		File file = File.createTempFile("requests", ".csv");
+		LatencyHistogram wait = new LatencyHistogram("Wait");
+		LatencyHistogram ride = new LatencyHistogram("Ride");
+		RequestTracer tracer = new RequestTracer(file, wait, ride);
+
+		tracer.received(1, 3, 8, 1000, 1002);
+		tracer.assigned(1, 2, 1003, false);
+		// passing the destination before the pickup does not deliver the call
+		tracer.stopped(1, 8, 1500, 1500);
+		tracer.stopped(1, 3, 5000, 5100);
+		tracer.stopped(1, 8, 12000, 12100);
+		tracer.received(2, 5, 1, 2000, 2001);
+		tracer.assigned(2, 1, 2002, true);
+		tracer.received(0, 4, 6, 3000, 3001);
+		assertEquals(1, tracer.getOpenCount());
+		tracer.close();
+
+		assertEquals(1, wait.getCount());
+		assertEquals(4100 * 1000000L, wait.getMax());
+		assertEquals(6900 * 1000000L, ride.getMax());
+		List<String> rows = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		assertEquals(3, rows.size());
+		assertEquals(RequestTracer.CSV_HEADER, rows.get(0));
+		assertEquals("1,2,3,8,1000,1002,1003,5000,5100,12000,4100,6900", rows.get(1));
+		assertEquals("2,1,5,1,2000,2001,2002,2002,2002,,,", rows.get(2));
+		file.delete();
+	}
+
+	@Test
+	@DisplayName("Testing calls traced from many threads are each exported once")
+	void TestC() throws Exception {
+		File file = File.createTempFile("requests", ".csv");
+		LatencyHistogram wait = new LatencyHistogram("Wait");
+		LatencyHistogram ride = new LatencyHistogram("Ride");
+		RequestTracer tracer = new RequestTracer(file, wait, ride);
+		int threads = 8;
+		int calls = 1000;
+		Thread[] pipelines = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			int first = t * calls + 1;
+			pipelines[t] = new Thread(() -> {
+				for (int id = first; id < first + calls; id++) {
+					tracer.received(id, 2, 6, 100, 101);
+					tracer.assigned(id, 1, 102, false);
+					tracer.stopped(id, 2, 110, 111);
+					tracer.stopped(id, 6, 150, 150);
+				}
+			});
+			pipelines[t].start();
+		}
+		for (Thread pipeline : pipelines) {
+			pipeline.join();
+		}
+		assertEquals(0, tracer.getOpenCount());
+		tracer.close();
+
+		assertEquals(threads * calls, wait.getCount());
+		assertEquals(11 * 1000000L, wait.getMax());
+		assertEquals(39 * 1000000L, ride.getMin());
+		List<String> rows = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		assertEquals(threads * calls + 1, rows.size());
+		Set<String> ids = new HashSet<String>();
+		for (String row : rows.subList(1, rows.size())) {
+			assertTrue(ids.add(row.substring(0, row.indexOf(','))), row);
+			assertTrue(row.endsWith(",2,6,100,101,102,110,111,150,11,39"), row);
+		}
+		file.delete();
+	}
+
+	@Test
+	@DisplayName("Testing a call given to another car keeps the last one and stops for unknown calls are ignored")
+	void TestD() throws Exception {
+		LatencyHistogram wait = new LatencyHistogram("Wait");
+		LatencyHistogram ride = new LatencyHistogram("Ride");
+		RequestTracer tracer = new RequestTracer(wait, ride);
+
+		tracer.received(5, 7, 2, 1000, 1001);
+		tracer.assigned(5, 1, 1002, false);
+		// the first car failed before the pickup
+		tracer.assigned(5, 3, 4000, true);
+		tracer.stopped(6, 2, 4500, 4500);
+		tracer.assigned(6, 1, 4600, false);
+		assertEquals(1, tracer.getOpenCount());
+
+		tracer.stopped(5, 2, 9000, 9000);
+		assertEquals(0, tracer.getOpenCount());
+		assertEquals(3000 * 1000000L, wait.getMax());
+		assertEquals(5000 * 1000000L, ride.getMax());
+		// a later stop at the destination finds nothing left to deliver
+		tracer.stopped(5, 2, 9500, 9500);
+		tracer.close();
+		assertEquals(1, ride.getCount());
+	}
+}
@@ -0,0 +1,221 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.net.DatagramPacket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.Exceptions.HostActionsException;
+import core.Utils.SharedMemoryTransport;
+
+public class SharedMemoryTransportTest {
+
+	private File file;
+	private SharedMemoryTransport scheduler;
+	private SharedMemoryTransport floors;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		file = File.createTempFile("floor", ".ring");
+		scheduler = new SharedMemoryTransport(file, 3, true, false);
+		floors = new SharedMemoryTransport(file, 3, false, true);
+	}
+
+	@AfterEach
+	void tearDown() {
+		floors.terminate();
+		scheduler.terminate();
+		file.delete();
+	}
+
+	@Test
+	@DisplayName("Testing registrations and messages cross between two mappings of the file in both directions")
+	void TestA() throws Exception {
+		assertFalse(scheduler.isRegistered(2));
+		floors.register(2);
+		scheduler.awaitRegistrations(1);
+		assertTrue(scheduler.isRegistered(2));
+
+		floors.send(2, new byte[] {1, 2, 3}, 2);
+		DatagramPacket packet = scheduler.receive(2, 1000);
+		assertEquals(2, packet.getLength());
+		assertEquals(2, packet.getData()[1]);
+
+		scheduler.send(2, new byte[] {7});
+		assertEquals(7, floors.receive(2, 1000).getData()[0]);
+		assertThrows(HostActionsException.class, () -> floors.receive(3, 10));
+		assertThrows(HostActionsException.class, () -> floors.send(4, new byte[] {1}));
+		assertThrows(HostActionsException.class, () -> floors.send(1, new byte[SharedMemoryTransport.MAX_PAYLOAD + 1]));
+	}
+
+	@Test
+	@DisplayName("Testing messages keep their order past the capacity of the ring and closing wakes the receiver")
+	void TestB() throws Exception {
+		int count = SharedMemoryTransport.RING_CAPACITY * 4;
+		Thread producer = new Thread(() -> {
+			ByteBuffer data = ByteBuffer.allocate(4);
+			try {
+				for (int i = 0; i < count; i++) {
+					data.clear();
+					data.putInt(i);
+					scheduler.send(1, data.array());
+				}
+			} catch (HostActionsException e) {
+			}
+		});
+		producer.start();
+		for (int i = 0; i < count; i++) {
+			assertEquals(i, ByteBuffer.wrap(floors.receive(1, 1000).getData()).getInt());
+		}
+		producer.join();
+
+		scheduler.terminate();
+		assertThrows(HostActionsException.class, () -> floors.receive(1, 0));
+		assertFalse(file.exists());
+	}
+
+	/**
+	 * Starts a thread sending count messages holding the sender number and the message number
+	 */
+	private static Thread startSender(SharedMemoryTransport transport, int entityId, int sender, int count) {
+		Thread thread = new Thread(() -> {
+			ByteBuffer data = ByteBuffer.allocate(8);
+			try {
+				for (int i = 0; i < count; i++) {
+					data.clear();
+					data.putInt(sender).putInt(i);
+					transport.send(entityId, data.array());
+				}
+			} catch (HostActionsException e) {
+			}
+		});
+		thread.start();
+		return thread;
+	}
+
+	@Test
+	@DisplayName("Testing several senders per ring and every ring in both directions at once lose and reorder nothing")
+	void TestC() throws Exception {
+		int count = SharedMemoryTransport.RING_CAPACITY * 2;
+		int senders = 3;
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int entityId = 1; entityId <= 3; entityId++) {
+			for (int sender = 0; sender < senders; sender++) {
+				threads.add(startSender(scheduler, entityId, sender, count));
+				threads.add(startSender(floors, entityId, sender, count));
+			}
+		}
+
+		// the scheduler side parks while it waits, the floor side spins
+		for (int entityId = 1; entityId <= 3; entityId++) {
+			for (SharedMemoryTransport receiver : new SharedMemoryTransport[] {scheduler, floors}) {
+				int[] next = new int[senders];
+				for (int i = 0; i < senders * count; i++) {
+					ByteBuffer data = ByteBuffer.wrap(receiver.receive(entityId, 2000).getData());
+					int sender = data.getInt();
+					assertEquals(next[sender]++, data.getInt());
+				}
+			}
+		}
+		for (Thread thread : threads) {
+			thread.join(1000);
+			assertFalse(thread.isAlive());
+		}
+		assertThrows(HostActionsException.class, () -> scheduler.receive(1, 10));
+	}
+
+	@Test
+	@DisplayName("Testing a sender waits while the ring is full and closing the link wakes it")
+	void TestD() throws Exception {
+		for (int i = 0; i < SharedMemoryTransport.RING_CAPACITY; i++) {
+			floors.send(2, new byte[] {(byte) i});
+		}
+		AtomicReference<Exception> failure = new AtomicReference<Exception>();
+		Thread sender = new Thread(() -> {
+			try {
+				floors.send(2, new byte[] {1});
+				floors.send(2, new byte[] {2});
+			} catch (HostActionsException e) {
+				failure.set(e);
+			}
+		});
+		sender.start();
+		sender.join(200);
+		assertTrue(sender.isAlive());
+
+		// one slot is freed, the second message still finds the ring full
+		assertEquals(0, scheduler.receive(2, 1000).getData()[0]);
+		Thread.sleep(200);
+		assertTrue(sender.isAlive());
+
+		scheduler.terminate();
+		sender.join(1000);
+		assertFalse(sender.isAlive());
+		assertTrue(failure.get() instanceof HostActionsException);
+	}
+
+	@Test
+	@DisplayName("Testing a full slot crosses intact, a receive times out and nothing is kept from an earlier run")
+	void TestE() throws Exception {
+		byte[] data = new byte[SharedMemoryTransport.MAX_PAYLOAD];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i * 7);
+		}
+		floors.register(3);
+		floors.send(3, data);
+		floors.send(3, new byte[] {9});
+		assertArrayEquals(data, Arrays.copyOf(scheduler.receive(3, 1000).getData(), data.length));
+
+		long start = System.nanoTime();
+		assertThrows(HostActionsException.class, () -> scheduler.receive(1, 100));
+		assertTrue(System.nanoTime() - start >= 100_000_000L);
+
+		// the scheduler restarts on the same file, the message and registration left in it are gone
+		floors.terminate();
+		scheduler.terminate();
+		scheduler = new SharedMemoryTransport(file, 3, true, false);
+		floors = new SharedMemoryTransport(file, 3, false, true);
+		assertFalse(scheduler.isRegistered(3));
+		assertThrows(HostActionsException.class, () -> scheduler.receive(3, 50));
+		assertThrows(HostActionsException.class, () -> new SharedMemoryTransport(file, 4, false, true));
+	}
+
+	@Test
+	@DisplayName("Testing the other subsystem started first waits for the scheduler to create the file")
+	void TestF() throws Exception {
+		floors.terminate();
+		scheduler.terminate();
+		AtomicReference<SharedMemoryTransport> opened = new AtomicReference<SharedMemoryTransport>();
+		Thread opener = new Thread(() -> {
+			try {
+				opened.set(new SharedMemoryTransport(file, 2, false, false));
+			} catch (HostActionsException e) {
+			}
+		});
+		opener.start();
+		opener.join(300);
+		assertTrue(opener.isAlive());
+
+		scheduler = new SharedMemoryTransport(file, 2, true, false);
+		opener.join(5000);
+		floors = opened.get();
+		floors.register(1);
+		scheduler.awaitRegistrations(1);
+		scheduler.send(1, new byte[] {5});
+		assertEquals(5, floors.receive(1, 1000).getData()[0]);
+	}
+}
@@ -0,0 +1,349 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.DatagramPacket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.Exceptions.HostActionsException;
+import core.Utils.InProcessTransport;
+import core.Utils.SimulationClock;
+
+public class SimulationClockTest {
+
+	@Test
+	@DisplayName("Testing simulated sleeps wake in the order of their simulated time without waiting for it")
+	void TestA() throws Exception {
+		SimulationClock clock = new SimulationClock(true);
+		List<Long> woken = Collections.synchronizedList(new ArrayList<Long>());
+		long start = clock.currentTimeMillis();
+		// both sleep before time moves, as the subsystems are started on a held clock
+		clock.hold();
+		long realStart = System.currentTimeMillis();
+
+		Thread longSleep = new Thread(() -> {
+			clock.sleep(60 * 60 * 1000);
+			woken.add(clock.currentTimeMillis() - start);
+		});
+		Thread shortSleep = new Thread(() -> {
+			clock.sleep(5 * 60 * 1000);
+			woken.add(clock.currentTimeMillis() - start);
+		});
+		longSleep.start();
+		shortSleep.start();
+		awaitPending(clock, 2);
+		clock.release();
+		longSleep.join(5000);
+		shortSleep.join(5000);
+
+		assertEquals(2, woken.size());
+		assertEquals(5 * 60 * 1000L, (long) woken.get(0));
+		assertEquals(60 * 60 * 1000L, (long) woken.get(1));
+		assertTrue(System.currentTimeMillis() - realStart < 5000);
+	}
+
+	@Test
+	@DisplayName("Testing scheduled tasks of a trace run from its first event in time order")
+	void TestB() throws Exception {
+		SimulationClock clock = new SimulationClock(true);
+		List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+		long traceStart = System.currentTimeMillis() - 10 * 60 * 60 * 1000;
+		Timer unused = new Timer(true);
+
+		clock.hold();
+		clock.schedule(unused, createTask(order, 2), new Date(traceStart + 30 * 60 * 1000));
+		clock.schedule(unused, createTask(order, 1), new Date(traceStart));
+		clock.schedule(unused, createTask(order, 3), new Date(traceStart + 90 * 60 * 1000));
+		clock.release();
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (order.size() < 3 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(3, order.size());
+		assertEquals(1, (int) order.get(0));
+		assertEquals(3, (int) order.get(2));
+		assertEquals(90 * 60 * 1000L, clock.getElapsedMillis());
+		assertEquals(0, clock.getPendingCount());
+	}
+
+	@Test
+	@DisplayName("Testing simulated time stands still while an activity holds its turn")
+	void TestC() throws Exception {
+		SimulationClock clock = new SimulationClock(true);
+		List<String> log = Collections.synchronizedList(new ArrayList<String>());
+		long start = clock.currentTimeMillis();
+		clock.hold();
+
+		Thread busy = start(clock, "Busy", () -> {
+			clock.sleep(10);
+			try {
+				// far longer than the clock used to wait for a quiet process
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+			}
+			log.add("busy " + (clock.currentTimeMillis() - start));
+		});
+		Thread sleeper = start(clock, "Sleeper", () -> {
+			clock.sleep(20);
+			log.add("sleeper " + (clock.currentTimeMillis() - start));
+		});
+		awaitPending(clock, 2);
+		clock.release();
+		busy.join(5000);
+		sleeper.join(5000);
+
+		assertEquals(List.of("busy 10", "sleeper 20"), log);
+	}
+
+	@Test
+	@DisplayName("Testing an unpark ends a timed park early and cancels its timeout, which otherwise wakes it")
+	void TestD() throws Exception {
+		SimulationClock clock = new SimulationClock(true);
+		List<String> log = Collections.synchronizedList(new ArrayList<String>());
+		long start = clock.currentTimeMillis();
+		clock.hold();
+
+		Thread unparked = start(clock, "Unparked", () -> {
+			clock.parkNanos(this, 10000 * 1000000L);
+			log.add("unparked " + (clock.currentTimeMillis() - start));
+		});
+		Thread timedOut = start(clock, "Timed out", () -> {
+			clock.parkNanos(this, 2500 * 1000000L);
+			log.add("timed out " + (clock.currentTimeMillis() - start));
+		});
+		Thread waker = start(clock, "Waker", () -> {
+			clock.sleep(1000);
+			clock.unpark(unparked);
+		});
+		awaitPending(clock, 3);
+		clock.release();
+		unparked.join(5000);
+		timedOut.join(5000);
+		waker.join(5000);
+
+		assertEquals(List.of("unparked 1000", "timed out 2500"), log);
+		assertEquals(0, clock.getPendingCount());
+		assertEquals(2500, clock.currentTimeMillis() - start);
+	}
+
+	@Test
+	@DisplayName("Testing two runs with the same seed produce the same trace, and another seed a different one")
+	void TestE() throws Exception {
+		List<String> first = runSimulation(7);
+		List<String> second = runSimulation(7);
+
+		assertEquals(3 * 20 + 10, first.stream().filter(line -> line.contains(" handled ")).count());
+		assertEquals(first, second);
+		assertNotEquals(first, runSimulation(8));
+	}
+
+	@Test
+	@DisplayName("Testing an activity that ends without detaching hands its turn on")
+	void TestF() throws Exception {
+		SimulationClock clock = new SimulationClock(true);
+		List<Long> woken = Collections.synchronizedList(new ArrayList<Long>());
+		long start = clock.currentTimeMillis();
+		clock.hold();
+
+		Thread leaving = new Thread(() -> clock.sleep(5));
+		Thread staying = new Thread(() -> {
+			clock.sleep(10);
+			woken.add(clock.currentTimeMillis() - start);
+		});
+		clock.register(leaving);
+		clock.register(staying);
+		leaving.start();
+		staying.start();
+		awaitPending(clock, 2);
+		clock.release();
+		staying.join(5000);
+
+		assertEquals(List.of(10L), woken);
+		assertFalse(staying.isAlive());
+	}
+
+	@Test
+	@DisplayName("Testing an activity blocked outside the clock keeps its turn until the turn timeout, or for good without one")
+	void TestG() throws Exception {
+		for (int turnTimeout : new int[] { 100, 0 }) {
+			SimulationClock clock = new SimulationClock(true, turnTimeout);
+			List<String> log = Collections.synchronizedList(new ArrayList<String>());
+			Object blocker = new Object();
+			boolean[] unblocked = new boolean[1];
+			clock.hold();
+
+			Thread blocked = start(clock, "Blocked", () -> {
+				clock.sleep(10);
+				synchronized (blocker) {
+					while (!unblocked[0]) {
+						try {
+							blocker.wait();
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}
+				log.add("blocked");
+			});
+			Thread sleeper = start(clock, "Sleeper", () -> {
+				clock.sleep(20);
+				log.add("sleeper");
+			});
+			awaitPending(clock, 2);
+			clock.release();
+			sleeper.join(1000);
+			if (turnTimeout > 0) {
+				assertEquals(List.of("sleeper"), log);
+			} else {
+				assertTrue(sleeper.isAlive());
+				assertTrue(log.isEmpty());
+			}
+
+			synchronized (blocker) {
+				unblocked[0] = true;
+				blocker.notifyAll();
+			}
+			blocked.join(5000);
+			sleeper.join(5000);
+			assertFalse(blocked.isAlive() || sleeper.isAlive());
+			assertEquals(2, log.size());
+		}
+	}
+
+	@Test
+	@DisplayName("Testing the real time clock follows the system clock")
+	void TestH() throws Exception {
+		SimulationClock clock = new SimulationClock(false);
+		long before = System.currentTimeMillis();
+		long now = clock.currentTimeMillis();
+		assertTrue(now >= before && now <= System.currentTimeMillis());
+		Thread.sleep(20);
+		assertTrue(clock.getElapsedMillis() >= 20);
+	}
+
+	/**
+	 * Runs cars that call a dispatcher at random times over the in-process transport, with calls scheduled from a
+	 * trace on top, and records what each did at which simulated time
+	 */
+	private static List<String> runSimulation(long seed) throws Exception {
+		SimulationClock clock = new SimulationClock(true);
+		InProcessTransport dispatcherSide = new InProcessTransport(clock);
+		InProcessTransport carSide = dispatcherSide.getPeer();
+		List<String> trace = Collections.synchronizedList(new ArrayList<String>());
+		int cars = 3;
+		int rounds = 20;
+		int calls = 10;
+		clock.hold();
+
+		// the trace sets the time the clock starts at, before any activity runs
+		Random trafficRandom = new Random(seed);
+		Timer unused = new Timer(true);
+		long traceStart = clock.currentTimeMillis() + 60000;
+		for (int i = 0; i < calls; i++) {
+			byte call = (byte) i;
+			clock.schedule(unused, new TimerTask() {
+				@Override
+				public void run() {
+					try {
+						carSide.send(0, new byte[] { 0, call });
+					} catch (HostActionsException e) {
+						trace.add("call failed " + e);
+					}
+				}
+			}, new Date(traceStart + trafficRandom.nextInt(500)));
+		}
+		long start = clock.currentTimeMillis();
+		List<Thread> threads = new ArrayList<Thread>();
+		threads.add(start(clock, "Dispatcher", () -> {
+			Random random = new Random(seed);
+			try {
+				for (int i = 0; i < cars * rounds + calls; i++) {
+					DatagramPacket packet = dispatcherSide.receive(0, 0);
+					int from = packet.getData()[0];
+					trace.add((clock.currentTimeMillis() - start) + " handled " + from + "/" + packet.getData()[1]);
+					// handling takes simulated time, and a little real time the clock has to wait for
+					clock.sleep(random.nextInt(3));
+					if (random.nextInt(4) == 0) {
+						Thread.sleep(1);
+					}
+					if (from > 0) {
+						dispatcherSide.send(from, new byte[] { 0, packet.getData()[1] });
+					}
+				}
+			} catch (HostActionsException | InterruptedException e) {
+				trace.add("dispatcher failed " + e);
+			}
+		}));
+		for (int car = 1; car <= cars; car++) {
+			int number = car;
+			threads.add(start(clock, "Car " + car, () -> {
+				Random random = new Random(seed * 31 + number);
+				for (int round = 0; round < rounds; round++) {
+					clock.sleep(1 + random.nextInt(50));
+					try {
+						carSide.send(0, new byte[] { (byte) number, (byte) round });
+						// a reply that takes too long is taken in a later round
+						DatagramPacket reply = carSide.receive(number, 2 + random.nextInt(20));
+						trace.add((clock.currentTimeMillis() - start) + " car " + number + " replied " + reply.getData()[1]);
+					} catch (HostActionsException e) {
+						trace.add((clock.currentTimeMillis() - start) + " car " + number + " timed out");
+					}
+				}
+			}));
+		}
+		clock.release();
+		for (Thread thread : threads) {
+			thread.join(10000);
+			assertFalse(thread.isAlive(), thread.getName() + " did not finish");
+		}
+		dispatcherSide.terminate();
+		carSide.terminate();
+		return trace;
+	}
+
+	/**
+	 * Starts the body as an activity taking turns on the clock, as ExecutionModel does in simulated time
+	 */
+	private static Thread start(SimulationClock clock, String name, Runnable body) {
+		Thread thread = new Thread(() -> {
+			clock.attach();
+			try {
+				body.run();
+			} finally {
+				clock.detach();
+			}
+		}, name);
+		clock.register(thread);
+		thread.start();
+		return thread;
+	}
+
+	private static void awaitPending(SimulationClock clock, int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (clock.getPendingCount() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+
+	private static TimerTask createTask(List<Integer> order, int number) {
+		return new TimerTask() {
+			@Override
+			public void run() {
+				order.add(number);
+			}
+		};
+	}
+}
@@ -0,0 +1,192 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.Utils.TimingWheel;
+
+public class TimingWheelTest {
+
+	@Test
+	@DisplayName("Testing tasks run no earlier than their time and in time order for a key, across wheel levels")
+	void TestA() throws Exception {
+		TimingWheel wheel = new TimingWheel("Test wheel", 1, 2);
+		List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+		AtomicLong early = new AtomicLong();
+		CountDownLatch done = new CountDownLatch(5);
+		long start = System.currentTimeMillis();
+		// 300 ticks is past the first level of the wheel
+		long[] delays = { 300, 20, 0, 120, 260 };
+		for (int i = 0; i < delays.length; i++) {
+			long time = start + delays[i];
+			int number = i;
+			wheel.schedule(7, () -> {
+				if (System.currentTimeMillis() < time) {
+					early.incrementAndGet();
+				}
+				order.add(number);
+				done.countDown();
+			}, time);
+		}
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(0, early.get());
+		assertEquals(List.of(2, 1, 3, 4, 0), order);
+		assertEquals(0, wheel.getPendingCount());
+		wheel.cancel();
+	}
+
+	@Test
+	@DisplayName("Testing a slow task holds back only its own key and cancel discards the waiting tasks")
+	void TestB() throws Exception {
+		TimingWheel wheel = new TimingWheel("Test wheel", 5, 2);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch fast = new CountDownLatch(100);
+		long start = System.currentTimeMillis();
+		wheel.schedule(0, () -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+			}
+		}, start);
+		for (int i = 0; i < 100; i++) {
+			wheel.schedule(1, fast::countDown, start + i);
+		}
+
+		assertTrue(fast.await(5, TimeUnit.SECONDS));
+		wheel.schedule(1, fast::countDown, start + 60 * 60 * 1000);
+		assertEquals(1, wheel.getPendingCount());
+		wheel.cancel();
+		release.countDown();
+		assertEquals(0, wheel.getPendingCount());
+	}
+
+	@Test
+	@DisplayName("Testing thousands of tasks scheduled from several threads each run once, on time and in order for their key")
+	void TestC() throws Exception {
+		TimingWheel wheel = new TimingWheel("Test wheel", 1, 4);
+		int threads = 4;
+		int tasks = 500;
+		int keys = 10;
+		long start = System.currentTimeMillis() + 50;
+		// last time run per key, and times out of order, early or late
+		long[] lastTime = new long[keys];
+		AtomicInteger wrong = new AtomicInteger();
+		AtomicLong maxLate = new AtomicLong();
+		CountDownLatch done = new CountDownLatch(threads * tasks);
+		List<Thread> schedulers = new ArrayList<Thread>();
+		for (int t = 0; t < threads; t++) {
+			Random random = new Random(t);
+			Thread scheduler = new Thread(() -> {
+				for (int i = 0; i < tasks; i++) {
+					int key = random.nextInt(keys);
+					// up to 700 ticks crosses into the second level of the wheel
+					long time = start + random.nextInt(700);
+					wheel.schedule(key, () -> {
+						long now = System.currentTimeMillis();
+						if (now < time || lastTime[key] > time) {
+							wrong.incrementAndGet();
+						}
+						lastTime[key] = time;
+						maxLate.accumulateAndGet(now - time, Math::max);
+						done.countDown();
+					}, time);
+				}
+			});
+			schedulers.add(scheduler);
+			scheduler.start();
+		}
+		for (Thread scheduler : schedulers) {
+			scheduler.join();
+		}
+
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(0, wrong.get());
+		assertTrue(maxLate.get() < 500, "a task ran " + maxLate.get() + " ms late");
+		assertEquals(0, wheel.getPendingCount());
+		wheel.cancel();
+	}
+
+	@Test
+	@DisplayName("Testing tasks already due run in the order they were scheduled and a failing task does not stop its key")
+	void TestD() throws Exception {
+		TimingWheel wheel = new TimingWheel("Test wheel", 10, 1);
+		List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+		CountDownLatch done = new CountDownLatch(4);
+		long past = System.currentTimeMillis() - 10000;
+		for (int i = 0; i < 4; i++) {
+			int number = i;
+			wheel.schedule(3, () -> {
+				order.add(number);
+				done.countDown();
+				if (number == 1) {
+					throw new IllegalStateException("task failed on purpose");
+				}
+			}, past);
+		}
+
+		assertTrue(done.await(2, TimeUnit.SECONDS));
+		assertEquals(List.of(0, 1, 2, 3), order);
+		wheel.cancel();
+	}
+
+	@Test
+	@DisplayName("Testing a wheel left empty for a while does not fire a new task early")
+	void TestE() throws Exception {
+		TimingWheel wheel = new TimingWheel("Test wheel", 1, 1);
+		CountDownLatch first = new CountDownLatch(1);
+		wheel.schedule(0, first::countDown, System.currentTimeMillis());
+		assertTrue(first.await(1, TimeUnit.SECONDS));
+		// longer than the first level, the ticker stands still meanwhile
+		Thread.sleep(400);
+
+		AtomicLong ranAt = new AtomicLong();
+		CountDownLatch second = new CountDownLatch(1);
+		long time = System.currentTimeMillis() + 100;
+		wheel.schedule(0, () -> {
+			ranAt.set(System.currentTimeMillis());
+			second.countDown();
+		}, time);
+		assertTrue(second.await(2, TimeUnit.SECONDS));
+		assertTrue(ranAt.get() >= time);
+		assertTrue(ranAt.get() - time < 500);
+		wheel.cancel();
+	}
+
+	@Test
+	@DisplayName("Testing a task cancelling the wheel stops the rest of its batch and later schedules are refused")
+	void TestF() throws Exception {
+		TimingWheel wheel = new TimingWheel("Test wheel", 10, 1);
+		AtomicInteger ran = new AtomicInteger();
+		CountDownLatch cancelled = new CountDownLatch(1);
+		long time = System.currentTimeMillis() + 20;
+		wheel.schedule(0, () -> {
+			ran.incrementAndGet();
+			wheel.cancel();
+			cancelled.countDown();
+		}, time);
+		for (int i = 0; i < 5; i++) {
+			wheel.schedule(0, ran::incrementAndGet, time);
+		}
+
+		assertTrue(cancelled.await(2, TimeUnit.SECONDS));
+		Thread.sleep(100);
+		assertEquals(1, ran.get());
+		assertThrows(IllegalStateException.class, () -> wheel.schedule(0, ran::incrementAndGet, time));
+		assertThrows(IllegalArgumentException.class, () -> new TimingWheel("Test wheel", 0, 1));
+		assertThrows(IllegalArgumentException.class, () -> new TimingWheel("Test wheel", 1, 0));
+	}
+}
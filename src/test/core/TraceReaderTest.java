@@ -0,0 +1,171 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.Direction;
+import core.TraceReader;
+import core.Exceptions.InputParserException;
+import core.Utils.SimulationRequest;
+
+public class TraceReaderTest {
+
+	@Test
+	@DisplayName("Testing the rows of a trace are read one at a time into requests")
+	void TestA() throws Exception {
+		File file = createTrace("Time Floor Floor_Button Car_Button ErrorCode ErrorFloor\n"
+				+ "05:15:02.0 1 up 5 0 0\n"
+				+ "\n"
+				+ "05:15:03.25  7 Down 2 1 4\n"
+				+ "05:15:03.250 3 up 9 2\n"
+				+ "end\n"
+				+ "05:15:09.0 1 up 5 0 0\n");
+
+		try (TraceReader reader = new TraceReader(file)) {
+			SimulationRequest first = reader.next();
+			assertEquals(1, first.getFloor());
+			assertEquals(Direction.UP, first.getFloorButton());
+			assertEquals(5, first.getCarButton());
+			assertEquals(0, first.getIntervalTime());
+
+			SimulationRequest second = reader.next();
+			assertEquals(7, second.getFloor());
+			assertEquals(Direction.DOWN, second.getFloorButton());
+			assertEquals(1, second.getErrorCode());
+			assertEquals(4, second.getErrorElevator());
+			assertEquals(1250, second.getIntervalTime());
+			assertEquals(1250, second.getStartTime().getTime() - first.getStartTime().getTime());
+
+			SimulationRequest third = reader.next();
+			assertEquals(2, third.getErrorCode());
+			assertEquals(-1, third.getErrorElevator());
+			assertEquals(1250, third.getIntervalTime());
+
+			assertTrue(reader.next().getEnd());
+			assertNull(reader.next());
+		}
+		file.delete();
+	}
+
+	@Test
+	@DisplayName("Testing a row out of time order or in the wrong format is rejected")
+	void TestB() throws Exception {
+		File file = createTrace("Time Floor Floor_Button Car_Button ErrorCode ErrorFloor\n"
+				+ "05:15:02.0 1 up 5 0 0\n"
+				+ "05:15:01.0 2 up 5 0 0\n");
+		try (TraceReader reader = new TraceReader(file)) {
+			reader.next();
+			assertThrows(InputParserException.class, () -> reader.next());
+		}
+
+		Files.write(file.toPath(), "Time Floor Floor_Button Car_Button ErrorCode ErrorFloor\n05:15:02.0 1 sideways 5 0 0\n5:15 1 up 5 0 0\n"
+				.getBytes(StandardCharsets.UTF_8));
+		try (TraceReader reader = new TraceReader(file)) {
+			assertThrows(InputParserException.class, () -> reader.next());
+			assertThrows(InputParserException.class, () -> reader.next());
+		}
+
+		Files.write(file.toPath(), "Time Floor Car_Button ErrorCode\n".getBytes(StandardCharsets.UTF_8));
+		assertThrows(InputParserException.class, () -> new TraceReader(file));
+		file.delete();
+	}
+
+	@Test
+	@DisplayName("Testing columns in another order and times with any fraction or past midnight")
+	void TestC() throws Exception {
+		File file = createTrace("ErrorCode Car_Button Floor_Button Floor Time ErrorFloor\n"
+				+ "0 5 up 1 23:59:59.5 0\n"
+				+ "\n"
+				+ "\n"
+				+ "0 2 down 9 24:00:00.05 0\n"
+				+ "2 4 UP 3 25:00:01.123456\n"
+				+ "0 4 up 3 25:00:01.123 0\n");
+		try (TraceReader reader = new TraceReader(file)) {
+			SimulationRequest first = reader.next();
+			assertEquals(5, first.getCarButton());
+			assertEquals(1, first.getFloor());
+			assertEquals(0, first.getErrorElevator());
+			assertEquals((23 * 3600 + 59 * 60 + 59) * 1000L + 500, reader.getTime());
+
+			SimulationRequest second = reader.next();
+			assertEquals(Direction.DOWN, second.getFloorButton());
+			assertEquals(550, second.getIntervalTime());
+			// blank rows are skipped but still counted
+			assertEquals(5, reader.getRowNumber());
+
+			SimulationRequest third = reader.next();
+			assertEquals(2, third.getErrorCode());
+			assertEquals(-1, third.getErrorElevator());
+			assertEquals(25 * 3600 * 1000L + 1123, reader.getTime());
+			// digits past the milliseconds are dropped, so the next row is not earlier
+			assertEquals(third.getIntervalTime(), reader.next().getIntervalTime());
+			assertNull(reader.next());
+		}
+		file.delete();
+	}
+
+	@Test
+	@DisplayName("Testing malformed times and numbers are rejected with their row number")
+	void TestD() throws Exception {
+		String[] rows = { "5:15:02.0 1 up 5 0 0", "05:1:02.0 1 up 5 0 0", "05:15:02. 1 up 5 0 0", "05:15:0a.0 1 up 5 0 0", "05:15:02.0x 1 up 5 0 0",
+				"05:15:02.0 -1 up 5 0 0", "05:15:02.0 1 up 5000000000 0 0", "05:15:02.0 1 up 5 0", "05:15:02.0 1 up 5 2 3" };
+		File file = createTrace("Time Floor Floor_Button Car_Button ErrorCode ErrorFloor\n" + String.join("\n", rows) + "\n");
+		try (TraceReader reader = new TraceReader(file)) {
+			for (int i = 0; i < rows.length; i++) {
+				InputParserException e = assertThrows(InputParserException.class, () -> reader.next(), rows[i]);
+				assertTrue(e.getMessage().startsWith("Row " + (i + 2) + " "), e.getMessage());
+			}
+			assertNull(reader.next());
+		}
+
+		Files.write(file.toPath(), new byte[0]);
+		assertThrows(InputParserException.class, () -> new TraceReader(file));
+		file.delete();
+		assertThrows(InputParserException.class, () -> new TraceReader(file));
+	}
+
+	@Test
+	@DisplayName("Testing a long trace is streamed row by row up to its last row")
+	void TestE() throws Exception {
+		int rows = 200000;
+		File file = File.createTempFile("trace", ".csv");
+		try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+			writer.write("Time Floor Floor_Button Car_Button ErrorCode ErrorFloor\n");
+			for (int i = 0; i < rows; i++) {
+				// one row every 250 ms, over almost 14 hours
+				long millis = i * 250L;
+				writer.write(String.format("%02d:%02d:%02d.%03d %d %s %d 0 0%n", millis / 3600000, millis / 60000 % 60, millis / 1000 % 60, millis % 1000,
+						i % 20 + 1, i % 2 == 0 ? "up" : "down", (i + 7) % 20 + 1));
+			}
+		}
+
+		int count = 0;
+		SimulationRequest last = null;
+		try (TraceReader reader = new TraceReader(file)) {
+			for (SimulationRequest request = reader.next(); request != null; request = reader.next()) {
+				assertEquals(count * 250L, request.getIntervalTime());
+				last = request;
+				count++;
+			}
+		}
+		assertEquals(rows, count);
+		assertEquals((rows - 1) % 20 + 1, last.getFloor());
+		file.delete();
+	}
+
+	private static File createTrace(String content) throws Exception {
+		File file = File.createTempFile("trace", ".csv");
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+}
@@ -0,0 +1,162 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.Direction;
+import core.TraceReader;
+import core.TrafficGenerator;
+import core.Utils.SimulationRequest;
+
+public class TrafficGeneratorTest {
+
+	private static final int FLOORS = 22;
+	private static final int CALLS = 20000;
+	private static final long EIGHT_AM = 8 * 60 * 60 * 1000;
+
+	@Test
+	@DisplayName("Testing up-peak calls arrive at the configured rate, mostly from the lobby, in time order")
+	void TestA() throws Exception {
+		TrafficGenerator generator = new TrafficGenerator(TrafficGenerator.UP_PEAK, FLOORS, 60, CALLS, EIGHT_AM, 0, 0, 7);
+		int fromLobby = 0;
+		long previous = -1;
+		SimulationRequest request = null;
+		for (int i = 0; i < CALLS; i++) {
+			request = generator.next();
+			assertTrue(request.getFloor() >= 1 && request.getFloor() <= FLOORS);
+			assertTrue(request.getCarButton() >= 1 && request.getCarButton() <= FLOORS);
+			assertNotEquals(request.getFloor(), request.getCarButton());
+			assertEquals(request.getCarButton() > request.getFloor() ? Direction.UP : Direction.DOWN, request.getFloorButton());
+			assertEquals(0, request.getErrorCode());
+			assertTrue(request.getIntervalTime() >= previous);
+			previous = request.getIntervalTime();
+			if (request.getFloor() == 1) {
+				fromLobby++;
+			}
+		}
+		// 60 calls a minute is one a second on average
+		assertEquals(CALLS * 1000.0, request.getIntervalTime(), CALLS * 1000.0 * 0.05);
+		assertEquals(TrafficGenerator.PEAK_SHARE + (1 - TrafficGenerator.PEAK_SHARE) / FLOORS, (double) fromLobby / CALLS, 0.02);
+		assertTrue(generator.next().getEnd());
+		assertNull(generator.next());
+	}
+
+	@Test
+	@DisplayName("Testing faults are injected at their rates and a written CSV file reads back the same calls")
+	void TestB() throws Exception {
+		TrafficGenerator generator = new TrafficGenerator(TrafficGenerator.LUNCH, FLOORS, 120, CALLS, EIGHT_AM, 0.1, 0.05, 3);
+		int errorCode1 = 0;
+		int errorCode2 = 0;
+		SimulationRequest request;
+		while ((request = generator.next()) != null && !request.getEnd()) {
+			if (request.getErrorCode() == 1) {
+				errorCode1++;
+				int low = Math.min(request.getFloor(), request.getCarButton());
+				int high = Math.max(request.getFloor(), request.getCarButton());
+				assertTrue(request.getErrorElevator() > low && request.getErrorElevator() < high);
+			} else if (request.getErrorCode() == 2) {
+				errorCode2++;
+				assertEquals(-1, request.getErrorElevator());
+			}
+		}
+		// calls between neighbouring floors cannot get an ErrorCode 1
+		assertTrue(errorCode1 > CALLS * 0.08 && errorCode1 < CALLS * 0.1);
+		assertEquals(0.05, (double) errorCode2 / CALLS, 0.01);
+
+		// a call every two minutes, so the calls run past midnight
+		File csv = File.createTempFile("traffic", ".csv");
+		assertEquals(1000, TrafficGenerator.writeCsv(new TrafficGenerator(TrafficGenerator.LUNCH, FLOORS, 0.5, 1000, EIGHT_AM, 0.1, 0.05, 3), csv));
+		TrafficGenerator expected = new TrafficGenerator(TrafficGenerator.LUNCH, FLOORS, 0.5, 1000, EIGHT_AM, 0.1, 0.05, 3);
+		try (TraceReader reader = new TraceReader(csv)) {
+			SimulationRequest actual;
+			while ((actual = reader.next()) != null) {
+				request = expected.next();
+				assertEquals(request.getEnd(), actual.getEnd());
+				if (!actual.getEnd()) {
+					assertEquals(request.getStartTime(), actual.getStartTime());
+					assertEquals(request.getFloor(), actual.getFloor());
+					assertEquals(request.getCarButton(), actual.getCarButton());
+					assertEquals(request.getErrorCode(), actual.getErrorCode());
+					assertEquals(request.getErrorElevator(), actual.getErrorElevator());
+				}
+			}
+		}
+		assertNull(expected.next());
+		csv.delete();
+	}
+
+	@Test
+	@DisplayName("Testing down-peak calls go to the lobby, interfloor calls spread over every floor and gaps are exponential")
+	void TestC() throws Exception {
+		TrafficGenerator downPeak = new TrafficGenerator(TrafficGenerator.DOWN_PEAK, FLOORS, 60, CALLS, EIGHT_AM, 0, 0, 5);
+		int toLobby = 0;
+		for (int i = 0; i < CALLS; i++) {
+			SimulationRequest request = downPeak.next();
+			if (request.getCarButton() == 1) {
+				toLobby++;
+				assertEquals(Direction.DOWN, request.getFloorButton());
+			}
+		}
+		assertEquals(TrafficGenerator.PEAK_SHARE + (1 - TrafficGenerator.PEAK_SHARE) / FLOORS, (double) toLobby / CALLS, 0.02);
+
+		TrafficGenerator interfloor = new TrafficGenerator(TrafficGenerator.INTERFLOOR, FLOORS, 60, CALLS, EIGHT_AM, 0, 0, 5);
+		int[] fromFloor = new int[FLOORS + 1];
+		int[] toFloor = new int[FLOORS + 1];
+		int shortGaps = 0;
+		long previous = 0;
+		for (int i = 0; i < CALLS; i++) {
+			SimulationRequest request = interfloor.next();
+			fromFloor[request.getFloor()]++;
+			toFloor[request.getCarButton()]++;
+			// a second is the mean gap, an exponential gap is shorter than its mean 63% of the time
+			if (request.getIntervalTime() - previous < 1000) {
+				shortGaps++;
+			}
+			previous = request.getIntervalTime();
+		}
+		for (int floor = 1; floor <= FLOORS; floor++) {
+			assertEquals(1.0 / FLOORS, (double) fromFloor[floor] / CALLS, 0.01, "calls from floor " + floor);
+			assertEquals(1.0 / FLOORS, (double) toFloor[floor] / CALLS, 0.01, "calls to floor " + floor);
+		}
+		assertEquals(1 - Math.exp(-1), (double) shortGaps / CALLS, 0.02);
+	}
+
+	@Test
+	@DisplayName("Testing the seed decides the calls and invalid profiles or rates are rejected")
+	void TestD() throws Exception {
+		TrafficGenerator first = new TrafficGenerator(TrafficGenerator.LUNCH, FLOORS, 30, 500, EIGHT_AM, 0.1, 0.1, 9);
+		TrafficGenerator second = new TrafficGenerator(TrafficGenerator.LUNCH, FLOORS, 30, 500, EIGHT_AM, 0.1, 0.1, 9);
+		TrafficGenerator other = new TrafficGenerator(TrafficGenerator.LUNCH, FLOORS, 30, 500, EIGHT_AM, 0.1, 0.1, 10);
+		int differences = 0;
+		for (int i = 0; i < 500; i++) {
+			SimulationRequest expected = first.next();
+			SimulationRequest actual = second.next();
+			assertEquals(expected.getStartTime(), actual.getStartTime());
+			assertEquals(expected.getFloor(), actual.getFloor());
+			assertEquals(expected.getCarButton(), actual.getCarButton());
+			assertEquals(expected.getErrorCode(), actual.getErrorCode());
+			assertEquals(expected.getErrorElevator(), actual.getErrorElevator());
+			if (!expected.getStartTime().equals(other.next().getStartTime())) {
+				differences++;
+			}
+		}
+		assertTrue(differences > 400);
+
+		TrafficGenerator none = new TrafficGenerator(TrafficGenerator.INTERFLOOR, 2, 1, 0, EIGHT_AM, 0, 0, 1);
+		assertTrue(none.next().getEnd());
+		assertNull(none.next());
+
+		assertThrows(IllegalArgumentException.class, () -> new TrafficGenerator("UpPeak", FLOORS, 60, 1, EIGHT_AM, 0, 0, 1));
+		assertThrows(IllegalArgumentException.class, () -> new TrafficGenerator(TrafficGenerator.UP_PEAK, 1, 60, 1, EIGHT_AM, 0, 0, 1));
+		assertThrows(IllegalArgumentException.class, () -> new TrafficGenerator(TrafficGenerator.UP_PEAK, FLOORS, 0, 1, EIGHT_AM, 0, 0, 1));
+		assertThrows(IllegalArgumentException.class, () -> new TrafficGenerator(TrafficGenerator.UP_PEAK, FLOORS, 60, 1, EIGHT_AM, 0.6, 0.5, 1));
+	}
+}
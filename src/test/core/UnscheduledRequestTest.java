@@ -0,0 +1,132 @@
+package test.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import core.Direction;
+import core.Subsystems.SchedulerSubsystem.DispatchStrategy;
+import core.Subsystems.SchedulerSubsystem.Elevator;
+import core.Subsystems.SchedulerSubsystem.ElevatorPipeline;
+import core.Subsystems.SchedulerSubsystem.FloorPipeline;
+import core.Subsystems.SchedulerSubsystem.NearestCarStrategy;
+import core.Subsystems.SchedulerSubsystem.SchedulerRequest;
+import core.Subsystems.SchedulerSubsystem.SchedulerSubsystem;
+import core.Utils.SubsystemConstants;
+
+public class UnscheduledRequestTest {
+
+	private SchedulerSubsystem scheduler;
+	private ElevatorPipeline pipeline;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		scheduler = new SchedulerSubsystem(1);
+		pipeline = new ElevatorPipeline(SubsystemConstants.ELEVATOR, 1, scheduler);
+		scheduler.addListeners(new ElevatorPipeline[] { pipeline }, new FloorPipeline[0]);
+		scheduler.setDispatchStrategy(new NearestCarStrategy());
+	}
+
+	@AfterEach
+	void tearDown() {
+		pipeline.terminate();
+	}
+
+	private static SchedulerRequest createRequest(int sourceFloor, Direction direction, int destFloor) {
+		return new SchedulerRequest(InetAddress.getLoopbackAddress(), 0, SubsystemConstants.FLOOR, sourceFloor, direction, destFloor, destFloor, 0, 0);
+	}
+
+	/**
+	 * Publishes the car on the floor with the given direction, busy if the pipeline has events queued
+	 */
+	private void publish(int floor, Direction direction) throws Exception {
+		scheduler.updateElevatorState(new Elevator(1, floor, -1, direction));
+	}
+
+	@Test
+	@DisplayName("Testing a car that starts moving only retries the requests in its direction")
+	void TestA() throws Exception {
+		SchedulerRequest up = createRequest(6, Direction.UP, 9);
+		SchedulerRequest down = createRequest(8, Direction.DOWN, 2);
+		AtomicInteger upAttempts = new AtomicInteger();
+		AtomicInteger downAttempts = new AtomicInteger();
+		DispatchStrategy nearestCar = new NearestCarStrategy();
+		scheduler.setDispatchStrategy((request, subsystem) -> {
+			if (request == up) {
+				upAttempts.incrementAndGet();
+			} else if (request == down) {
+				downAttempts.incrementAndGet();
+			}
+			return nearestCar.selectElevator(request, subsystem);
+		});
+
+		// busy without a direction yet, so no car can take either request
+		pipeline.addEvent(createRequest(3, Direction.UP, 5));
+		publish(3, Direction.STATIONARY);
+		scheduler.scheduleEvent(up);
+		scheduler.scheduleEvent(down);
+		assertEquals(2, scheduler.getUnscheduledCount());
+		assertEquals(1, upAttempts.get());
+		assertEquals(1, downAttempts.get());
+
+		// moving up only retries the up request
+		publish(4, Direction.UP);
+		assertEquals(1, up.getElevatorNumber());
+		assertEquals(2, upAttempts.get());
+		assertEquals(1, downAttempts.get());
+		assertEquals(1, scheduler.getUnscheduledCount());
+
+		// another hop up changes nothing that could unblock the down request
+		publish(5, Direction.UP);
+		assertEquals(1, downAttempts.get());
+
+		// becoming idle retries every direction
+		pipeline.drainEvents();
+		publish(5, Direction.STATIONARY);
+		assertEquals(2, downAttempts.get());
+		assertEquals(1, down.getElevatorNumber());
+		assertEquals(0, scheduler.getUnscheduledCount());
+	}
+
+	@Test
+	@DisplayName("Testing a request no car takes does not hold back the later requests of its direction")
+	void TestB() throws Exception {
+		SchedulerRequest refused = createRequest(20, Direction.UP, 22);
+		SchedulerRequest first = createRequest(5, Direction.UP, 9);
+		SchedulerRequest second = createRequest(6, Direction.UP, 10);
+		DispatchStrategy nearestCar = new NearestCarStrategy();
+		// e.g. a strategy that keeps cars away from a floor under maintenance
+		scheduler.setDispatchStrategy((request, subsystem) -> request.getSourceFloor() == 20 ? null : nearestCar.selectElevator(request, subsystem));
+
+		pipeline.addEvent(createRequest(12, Direction.DOWN, 4));
+		publish(12, Direction.DOWN);
+		scheduler.scheduleEvent(refused);
+		scheduler.scheduleEvent(first);
+		scheduler.scheduleEvent(second);
+		assertEquals(3, scheduler.getUnscheduledCount());
+
+		// the idle car takes the first request behind the refused one, the second waits for it to move up
+		pipeline.drainEvents();
+		publish(4, Direction.STATIONARY);
+		assertEquals(1, first.getElevatorNumber());
+		assertEquals(2, scheduler.getUnscheduledCount());
+		publish(4, Direction.UP);
+		assertEquals(1, second.getElevatorNumber());
+
+		// the refused request keeps its place in front of the bucket
+		assertEquals(1, scheduler.getUnscheduledCount());
+		assertSame(refused, scheduler.getUnscheduledEventsSet().iterator().next());
+		SchedulerRequest third = createRequest(7, Direction.UP, 11);
+		scheduler.scheduleEvent(third);
+		assertEquals(1, third.getElevatorNumber());
+		assertTrue(scheduler.getUnscheduledEventsSet().contains(refused));
+	}
+}